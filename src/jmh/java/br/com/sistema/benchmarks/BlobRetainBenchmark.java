@@ -0,0 +1,121 @@
+package br.com.sistema.benchmarks;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import br.com.sistema.dtos.CoolifyWebhookDto;
+import br.com.sistema.models.EmailModel;
+import br.com.sistema.services.EmailBlobService;
+import br.com.sistema.services.EmailService;
+import br.com.sistema.services.EmailTemplateService;
+
+// Parte em CPU do EmailBlobService.retain num lote: SHA-256, compressão e parâmetros dos batches.
+// O JdbcTemplate não vai ao Postgres; a ida ao banco é medida pelo harness de carga
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlobRetainBenchmark {
+
+	@Param({ "1", "50" })
+	private int batchSize;
+
+	private EmailBlobService emailBlobService;
+
+	// Email do Coolify renderizado, usado como corpo de todos os emails do lote
+	private EmailModel template;
+
+	private long sequence;
+
+
+	@Setup
+	public void setUp() throws IOException {
+		emailBlobService = new EmailBlobService(16 * 1024 * 1024);
+		ReflectionTestUtils.setField(emailBlobService, "jdbcTemplate", new BindOnlyJdbcTemplate());
+
+		EmailService emailService = new EmailService();
+		ReflectionTestUtils.setField(emailService, "emailTemplateService", new EmailTemplateService());
+		template = emailService.buildCoolifyEmail(new CoolifyWebhookDto(true,
+				"Deployment of ms-email finished successfully.", "deployment_success", "ms-email",
+				"k8s2d9f0a1b2c3d4e5f6", "d3pl0ym3nt-0001",
+				"https://coolify.example.com/project/1/deployment/d3pl0ym3nt-0001", "portfolio", "production",
+				"https://api-email.example.com"));
+	}
+
+	private List<EmailModel> batch(boolean unique) {
+		List<EmailModel> emailModels = new ArrayList<>(batchSize);
+		for (int i = 0; i < batchSize; i++) {
+			EmailModel emailModel = new EmailModel();
+			String suffix = unique ? "\n" + sequence++ : "";
+			emailModel.setText(template.getText() + suffix);
+			emailModel.setHtml(template.getHtml() + suffix);
+			emailModels.add(emailModel);
+		}
+		return emailModels;
+	}
+
+
+	// Corpos repetidos: hash, acerto no cache e só o batch de incremento
+	@Benchmark
+	public List<EmailModel> retainKnownBodies() {
+		List<EmailModel> emailModels = batch(false);
+		emailBlobService.retain(emailModels);
+		return emailModels;
+	}
+
+	// Corpos inéditos: hash, gzip do html e o batch de upsert com o conteúdo
+	@Benchmark
+	public List<EmailModel> retainNewBodies() {
+		List<EmailModel> emailModels = batch(true);
+		emailBlobService.retain(emailModels);
+		return emailModels;
+	}
+
+
+	// JdbcTemplate sem banco: executa os setters e informa uma linha afetada por item
+	private static final class BindOnlyJdbcTemplate extends JdbcTemplate {
+
+		private final PreparedStatement statement = (PreparedStatement) Proxy.newProxyInstance(
+				PreparedStatement.class.getClassLoader(), new Class<?>[] { PreparedStatement.class },
+				(proxy, method, args) -> null);
+
+		@Override
+		public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+				ParameterizedPreparedStatementSetter<T> pss) {
+			for (T argument : batchArgs) {
+				try {
+					pss.setValues(statement, argument);
+				} catch (SQLException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			int[] updated = new int[batchArgs.size()];
+			Arrays.fill(updated, 1);
+			return new int[][] { updated };
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package br.com.sistema.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import br.com.sistema.dtos.CoolifyWebhookDto;
+import br.com.sistema.dtos.EmailDto;
+
+// (De)serialização JSON do EmailDto e do webhook do Coolify com as opções padrão do Spring Boot
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+	private ObjectReader emailReader;
+
+	private ObjectWriter emailWriter;
+
+	private ObjectReader coolifyReader;
+
+	private ObjectWriter coolifyWriter;
+
+	private EmailDto emailDto;
+
+	private CoolifyWebhookDto coolifyWebhookDto;
+
+	private byte[] emailJson;
+
+	private byte[] coolifyJson;
+
+
+	@Setup
+	public void setUp() throws IOException {
+		ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		emailReader = objectMapper.readerFor(EmailDto.class);
+		emailWriter = objectMapper.writerFor(EmailDto.class);
+		coolifyReader = objectMapper.readerFor(CoolifyWebhookDto.class);
+		coolifyWriter = objectMapper.writerFor(CoolifyWebhookDto.class);
+
+		emailDto = new EmailDto();
+		emailDto.setOwnerRef("portfolio");
+		emailDto.setEmailFrom("contato@example.com");
+		emailDto.setEmailTo("maria.silva@example.com");
+		emailDto.setSubject("Orçamento de site institucional");
+		emailDto.setText("Olá Maria,\n\nRecebemos a sua mensagem e retornaremos em até dois dias úteis.\n\nAtenciosamente,\nEquipe");
+		coolifyWebhookDto = new CoolifyWebhookDto(true, "Deployment of ms-email finished successfully.",
+				"deployment_success", "ms-email", "k8s2d9f0a1b2c3d4e5f6", "d3pl0ym3nt-0001",
+				"https://coolify.example.com/project/1/deployment/d3pl0ym3nt-0001", "portfolio", "production",
+				"https://api-email.example.com");
+
+		emailJson = emailWriter.writeValueAsBytes(emailDto);
+		coolifyJson = coolifyWriter.writeValueAsBytes(coolifyWebhookDto);
+	}
+
+
+	@Benchmark
+	public EmailDto readEmailDto() throws IOException {
+		return emailReader.readValue(emailJson);
+	}
+
+	@Benchmark
+	public byte[] writeEmailDto() throws IOException {
+		return emailWriter.writeValueAsBytes(emailDto);
+	}
+
+	@Benchmark
+	public CoolifyWebhookDto readCoolifyWebhook() throws IOException {
+		return coolifyReader.readValue(coolifyJson);
+	}
+
+	@Benchmark
+	public byte[] writeCoolifyWebhook() throws IOException {
+		return coolifyWriter.writeValueAsBytes(coolifyWebhookDto);
+	}
+}
@@ -0,0 +1,130 @@
+package br.com.sistema.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.async.AsyncLoggerContextSelector;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilder;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilderFactory;
+import org.apache.logging.log4j.core.config.builder.impl.BuiltConfiguration;
+import org.apache.logging.log4j.core.selector.ClassLoaderContextSelector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import br.com.sistema.enums.StatusEmail;
+import br.com.sistema.logging.EmailLogContext;
+
+// Vazão do envio com as linhas de log de um email em arquivo JSON: off, sync e async.
+// Cada operação consome CPU no lugar do resto do envio; logOnly mostra o limite do ring buffer
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggingBenchmark {
+
+	private static final String RECIPIENT = "destinatario@dominio.com.br";
+
+	private static final String SUBJECT = "Deploy concluído: ms-email (production)";
+
+	// Trabalho do restante do envio por email (montagem da mensagem, JSON etc.)
+	private static final long SEND_WORK_TOKENS = 2_000;
+
+	@Param({ "off", "sync", "async" })
+	private String mode;
+
+	private LoggerContext context;
+
+	private Logger logger;
+
+	private Path file;
+
+	private UUID[] emailIds;
+
+	private String[] correlationIds;
+
+
+	@Setup
+	public void setUp() throws IOException {
+		boolean async = "async".equals(mode);
+		// O seletor é lido na primeira chamada ao LogManager, e cada modo roda num fork próprio
+		System.setProperty("log4j2.contextSelector",
+				async ? AsyncLoggerContextSelector.class.getName() : ClassLoaderContextSelector.class.getName());
+		// Com o buffer cheio a thread espera vaga: descartar mediria o descarte, não a gravação
+		System.setProperty("log4j2.asyncQueueFullPolicy", "Default");
+
+		file = Files.createTempFile("ms-email-benchmark", ".log");
+		ConfigurationBuilder<BuiltConfiguration> builder = ConfigurationBuilderFactory.newConfigurationBuilder();
+		builder.add(builder.newAppender("File", "RandomAccessFile")
+				.addAttribute("fileName", file.toString())
+				.addAttribute("immediateFlush", !async)
+				.add(builder.newLayout("JsonTemplateLayout").addAttribute("eventTemplateUri", "classpath:log-event.json")));
+		builder.add(builder.newRootLogger("off".equals(mode) ? Level.OFF : Level.INFO).add(builder.newAppenderRef("File")));
+		context = Configurator.initialize(builder.build());
+		logger = context.getLogger("br.com.sistema.services.EmailService");
+
+		emailIds = new UUID[1024];
+		correlationIds = new String[emailIds.length];
+		for (int i = 0; i < emailIds.length; i++) {
+			emailIds[i] = UUID.randomUUID();
+			correlationIds[i] = "amq.ctag-" + i;
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Configurator.shutdown(context);
+		Files.deleteIfExists(file);
+	}
+
+	private void logEmail() {
+		int i = ThreadLocalRandom.current().nextInt(emailIds.length);
+		EmailLogContext.correlate(correlationIds[i]);
+		EmailLogContext.putEmailId(emailIds[i]);
+		logger.debug("Email sent successfully to: {} with subject: {}", RECIPIENT, SUBJECT);
+		logger.info("Email saved with status: {} | emailId: {}", StatusEmail.SENT, emailIds[i]);
+		EmailLogContext.clear();
+	}
+
+
+	@Benchmark
+	public void sendPath() {
+		Blackhole.consumeCPU(SEND_WORK_TOKENS);
+		logEmail();
+	}
+
+	// Threads de consumidores/requisições gravando ao mesmo tempo no mesmo arquivo
+	@Benchmark
+	@Threads(4)
+	public void sendPathContended() {
+		Blackhole.consumeCPU(SEND_WORK_TOKENS);
+		logEmail();
+	}
+
+	// Só o log, sem intervalo entre os eventos: vazão máxima de gravação de cada modo
+	@Benchmark
+	public void logOnly() {
+		logEmail();
+	}
+}
@@ -0,0 +1,92 @@
+package br.com.sistema.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import br.com.sistema.dtos.CoolifyWebhookDto;
+import br.com.sistema.dtos.PortfolioEmailDto;
+import br.com.sistema.models.EmailModel;
+import br.com.sistema.services.EmailService;
+import br.com.sistema.services.EmailTemplateService;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+
+// Etapas de CPU de um envio, sem SMTP e sem banco: texto simples, email do Coolify e mensagem MIME
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageBuildBenchmark {
+
+	private EmailService emailService;
+
+	private PortfolioEmailDto portfolioEmailDto;
+
+	private CoolifyWebhookDto coolifyWebhookDto;
+
+	// Email do Coolify já renderizado, usado nas etapas MIME
+	private EmailModel emailModel;
+
+
+	@Setup
+	public void setUp() throws IOException {
+		emailService = new EmailService();
+		ReflectionTestUtils.setField(emailService, "emailTemplateService", new EmailTemplateService());
+		ReflectionTestUtils.setField(emailService, "emailSender", new JavaMailSenderImpl());
+
+		portfolioEmailDto = new PortfolioEmailDto("Maria da Silva", "maria.silva@example.com", "+55 21 99999-0000",
+				"Orçamento de site institucional",
+				"Olá! Gostaria de conversar sobre um novo projeto para a minha empresa. Podemos marcar uma reunião?",
+				"portfolio", "contato@example.com");
+		coolifyWebhookDto = new CoolifyWebhookDto(true, "Deployment of ms-email finished successfully.",
+				"deployment_success", "ms-email", "k8s2d9f0a1b2c3d4e5f6", "d3pl0ym3nt-0001",
+				"https://coolify.example.com/project/1/deployment/d3pl0ym3nt-0001", "portfolio", "production",
+				"https://api-email.example.com");
+		emailModel = emailService.buildCoolifyEmail(coolifyWebhookDto);
+	}
+
+
+	@Benchmark
+	public String portfolioPlainText() {
+		return emailService.buildPlainTextContent(portfolioEmailDto);
+	}
+
+	@Benchmark
+	public String coolifyPlainText() {
+		return emailService.buildPlainTextContent(coolifyWebhookDto);
+	}
+
+	@Benchmark
+	public EmailModel buildCoolifyEmail() throws IOException {
+		return emailService.buildCoolifyEmail(coolifyWebhookDto);
+	}
+
+	@Benchmark
+	public MimeMessage mimeMessageBuild() throws MessagingException {
+		return emailService.buildMimeMessage(emailModel);
+	}
+
+	// Inclui saveChanges e a codificação quoted-printable/base64 das partes
+	@Benchmark
+	public MimeMessage mimeMessageWrite() throws MessagingException, IOException {
+		MimeMessage mimeMessage = emailService.buildMimeMessage(emailModel);
+		mimeMessage.writeTo(OutputStream.nullOutputStream());
+		return mimeMessage;
+	}
+}
@@ -0,0 +1,61 @@
+package br.com.sistema.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.sistema.mail.SmtpRateLimiter;
+
+// Custo do SmtpRateLimiter por envio, com 1 e 8 threads na mesma conta (taxas altas: nada é barrado)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+	private static final String ACCOUNT = "conta@gmail.com";
+
+	private SmtpRateLimiter limiter;
+
+	private String[] recipients;
+
+
+	@Setup
+	public void setUp() {
+		limiter = new SmtpRateLimiter(true, 1e12, 1_000_000, 1e12, 1_000_000);
+		recipients = new String[256];
+		for (int i = 0; i < recipients.length; i++) {
+			recipients[i] = "destinatario" + i + "@dominio" + (i % 64) + ".com.br";
+		}
+	}
+
+	private String nextRecipient() {
+		return recipients[ThreadLocalRandom.current().nextInt(recipients.length)];
+	}
+
+
+	@Benchmark
+	public long tryAcquireSingleThread() {
+		return limiter.tryAcquire(ACCOUNT, nextRecipient());
+	}
+
+	// Todas as threads atualizam o mesmo bucket da conta (pior caso de disputa do CAS)
+	@Benchmark
+	@Threads(8)
+	public long tryAcquireContended() {
+		return limiter.tryAcquire(ACCOUNT, nextRecipient());
+	}
+}
@@ -0,0 +1,95 @@
+package br.com.sistema.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+
+import br.com.sistema.services.EmailTemplateService;
+
+// Implementação anterior (classpath + String.replace) contra o template compilado em cache
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateRenderBenchmark {
+
+	@Param({
+		"template-email.html",
+		"template-email-chatgpt.html",
+		"template-email-claude.html",
+		"template-email-gemini.html",
+		"template-email-coolify.html"
+	})
+	private String templateName;
+
+	private EmailTemplateService emailTemplateService;
+
+	private Map<String, String> variables;
+
+	private String source;
+
+
+	@Setup
+	public void setUp() throws IOException {
+		emailTemplateService = new EmailTemplateService();
+		source = emailTemplateService.loadTemplate(templateName);
+
+		variables = new HashMap<>();
+		variables.put("name", "Maria da Silva");
+		variables.put("email", "maria.silva@example.com");
+		variables.put("phone", "+55 21 99999-0000");
+		variables.put("subject", "Orçamento de site institucional");
+		variables.put("message", "Olá! Gostaria de conversar sobre um novo projeto para a minha empresa.");
+		variables.put("icon", "✅");
+		variables.put("success", "success");
+		variables.put("event_title", "DEPLOYMENT SUCCESS");
+		variables.put("application_name", "ms-email");
+		variables.put("application_uuid", "k8s2d9f0a1b2c3d4e5f6");
+		variables.put("deployment_uuid", "d3pl0ym3nt-0001");
+		variables.put("deployment_url", "https://coolify.example.com/project/1/deployment/d3pl0ym3nt-0001");
+		variables.put("project", "portfolio");
+		variables.put("environment", "production");
+		variables.put("fqdn", "https://api-email.example.com");
+	}
+
+
+	// Implementação anterior: abre o recurso a cada chamada e faz um replace por variável
+	@Benchmark
+	public String legacyLoadAndProcess() throws IOException {
+		ClassPathResource resource = new ClassPathResource("templates/" + templateName);
+		String processedTemplate = StreamUtils.copyToString(resource.getInputStream(), StandardCharsets.UTF_8);
+		for (Map.Entry<String, String> entry : variables.entrySet()) {
+			processedTemplate = processedTemplate.replace("${contact." + entry.getKey() + "}", entry.getValue());
+		}
+		return processedTemplate;
+	}
+
+	@Benchmark
+	public String compiledLoadAndProcess() throws IOException {
+		return emailTemplateService.loadAndProcessTemplate(templateName, variables);
+	}
+
+	// Template recebido como texto: compila e renderiza a cada chamada
+	@Benchmark
+	public String processTemplate() {
+		return emailTemplateService.processTemplate(source, variables);
+	}
+}
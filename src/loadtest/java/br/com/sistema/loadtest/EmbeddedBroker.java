@@ -0,0 +1,54 @@
+package br.com.sistema.loadtest;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.qpid.server.SystemLauncher;
+import org.apache.qpid.server.model.SystemConfig;
+
+// Broker AMQP 0-9-1 em memória (Qpid Broker-J) no lugar do RabbitMQ, com guest/guest e o vhost padrão
+public class EmbeddedBroker implements AutoCloseable {
+
+	private final SystemLauncher launcher = new SystemLauncher();
+
+	private final int port;
+
+	private final Path workDir;
+
+	public EmbeddedBroker() throws Exception {
+		this.port = freePort();
+		this.workDir = Files.createTempDirectory("loadtest-qpid");
+
+		Map<String, Object> context = new HashMap<>();
+		context.put("qpid.amqp_port", port);
+		context.put("qpid.work_dir", workDir.toString());
+
+		Map<String, Object> attributes = new HashMap<>();
+		attributes.put(SystemConfig.TYPE, "Memory");
+		attributes.put(SystemConfig.INITIAL_CONFIGURATION_LOCATION,
+				EmbeddedBroker.class.getClassLoader().getResource("loadtest-qpid.json").toExternalForm());
+		attributes.put(SystemConfig.STARTUP_LOGGED_TO_SYSTEM_OUT, false);
+		attributes.put(SystemConfig.CONTEXT, context);
+		launcher.startup(attributes);
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			return socket.getLocalPort();
+		}
+	}
+
+	@Override
+	public void close() {
+		launcher.shutdown();
+	}
+}
@@ -0,0 +1,241 @@
+package br.com.sistema.loadtest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+// SMTP em processo que aceita tudo sem entregar, com latência por mensagem e falhas sorteadas
+// (failureRate: 451 no DATA, rejectRate: 550 no RCPT)
+public class FakeSmtpServer implements AutoCloseable {
+
+	private final long latencyMillis;
+
+	private final long jitterMillis;
+
+	private final double failureRate;
+
+	private final double rejectRate;
+
+	private final Random random;
+
+	// Chamado com o Subject e o System.nanoTime() de cada mensagem aceita
+	private final BiConsumer<String, Long> onMessage;
+
+	private final ServerSocket serverSocket;
+
+	private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+
+	private final AtomicLong accepted = new AtomicLong();
+
+	private final AtomicLong failed = new AtomicLong();
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	private final AtomicLong sessions = new AtomicLong();
+
+	// Mensagens aguardando a confirmação do DATA ao mesmo tempo, e o maior valor já visto
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final AtomicInteger peakInFlight = new AtomicInteger();
+
+	public FakeSmtpServer(long latencyMillis, long jitterMillis, double failureRate, double rejectRate, long seed,
+			BiConsumer<String, Long> onMessage) throws IOException {
+		this.latencyMillis = latencyMillis;
+		this.jitterMillis = jitterMillis;
+		this.failureRate = failureRate;
+		this.rejectRate = rejectRate;
+		this.random = new Random(seed);
+		this.onMessage = onMessage;
+		this.serverSocket = new ServerSocket(0, 100, InetAddress.getLoopbackAddress());
+		Thread.ofPlatform().daemon().name("fake-smtp-accept").start(this::acceptLoop);
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	public long getAccepted() {
+		return accepted.get();
+	}
+
+	public long getFailed() {
+		return failed.get();
+	}
+
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	public long getSessions() {
+		return sessions.get();
+	}
+
+	public int getPeakInFlight() {
+		return peakInFlight.get();
+	}
+
+	private void acceptLoop() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				sessions.incrementAndGet();
+				connections.execute(() -> session(socket));
+			} catch (IOException e) {
+				// Servidor fechado
+			}
+		}
+	}
+
+	private boolean draw(double rate) {
+		if (rate <= 0) {
+			return false;
+		}
+		synchronized (random) {
+			return random.nextDouble() < rate;
+		}
+	}
+
+	private long delay() {
+		if (jitterMillis <= 0) {
+			return latencyMillis;
+		}
+		synchronized (random) {
+			return latencyMillis + (long) (random.nextDouble() * jitterMillis);
+		}
+	}
+
+	
+	
+	// ===========================================================================
+	// Uma sessão SMTP: comandos linha a linha até QUIT ou a conexão ser fechada
+	// ===========================================================================
+	private void session(Socket socket) {
+		try (socket;
+				BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+				Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII)) {
+			reply(out, "220 fake-smtp ESMTP ready");
+			boolean recipientRejected = false;
+			String line;
+			while ((line = in.readLine()) != null) {
+				String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase(Locale.ROOT) : line.toUpperCase(Locale.ROOT);
+				switch (command) {
+					case "EHLO" -> reply(out, "250-fake-smtp\r\n250-AUTH PLAIN LOGIN\r\n250-8BITMIME\r\n250 SIZE 52428800");
+					case "HELO" -> reply(out, "250 fake-smtp");
+					case "AUTH" -> authenticate(line, in, out);
+					case "MAIL" -> {
+						recipientRejected = false;
+						reply(out, "250 OK");
+					}
+					case "RCPT" -> {
+						if (draw(rejectRate)) {
+							recipientRejected = true;
+							rejected.incrementAndGet();
+							reply(out, "550 5.1.1 Mailbox unavailable");
+						} else {
+							reply(out, "250 OK");
+						}
+					}
+					case "DATA" -> {
+						reply(out, "354 End data with <CR><LF>.<CR><LF>");
+						String subject = readData(in);
+						if (recipientRejected) {
+							reply(out, "554 5.5.1 No valid recipients");
+						} else {
+							peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+							try {
+								sleep(delay());
+							} finally {
+								inFlight.decrementAndGet();
+							}
+							if (draw(failureRate)) {
+								failed.incrementAndGet();
+								reply(out, "451 4.3.0 Temporary failure (injected)");
+							} else {
+								accepted.incrementAndGet();
+								onMessage.accept(subject, System.nanoTime());
+								reply(out, "250 OK queued");
+							}
+						}
+					}
+					case "QUIT" -> {
+						reply(out, "221 Bye");
+						return;
+					}
+					default -> reply(out, "250 OK");	// RSET, NOOP
+				}
+			}
+		} catch (SocketException e) {
+			// Cliente fechou a conexão
+		} catch (IOException e) {
+			System.err.println("Fake SMTP session failed: " + e.getMessage());
+		}
+	}
+
+	private static void authenticate(String line, BufferedReader in, Writer out) throws IOException {
+		String[] parts = line.split(" ");
+		if (parts.length > 1 && parts[1].equalsIgnoreCase("LOGIN")) {
+			reply(out, "334 VXNlcm5hbWU6");
+			in.readLine();
+			reply(out, "334 UGFzc3dvcmQ6");
+			in.readLine();
+		} else if (parts.length == 2) {
+			reply(out, "334 ");
+			in.readLine();
+		}
+		reply(out, "235 2.7.0 Authentication successful");
+	}
+
+	// Lê o corpo até a linha "." e devolve o Subject (ainda codificado, como veio no cabeçalho)
+	private static String readData(BufferedReader in) throws IOException {
+		String subject = null;
+		boolean headers = true;
+		String line;
+		while ((line = in.readLine()) != null && !line.equals(".")) {
+			if (headers) {
+				if (line.isEmpty()) {
+					headers = false;
+				} else if (subject == null && line.regionMatches(true, 0, "Subject:", 0, 8)) {
+					subject = line.substring(8).trim();
+				}
+			}
+		}
+		return subject;
+	}
+
+	private static void reply(Writer out, String response) throws IOException {
+		out.write(response);
+		out.write("\r\n");
+		out.flush();
+	}
+
+	private static void sleep(long millis) {
+		if (millis <= 0) {
+			return;
+		}
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+		connections.shutdownNow();
+	}
+}
@@ -0,0 +1,340 @@
+package br.com.sistema.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import br.com.sistema.Startup;
+import br.com.sistema.dtos.EmailDto;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+// Carga de laço aberto sem rede (Postgres, broker AMQP e SMTP em processo) por HTTP e pela fila;
+// a latência conta a partir do horário planejado. Opções --loadtest.*, o resto vai para a aplicação
+public final class LoadTestRunner {
+
+	private static final ObjectMapper JSON = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+	private LoadTestRunner() {
+	}
+
+	private record Settings(List<String> scenarios, double rate, long warmupSeconds, long durationSeconds,
+			long drainSeconds, long smtpLatencyMs, long smtpJitterMs, double smtpFailureRate, double smtpRejectRate,
+			long seed, String resultFile) {
+
+		static Settings from(SimpleCommandLinePropertySource args) {
+			return new Settings(
+					Arrays.stream(get(args, "scenarios", "http,amqp").split(",")).map(String::trim).toList(),
+					Double.parseDouble(get(args, "rate", "50")),
+					Long.parseLong(get(args, "warmup-s", "10")),
+					Long.parseLong(get(args, "duration-s", "30")),
+					Long.parseLong(get(args, "drain-s", "30")),
+					Long.parseLong(get(args, "smtp.latency-ms", "20")),
+					Long.parseLong(get(args, "smtp.jitter-ms", "10")),
+					Double.parseDouble(get(args, "smtp.failure-rate", "0")),
+					Double.parseDouble(get(args, "smtp.reject-rate", "0")),
+					Long.parseLong(get(args, "seed", "42")),
+					get(args, "result-file", "target/loadtest-result.json"));
+		}
+
+		private static String get(SimpleCommandLinePropertySource args, String name, String defaultValue) {
+			String value = args.getProperty("loadtest." + name);
+			return value != null ? value : defaultValue;
+		}
+	}
+
+	// Medições de um cenário; só entram os envios planejados depois do aquecimento
+	private static final class Scenario {
+		private final String name;
+		private final ConcurrentHistogram latencyMicros = new ConcurrentHistogram(3);
+		private final AtomicLong sent = new AtomicLong();
+		private final AtomicLong succeeded = new AtomicLong();
+		private final AtomicLong failed = new AtomicLong();
+		private final AtomicLong pending = new AtomicLong();
+		private volatile long measureStart;
+		private volatile long lastCompletion;
+
+		Scenario(String name) {
+			this.name = name;
+		}
+
+		void complete(long intendedNanos, boolean measured, boolean success) {
+			long now = System.nanoTime();
+			pending.decrementAndGet();
+			if (!measured) {
+				return;
+			}
+			if (success) {
+				succeeded.incrementAndGet();
+				latencyMicros.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(now - intendedNanos)));
+			} else {
+				failed.incrementAndGet();
+			}
+			lastCompletion = Math.max(lastCompletion, now);
+		}
+
+		Map<String, Object> report(double offeredRate) {
+			long measured = sent.get();
+			double seconds = Math.max(1, lastCompletion - measureStart) / 1e9;
+			Histogram latency = latencyMicros.copy();
+			Map<String, Object> report = new LinkedHashMap<>();
+			report.put("scenario", name);
+			report.put("offeredPerSecond", offeredRate);
+			report.put("sent", measured);
+			report.put("succeeded", succeeded.get());
+			report.put("failed", failed.get());
+			report.put("undelivered", measured - succeeded.get() - failed.get());
+			report.put("errorRate", measured == 0 ? 0 : (double) (measured - succeeded.get()) / measured);
+			report.put("throughputPerSecond", succeeded.get() / seconds);
+			Map<String, Double> latencyMs = new LinkedHashMap<>();
+			latencyMs.put("mean", latency.getMean() / 1000);
+			latencyMs.put("p50", latency.getValueAtPercentile(50) / 1000.0);
+			latencyMs.put("p90", latency.getValueAtPercentile(90) / 1000.0);
+			latencyMs.put("p99", latency.getValueAtPercentile(99) / 1000.0);
+			latencyMs.put("p999", latency.getValueAtPercentile(99.9) / 1000.0);
+			latencyMs.put("max", latency.getMaxValue() / 1000.0);
+			report.put("latencyMs", latencyMs);
+			return report;
+		}
+	}
+
+	@FunctionalInterface
+	private interface Send {
+		void send(long sequence, long intendedNanos, boolean measured) throws Exception;
+	}
+
+
+
+	public static void main(String[] args) throws Exception {
+		SimpleCommandLinePropertySource commandLine = new SimpleCommandLinePropertySource(args);
+		Settings settings = Settings.from(commandLine);
+		String[] applicationArgs = Arrays.stream(args).filter(arg -> !arg.startsWith("--loadtest.")).toArray(String[]::new);
+
+		// Assunto -> horário planejado dos envios pela fila, resolvidos quando chegam ao SMTP
+		Map<String, long[]> queued = new ConcurrentHashMap<>();
+		Scenario amqp = new Scenario("amqp");
+
+		try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start();
+				EmbeddedBroker broker = new EmbeddedBroker();
+				FakeSmtpServer smtp = new FakeSmtpServer(settings.smtpLatencyMs(), settings.smtpJitterMs(),
+						settings.smtpFailureRate(), settings.smtpRejectRate(), settings.seed(), (subject, receivedAt) -> {
+							long[] entry = subject != null ? queued.remove(subject) : null;
+							if (entry != null) {
+								amqp.complete(entry[0], entry[1] == 1, true);
+							}
+						})) {
+
+			// Propriedades de sistema têm precedência sobre application-prod.properties; os argumentos, sobre elas
+			System.setProperty("spring.profiles.active", "prod");
+			System.setProperty("spring.datasource.url", postgres.getJdbcUrl("postgres", "postgres"));
+			System.setProperty("spring.datasource.username", "postgres");
+			System.setProperty("spring.datasource.password", "postgres");
+			System.setProperty("spring.mail.host", "127.0.0.1");
+			System.setProperty("spring.mail.port", String.valueOf(smtp.getPort()));
+			System.setProperty("spring.mail.username", "loadtest@example.com");
+			System.setProperty("spring.mail.password", "loadtest");
+			System.setProperty("spring.rabbitmq.host", "127.0.0.1");
+			System.setProperty("spring.rabbitmq.port", String.valueOf(broker.getPort()));
+			System.setProperty("spring.rabbitmq.username", "guest");
+			System.setProperty("spring.rabbitmq.password", "guest");
+			System.setProperty("spring.rabbitmq.queue", "email.loadtest");
+			// O Qpid não aceita x-message-ttl/x-dead-letter-exchange, usados pela fila de espera
+			System.setProperty("email.lanes.delay.enabled", "false");
+			System.setProperty("server.port", "0");
+			// O limite da conta Gmail (10/s) mediria só o limitador; ative com --email.rate-limit.enabled=true
+			System.setProperty("email.rate-limit.enabled", "false");
+			System.setProperty("logging.level.br.com.sistema", "WARN");
+			System.setProperty("logging.level.org.apache.qpid", "WARN");
+			System.setProperty("logging.level.io.zonky", "WARN");
+			// O restart do devtools relançaria main() em outro classloader
+			System.setProperty("spring.devtools.restart.enabled", "false");
+
+			try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Startup.class).run(applicationArgs)) {
+				String port = context.getEnvironment().getProperty("local.server.port");
+				List<Map<String, Object>> reports = new ArrayList<>();
+
+				if (settings.scenarios().contains("http")) {
+					reports.add(runHttp(settings, URI.create("http://127.0.0.1:" + port + "/api/sending-email")));
+				}
+				if (settings.scenarios().contains("amqp")) {
+					RabbitTemplate rabbitTemplate = context.getBean(RabbitTemplate.class);
+					String queue = context.getEnvironment().getProperty("spring.rabbitmq.queue");
+					reports.add(runAmqp(settings, amqp, queued, rabbitTemplate, queue));
+				}
+
+				Map<String, Object> smtpReport = new LinkedHashMap<>();
+				smtpReport.put("accepted", smtp.getAccepted());
+				smtpReport.put("failedInjected", smtp.getFailed());
+				smtpReport.put("rejectedInjected", smtp.getRejected());
+				smtpReport.put("connections", smtp.getSessions());
+				write(settings, reports, smtpReport);
+			}
+		}
+		System.exit(0);
+	}
+
+	
+	
+	// ===========================================================================
+	// POST /api/sending-email: sucesso é 2xx com o email SENT (ou PENDING no modo async)
+	// ===========================================================================
+	private static Map<String, Object> runHttp(Settings settings, URI uri) throws Exception {
+		Scenario http = new Scenario("http");
+		HttpClient client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.executor(Executors.newVirtualThreadPerTaskExecutor())
+				.build();
+
+		drive(settings, http, (sequence, intendedNanos, measured) -> {
+			EmailDto emailDto = email("loadtest http " + sequence);
+			HttpRequest request = HttpRequest.newBuilder(uri)
+					.header("Content-Type", "application/json")
+					.POST(HttpRequest.BodyPublishers.ofByteArray(JSON.writeValueAsBytes(emailDto)))
+					.build();
+			client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+				boolean success = error == null && response.statusCode() / 100 == 2
+						&& !response.body().contains("\"statusEmail\":\"ERROR\"")
+						&& !response.body().contains("\"statusEmail\":\"RETRYING\"");
+				http.complete(intendedNanos, measured, success);
+			});
+		});
+		await(http, settings.drainSeconds());
+		return http.report(settings.rate());
+	}
+
+	
+	
+	// ===========================================================================
+	// Fila do EmailConsumer: o envio termina quando o SMTP falso aceita a mensagem
+	// (inclusive depois de retentativas do outbox, se houver falha injetada)
+	// ===========================================================================
+	private static Map<String, Object> runAmqp(Settings settings, Scenario amqp, Map<String, long[]> queued,
+			RabbitTemplate rabbitTemplate, String queue) throws Exception {
+		drive(settings, amqp, (sequence, intendedNanos, measured) -> {
+			String subject = "loadtest amqp " + sequence;
+			queued.put(subject, new long[] { intendedNanos, measured ? 1 : 0 });
+			rabbitTemplate.convertAndSend(queue, email(subject), message -> {
+				message.getMessageProperties().setMessageId(UUID.randomUUID().toString());
+				return message;
+			});
+		});
+		await(amqp, settings.drainSeconds());
+		return amqp.report(settings.rate());
+	}
+
+	private static EmailDto email(String subject) {
+		EmailDto emailDto = new EmailDto();
+		emailDto.setOwnerRef("loadtest");
+		emailDto.setEmailFrom("loadtest@example.com");
+		emailDto.setEmailTo("destinatario@example.com");
+		emailDto.setSubject(subject);
+		emailDto.setText("Mensagem gerada pelo teste de carga.");
+		return emailDto;
+	}
+
+	
+	
+	// ===========================================================================
+	// Dispara os envios nos horários planejados: aquecimento + medição
+	// ===========================================================================
+	private static void drive(Settings settings, Scenario scenario, Send send) throws Exception {
+		long intervalNanos = (long) (1e9 / settings.rate());
+		long start = System.nanoTime();
+		long measureStart = start + TimeUnit.SECONDS.toNanos(settings.warmupSeconds());
+		long end = measureStart + TimeUnit.SECONDS.toNanos(settings.durationSeconds());
+		scenario.measureStart = measureStart;
+		System.out.printf("Running %s at %.0f/s: %ds warm-up + %ds measured%n", scenario.name, settings.rate(),
+				settings.warmupSeconds(), settings.durationSeconds());
+
+		for (long sequence = 0;; sequence++) {
+			long intendedNanos = start + sequence * intervalNanos;
+			if (intendedNanos >= end) {
+				break;
+			}
+			long wait;
+			while ((wait = intendedNanos - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(wait);
+			}
+			boolean measured = intendedNanos >= measureStart;
+			if (measured) {
+				scenario.sent.incrementAndGet();
+			}
+			scenario.pending.incrementAndGet();
+			try {
+				send.send(sequence, intendedNanos, measured);
+			} catch (Exception e) {
+				scenario.complete(intendedNanos, measured, false);
+			}
+		}
+	}
+
+	private static void await(Scenario scenario, long drainSeconds) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(drainSeconds);
+		while (scenario.pending.get() > 0 && System.nanoTime() < deadline) {
+			Thread.sleep(100);
+		}
+		if (scenario.pending.get() > 0) {
+			System.out.printf("%s: %d sends still pending after %ds drain%n", scenario.name, scenario.pending.get(),
+					drainSeconds);
+		}
+	}
+
+	
+	
+	// ===========================================================================
+	// Tabela no console e JSON em loadtest.result-file para comparar execuções
+	// ===========================================================================
+	@SuppressWarnings("unchecked")
+	private static void write(Settings settings, List<Map<String, Object>> reports, Map<String, Object> smtp)
+			throws Exception {
+		System.out.println();
+		System.out.printf("%-8s %10s %10s %8s %9s %9s %9s %9s %9s%n", "scenario", "offered/s", "done/s", "errors",
+				"p50 ms", "p99 ms", "p99.9 ms", "max ms", "sent");
+		for (Map<String, Object> report : reports) {
+			Map<String, Double> latency = (Map<String, Double>) report.get("latencyMs");
+			System.out.printf("%-8s %10.1f %10.1f %7.2f%% %9.2f %9.2f %9.2f %9.2f %9d%n", report.get("scenario"),
+					report.get("offeredPerSecond"), report.get("throughputPerSecond"),
+					100 * (double) report.get("errorRate"), latency.get("p50"), latency.get("p99"),
+					latency.get("p999"), latency.get("max"), report.get("sent"));
+		}
+		System.out.println("SMTP: " + smtp);
+
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("timestamp", Instant.now().toString());
+		result.put("jvm", Runtime.version().toString());
+		result.put("processors", Runtime.getRuntime().availableProcessors());
+		result.put("settings", settings);
+		result.put("scenarios", reports);
+		result.put("smtp", smtp);
+		Path file = Path.of(settings.resultFile());
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		JSON.writeValue(file.toFile(), result);
+		System.out.println("Result saved to " + file.toAbsolutePath());
+	}
+}
@@ -0,0 +1,164 @@
+package br.com.sistema.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import br.com.sistema.Startup;
+import br.com.sistema.models.EmailModel;
+import br.com.sistema.services.EmailDispatchService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+// Despachos do modo async pela aplicação inteira (Postgres com o Hikari padrão, pool SMTP e o
+// executor de despacho com os valores de produção) contra o FakeSmtpServer. Fica no profile loadtest:
+// ./mvnw -Ploadtest test -Dtest=VirtualThreadDispatchLoadTest
+class VirtualThreadDispatchLoadTest {
+
+	// Cabe na fila padrão do pool de plataforma (500): nenhum envio é recusado para o outbox
+	private static final int SENDS = 400;
+
+	private static final long SMTP_LATENCY_MS = 100;
+
+	// Acima do teto de plataforma (16) e do pool do Hikari (10): o limite medido é o do executor
+	private static final int SMTP_CONNECTIONS = 64;
+
+	private static EmbeddedPostgres postgres;
+
+	private static EmbeddedBroker broker;
+
+	private FakeSmtpServer smtp;
+
+	private record Result(int peakInFlightSends, int platformCeiling, double sendsPerSecond) {
+	}
+
+
+	@BeforeAll
+	static void startInfrastructure() throws Exception {
+		postgres = EmbeddedPostgres.builder().start();
+		broker = new EmbeddedBroker();
+	}
+
+	@AfterAll
+	static void stopInfrastructure() throws Exception {
+		broker.close();
+		postgres.close();
+	}
+
+	@BeforeEach
+	void setUp() throws Exception {
+		smtp = new FakeSmtpServer(SMTP_LATENCY_MS, 0, 0, 0, 42, (subject, acceptedAt) -> {});
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		smtp.close();
+	}
+
+	// Mesmas propriedades do LoadTestRunner; só o modo de thread muda entre os cenários
+	private ConfigurableApplicationContext start(boolean virtualThreads) {
+		List<String> args = new ArrayList<>(List.of(
+				"--spring.profiles.active=prod",
+				"--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+				"--spring.datasource.username=postgres",
+				"--spring.datasource.password=postgres",
+				"--spring.mail.host=127.0.0.1",
+				"--spring.mail.port=" + smtp.getPort(),
+				"--spring.mail.username=loadtest@example.com",
+				"--spring.mail.password=loadtest",
+				"--spring.rabbitmq.host=127.0.0.1",
+				"--spring.rabbitmq.port=" + broker.getPort(),
+				"--spring.rabbitmq.username=guest",
+				"--spring.rabbitmq.password=guest",
+				"--spring.rabbitmq.queue=email.loadtest",
+				"--email.lanes.delay.enabled=false",
+				"--email.rate-limit.enabled=false",
+				"--email.smtp.pool.max-connections=" + SMTP_CONNECTIONS,
+				"--email.dispatch.mode=async",
+				"--spring.threads.virtual.enabled=" + virtualThreads,
+				"--server.port=0",
+				"--logging.level.br.com.sistema=WARN",
+				"--logging.level.org.apache.qpid=WARN",
+				"--logging.level.io.zonky=WARN",
+				"--spring.devtools.restart.enabled=false"));
+		return new SpringApplicationBuilder(Startup.class).run(args.toArray(String[]::new));
+	}
+
+	// Aceita SENDS emails como o endpoint async faz e mede os envios SMTP simultâneos e a vazão
+	private Result dispatchAll(boolean virtualThreads) throws Exception {
+		String mode = virtualThreads ? "virtual" : "platform";
+		try (ConfigurableApplicationContext context = start(virtualThreads)) {
+			EmailDispatchService emailDispatchService = context.getBean(EmailDispatchService.class);
+			JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+			int platformCeiling = context.getEnvironment().getRequiredProperty("email.dispatch.pool.max-size", Integer.class);
+
+			long start = System.nanoTime();
+			for (int i = 0; i < SENDS; i++) {
+				emailDispatchService.accept(email("Carga " + mode + " " + i));
+			}
+
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(120);
+			while (smtp.getAccepted() < SENDS && System.nanoTime() < deadline) {
+				Thread.sleep(50);
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			assertEquals(SENDS, smtp.getAccepted(), "sends did not finish in time");
+
+			// O status de cada envio é gravado depois do SMTP: espera o último save
+			long sent = 0;
+			while (sent < SENDS && System.nanoTime() < deadline) {
+				sent = jdbcTemplate.queryForObject("SELECT count(*) FROM tb_email WHERE subject LIKE ? AND status_email = 'SENT'",
+						Long.class, "Carga " + mode + " %");
+				Thread.sleep(50);
+			}
+			assertEquals(SENDS, sent);
+
+			Result result = new Result(smtp.getPeakInFlight(), platformCeiling, SENDS / seconds);
+			System.out.printf("%s threads: platform ceiling %d, %d SMTP connections, peak %d in-flight sends, %.1f sends/s%n",
+					mode, platformCeiling, SMTP_CONNECTIONS, result.peakInFlightSends(), result.sendsPerSecond());
+			return result;
+		}
+	}
+
+	private static EmailModel email(String subject) {
+		EmailModel emailModel = new EmailModel();
+		emailModel.setEmailFrom("loadtest@example.com");
+		emailModel.setEmailTo("destinatario@test.com.br");
+		emailModel.setSubject(subject);
+		emailModel.setText("Conteúdo do email de carga");
+		return emailModel;
+	}
+
+
+	@Test
+	void testPlatformThreadsAreCappedByDispatchPool() throws Exception {
+		// Act (Executar)
+		Result result = dispatchAll(false);
+
+		// Assert (Verificar) - referência: com os valores padrão, no máximo max-size envios ao mesmo tempo
+		assertTrue(result.peakInFlightSends() <= result.platformCeiling(),
+				"peak in-flight sends: " + result.peakInFlightSends());
+	}
+
+
+	@Test
+	void testVirtualThreadsExceedPlatformCeiling() throws Exception {
+		// Act (Executar)
+		Result result = dispatchAll(true);
+
+		// Assert (Verificar) - nem o pool de plataforma nem as 10 conexões do Hikari limitam os envios
+		assertTrue(result.peakInFlightSends() > result.platformCeiling(),
+				"peak in-flight sends: " + result.peakInFlightSends() + " (platform ceiling " + result.platformCeiling() + ")");
+	}
+}
@@ -0,0 +1,45 @@
+package br.com.sistema.attachments;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import jakarta.activation.DataSource;
+
+// Anexo do spool lido por um FileChannel novo a cada leitura, em blocos e sem carregar o arquivo
+public final class FileChannelDataSource implements DataSource {
+
+	private final Path path;
+	private final String name;
+	private final String contentType;
+
+	public FileChannelDataSource(Path path, String name, String contentType) {
+		this.path = path;
+		this.name = name;
+		this.contentType = contentType;
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		return Channels.newInputStream(FileChannel.open(path, StandardOpenOption.READ));
+	}
+
+	@Override
+	public OutputStream getOutputStream() throws IOException {
+		throw new IOException("Anexos do spool são somente leitura");
+	}
+
+	@Override
+	public String getContentType() {
+		return contentType;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+}
@@ -0,0 +1,69 @@
+package br.com.sistema.configurations;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import br.com.sistema.logging.EmailLogContext;
+
+@Configuration
+public class AsyncConfig {
+
+	@Value("${email.dispatch.pool.core-size:4}")
+	private int corePoolSize;
+
+	@Value("${email.dispatch.pool.max-size:16}")
+	private int maxPoolSize;
+
+	@Value("${email.dispatch.pool.queue-capacity:500}")
+	private int queueCapacity;
+
+	// Mesmo flag que coloca Tomcat, listeners do RabbitMQ e @Scheduled em virtual threads
+	@Value("${spring.threads.virtual.enabled:false}")
+	private boolean virtualThreads;
+
+	// Envios simultâneos permitidos no modo virtual thread (acima disso a tarefa é rejeitada)
+	@Value("${email.dispatch.virtual.concurrency-limit:1000}")
+	private int virtualConcurrencyLimit;
+
+	// Executor dos envios SMTP fora da thread HTTP.
+	// Ao atingir o limite a tarefa é rejeitada e o email fica para o agendador do outbox.
+	// O correlationId/emailId de quem agendou acompanha a tarefa nos logs.
+	@Bean
+	public AsyncTaskExecutor emailDispatchExecutor() {
+		if (virtualThreads) {
+			return virtualThreadExecutor();
+		}
+		return platformThreadExecutor();
+	}
+
+	private ThreadPoolTaskExecutor platformThreadExecutor() {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(corePoolSize);
+		executor.setMaxPoolSize(maxPoolSize);
+		executor.setQueueCapacity(queueCapacity);
+		executor.setThreadNamePrefix("email-dispatch-");
+		executor.setTaskDecorator(EmailLogContext.taskDecorator());
+		executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+		executor.setWaitForTasksToCompleteOnShutdown(true);
+		executor.setAwaitTerminationSeconds(30);
+		return executor;
+	}
+
+	// Uma virtual thread por envio: o bloqueio em SMTP/JDBC não ocupa threads de plataforma.
+	// As chamadas synchronized do SMTPTransport são feitas pelas threads do PooledJavaMailSender
+	private SimpleAsyncTaskExecutor virtualThreadExecutor() {
+		SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("email-dispatch-vt-");
+		executor.setVirtualThreads(true);
+		executor.setTaskDecorator(EmailLogContext.taskDecorator());
+		executor.setConcurrencyLimit(virtualConcurrencyLimit);
+		executor.setRejectTasksWhenLimitReached(true);
+		executor.setTaskTerminationTimeout(30_000);
+		return executor;
+	}
+}
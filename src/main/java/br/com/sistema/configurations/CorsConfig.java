@@ -32,7 +32,8 @@ public class CorsConfig {
         config.setExposedHeaders(Arrays.asList(
             "Access-Control-Allow-Origin",
             "Access-Control-Allow-Credentials",
-            "Authorization"
+            "Authorization",
+            "X-Correlation-Id"
         ));
         
         // Permite credenciais
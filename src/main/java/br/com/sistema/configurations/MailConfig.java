@@ -0,0 +1,161 @@
+package br.com.sistema.configurations;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import br.com.sistema.mail.PooledJavaMailSender;
+import br.com.sistema.mail.RoutingJavaMailSender;
+import br.com.sistema.mail.SmtpPriorityGate;
+import br.com.sistema.mail.TokenBucket;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+
+@Configuration
+@EnableConfigurationProperties({ MailProperties.class, SmtpTransportProperties.class })
+public class MailConfig {
+
+	@Value("${email.smtp.pool.enabled:true}")
+	private boolean poolEnabled;
+
+	@Value("${email.smtp.pool.max-connections:4}")
+	private int maxConnections;
+
+	@Value("${email.smtp.pool.max-messages-per-connection:100}")
+	private int maxMessagesPerConnection;
+
+	@Value("${email.smtp.pool.max-idle-ms:60000}")
+	private long maxIdleMillis;
+
+	@Value("${email.smtp.pool.validate-after-idle-ms:5000}")
+	private long validateAfterIdleMillis;
+
+	@Value("${email.smtp.pool.borrow-timeout-ms:30000}")
+	private long borrowTimeoutMillis;
+
+	@Value("${email.smtp.routing.strategy:weighted-round-robin}")
+	private String routingStrategy;
+
+	@Value("${email.smtp.routing.failure-threshold:3}")
+	private int failureThreshold;
+
+	@Value("${email.smtp.routing.ejection-ms:30000}")
+	private long ejectionMillis;
+
+	@Value("${email.smtp.routing.slow-call-ms:10000}")
+	private long slowCallMillis;
+
+	// Espera máxima quando todos os transportes estão no limite de taxa da conta
+	@Value("${email.smtp.routing.max-throttle-wait-ms:2000}")
+	private long maxThrottleWaitMillis;
+
+	@Value("${email.lanes.smtp.enabled:true}")
+	private boolean lanesEnabled;
+
+	// 0 = soma das conexões dos transportes configurados
+	@Value("${email.lanes.smtp.permits:0}")
+	private int lanePermits;
+
+	@Value("${email.lanes.high.smtp-share:1.0}")
+	private double highShare;
+
+	@Value("${email.lanes.normal.smtp-share:0.75}")
+	private double normalShare;
+
+	@Value("${email.lanes.low.smtp-share:0.5}")
+	private double lowShare;
+
+	@Value("${email.lanes.smtp.acquire-timeout-ms:30000}")
+	private long laneAcquireTimeoutMillis;
+
+	// Substitui o JavaMailSender da auto-configuração: conexões SMTP persistentes (pool) e,
+	// com email.smtp.transports configurado, roteamento entre vários servidores/contas
+	@Bean
+	public JavaMailSender mailSender(MailProperties mailProperties, SmtpTransportProperties transportProperties)
+			throws AddressException {
+		if (transportProperties.getTransports().isEmpty()) {
+			return createSender(mailProperties, new SmtpTransportProperties.Transport());
+		}
+
+		List<RoutingJavaMailSender.Node> nodes = new ArrayList<>();
+		for (SmtpTransportProperties.Transport transport : transportProperties.getTransports()) {
+			String name = transport.getName() != null ? transport.getName() : "smtp-" + nodes.size();
+			TokenBucket rateLimit = transport.getPerSecond() > 0
+					? new TokenBucket(transport.getPerSecond(), transport.getBurst())
+					: null;
+			InternetAddress from = transport.getFrom() != null ? new InternetAddress(transport.getFrom(), true) : null;
+			nodes.add(new RoutingJavaMailSender.Node(name, createSender(mailProperties, transport),
+					transport.getWeight(), rateLimit, from));
+		}
+		RoutingJavaMailSender.Strategy strategy = RoutingJavaMailSender.Strategy
+				.valueOf(routingStrategy.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+		return new RoutingJavaMailSender(nodes, strategy, failureThreshold, ejectionMillis, slowCallMillis,
+				maxThrottleWaitMillis);
+	}
+
+	// Gauges por transporte (envios em andamento e retirada por falhas) quando há roteamento
+	@Bean
+	public MeterBinder smtpTransportMetrics(JavaMailSender mailSender) {
+		return registry -> {
+			if (mailSender instanceof RoutingJavaMailSender routingSender) {
+				routingSender.bindTo(registry);
+			}
+		};
+	}
+
+	// Vagas SMTP divididas entre as faixas de prioridade. Sem email.lanes.smtp.permits, as vagas
+	// são as conexões de todos os transportes (ou do pool de spring.mail, sem transportes)
+	@Bean
+	public SmtpPriorityGate smtpPriorityGate(SmtpTransportProperties transportProperties) {
+		int permits = lanePermits;
+		if (permits <= 0) {
+			permits = transportProperties.getTransports().isEmpty() ? maxConnections
+					: transportProperties.getTransports().stream().mapToInt(this::connections).sum();
+		}
+		return new SmtpPriorityGate(lanesEnabled, permits, highShare, normalShare, lowShare, laneAcquireTimeoutMillis);
+	}
+
+	private int connections(SmtpTransportProperties.Transport transport) {
+		return transport.getMaxConnections() != null ? transport.getMaxConnections() : maxConnections;
+	}
+
+	// Campos não informados no transporte herdam spring.mail.*
+	private JavaMailSenderImpl createSender(MailProperties mailProperties, SmtpTransportProperties.Transport transport) {
+		JavaMailSenderImpl sender = poolEnabled
+				? new PooledJavaMailSender(connections(transport), maxMessagesPerConnection, maxIdleMillis,
+						validateAfterIdleMillis, borrowTimeoutMillis)
+				: new JavaMailSenderImpl();
+		sender.setHost(transport.getHost() != null ? transport.getHost() : mailProperties.getHost());
+		Integer port = transport.getPort() != null ? transport.getPort() : mailProperties.getPort();
+		if (port != null) {
+			sender.setPort(port);
+		}
+		sender.setUsername(transport.getUsername() != null ? transport.getUsername() : mailProperties.getUsername());
+		sender.setPassword(transport.getPassword() != null ? transport.getPassword() : mailProperties.getPassword());
+		sender.setProtocol(transport.getProtocol() != null ? transport.getProtocol() : mailProperties.getProtocol());
+		if (mailProperties.getDefaultEncoding() != null) {
+			sender.setDefaultEncoding(mailProperties.getDefaultEncoding().name());
+		}
+
+		Map<String, String> properties = new HashMap<>(mailProperties.getProperties());
+		properties.putAll(transport.getProperties());
+		if (!properties.isEmpty()) {
+			Properties javaMailProperties = new Properties();
+			javaMailProperties.putAll(properties);
+			sender.setJavaMailProperties(javaMailProperties);
+		}
+		return sender;
+	}
+}
@@ -1,24 +1,143 @@
 package br.com.sistema.configurations;
 
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import br.com.sistema.enums.EmailPriority;
+
 @Configuration
 public class RabbitMQConfig {
 
 	@Value("${spring.rabbitmq.queue}")
 	private String queue;
+
+	// Faixas de prioridade: a fila principal é a faixa normal; alta e baixa têm filas e consumidores próprios
+	@Value("${email.lanes.high.queue}")
+	private String highQueue;
+
+	@Value("${email.lanes.low.queue}")
+	private String lowQueue;
+
+	// Exchange direto que roteia para a fila da faixa pela chave high, normal ou low
+	@Value("${email.lanes.exchange}")
+	private String lanesExchange;
+
+	// Fila de espera das mensagens com envio em andamento em outra instância, e o exchange que a alimenta
+	@Value("${email.lanes.delay.queue}")
+	private String delayQueue;
+
+	@Value("${email.lanes.delay.exchange}")
+	private String delayExchange;
+
+	@Value("${email.consumer.in-progress-delay-ms:30000}")
+	private int inProgressDelayMs;
+
+	// Fila com ids de emails já persistidos, aguardando apenas o envio SMTP
+	@Value("${email.dispatch.queue}")
+	private String dispatchQueue;
+
+	// Quantidade de mensagens entregues ao consumidor antes do ack
+	@Value("${email.consumer.prefetch:10}")
+	private int prefetch;
+
+	@Value("${email.consumer.concurrency:1}")
+	private int concurrency;
+
+	@Value("${email.consumer.max-concurrency:1}")
+	private int maxConcurrency;
+
+	// Modo em lote: até batch.size mensagens ou batch.receive-timeout-ms sem novas mensagens
+	@Value("${email.consumer.batch.size:50}")
+	private int batchSize;
+
+	@Value("${email.consumer.batch.receive-timeout-ms:500}")
+	private long batchReceiveTimeout;
 	
 	@Bean
 	public Queue queue() {
 		return new Queue(queue, true); // durable queue
 	}
+
+	@Bean
+	public Queue highPriorityQueue() {
+		return new Queue(highQueue, true);
+	}
+
+	@Bean
+	public Queue lowPriorityQueue() {
+		return new Queue(lowQueue, true);
+	}
+
+	@Bean
+	public Declarables laneBindings() {
+		DirectExchange exchange = new DirectExchange(lanesExchange, true, false);
+		return new Declarables(exchange,
+				BindingBuilder.bind(highPriorityQueue()).to(exchange).with(EmailPriority.HIGH.routingKey()),
+				BindingBuilder.bind(queue()).to(exchange).with(EmailPriority.NORMAL.routingKey()),
+				BindingBuilder.bind(lowPriorityQueue()).to(exchange).with(EmailPriority.LOW.routingKey()));
+	}
+
+	// As mensagens ficam na fila de espera por in-progress-delay-ms e expiram de volta no exchange
+	// das faixas, com a chave (high, normal ou low) com que foram publicadas no exchange de espera
+	@Bean
+	@ConditionalOnProperty(name = "email.lanes.delay.enabled", havingValue = "true", matchIfMissing = true)
+	public Declarables delayBindings() {
+		Queue delay = QueueBuilder.durable(delayQueue).ttl(inProgressDelayMs).deadLetterExchange(lanesExchange).build();
+		DirectExchange exchange = new DirectExchange(delayExchange, true, false);
+		return new Declarables(delay, exchange,
+				BindingBuilder.bind(delay).to(exchange).with(EmailPriority.HIGH.routingKey()),
+				BindingBuilder.bind(delay).to(exchange).with(EmailPriority.NORMAL.routingKey()),
+				BindingBuilder.bind(delay).to(exchange).with(EmailPriority.LOW.routingKey()));
+	}
+
+	@Bean
+	public Queue dispatchQueue() {
+		return new Queue(dispatchQueue, true);
+	}
 	
 	@Bean
 	public Jackson2JsonMessageConverter jsonMessageConverter() {
 		return new Jackson2JsonMessageConverter();
 	}
+
+	@Bean
+	public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(
+			SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+		return createContainerFactory(configurer, connectionFactory);
+	}
+
+	// Entrega List<EmailDto> ao listener; o lote inteiro recebe ack junto ao final
+	@Bean
+	public SimpleRabbitListenerContainerFactory batchRabbitListenerContainerFactory(
+			SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+		SimpleRabbitListenerContainerFactory factory = createContainerFactory(configurer, connectionFactory);
+		factory.setPrefetchCount(Math.max(prefetch, batchSize));
+		factory.setBatchListener(true);
+		factory.setConsumerBatchEnabled(true);
+		factory.setBatchSize(batchSize);
+		factory.setReceiveTimeout(batchReceiveTimeout);
+		return factory;
+	}
+
+	// Aplica as propriedades spring.rabbitmq.listener.* e, por cima, prefetch e concorrência
+	private SimpleRabbitListenerContainerFactory createContainerFactory(
+			SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+		SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+		configurer.configure(factory, connectionFactory);
+		factory.setPrefetchCount(prefetch);
+		factory.setConcurrentConsumers(concurrency);
+		factory.setMaxConcurrentConsumers(Math.max(concurrency, maxConcurrency));
+		return factory;
+	}
 }
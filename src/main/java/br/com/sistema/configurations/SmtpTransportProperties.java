@@ -0,0 +1,37 @@
+package br.com.sistema.configurations;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+// Transportes SMTP adicionais (email.smtp.transports[n].*); campos omitidos herdam spring.mail.*
+@Data
+@ConfigurationProperties(prefix = "email.smtp")
+public class SmtpTransportProperties {
+
+	private List<Transport> transports = new ArrayList<>();
+
+	@Data
+	public static class Transport {
+		private String name;
+		private String host;
+		private Integer port;
+		private String username;
+		private String password;
+		private String protocol;
+		private int weight = 1;
+		// Envios por segundo permitidos pela conta do transporte (0 = sem limite)
+		private double perSecond;
+		private int burst = 1;
+		// Conexões do pool deste transporte (padrão email.smtp.pool.max-connections)
+		private Integer maxConnections;
+		// Remetente usado neste transporte quando a conta não pode enviar com o From original
+		private String from;
+		private Map<String, String> properties = new HashMap<>();
+	}
+}
@@ -0,0 +1,134 @@
+package br.com.sistema.consumers;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+
+import br.com.sistema.dtos.EmailDto;
+import br.com.sistema.enums.EmailPriority;
+import br.com.sistema.metrics.EmailMetrics;
+import br.com.sistema.models.EmailModel;
+import br.com.sistema.services.EmailAttachmentService;
+import br.com.sistema.services.EmailDispatchService;
+import br.com.sistema.services.EmailIdempotencyService;
+
+@Component
+@ConditionalOnProperty(name = "email.consumer.batch.enabled", havingValue = "true")
+public class EmailBatchConsumer {
+
+	Logger logger = LogManager.getLogger(EmailBatchConsumer.class);
+
+	@Autowired
+	EmailDispatchService emailDispatchService;
+
+	@Autowired
+	EmailMetrics emailMetrics;
+
+	@Autowired
+	EmailIdempotencyService emailIdempotencyService;
+
+	@Autowired
+	EmailAttachmentService emailAttachmentService;
+
+	@Autowired
+	EmailDelayPublisher emailDelayPublisher;
+
+	@RabbitListener(queues = "${spring.rabbitmq.queue}", containerFactory = "batchRabbitListenerContainerFactory")
+	public void listen(List<Message<EmailDto>> messages) {
+		consume(messages, EmailPriority.NORMAL);
+	}
+
+	@RabbitListener(queues = "${email.lanes.low.queue}", containerFactory = "batchRabbitListenerContainerFactory",
+			concurrency = "${email.lanes.low.concurrency:1}")
+	public void listenLow(List<Message<EmailDto>> messages) {
+		consume(messages, EmailPriority.LOW);
+	}
+
+	private void consume(List<Message<EmailDto>> messages, EmailPriority lane) {
+		// Reentregas no mesmo lote são descartadas antes da reserva
+		Map<String, Message<EmailDto>> batchKeys = new LinkedHashMap<>();
+		List<Message<EmailDto>> unique = new ArrayList<>(messages.size());
+		for (Message<EmailDto> message : messages) {
+			String key = key(message);
+			if (key != null && batchKeys.putIfAbsent(key, message) != null) {
+				logger.info("Duplicate message ignored | idempotencyKey: {}", key);
+				continue;
+			}
+			unique.add(message);
+		}
+
+		// Uma única ida ao banco reserva as chaves do lote. Emails já registrados são descartados;
+		// com o envio em andamento em outro consumidor, a mensagem volta com atraso
+		Map<String, UUID> taken = emailIdempotencyService.reserveAll(batchKeys.keySet());
+		List<String> reserved = batchKeys.keySet().stream().filter(key -> !taken.containsKey(key)).toList();
+		List<EmailModel> emailModels = new ArrayList<>(unique.size());
+		for (Message<EmailDto> message : unique) {
+			String key = key(message);
+			UUID existing = key != null ? taken.get(key) : null;
+			if (existing != null) {
+				if (EmailIdempotencyService.IN_PROGRESS.equals(existing)) {
+					delay(message, lane, reserved);
+				} else {
+					logger.info("Duplicate message ignored | idempotencyKey: {}", key);
+				}
+				continue;
+			}
+			EmailModel emailModel = new EmailModel();
+			BeanUtils.copyProperties(message.getPayload(), emailModel);
+			emailModel.setPriority(message.getPayload().getPriority() != null ? message.getPayload().getPriority() : lane);
+			emailModel.setIdempotencyKey(key);
+			try {
+				emailAttachmentService.validate(emailModel);
+			} catch (IllegalArgumentException e) {
+				// Descarta só a mensagem com anexo inválido, sem devolver o lote inteiro à fila
+				emailIdempotencyService.release(key);
+				logger.error("Message discarded, invalid attachments | idempotencyKey: {} | Error: {}", key, e.getMessage());
+				continue;
+			}
+			emailModels.add(emailModel);
+		}
+		emailMetrics.countReceived("rabbitmq", messages.size());
+		if (emailModels.isEmpty()) {
+			return;
+		}
+
+		try {
+			// Com o banco fora do ar depois do SMTP, os emails vão para o spool e as chaves continuam reservadas
+			List<EmailModel> saved = emailDispatchService.sendAll(emailModels);
+			saved.forEach(emailModel -> emailIdempotencyService.complete(emailModel.getIdempotencyKey(), emailModel.getId()));
+		} catch (RuntimeException e) {
+			emailModels.forEach(emailModel -> emailIdempotencyService.release(emailModel.getIdempotencyKey()));
+			throw e;
+		}
+		logger.info("Consumed batch of {} emails", emailModels.size());
+	}
+
+	private static String key(Message<EmailDto> message) {
+		return EmailIdempotencyService.key("amqp", message.getHeaders().get(AmqpHeaders.MESSAGE_ID, String.class));
+	}
+
+	// Se a mensagem não puder ir para a fila de espera, o lote inteiro volta para a fila:
+	// as chaves reservadas neste lote são liberadas para a reentrega
+	private void delay(Message<EmailDto> message, EmailPriority lane, List<String> reserved) {
+		try {
+			emailDelayPublisher.delay(message.getPayload(), message.getHeaders().get(AmqpHeaders.MESSAGE_ID, String.class),
+					lane);
+		} catch (AmqpException e) {
+			reserved.forEach(emailIdempotencyService::release);
+			throw e;
+		}
+	}
+}
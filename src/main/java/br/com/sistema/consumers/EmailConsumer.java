@@ -1,26 +1,121 @@
 package br.com.sistema.consumers;
 
+import java.util.Optional;
+import java.util.UUID;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Component;
 import br.com.sistema.dtos.EmailDto;
+import br.com.sistema.enums.EmailPriority;
+import br.com.sistema.logging.EmailLogContext;
+import br.com.sistema.metrics.EmailMetrics;
 import br.com.sistema.models.EmailModel;
-import br.com.sistema.services.EmailService;
+import br.com.sistema.services.EmailAttachmentService;
+import br.com.sistema.services.EmailDispatchService;
+import br.com.sistema.services.EmailIdempotencyService;
 
+// Com email.consumer.batch.enabled=true as faixas normal e baixa ficam com o EmailBatchConsumer;
+// a faixa alta é sempre consumida mensagem a mensagem
 @Component
 public class EmailConsumer {
 
+	Logger logger = LogManager.getLogger(EmailConsumer.class);
+
+	@Autowired
+	EmailDispatchService emailDispatchService;
+
+	@Autowired
+	EmailMetrics emailMetrics;
+
+	@Autowired
+	EmailIdempotencyService emailIdempotencyService;
+
+	@Autowired
+	EmailAttachmentService emailAttachmentService;
+
 	@Autowired
-	EmailService emailService;
+	EmailDelayPublisher emailDelayPublisher;
 	
-	@RabbitListener(queues = "${spring.rabbitmq.queue}")
-	public void listen(@Payload EmailDto emailDto) {
+	@RabbitListener(queues = "${spring.rabbitmq.queue}", autoStartup = "#{!${email.consumer.batch.enabled:false}}")
+	public void listen(@Payload EmailDto emailDto, @Header(name = AmqpHeaders.MESSAGE_ID, required = false) String messageId) {
+		consume(emailDto, messageId, EmailPriority.NORMAL);
+	}
+
+	@RabbitListener(queues = "${email.lanes.high.queue}", concurrency = "${email.lanes.high.concurrency:2-4}")
+	public void listenHigh(@Payload EmailDto emailDto, @Header(name = AmqpHeaders.MESSAGE_ID, required = false) String messageId) {
+		consume(emailDto, messageId, EmailPriority.HIGH);
+	}
+
+	@RabbitListener(queues = "${email.lanes.low.queue}", concurrency = "${email.lanes.low.concurrency:1}",
+			autoStartup = "#{!${email.consumer.batch.enabled:false}}")
+	public void listenLow(@Payload EmailDto emailDto, @Header(name = AmqpHeaders.MESSAGE_ID, required = false) String messageId) {
+		consume(emailDto, messageId, EmailPriority.LOW);
+	}
+
+	// O message id é o correlationId dos logs do email
+	private void consume(EmailDto emailDto, String messageId, EmailPriority lane) {
+		EmailLogContext.correlate(messageId);
+		try {
+			process(emailDto, messageId, lane);
+		} finally {
+			EmailLogContext.clear();
+		}
+	}
+
+	// Reentregas de um email já registrado são confirmadas sem reenviar; com o envio ainda
+	// em andamento, a mensagem volta com atraso. Sem prioridade no payload, o email fica na
+	// faixa da fila de onde veio
+	private void process(EmailDto emailDto, String messageId, EmailPriority lane) {
+		emailMetrics.countReceived("rabbitmq", 1);
+		String key = EmailIdempotencyService.key("amqp", messageId);
+		Optional<UUID> existing = emailIdempotencyService.reserve(key);
+		if (existing.isPresent()) {
+			if (EmailIdempotencyService.IN_PROGRESS.equals(existing.get())) {
+				emailDelayPublisher.delay(emailDto, messageId, lane);
+			} else {
+				logger.info("Duplicate message ignored | messageId: {}", messageId);
+			}
+			return;
+		}
+
 		EmailModel emailModel = new EmailModel();
 		BeanUtils.copyProperties(emailDto, emailModel);
-		emailService.sendEmail(emailModel);
-		System.out.println("Email Status: " + emailModel.getStatusEmail().toString());
+		emailModel.setPriority(emailDto.getPriority() != null ? emailDto.getPriority() : lane);
+		emailModel.setIdempotencyKey(key);
+		try {
+			emailAttachmentService.validate(emailModel);
+		} catch (IllegalArgumentException e) {
+			// Anexo inválido não se resolve com reentrega
+			emailIdempotencyService.release(key);
+			throw new AmqpRejectAndDontRequeueException("Invalid attachments: " + e.getMessage(), e);
+		}
+		try {
+			// Com o banco fora do ar depois do SMTP, o email vai para o spool em vez de voltar à fila
+			emailModel = emailDispatchService.send(emailModel);
+			emailIdempotencyService.complete(key, emailModel.getId());
+		} catch (DataIntegrityViolationException e) {
+			if (emailIdempotencyService.resolveConflict(key).isEmpty()) {
+				throw e;
+			}
+			return;
+		} catch (IllegalArgumentException e) {
+			// Anexo vinculado a outro email entre o validate e o envio
+			emailIdempotencyService.release(key);
+			throw new AmqpRejectAndDontRequeueException("Invalid attachments: " + e.getMessage(), e);
+		} catch (RuntimeException e) {
+			emailIdempotencyService.release(key);
+			throw e;
+		}
+		logger.debug("Message consumed with email status: {}", emailModel.getStatusEmail());
 	}
 	
 }
@@ -0,0 +1,45 @@
+package br.com.sistema.consumers;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.amqp.ImmediateRequeueAmqpException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import br.com.sistema.dtos.EmailDto;
+import br.com.sistema.enums.EmailPriority;
+
+// Devolve à fila de espera uma mensagem cuja chave ainda está reservada; ao expirar, ela volta à
+// sua faixa. Sem fila de espera (email.lanes.delay.enabled=false), volta para a fila na hora
+@Component
+public class EmailDelayPublisher {
+
+	Logger logger = LogManager.getLogger(EmailDelayPublisher.class);
+
+	@Autowired
+	RabbitTemplate rabbitTemplate;
+
+	@Value("${email.lanes.delay.enabled:true}")
+	private boolean enabled = true;
+
+	@Value("${email.lanes.delay.exchange}")
+	private String delayExchange;
+
+	
+	
+	// ===========================================================================
+	// Publica a mensagem na fila de espera, com a chave da faixa de onde veio
+	// ===========================================================================
+	public void delay(EmailDto emailDto, String messageId, EmailPriority lane) {
+		if (!enabled) {
+			throw new ImmediateRequeueAmqpException("Email still in progress elsewhere, messageId: " + messageId);
+		}
+		rabbitTemplate.convertAndSend(delayExchange, lane.routingKey(), emailDto, message -> {
+			message.getMessageProperties().setMessageId(messageId);
+			return message;
+		});
+		logger.info("Message still in progress elsewhere, redelivery delayed | messageId: {}", messageId);
+	}
+}
@@ -0,0 +1,22 @@
+package br.com.sistema.consumers;
+
+import java.util.UUID;
+
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import br.com.sistema.services.EmailDispatchService;
+
+// Consome ids de emails já persistidos como PENDING (ex.: envio em massa) e faz o envio SMTP
+@Component
+public class EmailDispatchConsumer {
+
+	@Autowired
+	EmailDispatchService emailDispatchService;
+
+	@RabbitListener(queues = "${email.dispatch.queue}", concurrency = "${email.dispatch.queue-concurrency:1-4}")
+	public void listen(UUID emailId) {
+		emailDispatchService.dispatch(emailId);
+	}
+}
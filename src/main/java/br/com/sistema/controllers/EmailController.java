@@ -1,6 +1,8 @@
 package br.com.sistema.controllers;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -8,25 +10,50 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
 
+import br.com.sistema.dtos.BulkEmailRequestDto;
 import br.com.sistema.dtos.CoolifyWebhookDto;
+import br.com.sistema.dtos.EmailAttachmentDto;
 import br.com.sistema.dtos.EmailDto;
+import br.com.sistema.dtos.EmailFilterDto;
+import br.com.sistema.dtos.EmailJobDto;
+import br.com.sistema.dtos.EmailSearchDto;
 import br.com.sistema.dtos.PortfolioEmailDto;
+import br.com.sistema.enums.StatusEmail;
+import br.com.sistema.metrics.EmailMetrics;
+import br.com.sistema.models.EmailAttachmentModel;
 import br.com.sistema.models.EmailModel;
+import br.com.sistema.services.CoolifyDigestService;
+import br.com.sistema.services.EmailAttachmentService;
+import br.com.sistema.services.EmailBulkService;
+import br.com.sistema.services.EmailDispatchService;
+import br.com.sistema.services.EmailIdempotencyService;
 import br.com.sistema.services.EmailService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -39,6 +66,27 @@ public class EmailController {
 
     @Autowired
     EmailService emailService;
+
+    @Autowired
+    EmailDispatchService emailDispatchService;
+
+    @Autowired
+    EmailBulkService emailBulkService;
+
+    @Autowired
+    EmailMetrics emailMetrics;
+
+    @Autowired
+    EmailIdempotencyService emailIdempotencyService;
+
+    @Autowired
+    CoolifyDigestService coolifyDigestService;
+
+    @Autowired
+    EmailAttachmentService emailAttachmentService;
+
+    // Presente nas respostas de requisições repetidas (mesma Idempotency-Key)
+    private static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
     
     Logger logger = LogManager.getLogger(EmailController.class);
 
@@ -50,14 +98,21 @@ public class EmailController {
     @Operation(summary = "Enviar email", description = "Envia um email e registra no sistema")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "201", description = "Email enviado com sucesso"),
-        @ApiResponse(responseCode = "400", description = "Dados inválidos"),
+        @ApiResponse(responseCode = "202", description = "Email aceito para envio em background (email.dispatch.mode=async)"),
+        @ApiResponse(responseCode = "200", description = "Idempotency-Key repetida: retorna o email já registrado"),
+        @ApiResponse(responseCode = "400", description = "Dados inválidos ou anexo inexistente/já utilizado"),
+        @ApiResponse(responseCode = "409", description = "Idempotency-Key repetida com o envio ainda em andamento"),
         @ApiResponse(responseCode = "500", description = "Erro interno ao enviar o email")
     })
-    public ResponseEntity<EmailModel> sendingEmail(@RequestBody @Valid EmailDto emailDto) {
-        EmailModel emailModel = new EmailModel();
-        BeanUtils.copyProperties(emailDto, emailModel);
-        emailService.sendEmail(emailModel);
-        return new ResponseEntity<>(emailModel, HttpStatus.CREATED);
+    public ResponseEntity<Object> sendingEmail(
+            @RequestHeader(name = EmailIdempotencyService.HEADER, required = false) String idempotencyKey,
+            @RequestBody @Valid EmailDto emailDto) throws IOException {
+        return sendOnce("sending-email", EmailIdempotencyService.key("http", idempotencyKey), () -> {
+            EmailModel emailModel = new EmailModel();
+            BeanUtils.copyProperties(emailDto, emailModel);
+            emailAttachmentService.validate(emailModel);
+            return emailModel;
+        });
     }
 
     
@@ -68,13 +123,17 @@ public class EmailController {
     @Operation(summary = "Enviar email de contato", description = "Envia um email usando o template de contato do portfólio")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "201", description = "Email de contato enviado com sucesso"),
+        @ApiResponse(responseCode = "202", description = "Email de contato aceito para envio em background (email.dispatch.mode=async)"),
         @ApiResponse(responseCode = "400", description = "Dados inválidos"),
         @ApiResponse(responseCode = "500", description = "Erro interno ao enviar o email")
     })
-    public ResponseEntity<Object> sendingContactEmail(@RequestBody @Valid PortfolioEmailDto portfolioEmailDto) {
+    public ResponseEntity<Object> sendingContactEmail(
+            @RequestHeader(name = EmailIdempotencyService.HEADER, required = false) String idempotencyKey,
+            @RequestBody @Valid PortfolioEmailDto portfolioEmailDto) {
         try {
-            EmailModel emailModel = emailService.sendPortfolioEmail(portfolioEmailDto); // Chama o serviço para enviar email de portfólio
-            return new ResponseEntity<>(emailModel, HttpStatus.CREATED);
+            // Monta o email de portfólio a partir do template
+            return sendOnce("sending-portfolio-email", EmailIdempotencyService.key("http", idempotencyKey),
+                    () -> emailService.buildPortfolioEmail(portfolioEmailDto));
         } catch (IOException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Erro ao processar template de email: " + e.getMessage());
         } catch (Exception e) {
@@ -87,10 +146,18 @@ public class EmailController {
   	// Método para enviar email de contato usando template do Coolify
   	// ===========================================================================
      @PostMapping("/sending-coolify-email")
-     public ResponseEntity<Object> sendingCoolifyEmail(@RequestBody @Valid CoolifyWebhookDto coolifyWebhookDto) {
+     public ResponseEntity<Object> sendingCoolifyEmail(
+             @RequestHeader(name = EmailIdempotencyService.HEADER, required = false) String idempotencyKey,
+             @RequestBody @Valid CoolifyWebhookDto coolifyWebhookDto) {
     	 try {
-    		 EmailModel emailModel = emailService.sendCoolifyEmail(coolifyWebhookDto); // Chama o serviço para enviar email do coolify
-             return new ResponseEntity<>(emailModel, HttpStatus.CREATED);
+    		 // Sem header, o webhook repetido é identificado pelo deployment
+    		 String key = idempotencyKey != null ? EmailIdempotencyService.key("http", idempotencyKey)
+    				 : EmailIdempotencyService.key(coolifyWebhookDto);
+    		 if (coolifyDigestService.accepts(coolifyWebhookDto)) {
+    			 return addToDigest(key, coolifyWebhookDto);
+    		 }
+    		 // Monta o email do coolify a partir do template
+             return sendOnce("sending-coolify-email", key, () -> emailService.buildCoolifyEmail(coolifyWebhookDto));
          } catch (IOException e) {
              return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Erro ao processar template de email: " + e.getMessage());
          } catch (Exception e) {
@@ -99,6 +166,113 @@ public class EmailController {
      }
 
     
+    // ===========================================================================
+ 	// Método para envio em massa: um template, vários destinatários com variáveis próprias
+ 	// ===========================================================================
+    @PostMapping(value = "/emails/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Enviar emails em massa", description = "Lê os destinatários em streaming, persiste em lotes e enfileira o envio. Os campos do cabeçalho devem vir antes de recipients")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Job criado e destinatários enfileirados"),
+        @ApiResponse(responseCode = "400", description = "JSON inválido, template inexistente ou limite de destinatários excedido"),
+        @ApiResponse(responseCode = "500", description = "Erro interno ao registrar o job")
+    })
+    public ResponseEntity<Object> sendBulkEmails(
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(content = @Content(schema = @Schema(implementation = BulkEmailRequestDto.class)))
+            InputStream body) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(emailBulkService.submit(body));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Erro ao registrar envio em massa: " + e.getMessage());
+        }
+    }
+
+    
+    // ===========================================================================
+ 	// Método para importar emails de um arquivo CSV ou NDJSON lido em streaming
+ 	// ===========================================================================
+    @PostMapping(value = "/emails/import", consumes = { "text/csv", "application/x-ndjson" })
+    @Operation(summary = "Importar emails", description = "Importa um CSV (cabeçalho ownerRef,emailFrom,emailTo,subject,text) ou NDJSON com um EmailDto por linha. As linhas são validadas como no envio genérico e gravadas como PENDING em lotes")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Job criado e linhas válidas enfileiradas"),
+        @ApiResponse(responseCode = "400", description = "Arquivo inválido ou limite de linhas excedido"),
+        @ApiResponse(responseCode = "500", description = "Erro interno ao importar o arquivo")
+    })
+    public ResponseEntity<Object> importEmails(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType, InputStream body) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(emailBulkService.importEmails(body, MediaType.parseMediaType(contentType)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Erro ao importar emails: " + e.getMessage());
+        }
+    }
+
+    
+    // ===========================================================================
+ 	// Método para enviar um anexo (multipart); o id retornado vai em attachmentIds do email
+ 	// ===========================================================================
+    @PostMapping(value = "/attachments", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Enviar anexo", description = "Grava o arquivo em disco em streaming e retorna o id, o tamanho e o SHA-256. Use o id em attachmentIds de /sending-email")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "201", description = "Anexo gravado"),
+        @ApiResponse(responseCode = "400", description = "Arquivo vazio ou acima do limite"),
+        @ApiResponse(responseCode = "500", description = "Erro interno ao gravar o anexo")
+    })
+    public ResponseEntity<Object> uploadAttachment(@RequestParam("file") MultipartFile file) {
+        if (file.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Arquivo vazio.");
+        }
+        try (InputStream content = file.getInputStream()) {
+            EmailAttachmentModel attachment = emailAttachmentService.store(content, file.getOriginalFilename(), file.getContentType());
+            return ResponseEntity.status(HttpStatus.CREATED).body(EmailAttachmentDto.of(attachment));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Erro ao gravar anexo: " + e.getMessage());
+        }
+    }
+
+    
+    // ===========================================================================
+ 	// Método para anexar um arquivo local do servidor (dentro de email.attachments.local-root)
+ 	// ===========================================================================
+    @PostMapping("/attachments/local")
+    @Operation(summary = "Anexar arquivo local", description = "Copia para o spool de anexos um arquivo do diretório email.attachments.local-root")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "201", description = "Anexo gravado"),
+        @ApiResponse(responseCode = "400", description = "Recurso desabilitado, arquivo inexistente ou acima do limite")
+    })
+    public ResponseEntity<Object> attachLocalFile(@RequestParam("path") String path) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(EmailAttachmentDto.of(emailAttachmentService.storeLocal(path)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Erro ao gravar anexo: " + e.getMessage());
+        }
+    }
+
+    
+    // ===========================================================================
+ 	// Método para consultar o progresso de um envio em massa
+ 	// ===========================================================================
+    @GetMapping("/emails/bulk/{jobId}")
+    @Operation(summary = "Consultar envio em massa", description = "Retorna o job com a contagem de emails por status")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Job encontrado"),
+        @ApiResponse(responseCode = "404", description = "Job não encontrado")
+    })
+    public ResponseEntity<Object> getBulkJob(@PathVariable(value = "jobId") UUID jobId) {
+        Optional<EmailJobDto> job = emailBulkService.findJob(jobId);
+        if (job.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Job not found.");
+        }
+        return ResponseEntity.ok(job.get());
+    }
+
+    
     // ===========================================================================
  	// Método para listar todos os emails com paginação
  	// ===========================================================================
@@ -113,6 +287,62 @@ public class EmailController {
     }
 
     
+    // ===========================================================================
+ 	// Método para listar resumos de emails com paginação por cursor (keyset)
+ 	// ===========================================================================
+    @GetMapping("/emails/summary")
+    @Operation(summary = "Listar resumos de emails", description = "Retorna emails sem o corpo, ordenados por data de envio (mais recentes primeiro), paginados por cursor e sem contagem total")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Página de resumos retornada com sucesso"),
+        @ApiResponse(responseCode = "400", description = "Cursor inválido")
+    })
+    public ResponseEntity<Object> getEmailSummaries(
+            @RequestParam(required = false) StatusEmail status,
+            @RequestParam(required = false) String ownerRef,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            EmailFilterDto filter = new EmailFilterDto(status, ownerRef, from, to);
+            return ResponseEntity.ok(emailService.findSummaries(filter, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    
+    // ===========================================================================
+ 	// Método para buscar emails por destinatário e assunto (índices GIN), paginado por cursor
+ 	// ===========================================================================
+    @GetMapping("/emails/search")
+    @Operation(summary = "Buscar emails", description = "Busca por trecho do destinatário e termos do assunto (\"frase\", -termo, OR), com os filtros de status, ownerRef e datas. Retorna resumos sem o corpo, mais recentes primeiro, paginados por cursor. Sem 'from', busca nos últimos email.search.default-window-days dias")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Página de resumos retornada com sucesso"),
+        @ApiResponse(responseCode = "400", description = "Cursor inválido ou recipient com menos de 3 caracteres")
+    })
+    public ResponseEntity<Object> searchEmails(
+            @RequestParam(required = false) String recipient,
+            @RequestParam(required = false) String subject,
+            @RequestParam(required = false) StatusEmail status,
+            @RequestParam(required = false) String ownerRef,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            EmailSearchDto search = new EmailSearchDto(blankToNull(recipient), blankToNull(subject), status, ownerRef, from, to);
+            return ResponseEntity.ok(emailService.searchSummaries(search, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    
     // ===========================================================================
  	// Método para consultar email por ID
  	// ===========================================================================
@@ -131,4 +361,120 @@ public class EmailController {
             return ResponseEntity.status(HttpStatus.OK).body(emailModelOptional.get());
         }
     }
+
+    
+    
+    // ===========================================================================
+ 	// Envia uma única vez por chave de idempotência: repetições recebem o email já
+ 	// registrado (200), sem montar o template nem chamar o SMTP
+ 	// ===========================================================================
+    private ResponseEntity<Object> sendOnce(String endpoint, String idempotencyKey, EmailBuilder builder) throws IOException {
+        Reservation reservation = reserve(idempotencyKey);
+        if (reservation.duplicate().isPresent()) {
+            return replay(idempotencyKey, reservation.duplicate().get());
+        }
+        try {
+            EmailModel emailModel = builder.build();
+            emailModel.setIdempotencyKey(idempotencyKey);
+            EmailModel dispatched;
+            if (reservation.deferred()) {
+                // Sem reserva no banco o email não vai ao SMTP: o replay do spool reserva a chave e o envia
+                emailModel.setIdempotencyDeferred(idempotencyKey != null);
+                emailMetrics.countReceived(endpoint, 1);
+                dispatched = emailDispatchService.spool(emailModel);
+            } else {
+                dispatched = dispatch(endpoint, emailModel);
+            }
+            emailIdempotencyService.complete(idempotencyKey, dispatched.getId());
+            return new ResponseEntity<>(dispatched, reservation.deferred() ? HttpStatus.ACCEPTED : dispatchStatus());
+        } catch (DataIntegrityViolationException e) {
+            // Outra instância gravou a mesma chave entre a reserva e o commit
+            Optional<UUID> existing = emailIdempotencyService.resolveConflict(idempotencyKey);
+            if (existing.isEmpty()) {
+                throw e;
+            }
+            return replay(idempotencyKey, existing.get());
+        } catch (IllegalArgumentException e) {
+            release(idempotencyKey, reservation);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            release(idempotencyKey, reservation);
+            throw e;
+        }
+    }
+
+    // Deploy bem-sucedido: entra no resumo do projeto/ambiente em vez de gerar um email próprio
+    private ResponseEntity<Object> addToDigest(String idempotencyKey, CoolifyWebhookDto coolifyWebhookDto) {
+        Optional<UUID> duplicate = reserve(idempotencyKey).duplicate();
+        if (duplicate.isPresent()) {
+            return replay(idempotencyKey, duplicate.get());
+        }
+        emailMetrics.countReceived("sending-coolify-email", 1);
+        coolifyDigestService.add(coolifyWebhookDto, idempotencyKey);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body("Evento incluído no resumo de deploys de "
+                + coolifyWebhookDto.project() + "/" + coolifyWebhookDto.environment() + ".");
+    }
+
+    // ===========================================================================
+ 	// Reserva a chave no banco antes do envio. No modo spool, ou com o banco fora do
+ 	// ar e o spool habilitado, a reserva é só local e fica adiada para o replay do
+ 	// spool, para a ingestão não depender de um commit no Postgres
+ 	// ===========================================================================
+    private Reservation reserve(String idempotencyKey) {
+        if (emailDispatchService.isSpool()) {
+            return new Reservation(emailIdempotencyService.reserveLocally(idempotencyKey), true);
+        }
+        try {
+            return new Reservation(emailIdempotencyService.reserve(idempotencyKey), false);
+        } catch (TransientDataAccessException | DataAccessResourceFailureException | CannotCreateTransactionException e) {
+            if (!emailDispatchService.canSpool()) {
+                throw e;
+            }
+            logger.warn("Database unavailable, idempotency key {} deferred to the spool replay: {}", idempotencyKey,
+                    e.getMessage());
+            return new Reservation(emailIdempotencyService.reserveLocally(idempotencyKey), true);
+        }
+    }
+
+    private void release(String idempotencyKey, Reservation reservation) {
+        if (reservation.deferred()) {
+            emailIdempotencyService.releaseLocally(idempotencyKey);
+        } else {
+            emailIdempotencyService.release(idempotencyKey);
+        }
+    }
+
+    // duplicate: email já registrado (ou IN_PROGRESS) | deferred: reserva no banco adiada para o spool
+    private record Reservation(Optional<UUID> duplicate, boolean deferred) {
+    }
+
+    private ResponseEntity<Object> replay(String idempotencyKey, UUID emailId) {
+        if (EmailIdempotencyService.IN_PROGRESS.equals(emailId)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Envio com a mesma Idempotency-Key ainda em andamento.");
+        }
+        logger.info("Duplicate request ignored | idempotencyKey: {} | emailId: {}", idempotencyKey, emailId);
+        return ResponseEntity.ok().header(IDEMPOTENT_REPLAYED, "true").body(emailService.findById(emailId).orElse(null));
+    }
+
+    @FunctionalInterface
+    private interface EmailBuilder {
+        EmailModel build() throws IOException;
+    }
+
+    
+    
+    // ===========================================================================
+ 	// Envia na thread da requisição (201) ou aceita para envio em background (202)
+ 	// ===========================================================================
+    private EmailModel dispatch(String endpoint, EmailModel emailModel) {
+        emailMetrics.countReceived(endpoint, 1);
+        if (emailDispatchService.isAsync()) {
+            return emailDispatchService.accept(emailModel);
+        }
+        return emailDispatchService.send(emailModel);
+    }
+
+    private HttpStatus dispatchStatus() {
+        return emailDispatchService.isAsync() ? HttpStatus.ACCEPTED : HttpStatus.CREATED;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package br.com.sistema.dtos;
+
+import java.util.List;
+
+// Corpo do envio em massa, lido em streaming: o cabeçalho deve vir antes de recipients
+public record BulkEmailRequestDto(
+    String ownerRef,
+    String emailFrom,
+    String subject,
+    String text,
+    String templateName,
+    List<BulkRecipientDto> recipients
+) {
+}
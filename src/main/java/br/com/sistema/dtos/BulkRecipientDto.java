@@ -0,0 +1,16 @@
+package br.com.sistema.dtos;
+
+import java.util.Map;
+
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+
+public record BulkRecipientDto(
+    @NotBlank(message = "O email de destino é obrigatório")
+    @Email(message = "Email de destino inválido")
+    String emailTo,
+
+    // Variáveis do template para este destinatário (${contact.chave})
+    Map<String, String> variables
+) {
+}
@@ -0,0 +1,21 @@
+package br.com.sistema.dtos;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import br.com.sistema.models.EmailAttachmentModel;
+
+public record EmailAttachmentDto(
+    UUID id,
+    String fileName,
+    String contentType,
+    long sizeBytes,
+    String sha256,
+    LocalDateTime createdAt
+) {
+
+	public static EmailAttachmentDto of(EmailAttachmentModel attachment) {
+		return new EmailAttachmentDto(attachment.getId(), attachment.getFileName(), attachment.getContentType(),
+				attachment.getSizeBytes(), attachment.getSha256(), attachment.getCreatedAt());
+	}
+}
@@ -0,0 +1,33 @@
+package br.com.sistema.dtos;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+// Posição da paginação por keyset em (send_date_email, id), como token base64url
+public record EmailCursor(LocalDateTime sendDateEmail, UUID id) {
+
+	public static EmailCursor of(EmailSummaryDto summary) {
+		return new EmailCursor(summary.sendDateEmail(), summary.id());
+	}
+
+	public String encode() {
+		String raw = sendDateEmail + "|" + id;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	// Retorna null para cursor ausente (primeira página)
+	public static EmailCursor decode(String token) {
+		if (token == null || token.isBlank()) {
+			return null;
+		}
+		try {
+			String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+			int separator = raw.indexOf('|');
+			return new EmailCursor(LocalDateTime.parse(raw.substring(0, separator)), UUID.fromString(raw.substring(separator + 1)));
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Cursor inválido: " + token, e);
+		}
+	}
+}
@@ -0,0 +1,11 @@
+package br.com.sistema.dtos;
+
+import java.util.List;
+
+// Página da listagem por cursor; nextCursor é null na última página
+public record EmailCursorPageDto(
+    List<EmailSummaryDto> content,
+    String nextCursor,
+    int size
+) {
+}
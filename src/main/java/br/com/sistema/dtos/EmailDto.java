@@ -1,5 +1,9 @@
 package br.com.sistema.dtos;
 
+import java.util.List;
+import java.util.UUID;
+
+import br.com.sistema.enums.EmailPriority;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import lombok.Data;
@@ -23,5 +27,11 @@ public class EmailDto {
 	
 	@NotBlank
 	private String text;
+
+	// Ids retornados por POST /api/attachments
+	private List<UUID> attachmentIds;
+
+	// Faixa de envio; sem o campo vale a faixa da fila de origem (NORMAL na fila principal e na API)
+	private EmailPriority priority;
 	
 }
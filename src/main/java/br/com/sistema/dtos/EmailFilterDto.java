@@ -0,0 +1,14 @@
+package br.com.sistema.dtos;
+
+import java.time.LocalDateTime;
+
+import br.com.sistema.enums.StatusEmail;
+
+// Filtros opcionais da listagem de emails (intervalo de datas semiaberto: from <= data < to)
+public record EmailFilterDto(
+    StatusEmail status,
+    String ownerRef,
+    LocalDateTime from,
+    LocalDateTime to
+) {
+}
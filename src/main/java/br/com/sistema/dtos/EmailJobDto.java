@@ -0,0 +1,35 @@
+package br.com.sistema.dtos;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+import br.com.sistema.enums.EmailJobStatus;
+import br.com.sistema.enums.StatusEmail;
+import br.com.sistema.models.EmailJobModel;
+
+public record EmailJobDto(
+	UUID id,
+	String ownerRef,
+	String templateName,
+	EmailJobStatus status,
+	int totalRecipients,
+	int rejectedRecipients,
+	Map<StatusEmail, Long> progress,
+	boolean finished,
+	String lastError,
+	LocalDateTime createdAt,
+	LocalDateTime queuedAt
+) {
+
+	// O job termina quando a leitura acabou e nenhum email está aguardando envio
+	public static EmailJobDto of(EmailJobModel job, Map<StatusEmail, Long> progress) {
+		boolean inFlight = progress.getOrDefault(StatusEmail.PENDING, 0L) > 0
+				|| progress.getOrDefault(StatusEmail.SENDING, 0L) > 0
+				|| progress.getOrDefault(StatusEmail.RETRYING, 0L) > 0;
+		boolean finished = job.getStatus() != EmailJobStatus.RECEIVING && !inFlight;
+		return new EmailJobDto(job.getId(), job.getOwnerRef(), job.getTemplateName(), job.getStatus(),
+				job.getTotalRecipients(), job.getRejectedRecipients(), progress, finished, job.getLastError(),
+				job.getCreatedAt(), job.getQueuedAt());
+	}
+}
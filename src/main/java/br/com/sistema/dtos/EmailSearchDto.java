@@ -0,0 +1,28 @@
+package br.com.sistema.dtos;
+
+import java.time.LocalDateTime;
+
+import br.com.sistema.enums.StatusEmail;
+
+// Filtros da busca de emails: trecho do destinatário, termos do assunto e os filtros da listagem
+public record EmailSearchDto(
+    String recipient,
+    String subject,
+    StatusEmail status,
+    String ownerRef,
+    LocalDateTime from,
+    LocalDateTime to
+) {
+
+	public boolean hasText() {
+		return recipient != null || subject != null;
+	}
+
+	public EmailFilterDto toFilter() {
+		return new EmailFilterDto(status, ownerRef, from, to);
+	}
+
+	public EmailSearchDto withFrom(LocalDateTime from) {
+		return new EmailSearchDto(recipient, subject, status, ownerRef, from, to);
+	}
+}
@@ -0,0 +1,20 @@
+package br.com.sistema.dtos;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import br.com.sistema.enums.StatusEmail;
+
+// Projeção da listagem de emails, sem as colunas de corpo (text/html)
+public record EmailSummaryDto(
+    UUID id,
+    String ownerRef,
+    String emailFrom,
+    String emailTo,
+    String subject,
+    LocalDateTime sendDateEmail,
+    StatusEmail statusEmail,
+    String templateName,
+    int attemptCount
+) {
+}
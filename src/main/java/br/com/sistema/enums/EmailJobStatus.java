@@ -0,0 +1,7 @@
+package br.com.sistema.enums;
+
+public enum EmailJobStatus {
+	RECEIVING,	// destinatários ainda sendo lidos e persistidos
+	QUEUED,		// todos os destinatários persistidos e publicados na fila de despacho
+	FAILED		// leitura interrompida; apenas os destinatários já persistidos serão enviados
+}
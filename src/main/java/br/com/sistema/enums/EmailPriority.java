@@ -0,0 +1,15 @@
+package br.com.sistema.enums;
+
+import java.util.Locale;
+
+// Faixas de prioridade, da mais alta para a mais baixa (a ordem dos valores é usada nas comparações)
+public enum EmailPriority {
+	HIGH,		// transacional: redefinição de senha, alertas de falha de deploy
+	NORMAL,
+	LOW;		// envio em massa
+
+	// Chave de roteamento no exchange das faixas (email.lanes.exchange)
+	public String routingKey() {
+		return name().toLowerCase(Locale.ROOT);
+	}
+}
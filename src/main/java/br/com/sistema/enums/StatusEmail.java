@@ -1,6 +1,10 @@
 package br.com.sistema.enums;
 
 public enum StatusEmail {
+	PENDING,	// aguardando o primeiro envio
+	SENDING,	// reservado por uma instância (lease até nextAttemptAt)
+	RETRYING,	// falha transitória, nova tentativa em nextAttemptAt
 	SENT,
-	ERROR
+	ERROR,		// falha sem retentativa (outbox desativado)
+	DEAD		// falha permanente ou tentativas esgotadas
 }
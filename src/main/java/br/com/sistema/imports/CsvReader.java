@@ -0,0 +1,139 @@
+package br.com.sistema.imports;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Leitor de CSV (RFC 4180) que devolve um registro por vez; linhas vazias são ignoradas
+public final class CsvReader implements Closeable {
+
+	private static final int BOM = '\uFEFF';
+	private static final int NONE = -2;
+
+	private final Reader reader;
+	private final char separator;
+	private final StringBuilder field = new StringBuilder();
+	private long line = 1;      // linha atual no arquivo
+	private long recordLine;    // linha onde começou o último registro lido
+	private int peeked = NONE;
+	private boolean started;
+
+	public CsvReader(Reader reader, char separator) {
+		this.reader = reader;
+		this.separator = separator;
+	}
+
+	public CsvReader(Reader reader) {
+		this(reader, ',');
+	}
+
+	
+	
+	// ===========================================================================
+	// Lê o próximo registro; retorna null no fim do arquivo
+	// ===========================================================================
+	public List<String> next() throws IOException {
+		int c = read();
+		if (!started) {
+			started = true;
+			if (c == BOM) {
+				c = read();
+			}
+		}
+		// Ignora linhas vazias entre registros
+		while (c == '\r' || c == '\n') {
+			endOfLine(c);
+			c = read();
+		}
+		if (c < 0) {
+			return null;
+		}
+
+		recordLine = line;
+		List<String> record = new ArrayList<>();
+		boolean quoted = false;
+		boolean wasQuoted = false;
+		field.setLength(0);
+
+		while (true) {
+			if (quoted) {
+				if (c < 0) {
+					throw new MalformedCsvException("Aspas não fechadas no registro iniciado na linha " + recordLine);
+				}
+				if (c == '"') {
+					if (peek() == '"') {
+						read();
+						field.append('"');
+					} else {
+						quoted = false;
+					}
+				} else {
+					if (c == '\n' || (c == '\r' && peek() != '\n')) {
+						line++;
+					}
+					field.append((char) c);
+				}
+			} else if (c == '"' && field.isEmpty() && !wasQuoted) {
+				quoted = true;
+				wasQuoted = true;
+			} else if (c == separator) {
+				record.add(field.toString());
+				field.setLength(0);
+				wasQuoted = false;
+			} else if (c < 0 || c == '\r' || c == '\n') {
+				record.add(field.toString());
+				if (c >= 0) {
+					endOfLine(c);
+				}
+				return record;
+			} else {
+				field.append((char) c);
+			}
+			c = read();
+		}
+	}
+
+	// Trata \r\n como uma única quebra de linha
+	private void endOfLine(int c) throws IOException {
+		if (c == '\r' && peek() == '\n') {
+			read();
+		}
+		line++;
+	}
+
+	private int read() throws IOException {
+		if (peeked != NONE) {
+			int c = peeked;
+			peeked = NONE;
+			return c;
+		}
+		return reader.read();
+	}
+
+	private int peek() throws IOException {
+		if (peeked == NONE) {
+			peeked = reader.read();
+		}
+		return peeked;
+	}
+
+	public long getRecordLine() {
+		return recordLine;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	// Conteúdo inválido, distinto de falhas de leitura do stream
+	public static class MalformedCsvException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		public MalformedCsvException(String message) {
+			super(message);
+		}
+	}
+}
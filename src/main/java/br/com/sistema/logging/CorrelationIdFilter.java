@@ -0,0 +1,32 @@
+package br.com.sistema.logging;
+
+import java.io.IOException;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// Usa o X-Correlation-Id do cliente (ou gera um) em todos os logs da requisição e o devolve na resposta
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class CorrelationIdFilter extends OncePerRequestFilter {
+
+	public static final String HEADER = "X-Correlation-Id";
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		response.setHeader(HEADER, EmailLogContext.correlate(request.getHeader(HEADER)));
+		try {
+			filterChain.doFilter(request, response);
+		} finally {
+			EmailLogContext.clear();
+		}
+	}
+}
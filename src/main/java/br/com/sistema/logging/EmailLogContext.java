@@ -0,0 +1,88 @@
+package br.com.sistema.logging;
+
+import java.util.UUID;
+
+import org.apache.logging.log4j.ThreadContext;
+import org.springframework.core.task.TaskDecorator;
+
+import br.com.sistema.models.UuidV7;
+
+// Chaves do ThreadContext que identificam o email nos logs: correlationId e emailId
+public final class EmailLogContext {
+
+	public static final String CORRELATION_ID = "correlationId";
+	public static final String EMAIL_ID = "emailId";
+
+	private static final int MAX_CORRELATION_ID_LENGTH = 64;
+
+	private EmailLogContext() {
+	}
+
+
+	// Valor recebido de fora só é aceito se for curto e sem caracteres de controle; senão gera um novo
+	public static String correlate(String correlationId) {
+		String value = valid(correlationId) ? correlationId : UuidV7.next().toString();
+		ThreadContext.put(CORRELATION_ID, value);
+		return value;
+	}
+
+	private static boolean valid(String correlationId) {
+		if (correlationId == null || correlationId.isEmpty() || correlationId.length() > MAX_CORRELATION_ID_LENGTH) {
+			return false;
+		}
+		for (int i = 0; i < correlationId.length(); i++) {
+			char c = correlationId.charAt(i);
+			if (!Character.isLetterOrDigit(c) && c != '-' && c != '_' && c != '.' && c != ':') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Retorna o emailId anterior da thread, para ser restaurado com restoreEmailId
+	public static String putEmailId(UUID emailId) {
+		String previous = ThreadContext.get(EMAIL_ID);
+		if (emailId != null) {
+			ThreadContext.put(EMAIL_ID, emailId.toString());
+		}
+		return previous;
+	}
+
+	public static void restoreEmailId(String previous) {
+		if (previous != null) {
+			ThreadContext.put(EMAIL_ID, previous);
+		} else {
+			ThreadContext.remove(EMAIL_ID);
+		}
+	}
+
+	public static void clear() {
+		ThreadContext.remove(CORRELATION_ID);
+		ThreadContext.remove(EMAIL_ID);
+	}
+
+	
+	
+	// ===========================================================================
+	// Leva o contexto da thread que agenda para a thread do pool que executa
+	// ===========================================================================
+	public static TaskDecorator taskDecorator() {
+		return task -> {
+			String correlationId = ThreadContext.get(CORRELATION_ID);
+			String emailId = ThreadContext.get(EMAIL_ID);
+			return () -> {
+				if (correlationId != null) {
+					ThreadContext.put(CORRELATION_ID, correlationId);
+				}
+				if (emailId != null) {
+					ThreadContext.put(EMAIL_ID, emailId);
+				}
+				try {
+					task.run();
+				} finally {
+					clear();
+				}
+			};
+		};
+	}
+}
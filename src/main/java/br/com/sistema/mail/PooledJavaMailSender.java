@@ -0,0 +1,295 @@
+package br.com.sistema.mail;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import jakarta.mail.Address;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+
+// JavaMailSenderImpl com pool de conexões SMTP autenticadas, validadas com NOOP e recicladas.
+// Chamado de uma virtual thread, o SMTPTransport (synchronized) roda numa thread do pool
+public class PooledJavaMailSender extends JavaMailSenderImpl implements DisposableBean {
+
+	private final Logger logger = LogManager.getLogger(PooledJavaMailSender.class);
+
+	private final BlockingDeque<PooledTransport> idleTransports = new LinkedBlockingDeque<>();
+
+	private final Semaphore permits;
+
+	private final int maxMessagesPerConnection;
+
+	private final long maxIdleMillis;
+
+	private final long validateAfterIdleMillis;
+
+	private final long borrowTimeoutMillis;
+
+	// Threads de plataforma que conversam com o servidor quando o envio vem de uma virtual thread
+	private final ExecutorService transportExecutor;
+
+	private volatile boolean closed;
+
+	public PooledJavaMailSender(int maxConnections, int maxMessagesPerConnection, long maxIdleMillis,
+			long validateAfterIdleMillis, long borrowTimeoutMillis) {
+		this.permits = new Semaphore(maxConnections, true);
+		this.maxMessagesPerConnection = maxMessagesPerConnection;
+		this.maxIdleMillis = maxIdleMillis;
+		this.validateAfterIdleMillis = validateAfterIdleMillis;
+		this.borrowTimeoutMillis = borrowTimeoutMillis;
+		this.transportExecutor = Executors.newFixedThreadPool(maxConnections,
+				Thread.ofPlatform().daemon().name("smtp-transport-", 0).factory());
+	}
+
+	private static final class PooledTransport {
+		private final Transport transport;
+		private int messagesSent;
+		private long lastUsedAt = System.currentTimeMillis();
+
+		private PooledTransport(Transport transport) {
+			this.transport = transport;
+		}
+	}
+
+	@FunctionalInterface
+	private interface TransportCall<T> {
+		T call() throws MessagingException;
+	}
+
+	
+	
+	// ===========================================================================
+	// Envia as mensagens usando uma conexão emprestada do pool
+	// ===========================================================================
+	@Override
+	protected void doSend(MimeMessage[] mimeMessages, Object[] originalMessages) throws MailException {
+		Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+		acquirePermit();
+
+		PooledTransport pooled = null;
+		try {
+			for (int i = 0; i < mimeMessages.length; i++) {
+				if (pooled != null && pooled.messagesSent >= maxMessagesPerConnection) {
+					// Limite de mensagens atingido no meio do envio: recicla antes da próxima
+					discard(pooled);
+					pooled = null;
+				}
+				if (pooled == null) {
+					try {
+						pooled = borrow();
+					} catch (AuthenticationFailedException ex) {
+						throw new MailAuthenticationException(ex);
+					} catch (Exception ex) {
+						// Sem conexão, todas as mensagens restantes falham
+						for (int j = i; j < mimeMessages.length; j++) {
+							failedMessages.put(originalMessages != null ? originalMessages[j] : mimeMessages[j], ex);
+						}
+						throw new MailSendException("Mail server connection failed", ex, failedMessages);
+					}
+				}
+
+				MimeMessage mimeMessage = mimeMessages[i];
+				try {
+					if (mimeMessage.getSentDate() == null) {
+						mimeMessage.setSentDate(new Date());
+					}
+					String messageId = mimeMessage.getMessageID();
+					mimeMessage.saveChanges();
+					if (messageId != null) {
+						// Preserva o Message-ID definido explicitamente
+						mimeMessage.setHeader("Message-ID", messageId);
+					}
+					Address[] addresses = mimeMessage.getAllRecipients();
+					Transport transport = pooled.transport;
+					Address[] recipients = addresses != null ? addresses : new Address[0];
+					onTransportThread(() -> {
+						transport.sendMessage(mimeMessage, recipients);
+						return null;
+					});
+					pooled.messagesSent++;
+				} catch (Exception ex) {
+					failedMessages.put(originalMessages != null ? originalMessages[i] : mimeMessage, ex);
+					if (!(ex instanceof SendFailedException)) {
+						// Estado da conexão desconhecido: descarta e abre outra para as próximas mensagens
+						discard(pooled);
+						pooled = null;
+					}
+				}
+			}
+		} finally {
+			if (pooled != null) {
+				release(pooled);
+			}
+			permits.release();
+		}
+
+		if (!failedMessages.isEmpty()) {
+			throw new MailSendException(failedMessages);
+		}
+	}
+
+	
+	
+	// ===========================================================================
+	// Obtém uma conexão ociosa saudável ou abre uma nova
+	// ===========================================================================
+	private PooledTransport borrow() throws MessagingException {
+		evictExpired();
+
+		PooledTransport pooled;
+		while ((pooled = idleTransports.pollFirst()) != null) {
+			long idleFor = System.currentTimeMillis() - pooled.lastUsedAt;
+			if (idleFor > maxIdleMillis) {
+				discard(pooled);
+				continue;
+			}
+			if (idleFor > validateAfterIdleMillis && !isHealthy(pooled)) {
+				discard(pooled);
+				continue;
+			}
+			return pooled;
+		}
+
+		logger.debug("Opening new pooled SMTP connection to {}:{}", getHost(), getPort());
+		return new PooledTransport(onTransportThread(this::connectTransport));
+	}
+
+	// Em SMTPTransport o isConnected() envia um NOOP ao servidor
+	private boolean isHealthy(PooledTransport pooled) {
+		try {
+			return onTransportThread(pooled.transport::isConnected);
+		} catch (MessagingException | RuntimeException ex) {
+			return false;
+		}
+	}
+
+	private void release(PooledTransport pooled) {
+		if (closed || pooled.messagesSent >= maxMessagesPerConnection) {
+			discard(pooled);
+			return;
+		}
+		pooled.lastUsedAt = System.currentTimeMillis();
+		idleTransports.offerFirst(pooled);
+	}
+
+	// Fecha as conexões menos usadas recentemente que passaram do tempo ocioso máximo
+	private void evictExpired() {
+		long now = System.currentTimeMillis();
+		PooledTransport oldest;
+		while ((oldest = idleTransports.peekLast()) != null && now - oldest.lastUsedAt > maxIdleMillis) {
+			if (idleTransports.removeLastOccurrence(oldest)) {
+				discard(oldest);
+			}
+		}
+	}
+
+	private void discard(PooledTransport pooled) {
+		try {
+			onTransportThread(() -> {
+				pooled.transport.close();
+				return null;
+			});
+		} catch (MessagingException ex) {
+			logger.debug("Failed to close SMTP connection: {}", ex.getMessage());
+		}
+	}
+
+	
+	
+	// ===========================================================================
+	// Executa a chamada ao SMTPTransport fora da virtual thread. As threads são tantas
+	// quanto as conexões (limitadas pelo semáforo), então a chamada não espera na fila
+	// ===========================================================================
+	private <T> T onTransportThread(TransportCall<T> call) throws MessagingException {
+		if (!Thread.currentThread().isVirtual()) {
+			return call.call();
+		}
+
+		Future<T> future;
+		try {
+			future = transportExecutor.submit(call::call);
+		} catch (RejectedExecutionException ex) {
+			// Pool já desligado (conexões devolvidas após o destroy)
+			return call.call();
+		}
+
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return future.get();
+				} catch (InterruptedException ex) {
+					// A conversa com o servidor já começou: espera o fim para não devolver ao pool uma conexão em uso
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof MessagingException messagingException) {
+				throw messagingException;
+			}
+			if (cause instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			if (cause instanceof Error error) {
+				throw error;
+			}
+			throw new MessagingException(cause.getMessage(), (Exception) cause);
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void acquirePermit() {
+		try {
+			if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				throw new MailSendException("Timed out waiting for a pooled SMTP connection");
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new MailSendException("Interrupted while waiting for a pooled SMTP connection", ex);
+		}
+	}
+
+	public int getIdleConnectionCount() {
+		return idleTransports.size();
+	}
+
+	
+	
+	// ===========================================================================
+	// Fecha todas as conexões ociosas no desligamento da aplicação
+	// ===========================================================================
+	@Override
+	public void destroy() {
+		closed = true;
+		PooledTransport pooled;
+		while ((pooled = idleTransports.pollFirst()) != null) {
+			discard(pooled);
+		}
+		transportExecutor.shutdown();
+	}
+}
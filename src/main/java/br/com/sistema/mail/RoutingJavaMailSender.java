@@ -0,0 +1,428 @@
+package br.com.sistema.mail;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.angus.mail.smtp.SMTPSenderFailedException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMailMessage;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+
+// Distribui os envios entre vários transportes SMTP, pulando os que estão no limite ou com falhas.
+// Só falhas antes do DATA trocam de transporte, para não entregar a mesma mensagem duas vezes
+public class RoutingJavaMailSender implements JavaMailSender, DisposableBean, MeterBinder {
+
+	private final Logger logger = LogManager.getLogger(RoutingJavaMailSender.class);
+
+	public enum Strategy {
+		WEIGHTED_ROUND_ROBIN,
+		LEAST_IN_FLIGHT
+	}
+
+	private final List<Node> nodes;
+
+	private final Strategy strategy;
+
+	private final int failureThreshold;
+
+	private final long ejectionNanos;
+
+	private final long slowCallNanos;
+
+	private final long maxThrottleWaitNanos;
+
+	// Pesos acumulados para escolher o nó do round-robin por busca binária
+	private final int[] cumulativeWeights;
+
+	private final AtomicLong sequence = new AtomicLong();
+
+	public RoutingJavaMailSender(List<Node> nodes, Strategy strategy, int failureThreshold, long ejectionMillis,
+			long slowCallMillis, long maxThrottleWaitMillis) {
+		if (nodes.isEmpty()) {
+			throw new IllegalArgumentException("Ao menos um transporte SMTP é necessário");
+		}
+		this.nodes = List.copyOf(nodes);
+		this.strategy = strategy;
+		this.failureThreshold = Math.max(1, failureThreshold);
+		this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(ejectionMillis);
+		this.slowCallNanos = slowCallMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(slowCallMillis) : Long.MAX_VALUE;
+		this.maxThrottleWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxThrottleWaitMillis));
+
+		this.cumulativeWeights = new int[this.nodes.size()];
+		int total = 0;
+		for (int i = 0; i < this.nodes.size(); i++) {
+			total += this.nodes.get(i).weight;
+			cumulativeWeights[i] = total;
+		}
+	}
+
+	
+	
+	// ===========================================================================
+	// Transporte SMTP com peso, limite de taxa opcional e estado de saúde
+	// ===========================================================================
+	public static final class Node {
+		private final String name;
+		private final JavaMailSender sender;
+		private final int weight;
+		private final TokenBucket rateLimit;
+		private final InternetAddress from;
+		final AtomicInteger inFlight = new AtomicInteger();
+		private final AtomicInteger consecutiveFailures = new AtomicInteger();
+		private volatile boolean ejected;
+		private volatile long ejectedUntil;
+
+		// rateLimit null: conta sem limite | from null: mantém o From da mensagem
+		public Node(String name, JavaMailSender sender, int weight, TokenBucket rateLimit, InternetAddress from) {
+			this.name = name;
+			this.sender = sender;
+			this.weight = Math.max(1, weight);
+			this.rateLimit = rateLimit;
+			this.from = from;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public boolean isEjected() {
+			return ejected;
+		}
+	}
+
+	
+	
+	// ===========================================================================
+	// Envia pelo melhor transporte com vaga na conta e, em falha antes do DATA,
+	// pelos seguintes. Transporte no limite de taxa é pulado; se todos estiverem,
+	// espera o primeiro a liberar até maxThrottleWaitNanos
+	// ===========================================================================
+	@Override
+	public void send(MimeMessage... mimeMessages) throws MailException {
+		Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+		List<MimeMessage> pending = new ArrayList<>(Arrays.asList(mimeMessages));
+		MailException lastFailure = null;
+		long throttledNanos = 0;
+		Map<MimeMessage, String> originalFrom = originalFrom(mimeMessages);
+		List<Node> order = candidates();
+		long deadline = System.nanoTime() + maxThrottleWaitNanos;
+
+		while (!pending.isEmpty() && !order.isEmpty()) {
+			Node node = null;
+			int granted = 0;
+			long shortestWait = Long.MAX_VALUE;
+			for (Node candidate : order) {
+				Reservation reservation = reserve(candidate, pending.size());
+				if (reservation.granted() > 0) {
+					node = candidate;
+					granted = reservation.granted();
+					break;
+				}
+				shortestWait = Math.min(shortestWait, reservation.waitNanos());
+			}
+			if (node == null) {
+				if (System.nanoTime() + shortestWait - deadline > 0 || Thread.currentThread().isInterrupted()) {
+					throttledNanos = shortestWait;
+					break;
+				}
+				LockSupport.parkNanos(shortestWait);
+				continue;
+			}
+
+			// Sem tokens para o lote inteiro, o transporte leva só as que cabem agora
+			List<MimeMessage> batch = new ArrayList<>(pending.subList(0, granted));
+			pending.subList(0, granted).clear();
+			try {
+				sendVia(node, batch.toArray(MimeMessage[]::new), originalFrom);
+			} catch (MailParseException | MailPreparationException e) {
+				// Problema na mensagem, não no transporte
+				refund(node, batch.size());
+				throw e;
+			} catch (MailSendException e) {
+				lastFailure = e;
+				if (e.getFailedMessages().isEmpty()) {
+					// Nada foi enviado (ex.: sem conexão livre no pool)
+					refund(node, batch.size());
+					onFailure(node, e);
+					order.remove(node);
+					pending.addAll(0, batch);
+					continue;
+				}
+
+				// Só vai para o próximo transporte o que falhou antes do DATA; o resto volta para quem enviou
+				List<MimeMessage> retry = new ArrayList<>();
+				boolean transportFailure = false;
+				for (Map.Entry<Object, Exception> entry : e.getFailedMessages().entrySet()) {
+					transportFailure |= !(entry.getValue() instanceof SendFailedException);
+					if (failedBeforeData(e, entry.getValue()) && entry.getKey() instanceof MimeMessage mimeMessage) {
+						retry.add(mimeMessage);
+					} else {
+						failedMessages.put(entry.getKey(), entry.getValue());
+					}
+				}
+				if (transportFailure) {
+					onFailure(node, e);
+				} else {
+					onSuccess(node);
+				}
+				if (!retry.isEmpty()) {
+					refund(node, retry.size());
+					order.remove(node);
+					pending.addAll(0, retry);
+				}
+			} catch (MailException e) {
+				// Autenticação recusada: nada foi enviado
+				lastFailure = e;
+				refund(node, batch.size());
+				onFailure(node, e);
+				order.remove(node);
+				pending.addAll(0, batch);
+			}
+		}
+
+		if (pending.isEmpty() && failedMessages.isEmpty()) {
+			return;
+		}
+		// As mensagens que sobraram não chegaram ao DATA em nenhum transporte: se o que as parou foi o
+		// limite de taxa, são adiadas mesmo que um transporte anterior tenha falhado
+		MailException pendingFailure = throttledNanos > 0
+				? new SmtpThrottledException("Every SMTP transport is rate limited", throttledNanos)
+				: lastFailure != null ? lastFailure : new MailSendException("No SMTP transport available");
+		if (failedMessages.isEmpty() && pending.size() == mimeMessages.length) {
+			throw pendingFailure;
+		}
+		for (MimeMessage mimeMessage : pending) {
+			failedMessages.put(mimeMessage, pendingFailure);
+		}
+		throw new MailSendException(failedMessages);
+	}
+
+	// Falhas que garantem que a mensagem não chegou ao DATA: a conexão/autenticação que derrubou
+	// o envio (causa do MailSendException, repetida em cada mensagem restante) ou o MAIL FROM recusado.
+	// Um erro no meio da mensagem (ex.: timeout lendo a resposta do DATA) pode já ter entregado
+	private static boolean failedBeforeData(MailSendException failure, Exception messageFailure) {
+		return (messageFailure != null && messageFailure == failure.getCause())
+				|| messageFailure instanceof SMTPSenderFailedException;
+	}
+
+	private void sendVia(Node node, MimeMessage[] mimeMessages, Map<MimeMessage, String> originalFrom) {
+		for (MimeMessage mimeMessage : mimeMessages) {
+			try {
+				// Reaplicado a cada tentativa: o From de um transporte anterior não passa para o seguinte
+				if (node.from != null) {
+					mimeMessage.setFrom(node.from);
+				} else if (originalFrom.get(mimeMessage) != null) {
+					mimeMessage.setHeader("From", originalFrom.get(mimeMessage));
+				} else {
+					mimeMessage.removeHeader("From");
+				}
+			} catch (MessagingException e) {
+				throw new MailPreparationException(e);
+			}
+		}
+
+		node.inFlight.addAndGet(mimeMessages.length);
+		long start = System.nanoTime();
+		try {
+			node.sender.send(mimeMessages);
+		} finally {
+			node.inFlight.addAndGet(-mimeMessages.length);
+		}
+
+		long elapsed = System.nanoTime() - start;
+		if (elapsed > slowCallNanos) {
+			// Enviou, mas lento: conta para a retirada temporária do transporte
+			logger.warn("SMTP transport {} took {} ms to send {} messages", node.name,
+					TimeUnit.NANOSECONDS.toMillis(elapsed), mimeMessages.length);
+			onFailure(node, null);
+		} else {
+			onSuccess(node);
+		}
+	}
+
+	// From de cada mensagem antes do primeiro transporte (null quando não há)
+	private static Map<MimeMessage, String> originalFrom(MimeMessage[] mimeMessages) {
+		Map<MimeMessage, String> originalFrom = new IdentityHashMap<>(mimeMessages.length);
+		for (MimeMessage mimeMessage : mimeMessages) {
+			try {
+				originalFrom.put(mimeMessage, mimeMessage.getHeader("From", ","));
+			} catch (MessagingException e) {
+				throw new MailPreparationException(e);
+			}
+		}
+		return originalFrom;
+	}
+
+	// Devolve os tokens das mensagens que o transporte não chegou a enviar
+	private static void refund(Node node, int permits) {
+		if (node.rateLimit == null) {
+			return;
+		}
+		for (int i = 0; i < permits; i++) {
+			node.rateLimit.refund();
+		}
+	}
+
+	private record Reservation(int granted, long waitNanos) {
+	}
+
+	// Tokens da conta do transporte para até "permits" mensagens, sem esperar.
+	// Sem nenhum token, waitNanos diz quando o próximo fica disponível
+	private static Reservation reserve(Node node, int permits) {
+		if (node.rateLimit == null) {
+			return new Reservation(permits, 0);
+		}
+		long now = System.nanoTime();
+		long waitNanos = 0;
+		int granted = 0;
+		while (granted < permits && (waitNanos = node.rateLimit.tryAcquire(now)) == 0) {
+			granted++;
+		}
+		return new Reservation(granted, waitNanos);
+	}
+
+	
+	
+	// ===========================================================================
+	// Ordem de tentativa: transportes saudáveis pela estratégia, depois os retirados
+	// (os que voltam primeiro antes), para nunca ficar sem opção
+	// ===========================================================================
+	List<Node> candidates() {
+		long now = System.nanoTime();
+		List<Node> healthy = new ArrayList<>(nodes.size());
+		List<Node> ejected = new ArrayList<>();
+		for (Node node : ordered()) {
+			(isAvailable(node, now) ? healthy : ejected).add(node);
+		}
+		ejected.sort(Comparator.comparingLong(node -> node.ejectedUntil - now));
+		healthy.addAll(ejected);
+		return healthy;
+	}
+
+	private List<Node> ordered() {
+		if (strategy == Strategy.LEAST_IN_FLIGHT) {
+			List<Node> sorted = new ArrayList<>(nodes);
+			sorted.sort(Comparator.comparingDouble(node -> (double) node.inFlight.get() / node.weight));
+			return sorted;
+		}
+
+		int total = cumulativeWeights[cumulativeWeights.length - 1];
+		int slot = (int) Math.floorMod(sequence.getAndIncrement(), (long) total);
+		int index = Arrays.binarySearch(cumulativeWeights, slot + 1);
+		int first = index >= 0 ? index : -index - 1;
+
+		List<Node> rotated = new ArrayList<>(nodes.size());
+		for (int i = 0; i < nodes.size(); i++) {
+			rotated.add(nodes.get((first + i) % nodes.size()));
+		}
+		return rotated;
+	}
+
+	// Ao fim do tempo de retirada o transporte volta "meio aberto": uma nova falha o retira de novo
+	private boolean isAvailable(Node node, long now) {
+		if (!node.ejected) {
+			return true;
+		}
+		if (now - node.ejectedUntil >= 0) {
+			node.consecutiveFailures.set(failureThreshold - 1);
+			node.ejected = false;
+			logger.info("SMTP transport {} back in rotation", node.name);
+			return true;
+		}
+		return false;
+	}
+
+	private void onSuccess(Node node) {
+		node.consecutiveFailures.set(0);
+	}
+
+	private void onFailure(Node node, Exception failure) {
+		if (failure != null) {
+			logger.warn("SMTP transport {} failed: {}", node.name, failure.getMessage());
+		}
+		if (node.consecutiveFailures.incrementAndGet() >= failureThreshold && !node.ejected) {
+			node.ejectedUntil = System.nanoTime() + ejectionNanos;
+			node.ejected = true;
+			node.consecutiveFailures.set(0);
+			logger.error("SMTP transport {} ejected for {} ms after {} consecutive failures", node.name,
+					TimeUnit.NANOSECONDS.toMillis(ejectionNanos), failureThreshold);
+		}
+	}
+
+	
+	
+	// ===========================================================================
+	// Demais métodos do JavaMailSender
+	// ===========================================================================
+	@Override
+	public MimeMessage createMimeMessage() {
+		return nodes.get(0).sender.createMimeMessage();
+	}
+
+	@Override
+	public MimeMessage createMimeMessage(InputStream contentStream) throws MailException {
+		return nodes.get(0).sender.createMimeMessage(contentStream);
+	}
+
+	@Override
+	public void send(SimpleMailMessage... simpleMessages) throws MailException {
+		MimeMessage[] mimeMessages = new MimeMessage[simpleMessages.length];
+		for (int i = 0; i < simpleMessages.length; i++) {
+			MimeMailMessage message = new MimeMailMessage(createMimeMessage());
+			simpleMessages[i].copyTo(message);
+			mimeMessages[i] = message.getMimeMessage();
+		}
+		send(mimeMessages);
+	}
+
+	public List<Node> getNodes() {
+		return nodes;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		for (Node node : nodes) {
+			Gauge.builder("email.smtp.transport.in_flight", node.inFlight, AtomicInteger::get)
+					.tag("transport", node.name)
+					.register(registry);
+			Gauge.builder("email.smtp.transport.ejected", node, n -> n.ejected ? 1 : 0)
+					.description("1 enquanto o transporte está fora de rotação por falhas")
+					.tag("transport", node.name)
+					.register(registry);
+		}
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		for (Node node : nodes) {
+			if (node.sender instanceof DisposableBean disposable) {
+				disposable.destroy();
+			}
+		}
+	}
+}
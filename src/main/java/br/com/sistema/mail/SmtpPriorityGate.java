@@ -0,0 +1,171 @@
+package br.com.sistema.mail;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import br.com.sistema.enums.EmailPriority;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+// Divide os envios SMTP simultâneos entre as faixas: cada uma usa até a sua fração de permits
+// e, ao liberar uma vaga, a faixa mais alta entra antes. Criado em MailConfig
+public class SmtpPriorityGate implements MeterBinder {
+
+	private static final EmailPriority[] LANES = EmailPriority.values();
+
+	private final boolean enabled;
+	private final int permits;
+	private final int[] laneLimits;
+	private final long acquireTimeoutNanos;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition[] laneAvailable = new Condition[LANES.length];
+	private final int[] active = new int[LANES.length];
+	private final int[] waiting = new int[LANES.length];
+	private int totalActive;
+
+	public SmtpPriorityGate(boolean enabled, int permits, double highShare, double normalShare, double lowShare,
+			long acquireTimeoutMillis) {
+		if (permits < 1) {
+			throw new IllegalArgumentException("email.lanes.smtp.permits deve ser >= 1");
+		}
+		this.enabled = enabled;
+		this.permits = permits;
+		this.laneLimits = new int[] { limit(permits, highShare), limit(permits, normalShare), limit(permits, lowShare) };
+		this.acquireTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMillis);
+		for (int lane = 0; lane < LANES.length; lane++) {
+			laneAvailable[lane] = lock.newCondition();
+		}
+	}
+
+	// Gate que sempre libera, usado quando o componente é criado fora do contexto Spring
+	public static SmtpPriorityGate unlimited() {
+		return new SmtpPriorityGate(false, 1, 1, 1, 1, 0);
+	}
+
+	private static int limit(int permits, double share) {
+		return Math.max(1, Math.min(permits, (int) Math.ceil(permits * share)));
+	}
+
+	
+	
+	// ===========================================================================
+	// Ocupa uma vaga de envio da faixa. Retorna false se não houve vaga dentro de
+	// email.lanes.smtp.acquire-timeout-ms (ou se a thread foi interrompida)
+	// ===========================================================================
+	public boolean acquire(EmailPriority priority) {
+		if (!enabled) {
+			return true;
+		}
+		int lane = lane(priority);
+		lock.lock();
+		try {
+			long remaining = acquireTimeoutNanos;
+			boolean entered = false;
+			waiting[lane]++;
+			try {
+				while (!(entered = canEnter(lane)) && remaining > 0) {
+					remaining = laneAvailable[lane].awaitNanos(remaining);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				waiting[lane]--;
+			}
+			if (!entered) {
+				// Quem desistiu podia estar segurando as faixas mais baixas
+				signalEligible();
+				return false;
+			}
+			active[lane]++;
+			totalActive++;
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// Espera máxima por uma vaga: quem não conseguiu volta a tentar depois desse tempo
+	public long getAcquireTimeoutNanos() {
+		return acquireTimeoutNanos;
+	}
+
+	public void release(EmailPriority priority) {
+		if (!enabled) {
+			return;
+		}
+		int lane = lane(priority);
+		lock.lock();
+		try {
+			active[lane]--;
+			totalActive--;
+			signalEligible();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// Há vaga geral e na faixa, e nenhuma faixa mais alta com vaga está esperando
+	private boolean canEnter(int lane) {
+		if (totalActive >= permits || active[lane] >= laneLimits[lane]) {
+			return false;
+		}
+		for (int higher = 0; higher < lane; higher++) {
+			if (waiting[higher] > 0 && active[higher] < laneLimits[higher]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void signalEligible() {
+		for (int lane = 0; lane < LANES.length; lane++) {
+			if (waiting[lane] > 0 && canEnter(lane)) {
+				laneAvailable[lane].signalAll();
+			}
+		}
+	}
+
+	private static int lane(EmailPriority priority) {
+		return (priority != null ? priority : EmailPriority.NORMAL).ordinal();
+	}
+
+	int laneLimit(EmailPriority priority) {
+		return laneLimits[lane(priority)];
+	}
+
+	int active(EmailPriority priority) {
+		lock.lock();
+		try {
+			return active[lane(priority)];
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	int waiting(EmailPriority priority) {
+		lock.lock();
+		try {
+			return waiting[lane(priority)];
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		for (EmailPriority priority : LANES) {
+			Gauge.builder("email.smtp.lane.active", this, gate -> gate.active(priority))
+					.description("Envios SMTP em andamento na faixa de prioridade")
+					.tag("lane", priority.routingKey())
+					.register(registry);
+			Gauge.builder("email.smtp.lane.waiting", this, gate -> gate.waiting(priority))
+					.description("Envios aguardando vaga SMTP na faixa de prioridade")
+					.tag("lane", priority.routingKey())
+					.register(registry);
+		}
+	}
+}
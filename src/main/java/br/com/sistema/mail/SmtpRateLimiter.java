@@ -0,0 +1,103 @@
+package br.com.sistema.mail;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Limita a taxa de envio SMTP por conta remetente e por domínio do destinatário
+@Component
+public class SmtpRateLimiter {
+
+	private final boolean enabled;
+	private final double accountPermitsPerSecond;
+	private final int accountBurst;
+	private final double domainPermitsPerSecond;
+	private final int domainBurst;
+
+	private final Map<String, TokenBucket> accounts = new ConcurrentHashMap<>();
+	private final Map<String, TokenBucket> domains = new ConcurrentHashMap<>();
+
+	public SmtpRateLimiter(
+			@Value("${email.rate-limit.enabled:true}") boolean enabled,
+			@Value("${email.rate-limit.account.per-second:10}") double accountPermitsPerSecond,
+			@Value("${email.rate-limit.account.burst:20}") int accountBurst,
+			@Value("${email.rate-limit.domain.per-second:5}") double domainPermitsPerSecond,
+			@Value("${email.rate-limit.domain.burst:10}") int domainBurst) {
+		this.enabled = enabled;
+		this.accountPermitsPerSecond = accountPermitsPerSecond;
+		this.accountBurst = accountBurst;
+		this.domainPermitsPerSecond = domainPermitsPerSecond;
+		this.domainBurst = domainBurst;
+	}
+
+	// Limitador que sempre libera, usado quando o componente é criado fora do contexto Spring
+	public static SmtpRateLimiter unlimited() {
+		return new SmtpRateLimiter(false, 1, 1, 1, 1);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	
+	
+	// ===========================================================================
+	// Reserva um envio da conta para o domínio do destinatário. Retorna 0 se pode
+	// enviar agora ou quantos nanossegundos esperar antes de tentar de novo.
+	// Sem conta (null), só o domínio é limitado: a conta é limitada pelo transporte
+	// ===========================================================================
+	public long tryAcquire(String account, String emailTo) {
+		return enabled ? tryAcquire(account, emailTo, System.nanoTime()) : 0;
+	}
+
+	long tryAcquire(String account, String emailTo, long nowNanos) {
+		TokenBucket domain = domains.computeIfAbsent(domainOf(emailTo),
+				key -> new TokenBucket(domainPermitsPerSecond, domainBurst));
+		long waitNanos = domain.tryAcquire(nowNanos);
+		if (waitNanos > 0) {
+			return waitNanos;
+		}
+
+		if (account == null) {
+			return 0;
+		}
+		TokenBucket sender = accounts.computeIfAbsent(account,
+				key -> new TokenBucket(accountPermitsPerSecond, accountBurst));
+		waitNanos = sender.tryAcquire(nowNanos);
+		if (waitNanos > 0) {
+			domain.refund();
+		}
+		return waitNanos;
+	}
+
+	
+	
+	// ===========================================================================
+	// Remove buckets cheios para que domínios vistos uma única vez não acumulem
+	// ===========================================================================
+	@Scheduled(fixedDelayString = "${email.rate-limit.evict-interval-ms:60000}")
+	public void evictIdle() {
+		long now = System.nanoTime();
+		domains.values().removeIf(bucket -> bucket.isIdle(now));
+		accounts.values().removeIf(bucket -> bucket.isIdle(now));
+	}
+
+	int trackedDomains() {
+		return domains.size();
+	}
+
+	static String domainOf(String emailTo) {
+		if (emailTo == null) {
+			return "";
+		}
+		int at = emailTo.lastIndexOf('@');
+		String domain = at >= 0 ? emailTo.substring(at + 1) : emailTo;
+		// Remove o ">" de endereços no formato "Nome <email@dominio>"
+		int end = domain.indexOf('>');
+		return (end >= 0 ? domain.substring(0, end) : domain).trim().toLowerCase(Locale.ROOT);
+	}
+}
@@ -0,0 +1,18 @@
+package br.com.sistema.mail;
+
+import org.springframework.mail.MailSendException;
+
+// Envio que não chegou ao SMTP por limite de taxa ou falta de vaga na faixa; não conta como tentativa
+public class SmtpThrottledException extends MailSendException {
+
+	private final long retryAfterNanos;
+
+	public SmtpThrottledException(String msg, long retryAfterNanos) {
+		super(msg);
+		this.retryAfterNanos = retryAfterNanos;
+	}
+
+	public long getRetryAfterNanos() {
+		return retryAfterNanos;
+	}
+}
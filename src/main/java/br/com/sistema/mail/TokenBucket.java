@@ -0,0 +1,52 @@
+package br.com.sistema.mail;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Token bucket sem locks no formato GCRA: o estado é um único instante (TAT) atualizado por CAS
+public final class TokenBucket {
+
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	private final long emissionIntervalNanos; // tempo para repor um token
+	private final long burstToleranceNanos;   // quanto o TAT pode adiantar em relação ao relógio
+	private final AtomicLong theoreticalArrival = new AtomicLong(EMPTY);
+
+	public TokenBucket(double permitsPerSecond, int burst) {
+		if (permitsPerSecond <= 0 || burst < 1) {
+			throw new IllegalArgumentException("permitsPerSecond deve ser positivo e burst >= 1");
+		}
+		this.emissionIntervalNanos = Math.max(1L, Math.round(1_000_000_000d / permitsPerSecond));
+		this.burstToleranceNanos = emissionIntervalNanos * (burst - 1);
+	}
+
+	
+	
+	// ===========================================================================
+	// Consome um token. Retorna 0 se havia token ou, caso contrário, quantos
+	// nanossegundos faltam para o próximo (sem consumir nada)
+	// ===========================================================================
+	public long tryAcquire(long nowNanos) {
+		while (true) {
+			long current = theoreticalArrival.get();
+			long base = current == EMPTY || current - nowNanos < 0 ? nowNanos : current;
+			long waitNanos = base - burstToleranceNanos - nowNanos;
+			if (waitNanos > 0) {
+				return waitNanos;
+			}
+			if (theoreticalArrival.compareAndSet(current, base + emissionIntervalNanos)) {
+				return 0;
+			}
+		}
+	}
+
+	// Devolve um token consumido (ex.: quando outro limite da mesma operação negou o envio)
+	public void refund() {
+		theoreticalArrival.getAndAdd(-emissionIntervalNanos);
+	}
+
+	// Sem tokens consumidos pendentes: o bucket está cheio e pode ser descartado
+	public boolean isIdle(long nowNanos) {
+		long current = theoreticalArrival.get();
+		return current == EMPTY || current - nowNanos <= 0;
+	}
+}
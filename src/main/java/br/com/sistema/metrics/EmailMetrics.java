@@ -0,0 +1,136 @@
+package br.com.sistema.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import br.com.sistema.models.EmailModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+// Métricas do caminho de envio: template, SMTP, gravação no banco, envios em andamento e status
+@Component
+public class EmailMetrics {
+
+	private static final String NO_TEMPLATE = "none";
+
+	private final MeterRegistry registry;
+
+	private final AtomicInteger inFlightSends = new AtomicInteger();
+
+	private final Timer smtpSuccess;
+
+	private final Timer smtpFailure;
+
+	private final Map<String, Timer> renderTimers = new ConcurrentHashMap<>();
+
+	private final Map<String, Timer> dbTimers = new ConcurrentHashMap<>();
+
+	public EmailMetrics(MeterRegistry registry) {
+		this.registry = registry;
+		this.smtpSuccess = smtpTimer("success");
+		this.smtpFailure = smtpTimer("failure");
+		Gauge.builder("email.smtp.in_flight", inFlightSends, AtomicInteger::get)
+				.description("Mensagens sendo transmitidas ao servidor SMTP neste momento")
+				.register(registry);
+	}
+
+	// Instância sem registro, usada quando o componente é criado fora do contexto Spring
+	public static EmailMetrics noop() {
+		return new EmailMetrics(new CompositeMeterRegistry());
+	}
+
+	private Timer smtpTimer(String outcome) {
+		return Timer.builder("email.smtp.send")
+				.description("Latência do envio SMTP (por chamada ao JavaMailSender)")
+				.tag("outcome", outcome)
+				.publishPercentileHistogram()
+				.register(registry);
+	}
+
+	
+	
+	// ===========================================================================
+	// Renderização de template
+	// ===========================================================================
+	public String timeRender(String templateName, Supplier<String> render) {
+		Timer timer = renderTimers.computeIfAbsent(templateName != null ? templateName : NO_TEMPLATE,
+				name -> Timer.builder("email.template.render")
+						.description("Tempo de renderização do template de email")
+						.tag("template", name)
+						.publishPercentileHistogram()
+						.register(registry));
+		return timer.record(render);
+	}
+
+	
+	
+	// ===========================================================================
+	// Envio SMTP: inicia a medição e conta as mensagens em andamento
+	// ===========================================================================
+	public Timer.Sample startSmtpSend(int messages) {
+		inFlightSends.addAndGet(messages);
+		return Timer.start(registry);
+	}
+
+	public void stopSmtpSend(Timer.Sample sample, int messages, boolean success) {
+		inFlightSends.addAndGet(-messages);
+		sample.stop(success ? smtpSuccess : smtpFailure);
+	}
+
+	
+	
+	// ===========================================================================
+	// Limitador de taxa: envios que aguardaram a vaga ou foram adiados para o outbox
+	// ===========================================================================
+	public void countThrottled(boolean deferred) {
+		Counter.builder("email.rate_limited")
+				.description("Envios atrasados pelo limitador de taxa SMTP")
+				.tag("outcome", deferred ? "deferred" : "waited")
+				.register(registry)
+				.increment();
+	}
+
+	
+	
+	// ===========================================================================
+	// Gravação no banco
+	// ===========================================================================
+	public <T> T timeDbSave(String operation, Supplier<T> save) {
+		Timer timer = dbTimers.computeIfAbsent(operation,
+				name -> Timer.builder("email.db.save")
+						.description("Latência de gravação de emails no banco")
+						.tag("operation", name)
+						.publishPercentileHistogram()
+						.register(registry));
+		return timer.record(save);
+	}
+
+	
+	
+	// ===========================================================================
+	// Contadores por status final e por origem (endpoint ou fila)
+	// ===========================================================================
+	public void countStatus(EmailModel emailModel) {
+		Counter.builder("email.status")
+				.description("Emails processados por status e template")
+				.tag("status", String.valueOf(emailModel.getStatusEmail()))
+				.tag("template", emailModel.getTemplateName() != null ? emailModel.getTemplateName() : NO_TEMPLATE)
+				.register(registry)
+				.increment();
+	}
+
+	public void countReceived(String source, int emails) {
+		Counter.builder("email.received")
+				.description("Emails recebidos para envio por origem")
+				.tag("source", source)
+				.register(registry)
+				.increment(emails);
+	}
+}
@@ -0,0 +1,73 @@
+package br.com.sistema.metrics;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import br.com.sistema.enums.StatusEmail;
+import br.com.sistema.repositories.EmailRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Gauges de atraso da fila do RabbitMQ e do outbox, atualizados fora do scrape do Prometheus
+@Component
+public class EmailQueueMetrics {
+
+	private final Logger logger = LogManager.getLogger(EmailQueueMetrics.class);
+
+	private final AmqpAdmin amqpAdmin;
+
+	private final EmailRepository emailRepository;
+
+	private final String queue;
+
+	private final AtomicLong queueDepth = new AtomicLong();
+
+	private final AtomicLong queueConsumers = new AtomicLong();
+
+	private final AtomicLong outboxBacklog = new AtomicLong();
+
+	public EmailQueueMetrics(MeterRegistry registry, AmqpAdmin amqpAdmin, EmailRepository emailRepository,
+			@Value("${spring.rabbitmq.queue}") String queue) {
+		this.amqpAdmin = amqpAdmin;
+		this.emailRepository = emailRepository;
+		this.queue = queue;
+
+		Gauge.builder("email.queue.depth", queueDepth, AtomicLong::get)
+				.description("Mensagens prontas na fila ainda não consumidas (atraso do consumidor)")
+				.tag("queue", queue)
+				.register(registry);
+		Gauge.builder("email.queue.consumers", queueConsumers, AtomicLong::get)
+				.tag("queue", queue)
+				.register(registry);
+		Gauge.builder("email.outbox.backlog", outboxBacklog, AtomicLong::get)
+				.description("Emails PENDING ou RETRYING aguardando envio")
+				.register(registry);
+	}
+
+	@Scheduled(fixedDelayString = "${email.metrics.refresh-interval-ms:15000}")
+	public void refresh() {
+		try {
+			QueueInformation info = amqpAdmin.getQueueInfo(queue);
+			if (info != null) {
+				queueDepth.set(info.getMessageCount());
+				queueConsumers.set(info.getConsumerCount());
+			}
+		} catch (RuntimeException e) {
+			logger.debug("Could not read queue info for {}: {}", queue, e.getMessage());
+		}
+
+		try {
+			outboxBacklog.set(emailRepository.countByStatusEmailIn(List.of(StatusEmail.PENDING, StatusEmail.RETRYING)));
+		} catch (RuntimeException e) {
+			logger.debug("Could not count outbox backlog: {}", e.getMessage());
+		}
+	}
+}
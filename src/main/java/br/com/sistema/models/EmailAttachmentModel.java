@@ -0,0 +1,30 @@
+package br.com.sistema.models;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+@Data
+@Entity
+@Table(name = "tb_email_attachment")
+public class EmailAttachmentModel implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	@Id
+	private UUID id;
+	private UUID emailId;
+	private String fileName;
+	private String contentType;
+	private long sizeBytes;
+	@Column(length = 64)
+	private String sha256;
+	// Nome do arquivo no spool: o SHA-256 do conteúdo (o id, em anexos anteriores à V13)
+	private String storagePath;
+	private LocalDateTime createdAt;
+}
@@ -0,0 +1,38 @@
+package br.com.sistema.models;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.hibernate.annotations.UuidGenerator;
+
+import br.com.sistema.enums.EmailJobStatus;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+@Data
+@Entity
+@Table(name = "tb_email_job")
+public class EmailJobModel implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	@Id
+	@UuidGenerator(algorithm = UuidV7.class)
+	private UUID id;
+	private String ownerRef;
+	private String templateName;
+	private String subject;
+	@Enumerated(EnumType.STRING)
+	private EmailJobStatus status;
+	private int totalRecipients;
+	private int rejectedRecipients;
+	@Column(length = 1000)
+	private String lastError;
+	private LocalDateTime createdAt;
+	private LocalDateTime queuedAt;
+}
@@ -2,17 +2,23 @@ package br.com.sistema.models;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.annotations.UuidGenerator;
+import org.hibernate.type.SqlTypes;
+
+import br.com.sistema.enums.EmailPriority;
 import br.com.sistema.enums.StatusEmail;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import lombok.Data;
 
 @Data 
@@ -22,17 +28,49 @@ public class EmailModel implements Serializable {
 	private static final long serialVersionUID = 1L;
 	
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
+	@UuidGenerator(algorithm = UuidV7.class)
 	private UUID id;
 	private String ownerRef;
 	private String emailFrom;
 	private String emailTo;
 	private String subject;
-	@Column(columnDefinition = "TEXT")
+	// Corpos guardados em tb_email_blob; text e html são preenchidos a partir dos hashes
+	@Transient
 	private String text;
-	@Column(columnDefinition = "TEXT")
+	@Transient
 	private String html;
+	@Column(length = 64)
+	private String textSha256;
+	@Column(length = 64)
+	private String htmlSha256;
+	private String templateName;
+	@Column(length = 64)
+	private String templateVersion;
+	@JdbcTypeCode(SqlTypes.JSON)
+	@Column(columnDefinition = "jsonb")
+	private Map<String, String> templateVariables;
 	private LocalDateTime sendDateEmail;
 	@Enumerated(EnumType.STRING)
 	private StatusEmail statusEmail;
+	private int attemptCount;
+	private LocalDateTime nextAttemptAt;
+	@Column(length = 1000)
+	private String lastError;
+	private UUID jobId;
+	private String idempotencyKey;
+	private int attachmentCount;
+	@Enumerated(EnumType.STRING)
+	@Column(length = 10, nullable = false)
+	private EmailPriority priority = EmailPriority.NORMAL;
+	// Anexos informados na requisição, vinculados ao email depois de persistido
+	@Transient
+	private List<UUID> attachmentIds;
+	// Chave de idempotência ainda não reservada no banco (email no spool): o replay a reserva antes do insert
+	@Transient
+	private boolean idempotencyDeferred;
+
+	// Prioridade não informada (ex.: copiada de um EmailDto sem o campo) fica NORMAL
+	public void setPriority(EmailPriority priority) {
+		this.priority = priority != null ? priority : EmailPriority.NORMAL;
+	}
 }
@@ -0,0 +1,34 @@
+package br.com.sistema.models;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.uuid.UuidValueGenerator;
+
+// UUID versão 7 (RFC 9562): ids crescentes, então os inserts vão para o fim do índice da chave
+public class UuidV7 implements UuidValueGenerator {
+
+	private static final long MAX_COUNTER = 0xFFF;
+
+	// timestamp (ms) << 12 | contador do último id gerado
+	private static final AtomicLong last = new AtomicLong();
+
+	public static UUID next() {
+		long now = System.currentTimeMillis() << 12;
+		// Relógio parado ou voltando: segue do último valor, que continua crescente
+		long state = last.updateAndGet(previous -> Math.max(now, previous + 1));
+		long timestamp = state >>> 12;
+		long counter = state & MAX_COUNTER;
+
+		long mostSignificant = (timestamp << 16) | 0x7000L | counter;
+		long leastSignificant = (ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+		return new UUID(mostSignificant, leastSignificant);
+	}
+
+	@Override
+	public UUID generateUuid(SharedSessionContractImplementor session) {
+		return next();
+	}
+}
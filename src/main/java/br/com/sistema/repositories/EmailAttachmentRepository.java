@@ -0,0 +1,60 @@
+package br.com.sistema.repositories;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import br.com.sistema.models.EmailAttachmentModel;
+
+public interface EmailAttachmentRepository extends JpaRepository<EmailAttachmentModel, UUID> {
+
+	List<EmailAttachmentModel> findByEmailIdOrderByCreatedAt(UUID emailId);
+
+	// Anexos enviados e nunca vinculados a um email
+	List<EmailAttachmentModel> findByEmailIdIsNullAndCreatedAtBefore(LocalDateTime createdAt);
+
+	// Vincula ao email só os anexos ainda livres e retorna quantos foram vinculados. As linhas
+	// ficam bloqueadas até o commit, então outro email que as dispute encontra email_id preenchido
+	@Transactional
+	@Modifying
+	@Query("UPDATE EmailAttachmentModel a SET a.emailId = :emailId WHERE a.id IN :ids AND a.emailId IS NULL")
+	int claim(@Param("emailId") UUID emailId, @Param("ids") Collection<UUID> ids);
+
+	@Transactional
+	@Modifying
+	@Query("UPDATE EmailAttachmentModel a SET a.emailId = NULL WHERE a.emailId = :emailId")
+	int unclaim(@Param("emailId") UUID emailId);
+
+	// Conta mais uma referência ao arquivo do spool (criando a linha no primeiro upload do conteúdo).
+	// Espera a remoção concorrente do mesmo arquivo terminar, então o arquivo só é movido depois
+	@Transactional
+	@Modifying
+	@Query(value = "INSERT INTO tb_email_attachment_file (storage_path, size_bytes, ref_count, created_at) "
+			+ "VALUES (:path, :size, 1, now()) ON CONFLICT (storage_path) "
+			+ "DO UPDATE SET ref_count = tb_email_attachment_file.ref_count + 1", nativeQuery = true)
+	int retainFile(@Param("path") String storagePath, @Param("size") long sizeBytes);
+
+	// Referência contada para um anexo que não chegou a ser gravado; a remoção de uma linha de
+	// tb_email_attachment libera a sua pelo gatilho trg_email_attachment_release
+	@Transactional
+	@Modifying
+	@Query(value = "UPDATE tb_email_attachment_file SET ref_count = ref_count - 1 WHERE storage_path = :path",
+			nativeQuery = true)
+	int releaseFile(@Param("path") String storagePath);
+
+	@Query(value = "SELECT storage_path FROM tb_email_attachment_file WHERE ref_count <= 0", nativeQuery = true)
+	List<String> findUnreferencedFiles();
+
+	// Remove a linha só se continuar sem referência; o bloqueio dura até o arquivo ser apagado
+	@Modifying
+	@Query(value = "DELETE FROM tb_email_attachment_file WHERE storage_path = :path AND ref_count <= 0",
+			nativeQuery = true)
+	int deleteUnreferencedFile(@Param("path") String storagePath);
+}
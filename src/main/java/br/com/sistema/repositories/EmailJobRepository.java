@@ -0,0 +1,10 @@
+package br.com.sistema.repositories;
+
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import br.com.sistema.models.EmailJobModel;
+
+public interface EmailJobRepository extends JpaRepository<EmailJobModel, UUID> {
+}
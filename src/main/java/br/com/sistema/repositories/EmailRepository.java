@@ -1,9 +1,70 @@
 package br.com.sistema.repositories;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import br.com.sistema.enums.StatusEmail;
 import br.com.sistema.models.EmailModel;
 
-public interface EmailRepository extends JpaRepository<EmailModel, UUID> {
+public interface EmailRepository extends JpaRepository<EmailModel, UUID>, EmailRepositoryCustom {
+
+	long countByStatusEmailIn(Collection<StatusEmail> statuses);
+
+	// Progresso de um job de envio em massa: [StatusEmail, quantidade]
+	@Query("SELECT e.statusEmail, COUNT(e) FROM EmailModel e WHERE e.jobId = :jobId GROUP BY e.statusEmail")
+	List<Object[]> countByJobIdGroupByStatus(@Param("jobId") UUID jobId);
+
+	// Email já registrado com a chave de idempotência; tb_email_idempotency guarda a chave única,
+	// já que o índice único de uma tabela particionada precisaria incluir send_date_email
+	@Query(value = "SELECT email_id FROM tb_email_idempotency WHERE idempotency_key = :key", nativeQuery = true)
+	Optional<UUID> findIdByIdempotencyKey(@Param("key") String key);
+
+	// Liga a reserva a um email que não carrega a chave (resumo do Coolify)
+	@Transactional
+	@Modifying
+	@Query(value = "UPDATE tb_email_idempotency SET email_id = :emailId "
+			+ "WHERE idempotency_key = :key AND email_id IS NULL", nativeQuery = true)
+	int assignIdempotencyKey(@Param("key") String key, @Param("emailId") UUID emailId);
+
+	// Desfaz a reserva de um envio que falhou antes de registrar o email
+	@Transactional(propagation = Propagation.REQUIRES_NEW)
+	@Modifying
+	@Query(value = "DELETE FROM tb_email_idempotency WHERE idempotency_key = :key AND email_id IS NULL",
+			nativeQuery = true)
+	int releaseIdempotencyKey(@Param("key") String key);
+
+	// Linhas vencidas do outbox, da faixa mais alta para a mais baixa, na ordem de
+	// idx_email_outbox_due_rank (V15); SKIP LOCKED permite que várias instâncias drenem em paralelo
+	@Query(value = "SELECT * FROM tb_email "
+			+ "WHERE status_email IN ('PENDING', 'SENDING', 'RETRYING') AND next_attempt_at <= :now "
+			+ "ORDER BY priority_rank, next_attempt_at "
+			+ "LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+	List<EmailModel> findDueForUpdate(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+	// Reserva um email para envio somente se ainda estiver no status esperado
+	@Transactional
+	@Modifying
+	@Query("UPDATE EmailModel e SET e.statusEmail = :claimed, e.nextAttemptAt = :leaseUntil "
+			+ "WHERE e.id = :id AND e.statusEmail = :expected")
+	int claim(@Param("id") UUID id, @Param("expected") StatusEmail expected, @Param("claimed") StatusEmail claimed,
+			@Param("leaseUntil") LocalDateTime leaseUntil);
 
+	// Confirma, logo antes do envio, que a linha ainda é da reivindicação com este lease e o renova.
+	// Vencido o lease, outra drenagem pode tê-la reivindicado (com outro lease) e enviaria o mesmo email
+	@Transactional
+	@Modifying
+	@Query("UPDATE EmailModel e SET e.nextAttemptAt = :renewedUntil "
+			+ "WHERE e.id = :id AND e.statusEmail = :sending AND e.nextAttemptAt = :leaseUntil AND e.nextAttemptAt > :now")
+	int renewLease(@Param("id") UUID id, @Param("sending") StatusEmail sending, @Param("leaseUntil") LocalDateTime leaseUntil,
+			@Param("renewedUntil") LocalDateTime renewedUntil, @Param("now") LocalDateTime now);
 }
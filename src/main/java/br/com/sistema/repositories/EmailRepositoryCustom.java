@@ -0,0 +1,28 @@
+package br.com.sistema.repositories;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import br.com.sistema.dtos.EmailCursor;
+import br.com.sistema.dtos.EmailFilterDto;
+import br.com.sistema.dtos.EmailSearchDto;
+import br.com.sistema.dtos.EmailSummaryDto;
+
+public interface EmailRepositoryCustom {
+
+	// Listagem por keyset em (sendDateEmail DESC, id DESC), sem COUNT e sem carregar text/html
+	List<EmailSummaryDto> findSummaries(EmailFilterDto filter, EmailCursor after, int limit);
+
+	// Mesma ordem e cursor da listagem, com os filtros de texto usando os índices GIN (V11)
+	List<EmailSummaryDto> searchSummaries(EmailSearchDto search, EmailCursor after, int limit);
+
+	// Reserva as chaves num único insert, numa transação própria. Retorna as chaves que não
+	// puderam ser reservadas, com o email já registrado (null se o envio ainda está em andamento)
+	@Transactional(propagation = Propagation.REQUIRES_NEW)
+	Map<String, UUID> reserveIdempotencyKeys(Collection<String> keys, long timeoutMs);
+}
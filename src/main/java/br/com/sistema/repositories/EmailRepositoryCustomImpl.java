@@ -0,0 +1,158 @@
+package br.com.sistema.repositories;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import br.com.sistema.dtos.EmailCursor;
+import br.com.sistema.dtos.EmailFilterDto;
+import br.com.sistema.dtos.EmailSearchDto;
+import br.com.sistema.dtos.EmailSummaryDto;
+import br.com.sistema.enums.StatusEmail;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+public class EmailRepositoryCustomImpl implements EmailRepositoryCustom {
+
+	private static final String SELECT_SUMMARY = "SELECT new br.com.sistema.dtos.EmailSummaryDto("
+			+ "e.id, e.ownerRef, e.emailFrom, e.emailTo, e.subject, e.sendDateEmail, e.statusEmail, e.templateName, e.attemptCount) "
+			+ "FROM EmailModel e WHERE 1 = 1";
+
+	// O @@ do texto completo não existe em JPQL: a busca é SQL nativo com as mesmas colunas
+	private static final String SEARCH_SUMMARY = "SELECT id, owner_ref, email_from, email_to, subject, send_date_email, "
+			+ "status_email, template_name, attempt_count FROM tb_email WHERE 1 = 1";
+
+	// Uma reserva sem email há mais de timeoutMs, de uma instância que caiu no meio do envio,
+	// pode ser retomada. O SELECT final enxerga a tabela de antes do insert: as chaves que ele
+	// não reservou já existiam, com o email registrado ou ainda sem email (em andamento)
+	private static final String RESERVE_KEYS = "WITH requested AS ("
+			+ "SELECT DISTINCT unnest(CAST(? AS varchar[])) AS idempotency_key), "
+			+ "reserved AS (INSERT INTO tb_email_idempotency (idempotency_key) SELECT idempotency_key FROM requested "
+			+ "ON CONFLICT (idempotency_key) DO UPDATE SET reserved_at = now() "
+			+ "WHERE tb_email_idempotency.email_id IS NULL "
+			+ "AND tb_email_idempotency.reserved_at < now() - make_interval(secs => ? / 1000.0) "
+			+ "RETURNING idempotency_key) "
+			+ "SELECT r.idempotency_key, k.email_id FROM requested r "
+			+ "LEFT JOIN tb_email_idempotency k ON k.idempotency_key = r.idempotency_key "
+			+ "WHERE NOT EXISTS (SELECT 1 FROM reserved s WHERE s.idempotency_key = r.idempotency_key)";
+
+	private static final RowMapper<EmailSummaryDto> SUMMARY_MAPPER = (rs, rowNum) -> new EmailSummaryDto(
+			rs.getObject("id", UUID.class), rs.getString("owner_ref"), rs.getString("email_from"),
+			rs.getString("email_to"), rs.getString("subject"), rs.getTimestamp("send_date_email").toLocalDateTime(),
+			StatusEmail.valueOf(rs.getString("status_email")), rs.getString("template_name"), rs.getInt("attempt_count"));
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Autowired
+	private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+	@Override
+	public List<EmailSummaryDto> findSummaries(EmailFilterDto filter, EmailCursor after, int limit) {
+		// Só entram na query os filtros informados, para o planner usar o índice composto certo
+		StringBuilder jpql = new StringBuilder(SELECT_SUMMARY);
+		if (filter.status() != null) {
+			jpql.append(" AND e.statusEmail = :status");
+		}
+		if (filter.ownerRef() != null) {
+			jpql.append(" AND e.ownerRef = :ownerRef");
+		}
+		if (filter.from() != null) {
+			jpql.append(" AND e.sendDateEmail >= :from");
+		}
+		if (filter.to() != null) {
+			jpql.append(" AND e.sendDateEmail < :to");
+		}
+		if (after != null) {
+			jpql.append(" AND (e.sendDateEmail < :cursorDate OR (e.sendDateEmail = :cursorDate AND e.id < :cursorId))");
+		}
+		jpql.append(" ORDER BY e.sendDateEmail DESC, e.id DESC");
+
+		TypedQuery<EmailSummaryDto> query = entityManager.createQuery(jpql.toString(), EmailSummaryDto.class);
+		if (filter.status() != null) {
+			query.setParameter("status", filter.status());
+		}
+		if (filter.ownerRef() != null) {
+			query.setParameter("ownerRef", filter.ownerRef());
+		}
+		if (filter.from() != null) {
+			query.setParameter("from", filter.from());
+		}
+		if (filter.to() != null) {
+			query.setParameter("to", filter.to());
+		}
+		if (after != null) {
+			query.setParameter("cursorDate", after.sendDateEmail());
+			query.setParameter("cursorId", after.id());
+		}
+		return query.setMaxResults(limit).getResultList();
+	}
+
+
+
+	@Override
+	public List<EmailSummaryDto> searchSummaries(EmailSearchDto search, EmailCursor after, int limit) {
+		StringBuilder sql = new StringBuilder(SEARCH_SUMMARY);
+		MapSqlParameterSource parameters = new MapSqlParameterSource("limit", limit);
+		if (search.recipient() != null) {
+			// idx_email_to_trgm; os curingas digitados pelo usuário valem como texto
+			sql.append(" AND email_to ILIKE :recipient");
+			parameters.addValue("recipient", "%" + escapeLike(search.recipient()) + "%");
+		}
+		if (search.subject() != null) {
+			// idx_email_subject_fts; aceita a sintaxe de busca web: "frase exata", -termo, OR
+			sql.append(" AND to_tsvector('simple', subject) @@ websearch_to_tsquery('simple', :subject)");
+			parameters.addValue("subject", search.subject());
+		}
+		if (search.status() != null) {
+			sql.append(" AND status_email = :status");
+			parameters.addValue("status", search.status().name());
+		}
+		if (search.ownerRef() != null) {
+			sql.append(" AND owner_ref = :ownerRef");
+			parameters.addValue("ownerRef", search.ownerRef());
+		}
+		// O intervalo de datas também limita as partições lidas
+		if (search.from() != null) {
+			sql.append(" AND send_date_email >= :from");
+			parameters.addValue("from", Timestamp.valueOf(search.from()));
+		}
+		if (search.to() != null) {
+			sql.append(" AND send_date_email < :to");
+			parameters.addValue("to", Timestamp.valueOf(search.to()));
+		}
+		if (after != null) {
+			sql.append(" AND (send_date_email, id) < (:cursorDate, :cursorId)");
+			parameters.addValue("cursorDate", Timestamp.valueOf(after.sendDateEmail()));
+			parameters.addValue("cursorId", after.id());
+		}
+		sql.append(" ORDER BY send_date_email DESC, id DESC LIMIT :limit");
+		return namedParameterJdbcTemplate.query(sql.toString(), parameters, SUMMARY_MAPPER);
+	}
+
+	@Override
+	public Map<String, UUID> reserveIdempotencyKeys(Collection<String> keys, long timeoutMs) {
+		Map<String, UUID> taken = new HashMap<>();
+		if (keys.isEmpty()) {
+			return taken;
+		}
+		namedParameterJdbcTemplate.getJdbcTemplate().query(RESERVE_KEYS, rs -> {
+			taken.put(rs.getString("idempotency_key"), rs.getObject("email_id", UUID.class));
+		}, keys.toArray(String[]::new), timeoutMs);
+		return taken;
+	}
+
+	// ILIKE usa \ como escape padrão
+	static String escapeLike(String value) {
+		return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+	}
+}
@@ -0,0 +1,196 @@
+package br.com.sistema.services;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.HtmlUtils;
+
+import br.com.sistema.dtos.CoolifyWebhookDto;
+import br.com.sistema.models.EmailModel;
+import jakarta.annotation.PreDestroy;
+
+// Agrupa os deploys bem-sucedidos do Coolify por projeto/ambiente e envia um resumo por janela.
+// Falhas de deploy continuam sendo enviadas na hora
+@Service
+public class CoolifyDigestService {
+
+	Logger logger = LogManager.getLogger(CoolifyDigestService.class);
+
+	static final String DIGEST_TEMPLATE = "template-email-coolify-digest.html";
+
+	private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss");
+	private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+	@Autowired
+	EmailService emailService;
+
+	@Autowired
+	EmailIdempotencyService emailIdempotencyService;
+
+	// Presente quando email.spool.enabled: os resumos abertos ao desligar vão para o spool
+	@Autowired(required = false)
+	EmailSpoolService emailSpoolService;
+
+	@Value("${email.coolify.digest.enabled:true}")
+	private boolean enabled = true;
+
+	// Tempo entre o primeiro evento de um projeto/ambiente e o envio do resumo
+	@Value("${email.coolify.digest.window-ms:300000}")
+	private long windowMs = 300000;
+
+	// Envia o resumo antes do fim da janela ao atingir este número de eventos
+	@Value("${email.coolify.digest.max-events:50}")
+	private int maxEvents = 50;
+
+	@Value("${email.coolify.from:cesar.augusto.rj1@gmail.com}")
+	private String coolifyFrom = "cesar.augusto.rj1@gmail.com";
+
+	@Value("${email.coolify.to:cesar.augusto.rj1@gmail.com}")
+	private String coolifyTo = "cesar.augusto.rj1@gmail.com";
+
+	private final Map<DigestKey, DigestWindow> windows = new ConcurrentHashMap<>();
+
+	record DigestKey(String project, String environment) {
+	}
+
+	record DigestEvent(CoolifyWebhookDto webhook, String idempotencyKey, LocalDateTime receivedAt) {
+	}
+
+	static final class DigestWindow {
+		private final long openedAt = System.nanoTime();
+		private final List<DigestEvent> events = new ArrayList<>();
+	}
+
+	
+	
+	// ===========================================================================
+	// Indica se o evento entra no resumo; falhas e digest desligado seguem o envio imediato
+	// ===========================================================================
+	public boolean accepts(CoolifyWebhookDto coolifyWebhookDto) {
+		return enabled && Boolean.TRUE.equals(coolifyWebhookDto.success());
+	}
+
+	
+	
+	// ===========================================================================
+	// Adiciona o evento à janela do projeto/ambiente, abrindo uma nova se preciso.
+	// A chave de idempotência fica reservada até o resumo ser enviado
+	// ===========================================================================
+	public void add(CoolifyWebhookDto coolifyWebhookDto, String idempotencyKey) {
+		DigestKey key = new DigestKey(coolifyWebhookDto.project(), coolifyWebhookDto.environment());
+		DigestEvent event = new DigestEvent(coolifyWebhookDto, idempotencyKey, LocalDateTime.now());
+
+		// compute é atômico por chave: nenhum evento entra numa janela já removida para envio
+		DigestWindow window = windows.compute(key, (digestKey, current) -> {
+			DigestWindow target = current != null ? current : new DigestWindow();
+			target.events.add(event);
+			return target;
+		});
+		logger.info("Coolify event {} for {}/{} added to digest", coolifyWebhookDto.event(), key.project(),
+				key.environment());
+
+		if (window.events.size() >= maxEvents && windows.remove(key, window)) {
+			send(key, window, false);
+		}
+	}
+
+	
+	
+	// ===========================================================================
+	// Envia os resumos cujas janelas já fecharam
+	// ===========================================================================
+	@Scheduled(fixedDelayString = "${email.coolify.digest.poll-interval-ms:5000}")
+	public void flushDue() {
+		long now = System.nanoTime();
+		long windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+		windows.forEach((key, window) -> {
+			if (now - window.openedAt >= windowNanos && windows.remove(key, window)) {
+				send(key, window, false);
+			}
+		});
+	}
+
+	// Não perde eventos agrupados ao desligar a aplicação: com o spool, os resumos são
+	// gravados em disco e enviados depois, sem esperar o SMTP durante o shutdown
+	@PreDestroy
+	public void flushAll() {
+		windows.forEach((key, window) -> {
+			if (windows.remove(key, window)) {
+				send(key, window, emailSpoolService != null);
+			}
+		});
+	}
+
+	
+	
+	// ===========================================================================
+	// Um único evento sai no template normal; dois ou mais, no template de resumo
+	// ===========================================================================
+	private void send(DigestKey key, DigestWindow window, boolean spool) {
+		List<DigestEvent> events = window.events;
+		try {
+			EmailModel emailModel = events.size() == 1
+					? emailService.buildCoolifyEmail(events.get(0).webhook())
+					: buildDigestEmail(key, events);
+			EmailModel sent = spool ? emailSpoolService.append(emailModel) : emailService.sendEmail(emailModel);
+			events.forEach(event -> emailIdempotencyService.link(event.idempotencyKey(), sent.getId()));
+			logger.info("Coolify digest for {}/{} sent with {} events | emailId: {}", key.project(), key.environment(),
+					events.size(), sent.getId());
+		} catch (IOException | RuntimeException e) {
+			events.forEach(event -> emailIdempotencyService.release(event.idempotencyKey()));
+			logger.error("Failed to send Coolify digest for {}/{} with {} events: {}", key.project(), key.environment(),
+					events.size(), e.getMessage());
+		}
+	}
+
+	// Os valores do webhook entram no HTML da tabela: escapa apenas os caracteres de marcação
+	private static String escape(String value) {
+		return value != null ? HtmlUtils.htmlEscape(value, "UTF-8") : "";
+	}
+
+	EmailModel buildDigestEmail(DigestKey key, List<DigestEvent> events) throws IOException {
+		StringBuilder rows = new StringBuilder();
+		StringBuilder text = new StringBuilder();
+		for (DigestEvent event : events) {
+			CoolifyWebhookDto webhook = event.webhook();
+			rows.append("<tr><td>").append(event.receivedAt().format(TIME))
+					.append("</td><td>").append(escape(webhook.applicationName()))
+					.append("</td><td>").append(escape(webhook.event().replace("_", " ")))
+					.append("</td><td>").append(escape(webhook.message()))
+					.append("</td><td><a href=\"").append(escape(webhook.deploymentUrl()))
+					.append("\" target=\"_blank\">Ver</a></td></tr>\n");
+			text.append(String.format("%s | %s | %s | %s%n", event.receivedAt().format(TIME),
+					webhook.applicationName(), webhook.event(), webhook.deploymentUrl()));
+		}
+
+		Map<String, String> variables = new HashMap<>();
+		variables.put("project", escape(key.project()));
+		variables.put("environment", escape(key.environment()));
+		variables.put("total", String.valueOf(events.size()));
+		variables.put("window_start", events.get(0).receivedAt().format(DATE_TIME));
+		variables.put("window_end", events.get(events.size() - 1).receivedAt().format(DATE_TIME));
+		variables.put("rows", rows.toString());
+
+		EmailModel emailModel = new EmailModel();
+		emailModel.setOwnerRef("Coolify Webhook");
+		emailModel.setEmailFrom(coolifyFrom);
+		emailModel.setEmailTo(coolifyTo);
+		emailModel.setSubject(String.format("Resumo de deploys: %s/%s (%d)", key.project(), key.environment(), events.size()));
+		emailModel.setText(text.toString());
+		emailService.applyTemplate(emailModel, DIGEST_TEMPLATE, variables);
+		return emailModel;
+	}
+}
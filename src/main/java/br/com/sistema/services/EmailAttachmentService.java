@@ -0,0 +1,295 @@
+package br.com.sistema.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import br.com.sistema.attachments.FileChannelDataSource;
+import br.com.sistema.models.EmailAttachmentModel;
+import br.com.sistema.models.EmailModel;
+import br.com.sistema.repositories.EmailAttachmentRepository;
+import jakarta.activation.DataSource;
+
+// Anexos gravados no spool em disco, endereçados pelo SHA-256 (mesmo conteúdo, um só arquivo)
+@Service
+public class EmailAttachmentService {
+
+	Logger logger = LogManager.getLogger(EmailAttachmentService.class);
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+	@Autowired
+	EmailAttachmentRepository emailAttachmentRepository;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	private final Path spoolDir;
+
+	// Diretório de onde arquivos locais podem ser anexados por caminho (vazio = desabilitado)
+	private final Path localRoot;
+
+	private final long maxSizeBytes;
+
+	private final int maxPerEmail;
+
+	// Tempo até um anexo não vinculado a nenhum email ser removido
+	@Value("${email.attachments.orphan-ttl-ms:86400000}")
+	private long orphanTtlMs = 86400000;
+
+	public EmailAttachmentService(
+			@Value("${email.attachments.dir:${java.io.tmpdir}/ms-email-attachments}") String spoolDir,
+			@Value("${email.attachments.local-root:}") String localRoot,
+			@Value("${email.attachments.max-size-bytes:26214400}") long maxSizeBytes,
+			@Value("${email.attachments.max-per-email:10}") int maxPerEmail) throws IOException {
+		this.spoolDir = Files.createDirectories(Path.of(spoolDir).toAbsolutePath().normalize());
+		this.localRoot = localRoot.isBlank() ? null : Path.of(localRoot).toAbsolutePath().normalize();
+		this.maxSizeBytes = maxSizeBytes;
+		this.maxPerEmail = maxPerEmail;
+	}
+
+	
+	
+	// ===========================================================================
+	// Grava o conteúdo no spool em blocos, calculando tamanho e SHA-256 na mesma passada.
+	// O arquivo só aparece com o nome definitivo (o SHA-256) depois de completo; se o
+	// mesmo conteúdo já estiver no spool, a cópia é descartada e o arquivo reaproveitado
+	// ===========================================================================
+	public EmailAttachmentModel store(InputStream content, String fileName, String contentType) throws IOException {
+		UUID id = UUID.randomUUID();
+		Path partial = spoolDir.resolve(id + ".part");
+
+		MessageDigest digest = sha256();
+		long size = 0;
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		try (ReadableByteChannel source = Channels.newChannel(content);
+				FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+			while (source.read(buffer) >= 0) {
+				buffer.flip();
+				size += buffer.remaining();
+				if (size > maxSizeBytes) {
+					throw new IllegalArgumentException("Anexo excede o limite de " + maxSizeBytes + " bytes");
+				}
+				digest.update(buffer.array(), 0, buffer.limit());
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				buffer.clear();
+			}
+			channel.force(false);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(partial);
+			throw e;
+		}
+		String sha256 = HexFormat.of().formatHex(digest.digest());
+
+		// A referência é contada antes de o arquivo aparecer: a limpeza não remove um arquivo em uso
+		try {
+			emailAttachmentRepository.retainFile(sha256, size);
+		} catch (RuntimeException e) {
+			Files.deleteIfExists(partial);
+			throw e;
+		}
+		try {
+			Path target = spoolDir.resolve(sha256);
+			if (Files.exists(target)) {
+				Files.delete(partial);
+			} else {
+				Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+			}
+		} catch (IOException e) {
+			Files.deleteIfExists(partial);
+			emailAttachmentRepository.releaseFile(sha256);
+			throw e;
+		}
+
+		EmailAttachmentModel attachment = new EmailAttachmentModel();
+		attachment.setId(id);
+		attachment.setFileName(sanitizeFileName(fileName));
+		attachment.setContentType(contentType != null && !contentType.isBlank() ? contentType : DEFAULT_CONTENT_TYPE);
+		attachment.setSizeBytes(size);
+		attachment.setSha256(sha256);
+		attachment.setStoragePath(sha256);
+		attachment.setCreatedAt(LocalDateTime.now());
+		try {
+			attachment = emailAttachmentRepository.save(attachment);
+		} catch (RuntimeException e) {
+			// O arquivo pode ser de outros anexos: sem referência, sai pela limpeza
+			emailAttachmentRepository.releaseFile(sha256);
+			throw e;
+		}
+		logger.info("Attachment stored | id: {} | name: {} | size: {} bytes", id, attachment.getFileName(), size);
+		return attachment;
+	}
+
+	
+	
+	// ===========================================================================
+	// Anexa um arquivo local, restrito ao diretório email.attachments.local-root.
+	// O arquivo é copiado para o spool, então pode ser alterado ou removido depois
+	// ===========================================================================
+	public EmailAttachmentModel storeLocal(String relativePath) throws IOException {
+		if (localRoot == null) {
+			throw new IllegalArgumentException("Anexos por caminho local estão desabilitados (email.attachments.local-root)");
+		}
+		Path file = localRoot.resolve(relativePath).normalize();
+		if (!file.startsWith(localRoot) || !Files.isRegularFile(file)) {
+			throw new IllegalArgumentException("Arquivo não encontrado: " + relativePath);
+		}
+		// Um link simbólico dentro da raiz pode apontar para fora dela: vale o caminho real
+		file = file.toRealPath();
+		if (!file.startsWith(localRoot.toRealPath())) {
+			throw new IllegalArgumentException("Arquivo não encontrado: " + relativePath);
+		}
+		String contentType = Files.probeContentType(file);
+		try (InputStream content = Files.newInputStream(file, LinkOption.NOFOLLOW_LINKS)) {
+			return store(content, file.getFileName().toString(), contentType);
+		}
+	}
+
+	
+	
+	// ===========================================================================
+	// Confere os anexos informados para um email: devem existir e ainda não estar
+	// vinculados a outro email. Atualiza a contagem usada no envio
+	// ===========================================================================
+	public void validate(EmailModel emailModel) {
+		List<UUID> ids = emailModel.getAttachmentIds();
+		if (ids == null || ids.isEmpty()) {
+			emailModel.setAttachmentCount(0);
+			return;
+		}
+		if (new HashSet<>(ids).size() != ids.size() || ids.size() > maxPerEmail) {
+			throw new IllegalArgumentException("Informe até " + maxPerEmail + " anexos distintos");
+		}
+		List<EmailAttachmentModel> attachments = emailAttachmentRepository.findAllById(ids);
+		if (attachments.size() != ids.size()) {
+			throw new IllegalArgumentException("Anexo não encontrado");
+		}
+		if (attachments.stream().anyMatch(attachment -> attachment.getEmailId() != null)) {
+			throw new IllegalArgumentException("Anexo já vinculado a outro email");
+		}
+		emailModel.setAttachmentCount(ids.size());
+	}
+
+	// Vincula os anexos ao email na transação que o grava. Se outro email levou algum
+	// anexo depois do validate, desfaz o vínculo parcial e recusa o email
+	public void link(EmailModel emailModel) {
+		List<UUID> ids = emailModel.getAttachmentIds();
+		if (ids == null || ids.isEmpty() || emailModel.getId() == null) {
+			return;
+		}
+		if (emailAttachmentRepository.claim(emailModel.getId(), ids) != ids.size()) {
+			emailAttachmentRepository.unclaim(emailModel.getId());
+			throw new IllegalArgumentException("Anexo já vinculado a outro email");
+		}
+		emailModel.setAttachmentIds(null);
+	}
+
+	
+	
+	// ===========================================================================
+	// Anexos do email na ordem de envio: os ids informados (email ainda não
+	// persistido) ou os vinculados ao email
+	// ===========================================================================
+	public List<EmailAttachmentModel> findFor(EmailModel emailModel) {
+		List<UUID> ids = emailModel.getAttachmentIds();
+		if (ids != null && !ids.isEmpty()) {
+			List<EmailAttachmentModel> attachments = emailAttachmentRepository.findAllById(ids);
+			attachments.sort((a, b) -> Integer.compare(ids.indexOf(a.getId()), ids.indexOf(b.getId())));
+			return attachments;
+		}
+		return emailAttachmentRepository.findByEmailIdOrderByCreatedAt(emailModel.getId());
+	}
+
+	public DataSource open(EmailAttachmentModel attachment) {
+		return new FileChannelDataSource(spoolDir.resolve(attachment.getStoragePath()), attachment.getFileName(),
+				attachment.getContentType());
+	}
+
+	
+	
+	// ===========================================================================
+	// Remove anexos enviados que nunca foram usados por um email (o gatilho libera a
+	// referência ao arquivo) e depois os arquivos que ficaram sem nenhuma referência
+	// ===========================================================================
+	@Scheduled(fixedDelayString = "${email.attachments.purge-interval-ms:3600000}")
+	public void purgeOrphans() {
+		List<EmailAttachmentModel> orphans = emailAttachmentRepository
+				.findByEmailIdIsNullAndCreatedAtBefore(LocalDateTime.now().minusNanos(orphanTtlMs * 1_000_000));
+		emailAttachmentRepository.deleteAll(orphans);
+		if (!orphans.isEmpty()) {
+			logger.info("Removed {} orphan attachments", orphans.size());
+		}
+
+		int removed = 0;
+		for (String storagePath : emailAttachmentRepository.findUnreferencedFiles()) {
+			try {
+				// Linha e arquivo saem juntos; um upload do mesmo conteúdo espera o commit
+				removed += transactionTemplate.execute(status -> {
+					if (emailAttachmentRepository.deleteUnreferencedFile(storagePath) == 0) {
+						return 0;
+					}
+					try {
+						Files.deleteIfExists(spoolDir.resolve(storagePath));
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+					return 1;
+				});
+			} catch (UncheckedIOException e) {
+				logger.warn("Failed to remove attachment file {}: {}", storagePath, e.getMessage());
+			}
+		}
+		if (removed > 0) {
+			logger.info("Removed {} unreferenced attachment files", removed);
+		}
+	}
+
+	// Mantém só o nome do arquivo enviado pelo cliente (sem diretórios nem quebras de linha)
+	private static String sanitizeFileName(String fileName) {
+		if (fileName == null || fileName.isBlank()) {
+			return "anexo";
+		}
+		String name = fileName.replace('\\', '/');
+		name = name.substring(name.lastIndexOf('/') + 1).replaceAll("[\\r\\n\"]", "_").trim();
+		if (name.isEmpty()) {
+			return "anexo";
+		}
+		return name.length() > 255 ? name.substring(name.length() - 255) : name;
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 indisponível", e);
+		}
+	}
+}
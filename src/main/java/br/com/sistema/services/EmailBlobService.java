@@ -0,0 +1,238 @@
+package br.com.sistema.services;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import br.com.sistema.models.EmailModel;
+
+// Corpos dos emails por conteúdo: cada corpo distinto fica uma vez em tb_email_blob, com contador
+@Service
+public class EmailBlobService {
+
+	Logger logger = LogManager.getLogger(EmailBlobService.class);
+
+	private static final String INCREMENT = "UPDATE tb_email_blob SET ref_count = ref_count + ? WHERE sha256 = ?";
+
+	private static final String UPSERT = "INSERT INTO tb_email_blob (sha256, content, compressed, size_bytes, ref_count, created_at) "
+			+ "VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT (sha256) DO UPDATE SET ref_count = tb_email_blob.ref_count + EXCLUDED.ref_count";
+
+	private static final String SELECT = "SELECT sha256, content, compressed FROM tb_email_blob WHERE sha256 = ANY (?)";
+
+	private static final String DELETE_UNREFERENCED = "DELETE FROM tb_email_blob WHERE ref_count <= 0 AND created_at < ?";
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	// Corpos a partir deste tamanho são gravados com gzip (se ficarem menores)
+	@Value("${email.blob.compress-min-bytes:4096}")
+	private int compressMinBytes = 4096;
+
+	// Blobs sem referência são mantidos por este tempo antes de serem removidos
+	@Value("${email.blob.unreferenced-ttl-ms:3600000}")
+	private long unreferencedTtlMs = 3600000;
+
+	// Conteúdos recentes por hash: evitam o SELECT no envio e indicam quais blobs já existem
+	private final Cache<String, String> contents;
+
+	private record PendingBlob(String content, long references) {
+	}
+
+	public EmailBlobService(@Value("${email.blob.cache.max-chars:16777216}") long maxChars) {
+		this.contents = Caffeine.newBuilder()
+				.maximumWeight(maxChars)
+				.weigher((String hash, String content) -> content.length())
+				.build();
+	}
+
+	
+	
+	// ===========================================================================
+	// Grava os corpos ainda não referenciados do email e guarda no modelo os hashes
+	// ===========================================================================
+	public void retain(Collection<EmailModel> emailModels) {
+		List<String> bodies = new ArrayList<>(emailModels.size() * 2);
+		for (EmailModel emailModel : emailModels) {
+			bodies.add(emailModel.getTextSha256() == null ? emailModel.getText() : null);
+			bodies.add(emailModel.getHtmlSha256() == null ? emailModel.getHtml() : null);
+		}
+		List<String> hashes = retainContents(bodies);
+
+		int i = 0;
+		for (EmailModel emailModel : emailModels) {
+			String textHash = hashes.get(i++);
+			String htmlHash = hashes.get(i++);
+			if (textHash != null) {
+				emailModel.setTextSha256(textHash);
+			}
+			if (htmlHash != null) {
+				emailModel.setHtmlSha256(htmlHash);
+			}
+		}
+	}
+
+	
+	
+	// ===========================================================================
+	// Adiciona uma referência para cada conteúdo e devolve os hashes na mesma ordem
+	// (null para conteúdo null). Deve rodar na transação que grava os emails
+	// ===========================================================================
+	public List<String> retainContents(List<String> bodies) {
+		List<String> hashes = new ArrayList<>(bodies.size());
+		// Ordenado pelo hash: transações concorrentes bloqueiam as linhas sempre na mesma ordem
+		Map<String, PendingBlob> pending = new TreeMap<>();
+		for (String body : bodies) {
+			if (body == null) {
+				hashes.add(null);
+				continue;
+			}
+			String hash = sha256(body);
+			hashes.add(hash);
+			pending.merge(hash, new PendingBlob(body, 1),
+					(current, added) -> new PendingBlob(current.content(), current.references() + 1));
+		}
+		if (pending.isEmpty()) {
+			return hashes;
+		}
+
+		// Conteúdo já conhecido: só incrementa o contador, sem reenviar os bytes
+		List<String> known = pending.keySet().stream().filter(hash -> contents.getIfPresent(hash) != null).toList();
+		Set<String> missing = new HashSet<>(pending.keySet());
+		if (!known.isEmpty()) {
+			int[][] updated = jdbcTemplate.batchUpdate(INCREMENT, known, known.size(), (ps, hash) -> {
+				ps.setLong(1, pending.get(hash).references());
+				ps.setString(2, hash);
+			});
+			for (int j = 0; j < known.size(); j++) {
+				if (updated[0][j] > 0) {
+					missing.remove(known.get(j));
+				}
+			}
+		}
+
+		List<String> inserts = pending.keySet().stream().filter(missing::contains).toList();
+		if (!inserts.isEmpty()) {
+			Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+			jdbcTemplate.batchUpdate(UPSERT, inserts, inserts.size(), (ps, hash) -> {
+				byte[] raw = pending.get(hash).content().getBytes(StandardCharsets.UTF_8);
+				byte[] stored = compress(raw);
+				ps.setString(1, hash);
+				ps.setBytes(2, stored);
+				ps.setBoolean(3, stored != raw);
+				ps.setInt(4, raw.length);
+				ps.setLong(5, pending.get(hash).references());
+				ps.setTimestamp(6, now);
+			});
+		}
+		pending.forEach((hash, blob) -> contents.put(hash, blob.content()));
+		return hashes;
+	}
+
+	
+	
+	// ===========================================================================
+	// Preenche text e html dos emails carregados do banco, com uma consulta para os
+	// hashes que não estão no cache
+	// ===========================================================================
+	public void load(Collection<EmailModel> emailModels) {
+		Set<String> misses = new HashSet<>();
+		for (EmailModel emailModel : emailModels) {
+			if (emailModel.getText() == null && emailModel.getTextSha256() != null
+					&& contents.getIfPresent(emailModel.getTextSha256()) == null) {
+				misses.add(emailModel.getTextSha256());
+			}
+			if (emailModel.getHtml() == null && emailModel.getHtmlSha256() != null
+					&& contents.getIfPresent(emailModel.getHtmlSha256()) == null) {
+				misses.add(emailModel.getHtmlSha256());
+			}
+		}
+		if (!misses.isEmpty()) {
+			jdbcTemplate.query(SELECT, rs -> {
+				byte[] stored = rs.getBytes("content");
+				byte[] raw = rs.getBoolean("compressed") ? decompress(stored) : stored;
+				contents.put(rs.getString("sha256"), new String(raw, StandardCharsets.UTF_8));
+			}, (Object) misses.toArray(String[]::new));
+		}
+
+		for (EmailModel emailModel : emailModels) {
+			if (emailModel.getText() == null && emailModel.getTextSha256() != null) {
+				emailModel.setText(contents.getIfPresent(emailModel.getTextSha256()));
+			}
+			if (emailModel.getHtml() == null && emailModel.getHtmlSha256() != null) {
+				emailModel.setHtml(contents.getIfPresent(emailModel.getHtmlSha256()));
+			}
+		}
+	}
+
+	
+	
+	// ===========================================================================
+	// Remove os blobs que ficaram sem referência (emails apagados)
+	// ===========================================================================
+	@Scheduled(fixedDelayString = "${email.blob.purge-interval-ms:3600000}")
+	public void purgeUnreferenced() {
+		int removed = jdbcTemplate.update(DELETE_UNREFERENCED,
+				Timestamp.valueOf(LocalDateTime.now().minusNanos(unreferencedTtlMs * 1_000_000)));
+		if (removed > 0) {
+			logger.info("Removed {} unreferenced email blobs", removed);
+		}
+	}
+
+	public static String sha256(String content) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+			return HexFormat.of().formatHex(digest);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 indisponível", e);
+		}
+	}
+
+	// Devolve o próprio array quando a compressão não compensa
+	private byte[] compress(byte[] raw) {
+		if (raw.length < compressMinBytes) {
+			return raw;
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(raw);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return out.size() < raw.length ? out.toByteArray() : raw;
+	}
+
+	private static byte[] decompress(byte[] stored) {
+		try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(stored))) {
+			return gzip.readAllBytes();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,502 @@
+package br.com.sistema.services;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.sistema.dtos.BulkRecipientDto;
+import br.com.sistema.dtos.EmailDto;
+import br.com.sistema.dtos.EmailJobDto;
+import br.com.sistema.enums.EmailJobStatus;
+import br.com.sistema.enums.EmailPriority;
+import br.com.sistema.enums.StatusEmail;
+import br.com.sistema.imports.CsvReader;
+import br.com.sistema.metrics.EmailMetrics;
+import br.com.sistema.models.EmailJobModel;
+import br.com.sistema.models.EmailModel;
+import br.com.sistema.models.UuidV7;
+import br.com.sistema.repositories.EmailJobRepository;
+import br.com.sistema.repositories.EmailRepository;
+import br.com.sistema.templates.CompiledTemplate;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+// Envio em massa: lê os destinatários em streaming, grava em lotes como PENDING e publica os ids;
+// se a publicação falhar, o outbox envia depois de email.bulk.outbox-grace-ms
+@Service
+public class EmailBulkService {
+
+	Logger logger = LogManager.getLogger(EmailBulkService.class);
+
+	private static final int MAX_ERROR_LENGTH = 1000;
+
+	// Quantidade de linhas rejeitadas registradas no log por job
+	private static final int MAX_LOGGED_REJECTIONS = 10;
+
+	private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
+	private static final List<String> CSV_COLUMNS = List.of("ownerRef", "emailFrom", "emailTo", "subject", "text");
+
+	private static final String INSERT_EMAIL = "INSERT INTO tb_email (id, job_id, owner_ref, email_from, email_to, subject, text_sha256, "
+			+ "send_date_email, status_email, attempt_count, next_attempt_at, priority) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 0, ?, ?)";
+
+	@Autowired
+	EmailRepository emailRepository;
+
+	@Autowired
+	EmailJobRepository emailJobRepository;
+
+	@Autowired
+	EmailService emailService;
+
+	@Autowired
+	private EmailTemplateService emailTemplateService;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private EmailBlobService emailBlobService;
+
+	@Autowired
+	private RabbitTemplate rabbitTemplate;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private Validator validator;
+
+	@Autowired(required = false)
+	private EmailMetrics emailMetrics = EmailMetrics.noop();
+
+	@Value("${spring.mail.username}")
+	private String emailFrom;
+
+	@Value("${email.dispatch.queue}")
+	private String dispatchQueue;
+
+	// Destinatários persistidos por transação (e publicados em seguida)
+	@Value("${email.bulk.batch-size:500}")
+	private int batchSize = 500;
+
+	@Value("${email.bulk.max-recipients:50000}")
+	private int maxRecipients = 50_000;
+
+	@Value("${email.import.max-rows:1000000}")
+	private int maxImportRows = 1_000_000;
+
+	// Atraso até o outbox assumir emails do job que a fila de despacho ainda não consumiu
+	@Value("${email.bulk.outbox-grace-ms:600000}")
+	private long outboxGraceMs = 600_000;
+
+	private record BulkHeader(String ownerRef, String emailFrom, CompiledTemplate subject, CompiledTemplate text,
+			String templateName) {
+	}
+
+	// Linhas de um arquivo de importação (CSV ou NDJSON), lidas uma por vez
+	private interface RowSource extends Closeable {
+		EmailDto next() throws IOException;
+
+		long line();
+	}
+
+	
+	
+	// ===========================================================================
+	// Lê o JSON em streaming, cria o job e enfileira os destinatários em lotes
+	// ===========================================================================
+	public EmailJobDto submit(InputStream body) throws IOException {
+		try (JsonParser parser = objectMapper.createParser(body)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new IllegalArgumentException("O corpo deve ser um objeto JSON");
+			}
+
+			Map<String, String> fields = new HashMap<>();
+			EmailJobModel job = null;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.currentName();
+				JsonToken value = parser.nextToken();
+				if ("recipients".equals(field)) {
+					if (job != null) {
+						throw new IllegalArgumentException("O campo recipients deve aparecer uma única vez");
+					}
+					BulkHeader header = parseHeader(fields);
+					job = createJob(header.ownerRef(), header.templateName(), header.subject().getSource());
+					readRecipients(parser, value, header, job);
+				} else if (value.isScalarValue()) {
+					fields.put(field, parser.getValueAsString());
+				} else {
+					parser.skipChildren();
+				}
+			}
+
+			if (job == null) {
+				throw new IllegalArgumentException("O campo recipients é obrigatório");
+			}
+			return toDto(job);
+		}
+	}
+
+	private BulkHeader parseHeader(Map<String, String> fields) {
+		String ownerRef = fields.get("ownerRef");
+		String subject = fields.get("subject");
+		String templateName = fields.get("templateName");
+		if (isBlank(ownerRef) || isBlank(subject) || isBlank(templateName)) {
+			throw new IllegalArgumentException("ownerRef, subject e templateName são obrigatórios e devem vir antes de recipients");
+		}
+
+		// Falha antes de criar o job se o template não existir
+		try {
+			emailTemplateService.getCompiledTemplate(templateName);
+		} catch (IOException e) {
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+
+		String from = isBlank(fields.get("emailFrom")) ? emailFrom : fields.get("emailFrom");
+		String text = fields.getOrDefault("text", "");
+		return new BulkHeader(ownerRef, from, CompiledTemplate.compile(null, subject),
+				CompiledTemplate.compile(null, text != null ? text : ""), templateName);
+	}
+
+	private EmailJobModel createJob(String ownerRef, String templateName, String subject) {
+		EmailJobModel job = new EmailJobModel();
+		job.setOwnerRef(ownerRef);
+		job.setTemplateName(templateName);
+		job.setSubject(subject);
+		job.setStatus(EmailJobStatus.RECEIVING);
+		job.setCreatedAt(LocalDateTime.now());
+		job = emailJobRepository.save(job);
+		logger.info("Bulk job created | jobId: {} | template: {}", job.getId(), templateName);
+		return job;
+	}
+
+	
+	
+	// ===========================================================================
+	// Lê o array de destinatários um a um; nunca mantém mais que um lote em memória
+	// ===========================================================================
+	private void readRecipients(JsonParser parser, JsonToken start, BulkHeader header, EmailJobModel job) throws IOException {
+		if (start != JsonToken.START_ARRAY) {
+			throw new IllegalArgumentException("O campo recipients deve ser um array");
+		}
+
+		List<EmailModel> chunk = new ArrayList<>(Math.min(batchSize, 1024));
+		try {
+			while (parser.nextToken() == JsonToken.START_OBJECT) {
+				BulkRecipientDto recipient = parser.readValueAs(BulkRecipientDto.class);
+				if (!validator.validate(recipient).isEmpty()) {
+					job.setRejectedRecipients(job.getRejectedRecipients() + 1);
+					continue;
+				}
+				chunk.add(buildEmail(header, recipient, job));
+				if (job.getTotalRecipients() + chunk.size() > maxRecipients) {
+					throw new IllegalArgumentException("Limite de " + maxRecipients + " destinatários por job excedido");
+				}
+				if (chunk.size() >= batchSize) {
+					flush(job, chunk);
+				}
+			}
+			if (parser.currentToken() != JsonToken.END_ARRAY) {
+				throw new IllegalArgumentException("Cada destinatário deve ser um objeto JSON");
+			}
+			flush(job, chunk);
+			markQueued(job);
+
+		} catch (IOException | RuntimeException e) {
+			fail(job, e);
+		}
+	}
+
+	private EmailModel buildEmail(BulkHeader header, BulkRecipientDto recipient, EmailJobModel job) throws IOException {
+		Map<String, String> variables = recipient.variables() != null ? recipient.variables() : Map.of();
+		LocalDateTime now = LocalDateTime.now();
+
+		EmailModel emailModel = new EmailModel();
+		emailModel.setJobId(job.getId());
+		emailModel.setOwnerRef(header.ownerRef());
+		emailModel.setEmailFrom(header.emailFrom());
+		emailModel.setEmailTo(recipient.emailTo());
+		emailModel.setSubject(header.subject().render(variables));
+		emailModel.setText(header.text().render(variables));
+		emailModel.setStatusEmail(StatusEmail.PENDING);
+		emailModel.setSendDateEmail(now);
+		emailModel.setNextAttemptAt(now.plusNanos(outboxGraceMs * 1_000_000));
+		emailModel.setPriority(EmailPriority.LOW);
+		emailService.applyTemplate(emailModel, header.templateName(), variables);
+		return emailModel;
+	}
+
+	
+	
+	// ===========================================================================
+	// Persiste o lote e o progresso do job na mesma transação e publica os ids
+	// ===========================================================================
+	private void flush(EmailJobModel job, List<EmailModel> chunk) {
+		if (chunk.isEmpty()) {
+			return;
+		}
+		job.setTotalRecipients(job.getTotalRecipients() + chunk.size());
+		List<EmailModel> saved = emailMetrics.timeDbSave("bulk", () -> transactionTemplate.execute(status -> {
+			emailJobRepository.save(job);
+			emailService.prepareForPersistence(chunk);
+			return emailRepository.saveAll(chunk);
+		}));
+		emailMetrics.countReceived("bulk", saved.size());
+		publish(job, saved.stream().map(EmailModel::getId).toList());
+		chunk.clear();
+	}
+
+	
+	
+	// ===========================================================================
+	// Importa emails de um arquivo CSV (com cabeçalho) ou NDJSON, validando cada
+	// linha com as mesmas regras do EmailDto e gravando em lotes JDBC
+	// ===========================================================================
+	public EmailJobDto importEmails(InputStream body, MediaType contentType) throws IOException {
+		Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+		try (RowSource rows = TEXT_CSV.isCompatibleWith(contentType) ? csvRows(body, charset) : ndjsonRows(body)) {
+			EmailJobModel job = createJob(null, null, null);
+			List<EmailDto> chunk = new ArrayList<>(Math.min(batchSize, 1024));
+			try {
+				EmailDto row;
+				while ((row = rows.next()) != null) {
+					Set<ConstraintViolation<EmailDto>> violations = validator.validate(row);
+					if (!violations.isEmpty()) {
+						reject(job, rows.line(), violations);
+						continue;
+					}
+					chunk.add(row);
+					if (job.getTotalRecipients() + chunk.size() > maxImportRows) {
+						throw new IllegalArgumentException("Limite de " + maxImportRows + " linhas por importação excedido");
+					}
+					if (chunk.size() >= batchSize) {
+						insert(job, chunk);
+					}
+				}
+				insert(job, chunk);
+				markQueued(job);
+
+			} catch (IOException | RuntimeException e) {
+				fail(job, e);
+			}
+			return toDto(job);
+		}
+	}
+
+	private RowSource csvRows(InputStream body, Charset charset) throws IOException {
+		CsvReader csv = new CsvReader(new BufferedReader(new InputStreamReader(body, charset)));
+		List<String> header = csv.next();
+		if (header == null) {
+			throw new IllegalArgumentException("Arquivo CSV vazio");
+		}
+
+		Map<String, Integer> columns = new HashMap<>();
+		for (int i = 0; i < header.size(); i++) {
+			columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+		}
+		int[] indexes = new int[CSV_COLUMNS.size()];
+		for (int i = 0; i < indexes.length; i++) {
+			Integer index = columns.get(CSV_COLUMNS.get(i).toLowerCase(Locale.ROOT));
+			if (index == null) {
+				throw new IllegalArgumentException("O cabeçalho do CSV deve conter as colunas " + CSV_COLUMNS);
+			}
+			indexes[i] = index;
+		}
+
+		return new RowSource() {
+			@Override
+			public EmailDto next() throws IOException {
+				List<String> record = csv.next();
+				if (record == null) {
+					return null;
+				}
+				EmailDto emailDto = new EmailDto();
+				emailDto.setOwnerRef(column(record, indexes[0]));
+				emailDto.setEmailFrom(column(record, indexes[1]));
+				emailDto.setEmailTo(column(record, indexes[2]));
+				emailDto.setSubject(column(record, indexes[3]));
+				emailDto.setText(column(record, indexes[4]));
+				return emailDto;
+			}
+
+			@Override
+			public long line() {
+				return csv.getRecordLine();
+			}
+
+			@Override
+			public void close() throws IOException {
+				csv.close();
+			}
+		};
+	}
+
+	private static String column(List<String> record, int index) {
+		return index < record.size() ? record.get(index) : null;
+	}
+
+	private RowSource ndjsonRows(InputStream body) throws IOException {
+		MappingIterator<EmailDto> iterator = objectMapper.readerFor(EmailDto.class).readValues(body);
+		return new RowSource() {
+			@Override
+			public EmailDto next() throws IOException {
+				return iterator.hasNextValue() ? iterator.nextValue() : null;
+			}
+
+			@Override
+			public long line() {
+				return iterator.getCurrentLocation().getLineNr();
+			}
+
+			@Override
+			public void close() throws IOException {
+				iterator.close();
+			}
+		};
+	}
+
+	private void reject(EmailJobModel job, long line, Set<ConstraintViolation<EmailDto>> violations) {
+		job.setRejectedRecipients(job.getRejectedRecipients() + 1);
+		if (job.getRejectedRecipients() <= MAX_LOGGED_REJECTIONS) {
+			ConstraintViolation<EmailDto> violation = violations.iterator().next();
+			logger.warn("Import job {} rejected line {}: {} {}", job.getId(), line, violation.getPropertyPath(),
+					violation.getMessage());
+		}
+	}
+
+	
+	
+	// ===========================================================================
+	// Grava o lote com um único batch JDBC, sem passar pelo contexto de persistência
+	// ===========================================================================
+	private void insert(EmailJobModel job, List<EmailDto> chunk) {
+		if (chunk.isEmpty()) {
+			return;
+		}
+		LocalDateTime now = LocalDateTime.now();
+		LocalDateTime nextAttemptAt = now.plusNanos(outboxGraceMs * 1_000_000);
+		List<UUID> ids = new ArrayList<>(chunk.size());
+
+		job.setTotalRecipients(job.getTotalRecipients() + chunk.size());
+		emailMetrics.timeDbSave("import", () -> transactionTemplate.execute(status -> {
+			emailJobRepository.save(job);
+			// Textos repetidos entre as linhas são gravados uma única vez em tb_email_blob
+			List<String> textHashes = emailBlobService.retainContents(chunk.stream().map(EmailDto::getText).toList());
+			List<Object[]> batch = new ArrayList<>(chunk.size());
+			for (int i = 0; i < chunk.size(); i++) {
+				EmailDto row = chunk.get(i);
+				UUID id = UuidV7.next();
+				ids.add(id);
+				batch.add(new Object[] { id, job.getId(), row.getOwnerRef(), row.getEmailFrom(), row.getEmailTo(),
+						row.getSubject(), textHashes.get(i), now, StatusEmail.PENDING.name(), nextAttemptAt,
+						EmailPriority.LOW.name() });
+			}
+			return jdbcTemplate.batchUpdate(INSERT_EMAIL, batch);
+		}));
+		emailMetrics.countReceived("import", chunk.size());
+		publish(job, ids);
+		chunk.clear();
+	}
+
+	
+	
+	// ===========================================================================
+	// Publica os ids na fila de despacho; em caso de falha o outbox assume o envio
+	// ===========================================================================
+	private void publish(EmailJobModel job, List<UUID> ids) {
+		try {
+			for (UUID id : ids) {
+				rabbitTemplate.convertAndSend(dispatchQueue, id);
+			}
+		} catch (AmqpException e) {
+			logger.warn("Could not publish bulk job {} to {}, the outbox will deliver it: {}", job.getId(),
+					dispatchQueue, e.getMessage());
+		}
+	}
+
+	private void markQueued(EmailJobModel job) {
+		job.setStatus(EmailJobStatus.QUEUED);
+		job.setQueuedAt(LocalDateTime.now());
+		emailJobRepository.save(job);
+		logger.info("Bulk job queued | jobId: {} | recipients: {} | rejected: {}", job.getId(),
+				job.getTotalRecipients(), job.getRejectedRecipients());
+	}
+
+	// Os lotes já persistidos seguem para envio; o job registra onde a leitura parou
+	private void fail(EmailJobModel job, Exception e) throws IOException {
+		job.setStatus(EmailJobStatus.FAILED);
+		job.setLastError(truncate(e.getMessage()));
+		emailJobRepository.save(job);
+		logger.error("Bulk job {} failed after {} recipients: {}", job.getId(), job.getTotalRecipients(), e.getMessage());
+		if (e instanceof JsonProcessingException || e instanceof CsvReader.MalformedCsvException) {
+			throw new IllegalArgumentException("Conteúdo inválido (job " + job.getId() + "): " + e.getMessage(), e);
+		}
+		if (e instanceof IOException ioException) {
+			throw ioException;
+		}
+		throw (RuntimeException) e;
+	}
+
+	
+	
+	// ===========================================================================
+	// Consulta o job com a contagem de emails por status
+	// ===========================================================================
+	public Optional<EmailJobDto> findJob(UUID jobId) {
+		return emailJobRepository.findById(jobId).map(this::toDto);
+	}
+
+	private EmailJobDto toDto(EmailJobModel job) {
+		Map<StatusEmail, Long> progress = new EnumMap<>(StatusEmail.class);
+		for (Object[] row : emailRepository.countByJobIdGroupByStatus(job.getId())) {
+			progress.put((StatusEmail) row[0], (Long) row[1]);
+		}
+		return EmailJobDto.of(job, progress);
+	}
+
+	private static boolean isBlank(String value) {
+		return value == null || value.isBlank();
+	}
+
+	private static String truncate(String message) {
+		if (message == null || message.length() <= MAX_ERROR_LENGTH) {
+			return message;
+		}
+		return message.substring(0, MAX_ERROR_LENGTH);
+	}
+}
@@ -0,0 +1,196 @@
+package br.com.sistema.services;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import br.com.sistema.enums.StatusEmail;
+import br.com.sistema.logging.EmailLogContext;
+import br.com.sistema.metrics.EmailMetrics;
+import br.com.sistema.models.EmailModel;
+import br.com.sistema.repositories.EmailRepository;
+
+@Service
+public class EmailDispatchService {
+
+	Logger logger = LogManager.getLogger(EmailDispatchService.class);
+
+	@Autowired
+	EmailRepository emailRepository;
+
+	@Autowired
+	EmailService emailService;
+
+	@Autowired
+	@Qualifier("emailDispatchExecutor")
+	private TaskExecutor emailDispatchExecutor;
+
+	@Autowired
+	private EmailRetryPolicy retryPolicy;
+
+	@Autowired
+	private EmailMetrics emailMetrics;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	// Presente quando email.spool.enabled
+	@Autowired(required = false)
+	private EmailSpoolService emailSpoolService;
+
+	// Atraso até o outbox assumir um email aceito que o pool ainda não enviou
+	@Value("${email.outbox.accept-grace-ms:30000}")
+	private long acceptGraceMs;
+
+	// sync: envia na thread da requisição | async: registra como PENDING e envia em background
+	// spool: grava no spool local e responde; o email entra no banco e na fila em lotes
+	@Value("${email.dispatch.mode:sync}")
+	private String dispatchMode;
+
+	
+	
+	// ===========================================================================
+	// Indica se os endpoints devem aceitar o email e enviá-lo em background
+	// ===========================================================================
+	public boolean isAsync() {
+		return "async".equalsIgnoreCase(dispatchMode) || isSpool();
+	}
+
+	public boolean isSpool() {
+		return "spool".equalsIgnoreCase(dispatchMode) && canSpool();
+	}
+
+	public boolean canSpool() {
+		return emailSpoolService != null;
+	}
+
+	
+	
+	// ===========================================================================
+	// Persiste o email como PENDING e agenda o envio SMTP no pool de despacho
+	// ===========================================================================
+	public EmailModel accept(EmailModel emailModel) {
+		if (isSpool()) {
+			return spool(emailModel);
+		}
+		LocalDateTime now = LocalDateTime.now();
+		emailModel.setStatusEmail(StatusEmail.PENDING);
+		emailModel.setSendDateEmail(now);
+		emailModel.setNextAttemptAt(now.plusNanos(acceptGraceMs * 1_000_000));
+
+		// Email e anexos na mesma transação: um anexo tomado por outro email desfaz o insert
+		EmailModel accepted;
+		try {
+			accepted = transactionTemplate.execute(status -> {
+				EmailModel toSave = emailService.prepareForPersistence(emailModel);
+				EmailModel saved = emailMetrics.timeDbSave("accept", () -> emailRepository.save(toSave));
+				emailService.linkAttachments(saved);
+				return saved;
+			});
+		} catch (TransientDataAccessException | DataAccessResourceFailureException | CannotCreateTransactionException e) {
+			return spoolOrThrow(emailModel, e);
+		}
+		logger.info("Email accepted for dispatch | emailId: {}", accepted.getId());
+
+		UUID id = accepted.getId();
+		try {
+			emailDispatchExecutor.execute(() -> dispatch(id));
+		} catch (TaskRejectedException e) {
+			if (retryPolicy.isEnabled()) {
+				logger.warn("Dispatch pool saturated, email {} left for the outbox", id);
+			} else {
+				dispatch(id);
+			}
+		}
+		return accepted;
+	}
+
+	
+	
+	// ===========================================================================
+	// Grava o email como PENDING só no spool, sem passar pelo banco: modo spool, ou
+	// chave de idempotência que não pôde ser reservada com o banco fora do ar
+	// ===========================================================================
+	public EmailModel spool(EmailModel emailModel) {
+		if (emailSpoolService == null) {
+			throw new IllegalStateException("Spool local desabilitado (email.spool.enabled=false)");
+		}
+		emailModel.setStatusEmail(StatusEmail.PENDING);
+		emailModel.setSendDateEmail(LocalDateTime.now());
+		return emailSpoolService.append(emailModel);
+	}
+
+	
+	
+	// ===========================================================================
+	// Envia na thread da requisição. Se o banco estiver fora do ar ao registrar o
+	// resultado, o email (já com o status do envio) vai para o spool e não é
+	// reenviado. Erros de dados, como a chave de idempotência duplicada, sobem
+	// ===========================================================================
+	public EmailModel send(EmailModel emailModel) {
+		try {
+			return emailService.sendEmail(emailModel);
+		} catch (TransientDataAccessException | DataAccessResourceFailureException | CannotCreateTransactionException e) {
+			return spoolOrThrow(emailModel, e);
+		}
+	}
+
+	// Lote do consumidor do RabbitMQ: o SMTP roda antes do saveAll, então com o banco fora
+	// do ar os emails vão para o spool com o status de cada envio, em vez de voltarem à fila
+	// e serem reenviados. Os que não chegaram ao SMTP ficam PENDING e seguem pela fila de despacho
+	public List<EmailModel> sendAll(List<EmailModel> emailModels) {
+		try {
+			return emailService.sendEmails(emailModels);
+		} catch (TransientDataAccessException | DataAccessResourceFailureException | CannotCreateTransactionException e) {
+			if (emailSpoolService == null) {
+				throw e;
+			}
+			logger.warn("Database unavailable, batch of {} emails written to the local spool: {}", emailModels.size(),
+					e.getMessage());
+			return emailModels.stream().map(emailSpoolService::append).toList();
+		}
+	}
+
+	// Só falhas transitórias (conexão, timeout) vão para o spool: um registro recusado
+	// pelo banco seria recusado de novo no replay
+	private EmailModel spoolOrThrow(EmailModel emailModel, RuntimeException e) {
+		if (emailSpoolService == null) {
+			throw e;
+		}
+		logger.warn("Database unavailable, email to: {} written to the local spool: {}", emailModel.getEmailTo(),
+				e.getMessage());
+		return emailSpoolService.append(emailModel);
+	}
+
+	
+	
+	// ===========================================================================
+	// Reserva um email PENDING já persistido, envia e atualiza o seu status.
+	// Se o outbox já o reservou, o despacho é ignorado para não enviar em dobro.
+	// ===========================================================================
+	public void dispatch(UUID id) {
+		String previousEmailId = EmailLogContext.putEmailId(id);
+		try {
+			if (emailRepository.claim(id, StatusEmail.PENDING, StatusEmail.SENDING, retryPolicy.leaseUntil()) == 0) {
+				logger.debug("Email {} already claimed, skipping dispatch", id);
+				return;
+			}
+			emailRepository.findById(id).ifPresent(emailService::sendEmail);
+		} finally {
+			EmailLogContext.restoreEmailId(previousEmailId);
+		}
+	}
+}
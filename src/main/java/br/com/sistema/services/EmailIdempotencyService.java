@@ -0,0 +1,217 @@
+package br.com.sistema.services;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import br.com.sistema.dtos.CoolifyWebhookDto;
+import br.com.sistema.repositories.EmailRepository;
+
+// Reserva a chave de idempotência em tb_email_idempotency antes do envio; o insert do email a completa.
+// No modo spool, ou com o banco fora do ar, a reserva é só local
+@Service
+public class EmailIdempotencyService {
+
+	Logger logger = LogManager.getLogger(EmailIdempotencyService.class);
+
+	public static final String HEADER = "Idempotency-Key";
+
+	// Chave reservada por um envio ainda em andamento (o email ainda não tem id)
+	public static final UUID IN_PROGRESS = new UUID(0L, 0L);
+
+	private static final int MAX_KEY_LENGTH = 255;
+
+	@Autowired
+	EmailRepository emailRepository;
+
+	private final Cache<String, UUID> keys;
+
+	// Reserva sem email há mais tempo que isso é de um envio abandonado e pode ser retomada
+	@Value("${email.idempotency.reservation-timeout-ms:900000}")
+	private long reservationTimeoutMs = 900000;
+
+	public EmailIdempotencyService(
+			@Value("${email.idempotency.cache.max-size:100000}") long maxSize,
+			@Value("${email.idempotency.cache.ttl-ms:86400000}") long ttlMillis) {
+		this.keys = Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(Duration.ofMillis(ttlMillis))
+				.build();
+	}
+
+	
+	
+	// ===========================================================================
+	// Monta a chave com a origem (http, amqp, coolify); chaves longas viram SHA-256
+	// ===========================================================================
+	public static String key(String source, String value) {
+		if (value == null || value.isBlank()) {
+			return null;
+		}
+		String key = source + ":" + value.trim();
+		if (key.length() <= MAX_KEY_LENGTH) {
+			return key;
+		}
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.trim().getBytes(StandardCharsets.UTF_8));
+			return source + ":sha256:" + HexFormat.of().formatHex(digest);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// O Coolify reenvia o mesmo webhook: um email por deployment, evento e resultado
+	public static String key(CoolifyWebhookDto coolifyWebhookDto) {
+		return key("coolify", coolifyWebhookDto.deploymentUuid() + ":" + coolifyWebhookDto.event() + ":"
+				+ coolifyWebhookDto.success());
+	}
+
+	
+	
+	// ===========================================================================
+	// Reserva a chave antes de montar e enviar o email. Retorna vazio se o envio
+	// pode seguir, ou o id do email já registrado (IN_PROGRESS se ainda em andamento)
+	// ===========================================================================
+	public Optional<UUID> reserve(String key) {
+		if (key == null) {
+			return Optional.empty();
+		}
+		return Optional.ofNullable(reserveAll(List.of(key)).get(key));
+	}
+
+	// ===========================================================================
+	// Reserva as chaves de um lote com uma única ida ao banco. Retorna só as chaves
+	// que não podem seguir, com o id do email já registrado (ou IN_PROGRESS)
+	// ===========================================================================
+	public Map<String, UUID> reserveAll(Collection<String> batchKeys) {
+		Map<String, UUID> taken = new HashMap<>();
+		List<String> pending = new ArrayList<>();
+		for (String key : new LinkedHashSet<>(batchKeys)) {
+			if (key == null) {
+				continue;
+			}
+			UUID existing = keys.asMap().putIfAbsent(key, IN_PROGRESS);
+			if (existing != null) {
+				taken.put(key, existing);
+			} else {
+				pending.add(key);
+			}
+		}
+		if (pending.isEmpty()) {
+			return taken;
+		}
+
+		// Primeira vez nesta instância: as reservas são gravadas antes do envio
+		Map<String, UUID> persisted;
+		try {
+			persisted = emailRepository.reserveIdempotencyKeys(pending, reservationTimeoutMs);
+		} catch (RuntimeException e) {
+			pending.forEach(key -> keys.asMap().remove(key, IN_PROGRESS));
+			throw e;
+		}
+
+		// Chave gravada antes do restart, ou reservada por outra instância que ainda está enviando
+		persisted.forEach((key, emailId) -> {
+			if (emailId != null) {
+				keys.put(key, emailId);
+				taken.put(key, emailId);
+			} else {
+				keys.asMap().remove(key, IN_PROGRESS);
+				taken.put(key, IN_PROGRESS);
+			}
+		});
+		return taken;
+	}
+
+	// ===========================================================================
+	// Reserva a chave só nesta instância, sem ir ao banco: o email segue para o
+	// spool e a reserva em tb_email_idempotency é feita pelo replay, antes do insert
+	// ===========================================================================
+	public Optional<UUID> reserveLocally(String key) {
+		if (key == null) {
+			return Optional.empty();
+		}
+		return Optional.ofNullable(keys.asMap().putIfAbsent(key, IN_PROGRESS));
+	}
+
+	// Envio registrado: reentregas passam a receber este email
+	public void complete(String key, UUID emailId) {
+		if (key != null && emailId != null) {
+			keys.put(key, emailId);
+		}
+	}
+
+	// Email que não carrega a chave (resumo do Coolify): o insert não completa a reserva
+	public void link(String key, UUID emailId) {
+		if (key == null || emailId == null) {
+			return;
+		}
+		try {
+			emailRepository.assignIdempotencyKey(key, emailId);
+		} catch (DataAccessException e) {
+			logger.warn("Could not link idempotency key {} to email {}, the reservation expires in {} ms: {}", key,
+					emailId, reservationTimeoutMs, e.getMessage());
+		}
+		keys.put(key, emailId);
+	}
+
+	// Falha antes de persistir: libera a chave para uma nova tentativa
+	public void release(String key) {
+		if (key == null || !keys.asMap().remove(key, IN_PROGRESS)) {
+			return;
+		}
+		try {
+			emailRepository.releaseIdempotencyKey(key);
+		} catch (DataAccessException e) {
+			logger.warn("Could not release idempotency key {}, the reservation expires in {} ms: {}", key,
+					reservationTimeoutMs, e.getMessage());
+		}
+	}
+
+	// Reserva local que não chegou ao spool: não há linha no banco para liberar
+	public void releaseLocally(String key) {
+		if (key != null) {
+			keys.asMap().remove(key, IN_PROGRESS);
+		}
+	}
+
+	
+	
+	// ===========================================================================
+	// Após violar o índice único (outra instância gravou a mesma chave), retorna o
+	// email existente; vazio se a violação não foi causada pela chave
+	// ===========================================================================
+	public Optional<UUID> resolveConflict(String key) {
+		if (key == null) {
+			return Optional.empty();
+		}
+		Optional<UUID> persisted = emailRepository.findIdByIdempotencyKey(key);
+		if (persisted.isPresent()) {
+			keys.put(key, persisted.get());
+			logger.info("Duplicate email for idempotency key {} already stored by another instance", key);
+		} else {
+			release(key);
+		}
+		return persisted;
+	}
+}
@@ -0,0 +1,133 @@
+package br.com.sistema.services;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import br.com.sistema.enums.StatusEmail;
+import br.com.sistema.models.EmailModel;
+import br.com.sistema.repositories.EmailRepository;
+
+@Service
+@ConditionalOnProperty(name = "email.outbox.enabled", havingValue = "true", matchIfMissing = true)
+public class EmailOutboxService {
+
+	Logger logger = LogManager.getLogger(EmailOutboxService.class);
+
+	@Autowired
+	EmailRepository emailRepository;
+
+	@Autowired
+	EmailService emailService;
+
+	@Autowired
+	private EmailRetryPolicy retryPolicy;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	@Qualifier("emailDispatchExecutor")
+	private TaskExecutor emailDispatchExecutor;
+
+	@Value("${email.outbox.batch-size:50}")
+	private int batchSize;
+
+	// Envios do outbox entregues ao executor e ainda não concluídos
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	
+	
+	// ===========================================================================
+	// Drena o outbox: reserva lotes de linhas vencidas e envia no pool de despacho.
+	// Cada lote cabe nas vagas livres do pool, para nenhuma linha esperar na fila
+	// além do lease
+	// ===========================================================================
+	@Scheduled(fixedDelayString = "${email.outbox.poll-interval-ms:5000}")
+	public void drain() {
+		List<EmailModel> claimed;
+		int limit;
+		do {
+			limit = Math.min(batchSize, freeCapacity());
+			if (limit <= 0) {
+				return;
+			}
+			claimed = claimDue(limit);
+			for (EmailModel emailModel : claimed) {
+				inFlight.incrementAndGet();
+				try {
+					emailDispatchExecutor.execute(() -> {
+						try {
+							send(emailModel);
+						} finally {
+							inFlight.decrementAndGet();
+						}
+					});
+				} catch (TaskRejectedException e) {
+					// Pool saturado: envia na própria thread do agendador, o que também freia a drenagem
+					inFlight.decrementAndGet();
+					send(emailModel);
+				}
+			}
+			if (!claimed.isEmpty()) {
+				logger.info("Outbox claimed {} emails for delivery", claimed.size());
+			}
+		} while (claimed.size() == limit);
+	}
+
+	// Threads livres do pool de plataforma (a fila não conta) ou vagas do limite de virtual threads
+	int freeCapacity() {
+		if (emailDispatchExecutor instanceof ThreadPoolTaskExecutor pool) {
+			return pool.getMaxPoolSize() - pool.getActiveCount() - pool.getThreadPoolExecutor().getQueue().size();
+		}
+		if (emailDispatchExecutor instanceof SimpleAsyncTaskExecutor executor && executor.isThrottleActive()) {
+			return executor.getConcurrencyLimit() - inFlight.get();
+		}
+		return batchSize;
+	}
+
+	// Só envia se a reivindicação ainda vale; o lease é renovado para o envio que começa agora
+	private void send(EmailModel emailModel) {
+		LocalDateTime renewedUntil = retryPolicy.leaseUntil().truncatedTo(ChronoUnit.MICROS);
+		if (emailRepository.renewLease(emailModel.getId(), StatusEmail.SENDING, emailModel.getNextAttemptAt(),
+				renewedUntil, LocalDateTime.now()) == 0) {
+			logger.warn("Outbox lease of email {} expired before sending, skipped", emailModel.getId());
+			return;
+		}
+		emailModel.setNextAttemptAt(renewedUntil);
+		emailService.sendEmail(emailModel);
+	}
+
+	
+	
+	// ===========================================================================
+	// Reserva as linhas vencidas com SELECT ... FOR UPDATE SKIP LOCKED. O lease vai
+	// em microssegundos, a precisão do TIMESTAMP, para ser comparado no envio
+	// ===========================================================================
+	List<EmailModel> claimDue(int limit) {
+		return transactionTemplate.execute(status -> {
+			List<EmailModel> due = emailRepository.findDueForUpdate(LocalDateTime.now(), limit);
+			LocalDateTime leaseUntil = retryPolicy.leaseUntil().truncatedTo(ChronoUnit.MICROS);
+			for (EmailModel emailModel : due) {
+				emailModel.setStatusEmail(StatusEmail.SENDING);
+				emailModel.setNextAttemptAt(leaseUntil);
+			}
+			return due;
+		});
+	}
+}
@@ -0,0 +1,203 @@
+package br.com.sistema.services;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+
+// Cria as partições mensais de tb_email à frente e apaga as que saíram da retenção, com o que só
+// os seus emails usavam. Sem partição DEFAULT, a inicialização exige o horizonte mínimo
+@Service
+public class EmailPartitionService implements MeterBinder {
+
+	Logger logger = LogManager.getLogger(EmailPartitionService.class);
+
+	private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+	// Limites de cada partição no formato de pg_get_expr: FOR VALUES FROM ('...') TO ('...')
+	private static final Pattern BOUNDS = Pattern.compile("FROM \\((?:'([^']+)'|MINVALUE)\\) TO \\('([^']+)'\\)");
+
+	private static final String SELECT_PARTITIONS = "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) "
+			+ "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = 'tb_email'::regclass";
+
+	// Os corpos voltam ao contador uma vez por referência; os sem referência saem pela limpeza de blobs
+	private static final String RELEASE_BLOBS = "UPDATE tb_email_blob b SET ref_count = b.ref_count - r.refs "
+			+ "FROM (SELECT sha256, COUNT(*) AS refs FROM ("
+			+ "SELECT text_sha256 AS sha256 FROM %1$s UNION ALL SELECT html_sha256 FROM %1$s"
+			+ ") bodies WHERE sha256 IS NOT NULL GROUP BY sha256) r WHERE b.sha256 = r.sha256";
+
+	private static final String RELEASE_IDEMPOTENCY_KEYS = "DELETE FROM tb_email_idempotency k USING %s e "
+			+ "WHERE k.idempotency_key = e.idempotency_key AND k.email_id = e.id";
+
+	private static final String RELEASE_ATTACHMENTS = "UPDATE tb_email_attachment SET email_id = NULL "
+			+ "WHERE email_id IN (SELECT id FROM %s)";
+
+	record Partition(String name, LocalDate from, LocalDate to) {
+	}
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	// false: não cria nem apaga partições (feito por fora), mas o horizonte continua verificado
+	@Value("${email.partitions.enabled:true}")
+	private boolean enabled = true;
+
+	// Meses criados à frente do mês corrente
+	@Value("${email.partitions.premake-months:3}")
+	private int premakeMonths = 3;
+
+	// Mínimo de meses cobertos depois do corrente para a aplicação subir
+	@Value("${email.partitions.min-horizon-months:1}")
+	private int minHorizonMonths = 1;
+
+	// Meses mantidos antes do mês corrente (0 = nunca apaga)
+	@Value("${email.partitions.retention-months:0}")
+	private int retentionMonths = 0;
+
+
+
+	// Meses cobertos depois do corrente na última verificação (-1 = mês corrente sem partição)
+	private volatile int horizonMonths = -1;
+
+	
+	
+	// ===========================================================================
+	// Na inicialização: recusa subir se os inserts dos próximos meses não tiverem
+	// partição, em vez de falhar só quando o mês virar
+	// ===========================================================================
+	@PostConstruct
+	public void verifyHorizon() {
+		maintain();
+		if (horizonMonths < minHorizonMonths) {
+			throw new IllegalStateException("tb_email partitions cover " + horizonMonths + " months after "
+					+ YearMonth.now() + ", below email.partitions.min-horizon-months=" + minHorizonMonths
+					+ "; create the missing partitions or enable email.partitions.enabled");
+		}
+	}
+
+	
+	
+	// ===========================================================================
+	// Roda a cada intervalo depois da inicialização
+	// ===========================================================================
+	@Scheduled(initialDelayString = "${email.partitions.check-interval-ms:3600000}",
+			fixedDelayString = "${email.partitions.check-interval-ms:3600000}")
+	public void maintain() {
+		YearMonth current = YearMonth.now();
+		try {
+			List<Partition> partitions = partitions();
+			if (enabled) {
+				createAhead(current, partitions);
+				if (retentionMonths > 0) {
+					dropBefore(current.minusMonths(retentionMonths).atDay(1));
+				}
+			}
+			horizonMonths = horizon(current, partitions);
+		} catch (DataAccessException e) {
+			logger.error("Email partition maintenance failed: {}", e.getMessage());
+		}
+		if (horizonMonths < minHorizonMonths) {
+			logger.error("Email partitions cover only {} months after {} (minimum {}): inserts fail once the horizon ends",
+					horizonMonths, current, minHorizonMonths);
+		}
+	}
+
+	private void createAhead(YearMonth current, List<Partition> partitions) {
+		for (int i = 0; i <= premakeMonths; i++) {
+			YearMonth month = current.plusMonths(i);
+			LocalDate from = month.atDay(1);
+			// O mês pode já estar coberto, ex. pela partição tb_email_legacy criada na migração
+			if (covered(partitions, from)) {
+				continue;
+			}
+			LocalDate to = month.plusMonths(1).atDay(1);
+			String name = "tb_email_" + month.format(PARTITION_SUFFIX);
+			jdbcTemplate.execute(String.format(
+					"CREATE TABLE IF NOT EXISTS %s PARTITION OF tb_email FOR VALUES FROM ('%s') TO ('%s')", name, from, to));
+			partitions.add(new Partition(name, from, to));
+			logger.info("Created email partition {} [{} - {})", name, from, to);
+		}
+	}
+
+	private static boolean covered(List<Partition> partitions, LocalDate day) {
+		return partitions.stream()
+				.anyMatch(partition -> (partition.from() == null || !partition.from().isAfter(day)) && partition.to().isAfter(day));
+	}
+
+	// Meses seguidos cobertos depois do corrente; -1 se nem o mês corrente estiver coberto
+	static int horizon(YearMonth current, List<Partition> partitions) {
+		int months = -1;
+		YearMonth month = current;
+		while (covered(partitions, month.atDay(1)) && covered(partitions, month.atEndOfMonth())) {
+			months++;
+			month = month.plusMonths(1);
+		}
+		return months;
+	}
+
+	
+	
+	// ===========================================================================
+	// Apaga as partições que terminam até o limite, liberando o que os emails referenciam
+	// ===========================================================================
+	private void dropBefore(LocalDate limit) {
+		for (Partition partition : partitions()) {
+			if (partition.to().isAfter(limit)) {
+				continue;
+			}
+			transactionTemplate.executeWithoutResult(status -> {
+				jdbcTemplate.update(String.format(RELEASE_BLOBS, partition.name()));
+				jdbcTemplate.update(String.format(RELEASE_IDEMPOTENCY_KEYS, partition.name()));
+				jdbcTemplate.update(String.format(RELEASE_ATTACHMENTS, partition.name()));
+				jdbcTemplate.execute("DROP TABLE " + partition.name());
+			});
+			logger.info("Dropped email partition {} (until {})", partition.name(), partition.to());
+		}
+	}
+
+	List<Partition> partitions() {
+		List<Partition> partitions = new ArrayList<>();
+		jdbcTemplate.query(SELECT_PARTITIONS, rs -> {
+			Matcher matcher = BOUNDS.matcher(rs.getString(2));
+			if (matcher.find()) {
+				partitions.add(new Partition(rs.getString(1), date(matcher.group(1)), date(matcher.group(2))));
+			}
+		});
+		return partitions;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("email.partitions.horizon", this, service -> service.horizonMonths)
+				.description("Meses depois do corrente com partição de tb_email (-1 = mês corrente sem partição)")
+				.baseUnit("months")
+				.register(registry);
+	}
+
+	// Os limites vêm como timestamp ('2026-11-01 00:00:00'); as partições sempre começam à meia-noite
+	private static LocalDate date(String bound) {
+		return bound != null ? LocalDateTime.parse(bound.replace(' ', 'T')).toLocalDate() : null;
+	}
+}
@@ -0,0 +1,118 @@
+package br.com.sistema.services;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.stereotype.Component;
+
+import br.com.sistema.enums.StatusEmail;
+import br.com.sistema.models.EmailModel;
+import jakarta.mail.SendFailedException;
+
+// Destino de um envio com falha: RETRYING com backoff exponencial ou DEAD
+@Component
+public class EmailRetryPolicy {
+
+	private static final int MAX_ERROR_LENGTH = 1000;
+
+	@Value("${email.outbox.enabled:true}")
+	private boolean enabled = true;
+
+	@Value("${email.outbox.max-attempts:8}")
+	private int maxAttempts = 8;
+
+	@Value("${email.outbox.backoff.initial-ms:30000}")
+	private long initialBackoffMs = 30_000;
+
+	@Value("${email.outbox.backoff.max-ms:3600000}")
+	private long maxBackoffMs = 3_600_000;
+
+	// Fração aleatória aplicada ao atraso para evitar que as retentativas se alinhem
+	@Value("${email.outbox.backoff.jitter:0.2}")
+	private double jitter = 0.2;
+
+	// Tempo que uma linha fica reservada (SENDING) antes de poder ser reivindicada de novo
+	@Value("${email.outbox.lease-ms:300000}")
+	private long leaseMs = 300_000;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public LocalDateTime leaseUntil() {
+		return LocalDateTime.now().plusNanos(leaseMs * 1_000_000);
+	}
+
+	
+	
+	// ===========================================================================
+	// Registra a falha no EmailModel e agenda a próxima tentativa quando cabível
+	// ===========================================================================
+	public void onFailure(EmailModel emailModel, Exception failure) {
+		emailModel.setAttemptCount(emailModel.getAttemptCount() + 1);
+		emailModel.setLastError(truncate(failure.getMessage()));
+
+		if (!enabled) {
+			emailModel.setStatusEmail(StatusEmail.ERROR);
+			emailModel.setNextAttemptAt(null);
+		} else if (isPermanent(failure) || emailModel.getAttemptCount() >= maxAttempts) {
+			emailModel.setStatusEmail(StatusEmail.DEAD);
+			emailModel.setNextAttemptAt(null);
+		} else {
+			emailModel.setStatusEmail(StatusEmail.RETRYING);
+			emailModel.setNextAttemptAt(LocalDateTime.now().plusNanos(backoffMs(emailModel.getAttemptCount()) * 1_000_000));
+		}
+	}
+
+	// Sem vaga no limitador de envio: reagenda sem contar como tentativa
+	public void onThrottled(EmailModel emailModel, long delayNanos) {
+		emailModel.setStatusEmail(StatusEmail.RETRYING);
+		emailModel.setNextAttemptAt(LocalDateTime.now().plusNanos(delayNanos));
+	}
+
+	public void onSuccess(EmailModel emailModel) {
+		emailModel.setStatusEmail(StatusEmail.SENT);
+		emailModel.setNextAttemptAt(null);
+		emailModel.setLastError(null);
+	}
+
+	long backoffMs(int attempt) {
+		long delay = initialBackoffMs << Math.min(attempt - 1, 30);
+		if (delay <= 0 || delay > maxBackoffMs) {
+			delay = maxBackoffMs;
+		}
+		double factor = 1 + (jitter > 0 ? ThreadLocalRandom.current().nextDouble(-jitter, jitter) : 0);
+		return Math.max(0, Math.round(delay * factor));
+	}
+
+	
+	
+	// ===========================================================================
+	// Falhas de montagem da mensagem ou destinatários recusados não melhoram com o tempo
+	// ===========================================================================
+	private boolean isPermanent(Exception failure) {
+		if (failure instanceof MailParseException || failure instanceof MailPreparationException) {
+			return true;
+		}
+		Throwable cause = failure;
+		if (failure instanceof MailSendException mailSendException && !mailSendException.getFailedMessages().isEmpty()) {
+			cause = mailSendException.getFailedMessages().values().iterator().next();
+		}
+		if (cause instanceof SendFailedException sendFailed) {
+			return sendFailed.getInvalidAddresses() != null && sendFailed.getInvalidAddresses().length > 0
+					&& (sendFailed.getValidSentAddresses() == null || sendFailed.getValidSentAddresses().length == 0);
+		}
+		return false;
+	}
+
+	private String truncate(String message) {
+		if (message == null || message.length() <= MAX_ERROR_LENGTH) {
+			return message;
+		}
+		return message.substring(0, MAX_ERROR_LENGTH);
+	}
+}
@@ -2,36 +2,61 @@ package br.com.sistema.services;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.mail.MailException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import br.com.sistema.dtos.CoolifyWebhookDto;
+import br.com.sistema.dtos.EmailCursor;
+import br.com.sistema.dtos.EmailCursorPageDto;
+import br.com.sistema.dtos.EmailFilterDto;
+import br.com.sistema.dtos.EmailSearchDto;
+import br.com.sistema.dtos.EmailSummaryDto;
 import br.com.sistema.dtos.PortfolioEmailDto;
+import br.com.sistema.enums.EmailPriority;
 import br.com.sistema.enums.StatusEmail;
+import br.com.sistema.logging.EmailLogContext;
+import br.com.sistema.mail.RoutingJavaMailSender;
+import br.com.sistema.mail.SmtpPriorityGate;
+import br.com.sistema.mail.SmtpRateLimiter;
+import br.com.sistema.mail.SmtpThrottledException;
+import br.com.sistema.metrics.EmailMetrics;
+import br.com.sistema.models.EmailAttachmentModel;
 import br.com.sistema.models.EmailModel;
 import br.com.sistema.repositories.EmailRepository;
+import br.com.sistema.templates.CompiledTemplate;
+import io.micrometer.core.instrument.Timer;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
-import jakarta.transaction.Transactional;
 
 @Service
 public class EmailService {
 
 	Logger logger = LogManager.getLogger(EmailService.class);
 
+	private static final int MAX_PAGE_SIZE = 100;
+
 	@Autowired
 	EmailRepository emailRepository;
 
@@ -41,46 +66,109 @@ public class EmailService {
 	@Autowired
 	private EmailTemplateService emailTemplateService;
 
+	@Autowired
+	private EmailRetryPolicy retryPolicy;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired(required = false)
+	private EmailMetrics emailMetrics = EmailMetrics.noop();
+
+	@Autowired(required = false)
+	private EmailAttachmentService emailAttachmentService;
+
+	@Autowired(required = false)
+	private EmailBlobService emailBlobService;
+
+	@Autowired(required = false)
+	private SmtpRateLimiter rateLimiter = SmtpRateLimiter.unlimited();
+
+	@Autowired(required = false)
+	private SmtpPriorityGate priorityGate = SmtpPriorityGate.unlimited();
+
 	@Value("${spring.mail.username}")
 	private String emailFrom;
 
+	// Espera máxima por uma vaga no limitador antes de adiar o envio para o outbox
+	@Value("${email.rate-limit.max-wait-ms:2000}")
+	private long rateLimitMaxWaitMs = 2000;
+
+	// Remetente e destinatário das notificações de deploy do Coolify
+	@Value("${email.coolify.from:cesar.augusto.rj1@gmail.com}")
+	private String coolifyFrom = "cesar.augusto.rj1@gmail.com";
+
+	@Value("${email.coolify.to:cesar.augusto.rj1@gmail.com}")
+	private String coolifyTo = "cesar.augusto.rj1@gmail.com";
+
+	// false: emails gerados por template guardam só nome, versão e variáveis; o HTML é reconstruído sob demanda
+	@Value("${email.persistence.store-html:true}")
+	private boolean storeHtml = true;
+
+	// Busca por texto sem data inicial fica restrita a esse período (partições mais recentes)
+	@Value("${email.search.default-window-days:90}")
+	private int searchDefaultWindowDays = 90;
+
+	// Trecho mínimo do destinatário: com menos de 3 caracteres não há trigrama para o índice
+	private static final int MIN_RECIPIENT_LENGTH = 3;
+
 	
 	
 	// ===========================================================================
-	// Envia um email genérico
+	// Envia um email genérico. O emailId fica no contexto de log durante o envio
+	// (emails novos só o recebem ao serem salvos). O SMTP roda fora de transação:
+	// o resultado é gravado numa transação curta depois do envio
 	// ===========================================================================
-	@Transactional
 	public EmailModel sendEmail(EmailModel emailModel) {
+		String previousEmailId = EmailLogContext.putEmailId(emailModel.getId());
+		try {
+			return sendAndSave(emailModel);
+		} finally {
+			EmailLogContext.restoreEmailId(previousEmailId);
+		}
+	}
 
-		emailModel.setSendDateEmail(LocalDateTime.now());
+	private EmailModel sendAndSave(EmailModel emailModel) {
 
-		try {
-			MimeMessage mimeMessage = emailSender.createMimeMessage();
-			MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+		// Data de entrada do email: fixa entre as tentativas, pois é a chave de partição de tb_email
+		if (emailModel.getSendDateEmail() == null) {
+			emailModel.setSendDateEmail(LocalDateTime.now());
+		}
 
-			helper.setFrom(emailModel.getEmailFrom());
-			helper.setTo(emailModel.getEmailTo());
-			helper.setSubject(emailModel.getSubject());
+		emailModel = claimAttachments(emailModel);
 
-			// Se tiver HTML, envia como HTML, senão envia como texto simples
-			if (emailModel.getHtml() != null && !emailModel.getHtml().isEmpty()) {
-				helper.setText(emailModel.getText(), emailModel.getHtml());
+		try {
+			if (!awaitSendSlot(emailModel, TimeUnit.MILLISECONDS.toNanos(rateLimitMaxWaitMs))) {
+				logger.info("Email to: {} deferred by rate limit until {}", emailModel.getEmailTo(), emailModel.getNextAttemptAt());
 			} else {
-				helper.setText(emailModel.getText(), false);
+				MimeMessage mimeMessage = buildMimeMessage(emailModel);
+				timedSend(emailModel.getPriority(), 1, () -> emailSender.send(mimeMessage));
+				retryPolicy.onSuccess(emailModel);
+				logger.debug("Email sent successfully to: {} with subject: {}", emailModel.getEmailTo(),
+						emailModel.getSubject());
 			}
 
-			emailSender.send(mimeMessage);
-			emailModel.setStatusEmail(StatusEmail.SENT);
-			logger.info("Email sent successfully to: {} with subject: {}", emailModel.getEmailTo(),
-					emailModel.getSubject());
+		} catch (SmtpThrottledException e) {
+			onThrottled(emailModel, e);
+
+		} catch (MailException e) {
+			retryPolicy.onFailure(emailModel, e);
+			logger.error("Failed to send email to: {} | Subject: {} | Status: {} | Error: {}", emailModel.getEmailTo(),
+					emailModel.getSubject(), emailModel.getStatusEmail(), e.getMessage());
 
-		} catch (MailException | MessagingException e) {
-			emailModel.setStatusEmail(StatusEmail.ERROR);
-			logger.error("Failed to send email to: {} | Subject: {} | Error: {}", emailModel.getEmailTo(),
+		} catch (MessagingException e) {
+			retryPolicy.onFailure(emailModel, new MailPreparationException(e));
+			logger.error("Failed to build email to: {} | Subject: {} | Error: {}", emailModel.getEmailTo(),
 					emailModel.getSubject(), e.getMessage());
 
 		} finally {
-			emailModel = emailRepository.save(emailModel);
+			EmailModel toSave = emailModel;
+			emailModel = transactionTemplate.execute(status -> {
+				prepareForPersistence(toSave);
+				return emailMetrics.timeDbSave("save", () -> emailRepository.save(toSave));
+			});
+			emailMetrics.countStatus(emailModel);
+			EmailLogContext.putEmailId(emailModel.getId());
 			logger.info("Email saved with status: {} | emailId: {}", emailModel.getStatusEmail(), emailModel.getId());
 		}
 
@@ -89,12 +177,229 @@ public class EmailService {
 
 	
 	
+	// ===========================================================================
+	// Envia um lote de emails pelas mesmas conexões SMTP e persiste todos de uma vez,
+	// numa transação aberta só depois do envio
+	// ===========================================================================
+	public List<EmailModel> sendEmails(List<EmailModel> emailModels) {
+		LocalDateTime now = LocalDateTime.now();
+		Map<MimeMessage, EmailModel> messages = new LinkedHashMap<>();
+		loadContent(emailModels);
+
+		for (EmailModel emailModel : emailModels) {
+			if (emailModel.getSendDateEmail() == null) {
+				emailModel.setSendDateEmail(now);
+			}
+			try {
+				claimAttachments(emailModel);
+			} catch (IllegalArgumentException e) {
+				// Só este email é recusado; o lote segue. O insert foi desfeito, então volta a ser novo
+				emailModel.setId(null);
+				emailModel.setAttachmentIds(null);
+				retryPolicy.onFailure(emailModel, new MailPreparationException(e.getMessage()));
+				logger.error("Email to: {} rejected: {}", emailModel.getEmailTo(), e.getMessage());
+				continue;
+			}
+			// Sem espera no lote: o email sem vaga vai para o outbox e não segura os demais
+			if (!awaitSendSlot(emailModel, 0)) {
+				logger.info("Email to: {} deferred by rate limit until {}", emailModel.getEmailTo(), emailModel.getNextAttemptAt());
+				continue;
+			}
+			try {
+				messages.put(buildMimeMessage(emailModel), emailModel);
+			} catch (MessagingException e) {
+				retryPolicy.onFailure(emailModel, new MailPreparationException(e));
+				logger.error("Failed to build email to: {} | Subject: {} | Error: {}", emailModel.getEmailTo(),
+						emailModel.getSubject(), e.getMessage());
+			}
+		}
+
+		// Falhas por mensagem (MailSendException) ou uma falha que atinge o lote inteiro
+		Map<Object, Exception> failedMessages = Map.of();
+		MailException batchFailure = null;
+		if (!messages.isEmpty()) {
+			try {
+				MimeMessage[] batch = messages.keySet().toArray(MimeMessage[]::new);
+				// O lote ocupa uma única vaga, na faixa do email mais prioritário
+				EmailPriority priority = messages.values().stream().map(EmailModel::getPriority)
+						.min(Comparator.naturalOrder()).orElse(EmailPriority.NORMAL);
+				timedSend(priority, batch.length, () -> emailSender.send(batch));
+			} catch (MailSendException e) {
+				failedMessages = e.getFailedMessages();
+				batchFailure = failedMessages.isEmpty() ? e : null;
+			} catch (MailException e) {
+				batchFailure = e;
+			}
+		}
+
+		for (Map.Entry<MimeMessage, EmailModel> entry : messages.entrySet()) {
+			EmailModel emailModel = entry.getValue();
+			Exception failure = batchFailure != null ? batchFailure : failedMessages.get(entry.getKey());
+			if (failure == null) {
+				retryPolicy.onSuccess(emailModel);
+			} else if (failure instanceof SmtpThrottledException throttled) {
+				onThrottled(emailModel, throttled);
+			} else {
+				retryPolicy.onFailure(emailModel, failure);
+				logger.error("Failed to send email to: {} | Subject: {} | Status: {} | Error: {}", emailModel.getEmailTo(),
+						emailModel.getSubject(), emailModel.getStatusEmail(), failure.getMessage());
+			}
+		}
+
+		List<EmailModel> saved = transactionTemplate.execute(status -> {
+			prepareForPersistence(emailModels);
+			return emailMetrics.timeDbSave("save_all", () -> emailRepository.saveAll(emailModels));
+		});
+		saved.forEach(emailMetrics::countStatus);
+		logger.info("Batch of {} emails saved | failed: {}", saved.size(),
+				saved.stream().filter(emailModel -> emailModel.getStatusEmail() != StatusEmail.SENT).count());
+		return saved;
+	}
+
+	
+	
+	// ===========================================================================
+	// Aguarda vaga no limitador por conta e domínio. Se a espera passar de
+	// maxWaitNanos, o email fica RETRYING para o outbox em vez de falhar
+	// ===========================================================================
+	private boolean awaitSendSlot(EmailModel emailModel, long maxWaitNanos) {
+		String account = rateLimitAccount();
+		long waitNanos = rateLimiter.tryAcquire(account, emailModel.getEmailTo());
+		if (waitNanos == 0) {
+			return true;
+		}
+
+		long deadline = System.nanoTime() + maxWaitNanos;
+		while (waitNanos > 0) {
+			// Sem outbox não há quem reenvie depois: espera o tempo que for preciso
+			if (retryPolicy.isEnabled() && (System.nanoTime() + waitNanos - deadline > 0 || Thread.currentThread().isInterrupted())) {
+				retryPolicy.onThrottled(emailModel, waitNanos);
+				emailMetrics.countThrottled(true);
+				return false;
+			}
+			LockSupport.parkNanos(waitNanos);
+			waitNanos = rateLimiter.tryAcquire(account, emailModel.getEmailTo());
+		}
+		emailMetrics.countThrottled(false);
+		return true;
+	}
+
+	// Com vários transportes, cada conta é limitada pelo per-second do próprio transporte no
+	// RoutingJavaMailSender; um limite único aqui valeria para todas as contas somadas
+	private String rateLimitAccount() {
+		return emailSender instanceof RoutingJavaMailSender ? null : emailFrom;
+	}
+
+	// Nenhum transporte com vaga na conta, ou faixa sem vaga no gate: adia sem contar tentativa
+	// (sem outbox, é uma falha)
+	private void onThrottled(EmailModel emailModel, SmtpThrottledException e) {
+		if (!retryPolicy.isEnabled()) {
+			retryPolicy.onFailure(emailModel, e);
+			return;
+		}
+		retryPolicy.onThrottled(emailModel, e.getRetryAfterNanos());
+		emailMetrics.countThrottled(true);
+		logger.info("Email to: {} deferred until {}: {}", emailModel.getEmailTo(), emailModel.getNextAttemptAt(),
+				e.getMessage());
+	}
+
+	
+	
+	// ===========================================================================
+	// Entrega as mensagens ao servidor SMTP medindo a latência e os envios em andamento.
+	// A vaga vem do SmtpPriorityGate; sem vaga no prazo o envio é adiado como no limite de taxa
+	// ===========================================================================
+	private void timedSend(EmailPriority priority, int messages, Runnable send) {
+		if (!priorityGate.acquire(priority)) {
+			throw new SmtpThrottledException("No SMTP capacity available for the " + priority.routingKey() + " lane",
+					priorityGate.getAcquireTimeoutNanos());
+		}
+		Timer.Sample sample = emailMetrics.startSmtpSend(messages);
+		boolean success = false;
+		try {
+			send.run();
+			success = true;
+		} finally {
+			emailMetrics.stopSmtpSend(sample, messages, success);
+			priorityGate.release(priority);
+		}
+	}
+
+	
+	
+	// ===========================================================================
+	// Monta a mensagem MIME (multipart) a partir do EmailModel. Público para o
+	// MessageBuildBenchmark medir a mesma montagem usada no envio
+	// ===========================================================================
+	public MimeMessage buildMimeMessage(EmailModel emailModel) throws MessagingException {
+		loadContent(List.of(emailModel));
+		MimeMessage mimeMessage = emailSender.createMimeMessage();
+		MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+
+		helper.setFrom(emailModel.getEmailFrom());
+		helper.setTo(emailModel.getEmailTo());
+		helper.setSubject(emailModel.getSubject());
+
+		String html;
+		try {
+			html = resolveHtml(emailModel);
+		} catch (IOException e) {
+			throw new MessagingException("Template indisponível: " + emailModel.getTemplateName(), e);
+		}
+
+		// Se tiver HTML, envia como HTML, senão envia como texto simples
+		if (html != null && !html.isEmpty()) {
+			helper.setText(emailModel.getText(), html);
+		} else {
+			helper.setText(emailModel.getText(), false);
+		}
+
+		// Anexos são lidos do spool em disco somente quando a mensagem é escrita para o SMTP
+		if (emailModel.getAttachmentCount() > 0) {
+			for (EmailAttachmentModel attachment : emailAttachmentService.findFor(emailModel)) {
+				helper.addAttachment(attachment.getFileName(), emailAttachmentService.open(attachment));
+			}
+		}
+		return mimeMessage;
+	}
+
+	// Vincula ao email já persistido os anexos informados na requisição
+	public void linkAttachments(EmailModel emailModel) {
+		if (emailAttachmentService != null) {
+			emailAttachmentService.link(emailModel);
+		}
+	}
+
+	// Email novo com anexos: é gravado antes do envio para vinculá-los na mesma transação,
+	// então um anexo tomado por outro email recusa este sem chegar ao SMTP
+	private EmailModel claimAttachments(EmailModel emailModel) {
+		if (emailModel.getId() != null || emailModel.getAttachmentIds() == null
+				|| emailModel.getAttachmentIds().isEmpty() || emailAttachmentService == null) {
+			return emailModel;
+		}
+		return transactionTemplate.execute(status -> {
+			EmailModel saved = emailRepository.save(emailModel);
+			linkAttachments(saved);
+			return saved;
+		});
+	}
+	
+	
 	// ===========================================================================
 	// Envia um email de contato usando template para o portfólio
 	// ===========================================================================
-	@Transactional
 	public EmailModel sendPortfolioEmail(PortfolioEmailDto portfolioEmailDto) throws IOException {
-		logger.info("Processing contact email from: {} | Subject: {}", portfolioEmailDto.email(), portfolioEmailDto.subject());
+		// Envia o email usando o método já existente
+		return sendEmail(buildPortfolioEmail(portfolioEmailDto));
+	}
+
+	
+	
+	// ===========================================================================
+	// Monta o email de contato do portfólio (sem enviar)
+	// ===========================================================================
+	public EmailModel buildPortfolioEmail(PortfolioEmailDto portfolioEmailDto) throws IOException {
+		logger.debug("Processing contact email from: {} | Subject: {}", portfolioEmailDto.email(), portfolioEmailDto.subject());
 
 		// Prepara as variáveis do template
 		Map<String, String> variables = new HashMap<>();
@@ -104,9 +409,6 @@ public class EmailService {
 		variables.put("subject", portfolioEmailDto.subject());
 		variables.put("message", portfolioEmailDto.message());
 
-		// Processa o template - escolhe o nome do template e insere as variáveis no HTML
-		String htmlContent = emailTemplateService.loadAndProcessTemplate("template-email-gemini.html", variables);
-
 		// Cria o EmailModel
 		EmailModel emailModel = new EmailModel();
 		emailModel.setOwnerRef(portfolioEmailDto.ownerRef());
@@ -114,17 +416,26 @@ public class EmailService {
 		emailModel.setEmailTo(portfolioEmailDto.emailTo());
 		emailModel.setSubject("Novo contato: " + portfolioEmailDto.subject());
 		emailModel.setText(buildPlainTextContent(portfolioEmailDto));
-		emailModel.setHtml(htmlContent);
 
-		// Envia o email usando o método já existente
-		return sendEmail(emailModel);
+		// Processa o template - escolhe o nome do template e insere as variáveis no HTML
+		applyTemplate(emailModel, "template-email-gemini.html", variables);
+		return emailModel;
 	}
 
 	// ===========================================================================
-	// Envia um email de contato usando template para o portfólio
+	// Envia um email de notificação de deploy usando template do Coolify
 	// ===========================================================================
-	@Transactional
 	public EmailModel sendCoolifyEmail(CoolifyWebhookDto coolifyWebhookDto) throws IOException {
+		// Envia o email usando o método já existente
+		return sendEmail(buildCoolifyEmail(coolifyWebhookDto));
+	}
+
+	
+	
+	// ===========================================================================
+	// Monta o email de notificação de deploy do Coolify (sem enviar)
+	// ===========================================================================
+	public EmailModel buildCoolifyEmail(CoolifyWebhookDto coolifyWebhookDto) throws IOException {
 		
 		// Loga o evento recebido do Coolify para monitoramento
 		logger.info("Processing Coolify webhook | Event: {} | Application: {} | Status: {}", 
@@ -147,20 +458,80 @@ public class EmailService {
 		variables.put("environment", coolifyWebhookDto.environment());
 		variables.put("fqdn", coolifyWebhookDto.fqdn());
 
-		// Processa o template - escolhe o nome do template e insere as variáveis no HTML
-		String htmlContent = emailTemplateService.loadAndProcessTemplate("template-email-coolify.html", variables);
-
 		// Cria o EmailModel
 		EmailModel emailModel = new EmailModel();
 		emailModel.setOwnerRef("Coolify Webhook");
-		emailModel.setEmailFrom("cesar.augusto.rj1@gmail.com");
-		emailModel.setEmailTo("cesar.augusto.rj1@gmail.com");
+		emailModel.setEmailFrom(coolifyFrom);
+		emailModel.setEmailTo(coolifyTo);
 		emailModel.setSubject(coolifyWebhookDto.event());
 		emailModel.setText(buildPlainTextContent(coolifyWebhookDto));
-		emailModel.setHtml(htmlContent);
+		// Falhas de deploy passam na frente de envios em massa
+		emailModel.setPriority(coolifyWebhookDto.success() ? EmailPriority.NORMAL : EmailPriority.HIGH);
 
-		// Envia o email usando o método já existente
-		return sendEmail(emailModel);
+		// Processa o template - escolhe o nome do template e insere as variáveis no HTML
+		applyTemplate(emailModel, "template-email-coolify.html", variables);
+		return emailModel;
+	}
+
+	
+	
+	// ===========================================================================
+	// Renderiza o template e guarda a referência (nome, versão e variáveis) no EmailModel
+	// ===========================================================================
+	public void applyTemplate(EmailModel emailModel, String templateName, Map<String, String> variables) throws IOException {
+		CompiledTemplate template = emailTemplateService.getCompiledTemplate(templateName);
+		emailModel.setTemplateName(templateName);
+		emailModel.setTemplateVersion(template.getVersion());
+		emailModel.setTemplateVariables(variables);
+		emailModel.setHtml(emailTemplateService.render(template, variables));
+	}
+
+	
+	
+	// ===========================================================================
+	// Retorna o HTML do email, reconstruindo a partir do template quando não foi armazenado
+	// ===========================================================================
+	public String resolveHtml(EmailModel emailModel) throws IOException {
+		if (emailModel.getHtml() != null || emailModel.getTemplateName() == null) {
+			return emailModel.getHtml();
+		}
+
+		CompiledTemplate template = emailTemplateService.getCompiledTemplate(emailModel.getTemplateName());
+		if (!template.getVersion().equals(emailModel.getTemplateVersion())) {
+			logger.warn("Template {} changed since email {} was created, rendering current version",
+					emailModel.getTemplateName(), emailModel.getId());
+		}
+		Map<String, String> variables = emailModel.getTemplateVariables() != null ? emailModel.getTemplateVariables() : Map.of();
+		return emailTemplateService.render(template, variables);
+	}
+
+	
+	
+	// ===========================================================================
+	// Descarta o HTML renderizado antes de persistir quando ele pode ser reconstruído pelo template
+	// e grava os corpos por conteúdo (tb_email_blob). Deve rodar na transação que salva o email
+	// ===========================================================================
+	public EmailModel prepareForPersistence(EmailModel emailModel) {
+		prepareForPersistence(List.of(emailModel));
+		return emailModel;
+	}
+
+	public void prepareForPersistence(List<EmailModel> emailModels) {
+		for (EmailModel emailModel : emailModels) {
+			if (!storeHtml && emailModel.getTemplateName() != null) {
+				emailModel.setHtml(null);
+			}
+		}
+		if (emailBlobService != null) {
+			emailBlobService.retain(emailModels);
+		}
+	}
+
+	// Preenche text e html de emails carregados do banco
+	private void loadContent(List<EmailModel> emailModels) {
+		if (emailBlobService != null) {
+			emailBlobService.load(emailModels);
+		}
 	}
 
 	
@@ -168,7 +539,7 @@ public class EmailService {
 	// ===========================================================================
 	// Constrói o conteúdo de texto simples do email de contato
 	// ===========================================================================
-	private String buildPlainTextContent(PortfolioEmailDto contactDto) {
+	public String buildPlainTextContent(PortfolioEmailDto contactDto) {
 		return String.format("Nome: %s%nEmail: %s%nTelefone: %s%nAssunto: %s%nMensagem: %s", contactDto.name(),
 				contactDto.email(), contactDto.phone(), contactDto.subject(), contactDto.message());
 	}
@@ -176,7 +547,7 @@ public class EmailService {
 	// ===========================================================================
 	// Constrói o conteúdo de texto simples do email de contato
 	// ===========================================================================
-	private String buildPlainTextContent(CoolifyWebhookDto coolifyWebhookDto) {
+	public String buildPlainTextContent(CoolifyWebhookDto coolifyWebhookDto) {
 	    return String.format(
 	        "Status: %s%n" +
 	        "Evento: %s%n" +
@@ -202,10 +573,67 @@ public class EmailService {
 	}
 
 	public Page<EmailModel> findAll(Pageable pageable) {
-		return emailRepository.findAll(pageable);
+		Page<EmailModel> page = emailRepository.findAll(pageable);
+		loadContent(page.getContent());
+		return page;
 	}
 
+	
+	
+	// ===========================================================================
+	// Lista resumos de emails por cursor; busca size + 1 linhas para saber se há próxima página
+	// ===========================================================================
+	public EmailCursorPageDto findSummaries(EmailFilterDto filter, String cursor, int size) {
+		int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+		List<EmailSummaryDto> rows = emailRepository.findSummaries(filter, EmailCursor.decode(cursor), limit + 1);
+		return page(rows, limit);
+	}
+
+	private static EmailCursorPageDto page(List<EmailSummaryDto> rows, int limit) {
+		boolean hasNext = rows.size() > limit;
+		List<EmailSummaryDto> content = hasNext ? rows.subList(0, limit) : rows;
+		String nextCursor = hasNext ? EmailCursor.of(content.get(limit - 1)).encode() : null;
+		return new EmailCursorPageDto(content, nextCursor, content.size());
+	}
+
+	
+	
+	// ===========================================================================
+	// Busca resumos por destinatário e assunto, com a mesma paginação por cursor.
+	// Sem texto, é a listagem de resumos
+	// ===========================================================================
+	public EmailCursorPageDto searchSummaries(EmailSearchDto search, String cursor, int size) {
+		if (!search.hasText()) {
+			return findSummaries(search.toFilter(), cursor, size);
+		}
+		if (search.recipient() != null && search.recipient().length() < MIN_RECIPIENT_LENGTH) {
+			throw new IllegalArgumentException("recipient deve ter ao menos " + MIN_RECIPIENT_LENGTH + " caracteres");
+		}
+		if (search.from() == null) {
+			LocalDateTime end = search.to() != null ? search.to() : LocalDateTime.now();
+			search = search.withFrom(end.minusDays(searchDefaultWindowDays));
+		}
+
+		int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+		List<EmailSummaryDto> rows = emailRepository.searchSummaries(search, EmailCursor.decode(cursor), limit + 1);
+		return page(rows, limit);
+	}
+
+	// Emails persistidos sem HTML têm o corpo reconstruído a partir do template
 	public Optional<EmailModel> findById(UUID id) {
-		return emailRepository.findById(id);
+		return emailRepository.findById(id).map(emailModel -> {
+			loadContent(List.of(emailModel));
+			if (emailModel.getHtml() != null || emailModel.getTemplateName() == null) {
+				return emailModel;
+			}
+			EmailModel rendered = new EmailModel();
+			BeanUtils.copyProperties(emailModel, rendered);
+			try {
+				rendered.setHtml(resolveHtml(emailModel));
+			} catch (IOException e) {
+				logger.error("Failed to re-render email {} from template {}: {}", id, emailModel.getTemplateName(), e.getMessage());
+			}
+			return rendered;
+		});
 	}
 }
\ No newline at end of file
@@ -0,0 +1,334 @@
+package br.com.sistema.services;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.sistema.enums.StatusEmail;
+import br.com.sistema.models.EmailModel;
+import br.com.sistema.models.UuidV7;
+import br.com.sistema.spool.WriteAheadSpool;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+
+// Spool local dos emails aceitos: grava no WriteAheadSpool e insere em lotes no banco.
+// Também guarda os emails enquanto o Postgres está fora do ar
+@Service
+@ConditionalOnProperty(name = "email.spool.enabled", havingValue = "true", matchIfMissing = true)
+public class EmailSpoolService implements MeterBinder {
+
+	Logger logger = LogManager.getLogger(EmailSpoolService.class);
+
+	// ON CONFLICT cobre a reexecução de um lote já gravado (queda antes do checkpoint)
+	private static final String INSERT_EMAIL = "INSERT INTO tb_email (id, owner_ref, email_from, email_to, subject, "
+			+ "text_sha256, html_sha256, template_name, template_version, template_variables, send_date_email, "
+			+ "status_email, attempt_count, next_attempt_at, last_error, job_id, idempotency_key, attachment_count, priority) "
+			+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, CAST(? AS jsonb), ?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING";
+
+	// Uma chave só reservada (email_id nulo) é a do próprio email spoolado e não conta como existente
+	private static final String SELECT_EXISTING = "SELECT id, NULL AS idempotency_key FROM tb_email WHERE id = ANY (?) "
+			+ "UNION ALL SELECT email_id, idempotency_key FROM tb_email_idempotency "
+			+ "WHERE idempotency_key = ANY (?) AND email_id IS NOT NULL";
+
+	// Mesma reserva de EmailRepository.reserveIdempotencyKeys, mas na transação do lote
+	private static final String RESERVE_KEY = "INSERT INTO tb_email_idempotency (idempotency_key) VALUES (?) "
+			+ "ON CONFLICT (idempotency_key) DO UPDATE SET reserved_at = now() "
+			+ "WHERE tb_email_idempotency.email_id IS NULL "
+			+ "AND tb_email_idempotency.reserved_at < now() - make_interval(secs => ? / 1000.0)";
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private RabbitTemplate rabbitTemplate;
+
+	@Autowired
+	private EmailService emailService;
+
+	@Value("${email.dispatch.queue}")
+	private String dispatchQueue;
+
+	// Atraso até o outbox assumir um email replicado que a fila de despacho não entregou
+	@Value("${email.outbox.accept-grace-ms:30000}")
+	private long acceptGraceMs = 30000;
+
+	@Value("${email.spool.replay-batch-size:200}")
+	private int replayBatchSize = 200;
+
+	@Value("${email.idempotency.reservation-timeout-ms:900000}")
+	private long reservationTimeoutMs = 900000;
+
+	private final WriteAheadSpool spool;
+
+	private final Path quarantineDirectory;
+
+	public EmailSpoolService(
+			@Value("${email.spool.dir}") String directory,
+			@Value("${email.spool.segment-bytes:67108864}") int segmentBytes,
+			@Value("${email.spool.fsync:true}") boolean fsync) throws IOException {
+		this.spool = new WriteAheadSpool(Path.of(directory), segmentBytes, fsync);
+		this.quarantineDirectory = Path.of(directory, "quarantine");
+	}
+
+	
+	
+	// ===========================================================================
+	// Grava o email no spool e aguarda o fsync. Emails ainda não enviados ficam
+	// PENDING e seguem para a fila de despacho quando forem inseridos no banco
+	// ===========================================================================
+	public EmailModel append(EmailModel emailModel) {
+		if (emailModel.getId() == null) {
+			emailModel.setId(UuidV7.next());
+		}
+		if (emailModel.getStatusEmail() == null || emailModel.getStatusEmail() == StatusEmail.SENDING) {
+			emailModel.setStatusEmail(StatusEmail.PENDING);
+		}
+		if (emailModel.getSendDateEmail() == null) {
+			emailModel.setSendDateEmail(LocalDateTime.now());
+		}
+		try {
+			spool.awaitDurable(spool.append(objectMapper.writeValueAsBytes(emailModel)));
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Email não serializável para o spool", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrompido aguardando o fsync do spool", e);
+		}
+		logger.info("Email spooled | emailId: {} | status: {}", emailModel.getId(), emailModel.getStatusEmail());
+		return emailModel;
+	}
+
+	
+	
+	// ===========================================================================
+	// Insere os registros do spool no banco em lotes; com o banco indisponível
+	// para e tenta de novo no próximo ciclo, sem perder a posição. Um lote
+	// recusado pelo banco é refeito registro a registro e o registro recusado
+	// vai para a quarentena, para o checkpoint poder avançar. Um email cuja chave
+	// de idempotência outra instância ainda está enviando volta para o fim do spool
+	// ===========================================================================
+	@Scheduled(fixedDelayString = "${email.spool.replay-interval-ms:1000}")
+	public synchronized void replay() {
+		List<WriteAheadSpool.Entry> entries;
+		do {
+			entries = spool.read(replayBatchSize);
+			if (entries.isEmpty()) {
+				return;
+			}
+			List<SpooledEmail> spooled = new ArrayList<>(entries.size());
+			for (WriteAheadSpool.Entry entry : entries) {
+				try {
+					spooled.add(new SpooledEmail(entry, objectMapper.readValue(entry.payload(), EmailModel.class)));
+				} catch (IOException e) {
+					quarantine(entry, e);
+				}
+			}
+
+			List<EmailModel> inserted;
+			List<EmailModel> held = new ArrayList<>();
+			try {
+				inserted = insertBatch(spooled, held);
+				held.forEach(this::append);
+				spool.commit(entries.get(entries.size() - 1).next());
+			} catch (TransientDataAccessException | DataAccessResourceFailureException | CannotCreateTransactionException e) {
+				logger.warn("Email spool replay paused, database unavailable: {} | pending: {} bytes", e.getMessage(),
+						spool.pendingBytes());
+				return;
+			} catch (IOException e) {
+				logger.error("Could not save the email spool checkpoint: {}", e.getMessage());
+				return;
+			}
+			publish(inserted);
+			logger.info("Replayed {} emails from the spool | pending: {} bytes", inserted.size(), spool.pendingBytes());
+			if (!held.isEmpty()) {
+				// Os registros devolvidos ao spool esperam o próximo ciclo
+				logger.info("{} spooled emails wait for idempotency keys still reserved elsewhere", held.size());
+				return;
+			}
+		} while (entries.size() == replayBatchSize);
+	}
+
+	private List<EmailModel> insertBatch(List<SpooledEmail> spooled, List<EmailModel> held) {
+		try {
+			return transactionTemplate.execute(status -> insert(spooled.stream().map(SpooledEmail::emailModel).toList(), held));
+		} catch (TransientDataAccessException | DataAccessResourceFailureException | CannotCreateTransactionException e) {
+			throw e;
+		} catch (DataAccessException | TransactionException | IllegalArgumentException e) {
+			logger.warn("Email spool batch rejected by the database, retrying one record at a time: {}", e.getMessage());
+			held.clear();
+		}
+
+		// Cada registro na sua transação; os já inseridos são ignorados por SELECT_EXISTING se o lote parar aqui
+		List<EmailModel> inserted = new ArrayList<>(spooled.size());
+		for (SpooledEmail email : spooled) {
+			try {
+				inserted.addAll(transactionTemplate.execute(status -> insert(List.of(email.emailModel()), held)));
+			} catch (TransientDataAccessException | DataAccessResourceFailureException | CannotCreateTransactionException e) {
+				throw e;
+			} catch (DataAccessException | TransactionException | IllegalArgumentException e) {
+				// IllegalArgumentException: anexo vinculado a outro email enquanto o registro estava no spool
+				quarantine(email.entry(), e);
+			}
+		}
+		return inserted;
+	}
+
+	// Copia o registro para <email.spool.dir>/quarantine/<posição>.json, para análise e reenvio manual
+	private void quarantine(WriteAheadSpool.Entry entry, Exception cause) {
+		Path target = quarantineDirectory.resolve(entry.position() + ".json");
+		try {
+			Files.createDirectories(quarantineDirectory);
+			Files.write(target, entry.payload());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Não foi possível gravar o registro do spool em quarentena", e);
+		}
+		logger.error("Email spool record at position {} moved to {}: {}", entry.position(), target, cause.getMessage());
+	}
+
+	private List<EmailModel> insert(List<EmailModel> emailModels, List<EmailModel> held) {
+		// Linhas já gravadas numa execução anterior não podem contar de novo as referências dos corpos
+		Set<Object> existing = new HashSet<>();
+		jdbcTemplate.query(SELECT_EXISTING, rs -> {
+			existing.add(rs.getObject("id", UUID.class));
+			if (rs.getString("idempotency_key") != null) {
+				existing.add(rs.getString("idempotency_key"));
+			}
+		}, emailModels.stream().map(EmailModel::getId).toArray(UUID[]::new),
+				emailModels.stream().map(EmailModel::getIdempotencyKey).filter(Objects::nonNull).toArray(String[]::new));
+		List<EmailModel> pending = emailModels.stream()
+				.filter(emailModel -> !existing.contains(emailModel.getId())
+						&& (emailModel.getIdempotencyKey() == null || !existing.contains(emailModel.getIdempotencyKey())))
+				.filter(emailModel -> reserveDeferredKey(emailModel, held))
+				.toList();
+		if (pending.isEmpty()) {
+			return pending;
+		}
+
+		LocalDateTime nextAttemptAt = LocalDateTime.now().plusNanos(acceptGraceMs * 1_000_000);
+		for (EmailModel emailModel : pending) {
+			// Os hashes são recalculados: o blob gravado antes da falha voltou no rollback
+			emailModel.setTextSha256(null);
+			emailModel.setHtmlSha256(null);
+			if (emailModel.getStatusEmail() == StatusEmail.PENDING) {
+				emailModel.setNextAttemptAt(nextAttemptAt);
+			}
+		}
+		emailService.prepareForPersistence(pending);
+
+		List<Object[]> batch = new ArrayList<>(pending.size());
+		for (EmailModel emailModel : pending) {
+			batch.add(new Object[] { emailModel.getId(), emailModel.getOwnerRef(), emailModel.getEmailFrom(),
+					emailModel.getEmailTo(), emailModel.getSubject(), emailModel.getTextSha256(),
+					emailModel.getHtmlSha256(), emailModel.getTemplateName(), emailModel.getTemplateVersion(),
+					json(emailModel), timestamp(emailModel.getSendDateEmail()), emailModel.getStatusEmail().name(),
+					emailModel.getAttemptCount(), timestamp(emailModel.getNextAttemptAt()), emailModel.getLastError(),
+					emailModel.getJobId(), emailModel.getIdempotencyKey(), emailModel.getAttachmentCount(),
+					emailModel.getPriority().name() });
+		}
+		jdbcTemplate.batchUpdate(INSERT_EMAIL, batch);
+		pending.forEach(emailService::linkAttachments);
+		return pending;
+	}
+
+	// Email aceito sem reserva no banco (modo spool ou banco fora do ar na requisição): a chave
+	// é reservada aqui e o insert completa a reserva. Reservada por outra instância, ainda sem
+	// email, o registro é separado em held até o envio de lá terminar ou a reserva expirar
+	private boolean reserveDeferredKey(EmailModel emailModel, List<EmailModel> held) {
+		if (!emailModel.isIdempotencyDeferred() || emailModel.getIdempotencyKey() == null
+				|| emailModel.getStatusEmail() != StatusEmail.PENDING) {
+			return true;
+		}
+		if (jdbcTemplate.update(RESERVE_KEY, emailModel.getIdempotencyKey(), reservationTimeoutMs) == 1) {
+			return true;
+		}
+		held.add(emailModel);
+		return false;
+	}
+
+	private String json(EmailModel emailModel) {
+		try {
+			return emailModel.getTemplateVariables() != null
+					? objectMapper.writeValueAsString(emailModel.getTemplateVariables())
+					: null;
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private record SpooledEmail(WriteAheadSpool.Entry entry, EmailModel emailModel) {
+	}
+
+	private static Timestamp timestamp(LocalDateTime value) {
+		return value != null ? Timestamp.valueOf(value) : null;
+	}
+
+	// Sem broker, os emails PENDING ficam para o outbox (next_attempt_at)
+	private void publish(List<EmailModel> inserted) {
+		try {
+			for (EmailModel emailModel : inserted) {
+				if (emailModel.getStatusEmail() == StatusEmail.PENDING) {
+					rabbitTemplate.convertAndSend(dispatchQueue, emailModel.getId());
+				}
+			}
+		} catch (AmqpException e) {
+			logger.warn("Could not publish spooled emails to {}, the outbox will deliver them: {}", dispatchQueue,
+					e.getMessage());
+		}
+	}
+
+	
+	
+	// ===========================================================================
+	// Ao desligar, tenta esvaziar o spool no banco; o que sobrar volta no próximo start
+	// ===========================================================================
+	@PreDestroy
+	public void close() throws IOException {
+		replay();
+		spool.close();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("email.spool.pending", spool, WriteAheadSpool::pendingBytes)
+				.description("Bytes gravados no spool local ainda não inseridos no banco")
+				.baseUnit("bytes")
+				.register(registry);
+	}
+}
@@ -3,49 +3,143 @@ package br.com.sistema.services;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StreamUtils;
 
+import br.com.sistema.metrics.EmailMetrics;
+import br.com.sistema.templates.CompiledTemplate;
+import br.com.sistema.templates.TemplateOptimizer;
+import jakarta.annotation.PostConstruct;
+
 @Service
 public class EmailTemplateService {
 
     private final Logger logger = LogManager.getLogger(EmailTemplateService.class);
 
+    // Apenas arquivos .html diretamente em classpath:templates/ (sem barras ou "..")
+    private static final Pattern TEMPLATE_NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9_-]*(\\.[A-Za-z0-9_-]+)*\\.html");
+
+    private final Map<String, CachedTemplate> cache = new ConcurrentHashMap<>();
+
+    @Value("${email.templates.preload:true}")
+    private boolean preload = true;
+
+    // Intervalo mínimo entre verificações de alteração do arquivo (negativo desativa a verificação)
+    @Value("${email.templates.check-interval-ms:2000}")
+    private long checkIntervalMs = 2000;
+
+    // Inlinea o CSS e minifica o HTML ao compilar (o template no classpath continua legível)
+    @Value("${email.templates.optimize:true}")
+    private boolean optimize = true;
+
+    @Autowired(required = false)
+    private EmailMetrics emailMetrics = EmailMetrics.noop();
+
+    private record CachedTemplate(CompiledTemplate template, long lastModified, long checkedAt) {
+    }
+
     
     // ===========================================================================
- 	// Carrega o template de email a partir do classpath
+ 	// Compila todos os templates do classpath na inicialização
  	// ===========================================================================
-    public String loadTemplate(String templateName) throws IOException {
+    @PostConstruct
+    public void preloadTemplates() {
+        if (!preload) {
+            return;
+        }
+        try {
+            Resource[] resources = new PathMatchingResourcePatternResolver().getResources("classpath:templates/*.html");
+            for (Resource resource : resources) {
+                getCompiledTemplate(resource.getFilename());
+            }
+            logger.info("{} templates compilados na inicialização", resources.length);
+        } catch (IOException e) {
+            logger.warn("Falha ao pré-carregar templates: {}", e.getMessage());
+        }
+    }
+
+    
+    // ===========================================================================
+ 	// Retorna o template compilado, recompilando se o arquivo foi alterado
+ 	// ===========================================================================
+    public CompiledTemplate getCompiledTemplate(String templateName) throws IOException {
+        if (templateName == null || !TEMPLATE_NAME.matcher(templateName).matches()) {
+            throw new IOException("Nome de template inválido: " + templateName);
+        }
+
+        CachedTemplate cached = cache.get(templateName);
+        if (cached != null && !shouldCheck(cached)) {
+            return cached.template();
+        }
+
         ClassPathResource resource = new ClassPathResource("templates/" + templateName);
-        
         if (!resource.exists()) {
+            cache.remove(templateName);
             logger.error("Template não encontrado: {}", templateName);
             throw new IOException("Template não encontrado: " + templateName);
         }
-        
-        String template = StreamUtils.copyToString(resource.getInputStream(), StandardCharsets.UTF_8);
-        
-        logger.info("Template carregado com sucesso: {}", templateName);
+
+        long lastModified = lastModified(resource);
+        long now = System.currentTimeMillis();
+        if (cached != null && cached.lastModified() == lastModified) {
+            cache.put(templateName, new CachedTemplate(cached.template(), lastModified, now));
+            return cached.template();
+        }
+
+        String raw = StreamUtils.copyToString(resource.getInputStream(), StandardCharsets.UTF_8);
+        String source = optimize ? TemplateOptimizer.optimize(raw) : raw;
+        CompiledTemplate template = CompiledTemplate.compile(templateName, source);
+        cache.put(templateName, new CachedTemplate(template, lastModified, now));
+
+        logger.info("Template compilado: {} ({} variáveis, {} -> {} caracteres)", templateName, template.getSlotCount(),
+                raw.length(), source.length());
         return template;
     }
 
+    private boolean shouldCheck(CachedTemplate cached) {
+        return checkIntervalMs >= 0 && System.currentTimeMillis() - cached.checkedAt() >= checkIntervalMs;
+    }
+
+    private long lastModified(Resource resource) {
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    
+    // ===========================================================================
+ 	// Renderiza o template compilado medindo o tempo de renderização
+ 	// ===========================================================================
+    public String render(CompiledTemplate template, Map<String, String> variables) {
+        return emailMetrics.timeRender(template.getName(), () -> template.render(variables));
+    }
+
+    
+    // ===========================================================================
+ 	// Carrega o template de email a partir do cache (ou do classpath)
+ 	// ===========================================================================
+    public String loadTemplate(String templateName) throws IOException {
+        return getCompiledTemplate(templateName).getSource();
+    }
+
     
     // ===========================================================================
  	// Substitui os placeholders no formato ${contact.variableName} pelos valores fornecidos no mapa
  	// ===========================================================================
     public String processTemplate(String template, Map<String, String> variables) {
-        String processedTemplate = template;
-        
-        for (Map.Entry<String, String> entry : variables.entrySet()) {
-            String placeholder = "${contact." + entry.getKey() + "}";
-            String value = entry.getValue() != null ? entry.getValue() : "";
-            processedTemplate = processedTemplate.replace(placeholder, value);
-        }
-        
+        String processedTemplate = CompiledTemplate.compile(null, template).render(variables);
         logger.debug("Template processado com {} variáveis", variables.size());
         return processedTemplate;
     }
@@ -55,7 +149,6 @@ public class EmailTemplateService {
  	// Carrega e processa o template em um único método
  	// ===========================================================================
     public String loadAndProcessTemplate(String templateName, Map<String, String> variables) throws IOException {
-        String template = loadTemplate(templateName);
-        return processTemplate(template, variables);
+        return render(getCompiledTemplate(templateName), variables);
     }
-}
\ No newline at end of file
+}
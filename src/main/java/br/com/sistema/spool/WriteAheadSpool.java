@@ -0,0 +1,376 @@
+package br.com.sistema.spool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+// Log de escrita antecipada em segmentos mapeados em memória; registros [tamanho][CRC32C][bytes].
+// Uma thread faz o fsync para todas as escritas pendentes (group commit)
+public class WriteAheadSpool implements Closeable {
+
+	private static final Logger logger = LogManager.getLogger(WriteAheadSpool.class);
+
+	private static final int HEADER_BYTES = 8;
+	private static final String SEGMENT_SUFFIX = ".seg";
+	private static final String CHECKPOINT_FILE = "checkpoint";
+
+	public record Entry(long position, long next, byte[] payload) {
+	}
+
+	private static final class Segment {
+		private final long base;
+		private final Path path;
+		private final FileChannel channel;
+		private final MappedByteBuffer buffer;
+
+		private Segment(long base, Path path, FileChannel channel, MappedByteBuffer buffer) {
+			this.base = base;
+			this.path = path;
+			this.channel = channel;
+			this.buffer = buffer;
+		}
+
+		private int size() {
+			return buffer.capacity();
+		}
+
+		private long end() {
+			return base + size();
+		}
+	}
+
+	private final Path directory;
+	private final int segmentBytes;
+	private final boolean fsync;
+
+	private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition dirty = lock.newCondition();
+	private final Condition flushed = lock.newCondition();
+	private final Thread flusher;
+
+	// Protegidos por lock
+	private Segment current;
+	private long writePosition;
+	private boolean closed;
+
+	private volatile long durablePosition;
+	private volatile long checkpoint;
+
+	public WriteAheadSpool(Path directory, int segmentBytes, boolean fsync) throws IOException {
+		if (segmentBytes <= HEADER_BYTES) {
+			throw new IllegalArgumentException("segmentBytes deve ser maior que " + HEADER_BYTES);
+		}
+		this.directory = directory;
+		this.segmentBytes = segmentBytes;
+		this.fsync = fsync;
+		Files.createDirectories(directory);
+		recover();
+		this.flusher = Thread.ofPlatform().daemon().name("email-spool-fsync").start(this::flushLoop);
+	}
+
+	
+	
+	// ===========================================================================
+	// Reabre os segmentos existentes e encontra o fim do último registro íntegro
+	// ===========================================================================
+	private void recover() throws IOException {
+		Path checkpointPath = directory.resolve(CHECKPOINT_FILE);
+		checkpoint = Files.exists(checkpointPath) ? Long.parseLong(Files.readString(checkpointPath).trim()) : 0;
+
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path path : files.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX)).toList()) {
+				String name = path.getFileName().toString();
+				long base = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+				segments.put(base, open(base, path, -1));
+			}
+		}
+
+		Segment last = segments.isEmpty() ? null : segments.lastEntry().getValue();
+		if (last == null || last.end() <= checkpoint) {
+			current = createSegment(Math.max(checkpoint, last != null ? last.end() : 0));
+			writePosition = current.base;
+		} else {
+			current = last;
+			int offset = 0;
+			while (offset + HEADER_BYTES <= last.size()) {
+				int length = last.buffer.getInt(offset);
+				if (length <= 0 || offset + HEADER_BYTES + length > last.size() || !valid(last, offset, length)) {
+					break;
+				}
+				offset += HEADER_BYTES + length;
+			}
+			writePosition = last.base + offset;
+			// Uma escrita interrompida no meio deixa lixo depois do último registro íntegro
+			if (offset + 4 <= last.size() && last.buffer.getInt(offset) != 0) {
+				logger.warn("Discarding torn email spool record at position {}", writePosition);
+				for (int i = offset; i < last.size(); i++) {
+					last.buffer.put(i, (byte) 0);
+				}
+				last.buffer.force();
+			}
+		}
+		durablePosition = writePosition;
+		deleteBefore(checkpoint);
+		logger.info("Email spool opened at {} | pending: {} bytes", directory, writePosition - checkpoint);
+	}
+
+	private Segment createSegment(long base) throws IOException {
+		Path path = directory.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+		Segment segment = open(base, path, segmentBytes);
+		segments.put(base, segment);
+		return segment;
+	}
+
+	// size < 0 mantém o tamanho do arquivo existente (o tamanho configurado pode ter mudado)
+	private static Segment open(long base, Path path, int size) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		long length = size >= 0 ? size : channel.size();
+		return new Segment(base, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, length));
+	}
+
+	private static boolean valid(Segment segment, int offset, int length) {
+		return segment.buffer.getInt(offset + 4) == crc(segment, offset + HEADER_BYTES, length);
+	}
+
+	private static int crc(Segment segment, int offset, int length) {
+		CRC32C crc = new CRC32C();
+		crc.update(segment.buffer.slice(offset, length));
+		return (int) crc.getValue();
+	}
+
+	
+	
+	// ===========================================================================
+	// Grava o registro e retorna a posição logo após ele. O registro só está
+	// garantido em disco depois de awaitDurable(posição)
+	// ===========================================================================
+	public long append(byte[] payload) {
+		int size = HEADER_BYTES + payload.length;
+		if (size > segmentBytes) {
+			throw new IllegalArgumentException("Registro de " + payload.length + " bytes maior que o segmento do spool");
+		}
+		CRC32C crc = new CRC32C();
+		crc.update(payload);
+
+		lock.lock();
+		try {
+			if (closed) {
+				throw new IllegalStateException("Spool fechado");
+			}
+			int offset = (int) (writePosition - current.base);
+			if (offset + size > current.size()) {
+				roll();
+				offset = 0;
+			}
+			MappedByteBuffer buffer = current.buffer;
+			buffer.putInt(offset + 4, (int) crc.getValue());
+			buffer.put(offset + HEADER_BYTES, payload);
+			buffer.putInt(offset, payload.length);
+			writePosition = current.base + offset + size;
+			dirty.signal();
+			return writePosition;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// O restante do segmento atual fica zerado (fim); o fsync dele não espera a thread de flush
+	private void roll() throws IOException {
+		Segment previous = current;
+		if (fsync) {
+			previous.buffer.force();
+		}
+		current = createSegment(previous.end());
+		writePosition = current.base;
+	}
+
+	public void awaitDurable(long position) throws InterruptedException {
+		if (durablePosition >= position) {
+			return;
+		}
+		lock.lock();
+		try {
+			while (durablePosition < position) {
+				if (closed) {
+					throw new IllegalStateException("Spool fechado antes do fsync");
+				}
+				flushed.await();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void flushLoop() {
+		while (true) {
+			Segment segment;
+			long target;
+			lock.lock();
+			try {
+				while (!closed && writePosition == durablePosition) {
+					dirty.awaitUninterruptibly();
+				}
+				if (writePosition == durablePosition) {
+					return;
+				}
+				segment = current;
+				target = writePosition;
+			} finally {
+				lock.unlock();
+			}
+
+			if (fsync) {
+				// Só o trecho escrito desde o último fsync (roll já forçou os segmentos anteriores)
+				int from = (int) Math.max(0, durablePosition - segment.base);
+				segment.buffer.force(from, (int) (target - segment.base) - from);
+			}
+
+			lock.lock();
+			try {
+				durablePosition = Math.max(durablePosition, target);
+				flushed.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	
+	
+	// ===========================================================================
+	// Lê até maxEntries registros já em disco a partir do checkpoint
+	// ===========================================================================
+	public List<Entry> read(int maxEntries) {
+		List<Entry> entries = new ArrayList<>();
+		long position = checkpoint;
+		long limit = durablePosition;
+		while (entries.size() < maxEntries && position < limit) {
+			Map.Entry<Long, Segment> floor = segments.floorEntry(position);
+			if (floor == null) {
+				break;
+			}
+			Segment segment = floor.getValue();
+			int offset = (int) (position - segment.base);
+			int length = offset + HEADER_BYTES <= segment.size() ? segment.buffer.getInt(offset) : 0;
+			if (length <= 0) {
+				// Fim do segmento: segue no próximo
+				position = segment.end();
+				continue;
+			}
+			if (!valid(segment, offset, length)) {
+				logger.error("Corrupted email spool record at position {}, replay stopped", position);
+				break;
+			}
+			byte[] payload = new byte[length];
+			segment.buffer.get(offset + HEADER_BYTES, payload);
+			long next = position + HEADER_BYTES + length;
+			entries.add(new Entry(position, next, payload));
+			position = next;
+		}
+		return entries;
+	}
+
+	
+	
+	// ===========================================================================
+	// Marca como consumido tudo antes de position e apaga os segmentos liberados
+	// ===========================================================================
+	public synchronized void commit(long position) throws IOException {
+		if (position <= checkpoint) {
+			return;
+		}
+		Path temporary = directory.resolve(CHECKPOINT_FILE + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			channel.write(ByteBuffer.wrap(Long.toString(position).getBytes(StandardCharsets.US_ASCII)));
+			if (fsync) {
+				channel.force(true);
+			}
+		}
+		Files.move(temporary, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+		checkpoint = position;
+		deleteBefore(position);
+	}
+
+	private void deleteBefore(long position) throws IOException {
+		List<Segment> released = new ArrayList<>();
+		lock.lock();
+		try {
+			for (Segment segment : segments.values()) {
+				if (segment != current && segment.end() <= position) {
+					released.add(segment);
+				}
+			}
+			released.forEach(segment -> segments.remove(segment.base));
+		} finally {
+			lock.unlock();
+		}
+		for (Segment segment : released) {
+			segment.channel.close();
+			Files.deleteIfExists(segment.path);
+		}
+	}
+
+	// Bytes gravados e ainda não consumidos
+	public long pendingBytes() {
+		return Math.max(0, durablePosition - checkpoint);
+	}
+
+	
+	
+	// ===========================================================================
+	// Espera o último fsync e fecha os segmentos
+	// ===========================================================================
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			dirty.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		try {
+			flusher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		lock.lock();
+		try {
+			flushed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		for (Segment segment : segments.values()) {
+			segment.channel.close();
+		}
+		logger.info("Email spool closed | pending: {} bytes", pendingBytes());
+	}
+}
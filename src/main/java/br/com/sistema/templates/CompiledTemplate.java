@@ -0,0 +1,119 @@
+package br.com.sistema.templates;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+// Template pré-compilado em segmentos literais e slots de variáveis, renderizado numa passada
+public final class CompiledTemplate {
+
+	public static final String PLACEHOLDER_PREFIX = "${contact.";
+	public static final String PLACEHOLDER_SUFFIX = "}";
+
+	private final String name;
+	private final String source;
+	private volatile String version; // SHA-256 do conteúdo, calculado sob demanda
+	private final String[] literals; // sempre literals.length == slots.length + 1
+	private final String[] slots;
+	private final int literalLength;
+
+	private CompiledTemplate(String name, String source, String[] literals, String[] slots) {
+		this.name = name;
+		this.source = source;
+		this.literals = literals;
+		this.slots = slots;
+
+		int length = 0;
+		for (String literal : literals) {
+			length += literal.length();
+		}
+		this.literalLength = length;
+	}
+
+	
+	
+	// ===========================================================================
+	// Quebra o template em literais e placeholders no formato ${contact.variableName}
+	// ===========================================================================
+	public static CompiledTemplate compile(String name, String source) {
+		List<String> literals = new ArrayList<>();
+		List<String> slots = new ArrayList<>();
+
+		int cursor = 0;
+		while (true) {
+			int start = source.indexOf(PLACEHOLDER_PREFIX, cursor);
+			int end = start < 0 ? -1 : source.indexOf(PLACEHOLDER_SUFFIX, start + PLACEHOLDER_PREFIX.length());
+			if (start < 0 || end < 0) {
+				break;
+			}
+			literals.add(source.substring(cursor, start));
+			slots.add(source.substring(start + PLACEHOLDER_PREFIX.length(), end));
+			cursor = end + PLACEHOLDER_SUFFIX.length();
+		}
+		literals.add(source.substring(cursor));
+
+		return new CompiledTemplate(name, source, literals.toArray(String[]::new), slots.toArray(String[]::new));
+	}
+
+	
+	
+	// ===========================================================================
+	// Renderiza o template em uma única passada.
+	// Placeholders sem variável correspondente no mapa são mantidos como estão.
+	// ===========================================================================
+	public String render(Map<String, String> variables) {
+		int capacity = literalLength;
+		for (String slot : slots) {
+			capacity += valueFor(slot, variables).length();
+		}
+
+		StringBuilder builder = new StringBuilder(capacity);
+		for (int i = 0; i < slots.length; i++) {
+			builder.append(literals[i]).append(valueFor(slots[i], variables));
+		}
+		builder.append(literals[slots.length]);
+		return builder.toString();
+	}
+
+	private static String valueFor(String slot, Map<String, String> variables) {
+		if (!variables.containsKey(slot)) {
+			return PLACEHOLDER_PREFIX + slot + PLACEHOLDER_SUFFIX;
+		}
+		String value = variables.get(slot);
+		return value != null ? value : "";
+	}
+
+	private static String sha256(String content) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 indisponível", e);
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public String getVersion() {
+		String current = version;
+		if (current == null) {
+			current = sha256(source);
+			version = current;
+		}
+		return current;
+	}
+
+	public int getSlotCount() {
+		return slots.length;
+	}
+}
@@ -0,0 +1,289 @@
+package br.com.sistema.templates;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Comment;
+import org.jsoup.nodes.DataNode;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.Elements;
+import org.jsoup.select.Selector;
+
+// Inlinea o CSS dos blocos <style> nos elementos e minifica o HTML antes da compilação.
+// O que não pode ser inlineado (:hover, @media) fica num único <style>
+public final class TemplateOptimizer {
+
+	private static final Pattern CSS_COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+	private static final Pattern CSS_PUNCTUATION_SPACE = Pattern.compile("\\s*([{};:,>])\\s*");
+	private static final Pattern PRESERVED_WHITESPACE = Pattern.compile("white-space\\s*:\\s*pre", Pattern.CASE_INSENSITIVE);
+	private static final Pattern ID_SELECTOR = Pattern.compile("#[\\w-]+");
+	private static final Pattern CLASS_OR_ATTRIBUTE_SELECTOR = Pattern.compile("\\.[\\w-]+|\\[[^\\]]*\\]");
+	private static final Pattern TYPE_SELECTOR = Pattern.compile("(?:^|[\\s>+~])([a-zA-Z][\\w-]*)");
+	private static final Set<String> RAW_TEXT = Set.of("pre", "textarea", "script", "style");
+
+	// css: a regra como estava no <style>; declarations só é preenchido nas inlineáveis
+	private record Rule(String selector, String css, boolean inlinable, int specificity, int order,
+			Map<String, String> declarations) {
+	}
+
+	private TemplateOptimizer() {
+	}
+
+	
+	
+	// ===========================================================================
+	// Inlinea o CSS e minifica o HTML do template
+	// ===========================================================================
+	public static String optimize(String html) {
+		Document document = Jsoup.parse(html);
+		document.outputSettings().prettyPrint(false);
+
+		List<Rule> rules = new ArrayList<>();
+		for (Element style : document.select("style")) {
+			parse(style.data(), rules);
+			style.remove();
+		}
+
+		String residualCss = minifyCss(inline(document, rules));
+		removeUnusedClasses(document, residualCss);
+		if (!residualCss.isEmpty()) {
+			document.head().appendElement("style").appendChild(new DataNode(residualCss));
+		}
+
+		removeComments(document);
+		collapseWhitespace(document.body());
+		collapseWhitespace(document.head());
+		return document.outerHtml();
+	}
+
+	
+	
+	// ===========================================================================
+	// Separa as regras inlineáveis das que precisam continuar no <style>
+	// ===========================================================================
+	private static void parse(String css, List<Rule> rules) {
+		String source = CSS_COMMENT.matcher(css).replaceAll("");
+		int cursor = 0;
+		while (cursor < source.length()) {
+			int open = source.indexOf('{', cursor);
+			int semicolon = source.indexOf(';', cursor);
+			if (open < 0) {
+				break;
+			}
+			String prelude = source.substring(cursor, open).trim();
+			if (prelude.startsWith("@") && semicolon >= 0 && semicolon < open) {
+				// @import/@charset sem bloco
+				rules.add(new Rule(prelude, source.substring(cursor, semicolon + 1), false, 0, rules.size(), Map.of()));
+				cursor = semicolon + 1;
+				continue;
+			}
+			int close = matchingBrace(source, open);
+			String body = source.substring(open + 1, close);
+			if (prelude.startsWith("@")) {
+				rules.add(new Rule(prelude, prelude + "{" + body + "}", false, 0, rules.size(), Map.of()));
+			} else {
+				for (String selector : prelude.split(",")) {
+					selector = selector.trim();
+					if (!selector.isEmpty()) {
+						boolean inlinable = inlinable(selector);
+						rules.add(new Rule(selector, selector + "{" + body + "}", inlinable, specificity(selector),
+								rules.size(), inlinable ? declarations(body) : Map.of()));
+					}
+				}
+			}
+			cursor = close + 1;
+		}
+	}
+
+	private static int matchingBrace(String source, int open) {
+		int depth = 0;
+		for (int i = open; i < source.length(); i++) {
+			char c = source.charAt(i);
+			if (c == '{') {
+				depth++;
+			} else if (c == '}' && --depth == 0) {
+				return i;
+			}
+		}
+		return source.length() - 1;
+	}
+
+	// Pseudo-classes e pseudo-elementos dependem de estado; o seletor universal repetiria as declarações em todo elemento
+	private static boolean inlinable(String selector) {
+		return !selector.isEmpty() && selector.indexOf(':') < 0 && !selector.contains("*");
+	}
+
+	// (ids, classes e atributos, tipos) em base 100
+	private static int specificity(String selector) {
+		return count(ID_SELECTOR, selector) * 10_000
+				+ count(CLASS_OR_ATTRIBUTE_SELECTOR, selector) * 100
+				+ count(TYPE_SELECTOR, selector);
+	}
+
+	private static int count(Pattern pattern, String value) {
+		Matcher matcher = pattern.matcher(value);
+		int count = 0;
+		while (matcher.find()) {
+			count++;
+		}
+		return count;
+	}
+
+	private static Map<String, String> declarations(String body) {
+		Map<String, String> declarations = new LinkedHashMap<>();
+		for (String declaration : body.split(";")) {
+			int colon = declaration.indexOf(':');
+			if (colon > 0) {
+				String property = declaration.substring(0, colon).trim().toLowerCase();
+				String value = WHITESPACE.matcher(declaration.substring(colon + 1).trim()).replaceAll(" ");
+				if (!property.isEmpty() && !value.isEmpty()) {
+					declarations.put(property, value);
+				}
+			}
+		}
+		return declarations;
+	}
+
+	
+	
+	// ===========================================================================
+	// Aplica as regras por especificidade e ordem; o style já existente no elemento
+	// vence, exceto contra declarações !important. Retorna o CSS que fica no <style>
+	// ===========================================================================
+	private static String inline(Document document, List<Rule> rules) {
+		StringBuilder residual = new StringBuilder();
+		Map<Element, List<Rule>> matches = new IdentityHashMap<>();
+		for (Rule rule : rules) {
+			Elements elements = rule.inlinable() ? select(document, rule.selector()) : null;
+			// Sem alvo fixo, a regra pode valer para uma classe preenchida por variável (ex.: .badge.${contact.environment})
+			if (elements == null || elements.isEmpty() || elements.stream().anyMatch(TemplateOptimizer::dynamicClass)) {
+				residual.append(rule.css());
+			}
+			if (elements == null) {
+				continue;
+			}
+			for (Element element : elements) {
+				if (!dynamicClass(element)) {
+					matches.computeIfAbsent(element, key -> new ArrayList<>()).add(rule);
+				}
+			}
+		}
+
+		Comparator<Rule> cascade = Comparator.comparingInt(Rule::specificity).thenComparingInt(Rule::order);
+		matches.forEach((element, matched) -> {
+			matched.sort(cascade);
+			Map<String, String> style = new LinkedHashMap<>();
+			Map<String, String> important = new LinkedHashMap<>();
+			for (Rule rule : matched) {
+				rule.declarations().forEach((property, value) -> {
+					if (value.endsWith("!important")) {
+						important.put(property, value);
+					} else {
+						style.remove(property);
+						style.put(property, value);
+					}
+				});
+			}
+			declarations(element.attr("style")).forEach((property, value) -> {
+				style.remove(property);
+				style.put(property, value);
+			});
+			style.putAll(important);
+
+			StringBuilder inline = new StringBuilder();
+			style.forEach((property, value) -> inline.append(inline.isEmpty() ? "" : ";").append(property).append(':').append(value));
+			element.attr("style", inline.toString());
+		});
+		return residual.toString();
+	}
+
+	private static Elements select(Document document, String selector) {
+		try {
+			return document.select(selector);
+		} catch (Selector.SelectorParseException e) {
+			return null;
+		}
+	}
+
+	// Elementos com classe vinda de variável recebem o estilo pelo <style>: um style inline
+	// sobrescreveria as regras da classe variável
+	private static boolean dynamicClass(Element element) {
+		return element.attr("class").contains(CompiledTemplate.PLACEHOLDER_PREFIX);
+	}
+
+	private static void removeUnusedClasses(Document document, String residualCss) {
+		for (Element element : document.select("[class]")) {
+			for (String className : new ArrayList<>(element.classNames())) {
+				if (!className.contains(CompiledTemplate.PLACEHOLDER_PREFIX) && !Pattern.compile("\\." + Pattern.quote(className) + "(?![\\w-])").matcher(residualCss).find()) {
+					element.removeClass(className);
+				}
+			}
+			if (element.classNames().isEmpty()) {
+				element.removeAttr("class");
+			}
+		}
+	}
+
+	
+	
+	// ===========================================================================
+	// Minificação: comentários (exceto os condicionais do Outlook) e espaços
+	// ===========================================================================
+	private static void removeComments(Node node) {
+		for (Node child : new ArrayList<>(node.childNodes())) {
+			if (child instanceof Comment comment) {
+				if (!comment.getData().startsWith("[if") && !comment.getData().startsWith("<![endif")) {
+					comment.remove();
+				}
+			} else {
+				removeComments(child);
+			}
+		}
+	}
+
+	private static void collapseWhitespace(Element element) {
+		if (RAW_TEXT.contains(element.normalName()) || PRESERVED_WHITESPACE.matcher(element.attr("style")).find()) {
+			return;
+		}
+		for (Node child : new ArrayList<>(element.childNodes())) {
+			if (child instanceof TextNode text) {
+				String collapsed = WHITESPACE.matcher(text.getWholeText()).replaceAll(" ");
+				if (collapsed.isBlank() && removableSpace(text)) {
+					text.remove();
+				} else {
+					text.text(collapsed);
+				}
+			} else if (child instanceof Element childElement) {
+				collapseWhitespace(childElement);
+			}
+		}
+	}
+
+	// Espaço só entre tags: pode sair quando encosta no início/fim do pai ou num elemento de bloco
+	private static boolean removableSpace(TextNode text) {
+		Node previous = text.previousSibling();
+		Node next = text.nextSibling();
+		return previous == null || next == null || isBlock(previous) || isBlock(next);
+	}
+
+	private static boolean isBlock(Node node) {
+		return node instanceof Element element && element.isBlock();
+	}
+
+	static String minifyCss(String css) {
+		String minified = WHITESPACE.matcher(CSS_COMMENT.matcher(css).replaceAll("")).replaceAll(" ");
+		return CSS_PUNCTUATION_SPACE.matcher(minified).replaceAll("$1").replace(";}", "}").trim();
+	}
+}
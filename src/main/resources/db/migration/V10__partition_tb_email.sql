@@ -0,0 +1,81 @@
+-- V10__partition_tb_email.sql
+-- tb_email passa a ser particionada por mês de send_date_email. A tabela atual vira a partição
+-- tb_email_legacy sem cópia dos dados, cobrindo tudo até o fim do mês corrente; os meses
+-- seguintes são criados (e os antigos desanexados) pelo EmailPartitionService
+
+-- A chave de partição não pode ser nula
+UPDATE tb_email SET send_date_email = now() WHERE send_date_email IS NULL;
+ALTER TABLE tb_email ALTER COLUMN send_date_email SET NOT NULL;
+
+-- Índices únicos e chaves estrangeiras de uma tabela particionada precisariam incluir
+-- send_date_email: a unicidade da chave de idempotência passa para uma tabela própria
+CREATE TABLE tb_email_idempotency (
+    idempotency_key VARCHAR(255) PRIMARY KEY,
+    email_id UUID NOT NULL
+);
+
+INSERT INTO tb_email_idempotency (idempotency_key, email_id)
+SELECT idempotency_key, id FROM tb_email WHERE idempotency_key IS NOT NULL;
+
+DROP INDEX uk_email_idempotency_key;
+ALTER TABLE tb_email_attachment DROP CONSTRAINT tb_email_attachment_email_id_fkey;
+
+-- Os gatilhos são recriados na tabela particionada (e clonados para as partições)
+DROP TRIGGER trg_email_blob_release ON tb_email;
+DROP FUNCTION fn_email_blob_release();
+
+ALTER TABLE tb_email DROP CONSTRAINT tb_email_pkey;
+ALTER TABLE tb_email RENAME TO tb_email_legacy;
+ALTER INDEX idx_email_outbox_due RENAME TO idx_email_legacy_outbox_due;
+ALTER INDEX idx_email_send_date_id RENAME TO idx_email_legacy_send_date_id;
+ALTER INDEX idx_email_status_send_date_id RENAME TO idx_email_legacy_status_send_date_id;
+ALTER INDEX idx_email_owner_send_date_id RENAME TO idx_email_legacy_owner_send_date_id;
+ALTER INDEX idx_email_job_status RENAME TO idx_email_legacy_job_status;
+
+CREATE TABLE tb_email (LIKE tb_email_legacy INCLUDING DEFAULTS INCLUDING CONSTRAINTS)
+    PARTITION BY RANGE (send_date_email);
+
+-- Os índices equivalentes da tabela antiga são reaproveitados no ATTACH
+ALTER TABLE tb_email ADD PRIMARY KEY (id, send_date_email);
+CREATE INDEX idx_email_outbox_due ON tb_email(next_attempt_at)
+    WHERE status_email IN ('PENDING', 'SENDING', 'RETRYING');
+CREATE INDEX idx_email_send_date_id ON tb_email(send_date_email DESC, id DESC);
+CREATE INDEX idx_email_status_send_date_id ON tb_email(status_email, send_date_email DESC, id DESC);
+CREATE INDEX idx_email_owner_send_date_id ON tb_email(owner_ref, send_date_email DESC, id DESC);
+CREATE INDEX idx_email_job_status ON tb_email(job_id, status_email) WHERE job_id IS NOT NULL;
+
+DO $$
+DECLARE
+    upper_bound TIMESTAMP := date_trunc('month',
+        GREATEST(now()::timestamp, (SELECT max(send_date_email) FROM tb_email_legacy))) + INTERVAL '1 month';
+BEGIN
+    EXECUTE format('ALTER TABLE tb_email ATTACH PARTITION tb_email_legacy FOR VALUES FROM (MINVALUE) TO (%L)',
+        upper_bound);
+END $$;
+
+-- Registra a chave de idempotência na mesma transação do insert; uma chave repetida
+-- falha com violação de unicidade, como acontecia com o índice único
+CREATE FUNCTION fn_email_idempotency_register() RETURNS trigger AS $$
+BEGIN
+    INSERT INTO tb_email_idempotency (idempotency_key, email_id) VALUES (NEW.idempotency_key, NEW.id);
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_email_idempotency_register AFTER INSERT ON tb_email
+    FOR EACH ROW WHEN (NEW.idempotency_key IS NOT NULL) EXECUTE FUNCTION fn_email_idempotency_register();
+
+-- Emails removidos liberam os corpos e a chave de idempotência; os anexos ficam sem email
+-- e saem pela limpeza de anexos órfãos (arquivo e linha)
+CREATE FUNCTION fn_email_release() RETURNS trigger AS $$
+BEGIN
+    UPDATE tb_email_blob SET ref_count = ref_count - 1 WHERE sha256 = OLD.text_sha256;
+    UPDATE tb_email_blob SET ref_count = ref_count - 1 WHERE sha256 = OLD.html_sha256;
+    DELETE FROM tb_email_idempotency WHERE idempotency_key = OLD.idempotency_key AND email_id = OLD.id;
+    UPDATE tb_email_attachment SET email_id = NULL WHERE email_id = OLD.id;
+    RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_email_release AFTER DELETE ON tb_email
+    FOR EACH ROW EXECUTE FUNCTION fn_email_release();
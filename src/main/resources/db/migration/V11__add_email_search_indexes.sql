@@ -0,0 +1,12 @@
+-- V11__add_email_search_indexes.sql
+-- Índices GIN da busca de emails: trigramas no destinatário (ILIKE '%trecho%') e texto
+-- completo no assunto. Criados na tabela particionada, valem para as partições atuais e
+-- para as criadas depois pelo EmailPartitionService
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX idx_email_to_trgm ON tb_email USING gin (email_to gin_trgm_ops);
+
+-- Configuração 'simple': sem stemming nem stopwords, o assunto mistura português e inglês.
+-- A busca precisa usar a mesma expressão, to_tsvector('simple', subject)
+CREATE INDEX idx_email_subject_fts ON tb_email USING gin (to_tsvector('simple', subject));
@@ -0,0 +1,21 @@
+-- V12__reserve_email_idempotency_keys.sql
+-- A chave de idempotência passa a ser reservada em tb_email_idempotency, numa transação
+-- própria, antes de montar e enviar o email: a linha nasce sem email_id e o insert em
+-- tb_email (ou o resumo do Coolify) a completa. Assim duas instâncias não enviam o mesmo email
+
+ALTER TABLE tb_email_idempotency ALTER COLUMN email_id DROP NOT NULL;
+ALTER TABLE tb_email_idempotency ADD COLUMN reserved_at TIMESTAMP NOT NULL DEFAULT now();
+
+-- O insert completa a reserva da própria chave; uma chave já ligada a outro email continua
+-- falhando com violação de unicidade
+CREATE OR REPLACE FUNCTION fn_email_idempotency_register() RETURNS trigger AS $$
+BEGIN
+    INSERT INTO tb_email_idempotency (idempotency_key, email_id) VALUES (NEW.idempotency_key, NEW.id)
+        ON CONFLICT (idempotency_key) DO UPDATE SET email_id = NEW.id
+        WHERE tb_email_idempotency.email_id IS NULL OR tb_email_idempotency.email_id = NEW.id;
+    IF NOT FOUND THEN
+        RAISE unique_violation USING MESSAGE = 'duplicate idempotency key: ' || NEW.idempotency_key;
+    END IF;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,32 @@
+-- V13__content_address_attachment_files.sql
+-- Arquivos de anexo passam a ser gravados no spool uma única vez por conteúdo, com o SHA-256
+-- como nome, como os corpos em tb_email_blob. Cada linha de tb_email_attachment continua sendo
+-- um upload (e é vinculada a um único email); o arquivo é contado por caminho em
+-- tb_email_attachment_file e removido quando nenhum anexo o referencia mais
+
+CREATE TABLE tb_email_attachment_file (
+    storage_path VARCHAR(255) PRIMARY KEY,
+    size_bytes BIGINT NOT NULL,
+    ref_count BIGINT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
+-- Arquivos sem referência são removidos pelo agendador
+CREATE INDEX idx_email_attachment_file_unreferenced ON tb_email_attachment_file(created_at) WHERE ref_count <= 0;
+
+-- Anexos gravados antes desta versão continuam com o arquivo nomeado pelo id
+INSERT INTO tb_email_attachment_file (storage_path, size_bytes, ref_count, created_at)
+SELECT storage_path, max(size_bytes), COUNT(*), min(created_at)
+FROM tb_email_attachment
+GROUP BY storage_path;
+
+-- Anexos removidos (órfãos, ou qualquer outra remoção) liberam a referência ao arquivo
+CREATE FUNCTION fn_email_attachment_release() RETURNS trigger AS $$
+BEGIN
+    UPDATE tb_email_attachment_file SET ref_count = ref_count - 1 WHERE storage_path = OLD.storage_path;
+    RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_email_attachment_release AFTER DELETE ON tb_email_attachment
+    FOR EACH ROW EXECUTE FUNCTION fn_email_attachment_release();
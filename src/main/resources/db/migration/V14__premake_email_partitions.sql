@@ -0,0 +1,21 @@
+-- V14__premake_email_partitions.sql
+-- Cria as partições mensais de tb_email do mês corrente até 3 meses à frente (o padrão de
+-- email.partitions.premake-months), para os inserts não dependerem da primeira execução do
+-- EmailPartitionService. Meses já cobertos (ex.: por tb_email_legacy) são ignorados.
+-- Não há partição DEFAULT: uma linha nela impediria criar depois a partição do seu mês
+
+DO $$
+DECLARE
+    month_start TIMESTAMP;
+BEGIN
+    FOR i IN 0..3 LOOP
+        month_start := date_trunc('month', now()::timestamp) + make_interval(months => i);
+        BEGIN
+            EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF tb_email FOR VALUES FROM (%L) TO (%L)',
+                'tb_email_' || to_char(month_start, 'YYYY_MM'), month_start, month_start + INTERVAL '1 month');
+        EXCEPTION WHEN invalid_object_definition THEN
+            -- O mês sobrepõe uma partição existente
+            NULL;
+        END;
+    END LOOP;
+END $$;
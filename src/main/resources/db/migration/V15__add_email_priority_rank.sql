@@ -0,0 +1,11 @@
+-- V15__add_email_priority_rank.sql
+-- Ordem da faixa como número (HIGH = 0, NORMAL = 1, LOW = 2), calculada pelo banco, para o outbox
+-- ler as linhas vencidas já na ordem do índice em vez de ordenar todas antes do LIMIT
+
+ALTER TABLE tb_email ADD COLUMN priority_rank SMALLINT NOT NULL
+    GENERATED ALWAYS AS (CASE priority WHEN 'HIGH' THEN 0 WHEN 'NORMAL' THEN 1 ELSE 2 END) STORED;
+
+CREATE INDEX idx_email_outbox_due_rank ON tb_email(priority_rank, next_attempt_at)
+    WHERE status_email IN ('PENDING', 'SENDING', 'RETRYING');
+
+DROP INDEX idx_email_outbox_due;
@@ -0,0 +1,13 @@
+-- V2__add_email_outbox.sql
+-- Colunas de controle do outbox de envio: tentativas, agendamento da próxima tentativa e último erro
+
+-- A coluna html é mapeada em EmailModel mas não foi criada na V1
+ALTER TABLE tb_email ADD COLUMN IF NOT EXISTS html TEXT;
+
+ALTER TABLE tb_email ADD COLUMN attempt_count INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE tb_email ADD COLUMN next_attempt_at TIMESTAMP;
+ALTER TABLE tb_email ADD COLUMN last_error VARCHAR(1000);
+
+-- Índice parcial usado pelo agendador para encontrar as linhas vencidas
+CREATE INDEX idx_email_outbox_due ON tb_email(next_attempt_at)
+    WHERE status_email IN ('PENDING', 'SENDING', 'RETRYING');
@@ -0,0 +1,7 @@
+-- V3__add_email_template_reference.sql
+-- Referência ao template usado no envio, permitindo reconstruir o HTML sob demanda
+-- em vez de armazenar o HTML renderizado em cada linha
+
+ALTER TABLE tb_email ADD COLUMN template_name VARCHAR(255);
+ALTER TABLE tb_email ADD COLUMN template_version VARCHAR(64);
+ALTER TABLE tb_email ADD COLUMN template_variables JSONB;
@@ -0,0 +1,10 @@
+-- V4__add_email_listing_indexes.sql
+-- Índices compostos para a listagem por keyset em (send_date_email, id) com filtros opcionais
+
+CREATE INDEX idx_email_send_date_id ON tb_email(send_date_email DESC, id DESC);
+CREATE INDEX idx_email_status_send_date_id ON tb_email(status_email, send_date_email DESC, id DESC);
+CREATE INDEX idx_email_owner_send_date_id ON tb_email(owner_ref, send_date_email DESC, id DESC);
+
+-- Cobertos pelos prefixos dos índices compostos acima
+DROP INDEX IF EXISTS idx_email_send_date;
+DROP INDEX IF EXISTS idx_email_status;
@@ -0,0 +1,21 @@
+-- V5__create_tb_email_job.sql
+-- Jobs de envio em massa: um template para vários destinatários, com o progresso
+-- calculado a partir dos emails vinculados (tb_email.job_id)
+
+CREATE TABLE tb_email_job (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    owner_ref VARCHAR(255),
+    template_name VARCHAR(255),
+    subject VARCHAR(255),
+    status VARCHAR(50),
+    total_recipients INTEGER NOT NULL DEFAULT 0,
+    rejected_recipients INTEGER NOT NULL DEFAULT 0,
+    last_error VARCHAR(1000),
+    created_at TIMESTAMP,
+    queued_at TIMESTAMP
+);
+
+ALTER TABLE tb_email ADD COLUMN job_id UUID;
+
+-- Contagem de progresso por status dentro de um job
+CREATE INDEX idx_email_job_status ON tb_email(job_id, status_email) WHERE job_id IS NOT NULL;
@@ -0,0 +1,8 @@
+-- V6__add_email_idempotency_key.sql
+-- Chave de idempotência dos envios (header Idempotency-Key, message id do RabbitMQ ou deployment do Coolify)
+
+ALTER TABLE tb_email ADD COLUMN idempotency_key VARCHAR(255);
+
+-- Garante um único email por chave mesmo entre instâncias; linhas sem chave não entram no índice
+CREATE UNIQUE INDEX uk_email_idempotency_key ON tb_email(idempotency_key)
+    WHERE idempotency_key IS NOT NULL;
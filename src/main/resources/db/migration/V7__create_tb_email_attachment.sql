@@ -0,0 +1,21 @@
+-- V7__create_tb_email_attachment.sql
+-- Anexos gravados em disco (spool); a tabela guarda apenas os metadados e o caminho do arquivo
+
+CREATE TABLE tb_email_attachment (
+    id UUID PRIMARY KEY,
+    email_id UUID REFERENCES tb_email(id) ON DELETE CASCADE,
+    file_name VARCHAR(255) NOT NULL,
+    content_type VARCHAR(255) NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    sha256 VARCHAR(64) NOT NULL,
+    storage_path VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX idx_email_attachment_email ON tb_email_attachment(email_id);
+
+-- Anexos enviados mas nunca vinculados a um email são removidos pelo agendador
+CREATE INDEX idx_email_attachment_orphan ON tb_email_attachment(created_at) WHERE email_id IS NULL;
+
+-- Evita consultar a tabela de anexos no envio de emails que não têm anexos
+ALTER TABLE tb_email ADD COLUMN attachment_count INTEGER NOT NULL DEFAULT 0;
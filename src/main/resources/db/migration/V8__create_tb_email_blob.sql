@@ -0,0 +1,46 @@
+-- V8__create_tb_email_blob.sql
+-- Corpos de email (text e html) guardados uma única vez por conteúdo, endereçados pelo SHA-256;
+-- tb_email passa a referenciar o hash em vez de repetir o TEXT em cada linha
+
+CREATE TABLE tb_email_blob (
+    sha256 VARCHAR(64) PRIMARY KEY,
+    content BYTEA NOT NULL,
+    compressed BOOLEAN NOT NULL DEFAULT FALSE,
+    size_bytes INTEGER NOT NULL,
+    ref_count BIGINT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
+-- Blobs sem referência são removidos pelo agendador
+CREATE INDEX idx_email_blob_unreferenced ON tb_email_blob(created_at) WHERE ref_count <= 0;
+
+ALTER TABLE tb_email ADD COLUMN text_sha256 VARCHAR(64);
+ALTER TABLE tb_email ADD COLUMN html_sha256 VARCHAR(64);
+
+-- Migra os corpos existentes (o hash é o mesmo calculado pela aplicação: SHA-256 do UTF-8, em hex)
+UPDATE tb_email SET text_sha256 = encode(sha256(convert_to(text, 'UTF8')), 'hex') WHERE text IS NOT NULL;
+UPDATE tb_email SET html_sha256 = encode(sha256(convert_to(html, 'UTF8')), 'hex') WHERE html IS NOT NULL;
+
+INSERT INTO tb_email_blob (sha256, content, size_bytes, ref_count)
+SELECT hash, convert_to(content, 'UTF8'), octet_length(convert_to(content, 'UTF8')), COUNT(*)
+FROM (
+    SELECT text_sha256 AS hash, text AS content FROM tb_email WHERE text IS NOT NULL
+    UNION ALL
+    SELECT html_sha256 AS hash, html AS content FROM tb_email WHERE html IS NOT NULL
+) bodies
+GROUP BY hash, content;
+
+ALTER TABLE tb_email DROP COLUMN text;
+ALTER TABLE tb_email DROP COLUMN html;
+
+-- Emails removidos liberam as referências aos seus corpos
+CREATE FUNCTION fn_email_blob_release() RETURNS trigger AS $$
+BEGIN
+    UPDATE tb_email_blob SET ref_count = ref_count - 1 WHERE sha256 = OLD.text_sha256;
+    UPDATE tb_email_blob SET ref_count = ref_count - 1 WHERE sha256 = OLD.html_sha256;
+    RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_email_blob_release AFTER DELETE ON tb_email
+    FOR EACH ROW EXECUTE FUNCTION fn_email_blob_release();
@@ -0,0 +1,7 @@
+-- V9__add_email_priority.sql
+-- Faixa de prioridade do email (HIGH, NORMAL, LOW); linhas existentes ficam como NORMAL
+
+ALTER TABLE tb_email ADD COLUMN priority VARCHAR(10) NOT NULL DEFAULT 'NORMAL';
+
+-- Envios em massa já registrados seguem na faixa baixa
+UPDATE tb_email SET priority = 'LOW' WHERE job_id IS NOT NULL;
@@ -0,0 +1,78 @@
+package br.com.sistema.configurations;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import br.com.sistema.enums.EmailPriority;
+import br.com.sistema.mail.SmtpPriorityGate;
+
+class MailConfigTest {
+
+	private MailConfig mailConfig;
+
+
+	@BeforeEach
+	void setUp() {
+		mailConfig = new MailConfig();
+		ReflectionTestUtils.setField(mailConfig, "maxConnections", 4);
+		ReflectionTestUtils.setField(mailConfig, "lanesEnabled", true);
+		ReflectionTestUtils.setField(mailConfig, "highShare", 1.0);
+		ReflectionTestUtils.setField(mailConfig, "normalShare", 0.75);
+		ReflectionTestUtils.setField(mailConfig, "lowShare", 0.5);
+		ReflectionTestUtils.setField(mailConfig, "laneAcquireTimeoutMillis", 0L);
+	}
+
+
+	@Test
+	void testPriorityGatePermitsSumTransportConnections() {
+		// Arrange (Preparar) - um transporte com o pool padrão (4) e outro com 6 conexões
+		SmtpTransportProperties transportProperties = new SmtpTransportProperties();
+		transportProperties.getTransports().add(new SmtpTransportProperties.Transport());
+		SmtpTransportProperties.Transport ses = new SmtpTransportProperties.Transport();
+		ses.setMaxConnections(6);
+		transportProperties.getTransports().add(ses);
+
+		// Act (Executar)
+		SmtpPriorityGate gate = mailConfig.smtpPriorityGate(transportProperties);
+
+		// Assert (Verificar) - 10 vagas na faixa alta
+		assertAcquires(gate, 10);
+	}
+
+
+	@Test
+	void testPriorityGateFallsBackToPoolSizeWithoutTransports() {
+		// Act (Executar)
+		SmtpPriorityGate gate = mailConfig.smtpPriorityGate(new SmtpTransportProperties());
+
+		// Assert (Verificar)
+		assertAcquires(gate, 4);
+	}
+
+
+	@Test
+	void testPriorityGateUsesConfiguredPermits() {
+		// Arrange (Preparar)
+		ReflectionTestUtils.setField(mailConfig, "lanePermits", 2);
+		SmtpTransportProperties transportProperties = new SmtpTransportProperties();
+		transportProperties.getTransports().add(new SmtpTransportProperties.Transport());
+		transportProperties.getTransports().add(new SmtpTransportProperties.Transport());
+
+		// Act (Executar)
+		SmtpPriorityGate gate = mailConfig.smtpPriorityGate(transportProperties);
+
+		// Assert (Verificar)
+		assertAcquires(gate, 2);
+	}
+
+	private static void assertAcquires(SmtpPriorityGate gate, int permits) {
+		for (int i = 0; i < permits; i++) {
+			assertTrue(gate.acquire(EmailPriority.HIGH));
+		}
+		assertFalse(gate.acquire(EmailPriority.HIGH));
+	}
+}
@@ -0,0 +1,144 @@
+package br.com.sistema.consumers;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.ImmediateRequeueAmqpException;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import br.com.sistema.dtos.EmailDto;
+import br.com.sistema.enums.EmailPriority;
+import br.com.sistema.metrics.EmailMetrics;
+import br.com.sistema.models.EmailModel;
+import br.com.sistema.services.EmailAttachmentService;
+import br.com.sistema.services.EmailDispatchService;
+import br.com.sistema.services.EmailIdempotencyService;
+
+@ExtendWith(MockitoExtension.class)
+class EmailConsumerTest {
+
+	@Mock	// Simula o envio SMTP e a persistência (ou o spool, com o banco fora do ar)
+	private EmailDispatchService emailDispatchService;
+
+	@Mock	// Simula a reserva das chaves de idempotência
+	private EmailIdempotencyService emailIdempotencyService;
+
+	@Mock
+	private EmailAttachmentService emailAttachmentService;
+
+	@Mock	// Captura as mensagens devolvidas à fila de espera
+	private EmailDelayPublisher emailDelayPublisher;
+
+	@Spy
+	private EmailMetrics emailMetrics = EmailMetrics.noop();
+
+	@InjectMocks
+	private EmailConsumer emailConsumer;
+
+	private EmailDto emailDto;
+
+
+	@BeforeEach
+	void setUp() {
+		emailDto = new EmailDto();
+		emailDto.setEmailFrom("remetente@test.com.br");
+		emailDto.setEmailTo("destinatario@test.com.br");
+		emailDto.setSubject("Assunto Teste");
+		emailDto.setText("Conteúdo do email de teste");
+	}
+
+
+	@Test
+	void testDelaysMessageWhileAnotherInstanceIsSending() {
+		// Arrange (Preparar) - chave reservada por outra instância, email ainda sem id
+		when(emailIdempotencyService.reserve("amqp:msg-1")).thenReturn(Optional.of(EmailIdempotencyService.IN_PROGRESS));
+
+		// Act (Executar)
+		emailConsumer.listenLow(emailDto, "msg-1");
+
+		// Assert (Verificar) - a mensagem volta para a faixa baixa com atraso, sem envio e sem descarte
+		verify(emailDelayPublisher, times(1)).delay(emailDto, "msg-1", EmailPriority.LOW);
+		verify(emailDispatchService, never()).send(any(EmailModel.class));
+	}
+
+
+	@Test
+	void testAcksDuplicateOfRegisteredEmail() {
+		// Arrange (Preparar) - a chave já aponta para um email gravado
+		when(emailIdempotencyService.reserve("amqp:msg-1")).thenReturn(Optional.of(UUID.randomUUID()));
+
+		// Act (Executar)
+		emailConsumer.listen(emailDto, "msg-1");
+
+		// Assert (Verificar)
+		verify(emailDelayPublisher, never()).delay(any(EmailDto.class), anyString(), any(EmailPriority.class));
+		verify(emailDispatchService, never()).send(any(EmailModel.class));
+	}
+
+
+	@Test
+	void testBatchDelaysOnlyMessagesStillInProgress() {
+		// Arrange (Preparar) - a primeira mensagem está em andamento, a segunda é nova
+		EmailBatchConsumer emailBatchConsumer = new EmailBatchConsumer();
+		emailBatchConsumer.emailDispatchService = emailDispatchService;
+		emailBatchConsumer.emailMetrics = emailMetrics;
+		emailBatchConsumer.emailIdempotencyService = emailIdempotencyService;
+		emailBatchConsumer.emailAttachmentService = emailAttachmentService;
+		emailBatchConsumer.emailDelayPublisher = emailDelayPublisher;
+		when(emailIdempotencyService.reserveAll(any())).thenReturn(Map.of("amqp:msg-1", EmailIdempotencyService.IN_PROGRESS));
+		Message<EmailDto> inProgress = MessageBuilder.withPayload(emailDto).setHeader(AmqpHeaders.MESSAGE_ID, "msg-1").build();
+		Message<EmailDto> fresh = MessageBuilder.withPayload(emailDto).setHeader(AmqpHeaders.MESSAGE_ID, "msg-2").build();
+		when(emailDispatchService.sendAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+		// Act (Executar)
+		emailBatchConsumer.listen(List.of(inProgress, fresh));
+
+		// Assert (Verificar) - só a mensagem nova é enviada; a outra volta para a faixa normal
+		verify(emailDelayPublisher, times(1)).delay(emailDto, "msg-1", EmailPriority.NORMAL);
+		verify(emailDispatchService, times(1)).sendAll(argThat(list -> list.size() == 1));
+		verify(emailIdempotencyService, times(1)).reserveAll(any());
+		verify(emailIdempotencyService, never()).reserve(anyString());
+	}
+
+
+	@Test
+	void testBatchReleasesReservedKeysWhenMessageCannotBeDelayed() {
+		// Arrange (Preparar) - sem fila de espera: a mensagem em andamento devolve o lote à fila
+		EmailBatchConsumer emailBatchConsumer = new EmailBatchConsumer();
+		emailBatchConsumer.emailMetrics = emailMetrics;
+		emailBatchConsumer.emailIdempotencyService = emailIdempotencyService;
+		emailBatchConsumer.emailAttachmentService = emailAttachmentService;
+		emailBatchConsumer.emailDelayPublisher = emailDelayPublisher;
+		when(emailIdempotencyService.reserveAll(any())).thenReturn(Map.of("amqp:msg-2", EmailIdempotencyService.IN_PROGRESS));
+		doThrow(new ImmediateRequeueAmqpException("Em andamento")).when(emailDelayPublisher)
+				.delay(emailDto, "msg-2", EmailPriority.NORMAL);
+		Message<EmailDto> fresh = MessageBuilder.withPayload(emailDto).setHeader(AmqpHeaders.MESSAGE_ID, "msg-1").build();
+		Message<EmailDto> inProgress = MessageBuilder.withPayload(emailDto).setHeader(AmqpHeaders.MESSAGE_ID, "msg-2").build();
+
+		// Act & Assert (Executar e Verificar) - a chave da mensagem nova é liberada e nada é enviado
+		assertThrows(ImmediateRequeueAmqpException.class, () -> emailBatchConsumer.listen(List.of(fresh, inProgress)));
+		verify(emailIdempotencyService, times(1)).release("amqp:msg-1");
+		verify(emailDispatchService, never()).sendAll(any());
+	}
+}
@@ -0,0 +1,43 @@
+package br.com.sistema.imports;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class CsvReaderTest {
+
+	@Test
+	void testReadsQuotedFieldsAndLineBreaks() throws IOException {
+		// Arrange (Preparar) - BOM, CRLF, separador e quebra de linha dentro de aspas, aspas duplicadas
+		String content = "﻿a,b,c\r\n"
+				+ "1,\"dois, com vírgula\",\"linha 1\nlinha 2\"\r\n"
+				+ "\r\n"
+				+ "\"diz \"\"oi\"\"\",,fim";
+
+		try (CsvReader reader = new CsvReader(new StringReader(content))) {
+			// Act & Assert (Executar e Verificar)
+			assertEquals(List.of("a", "b", "c"), reader.next());
+			assertEquals(List.of("1", "dois, com vírgula", "linha 1\nlinha 2"), reader.next());
+			assertEquals(2, reader.getRecordLine());
+			assertEquals(List.of("diz \"oi\"", "", "fim"), reader.next());
+			assertEquals(5, reader.getRecordLine());
+			assertNull(reader.next());
+		}
+	}
+
+
+	@Test
+	void testRejectsUnclosedQuote() {
+		// Arrange (Preparar)
+		CsvReader reader = new CsvReader(new StringReader("a,\"sem fim\n"));
+
+		// Act & Assert (Executar e Verificar)
+		assertThrows(CsvReader.MalformedCsvException.class, reader::next);
+	}
+}
@@ -0,0 +1,76 @@
+package br.com.sistema.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.logging.log4j.ThreadContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class EmailLogContextTest {
+
+	@AfterEach
+	void tearDown() {
+		EmailLogContext.clear();
+	}
+
+
+	@Test
+	void testCorrelateKeepsValidIdAndReplacesUnsafeOne() {
+		// Act & Assert (Executar e Verificar)
+		assertEquals("amq.ctag-1:42", EmailLogContext.correlate("amq.ctag-1:42"));
+		assertEquals("amq.ctag-1:42", ThreadContext.get(EmailLogContext.CORRELATION_ID));
+
+		String generated = EmailLogContext.correlate("abc\n{\"level\":\"ERROR\"}");
+		assertNotEquals("abc\n{\"level\":\"ERROR\"}", generated);
+		assertEquals(7, UUID.fromString(generated).version());
+		assertEquals(7, UUID.fromString(EmailLogContext.correlate(null)).version());
+	}
+
+
+	@Test
+	void testRestoreEmailIdReturnsToPreviousEmail() {
+		// Arrange (Preparar)
+		UUID outer = UUID.randomUUID();
+		UUID inner = UUID.randomUUID();
+		String none = EmailLogContext.putEmailId(outer);
+
+		// Act (Executar)
+		String previous = EmailLogContext.putEmailId(inner);
+		String duringInner = ThreadContext.get(EmailLogContext.EMAIL_ID);
+		EmailLogContext.restoreEmailId(previous);
+
+		// Assert (Verificar)
+		assertEquals(inner.toString(), duringInner);
+		assertEquals(outer.toString(), ThreadContext.get(EmailLogContext.EMAIL_ID));
+		EmailLogContext.restoreEmailId(none);
+		assertNull(ThreadContext.get(EmailLogContext.EMAIL_ID));
+	}
+
+
+	@Test
+	void testTaskDecoratorCarriesContextToWorkerAndClearsIt() throws Exception {
+		// Arrange (Preparar)
+		EmailLogContext.correlate("req-1");
+		AtomicReference<String> seen = new AtomicReference<>();
+		AtomicReference<String> after = new AtomicReference<>("not run");
+		Runnable probe = EmailLogContext.taskDecorator()
+				.decorate(() -> seen.set(ThreadContext.get(EmailLogContext.CORRELATION_ID)));
+
+		// Act (Executar)
+		Thread worker = new Thread(() -> {
+			probe.run();
+			after.set(ThreadContext.get(EmailLogContext.CORRELATION_ID));
+		});
+		worker.start();
+		worker.join();
+
+		// Assert (Verificar)
+		assertEquals("req-1", seen.get());
+		assertNull(after.get());
+	}
+}
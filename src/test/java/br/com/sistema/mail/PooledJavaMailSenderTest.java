@@ -0,0 +1,125 @@
+package br.com.sistema.mail;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+
+class PooledJavaMailSenderTest {
+
+	// Conexões "abertas" pelo sender durante o teste
+	private List<Transport> openedTransports;
+
+	private PooledJavaMailSender mailSender;
+
+
+	@BeforeEach
+	void setUp() {
+		openedTransports = new ArrayList<>();
+		mailSender = new PooledJavaMailSender(2, 3, 60_000, 60_000, 1_000) {
+			@Override
+			protected Transport connectTransport() {
+				Transport transport = mock(Transport.class);
+				openedTransports.add(transport);
+				return transport;
+			}
+		};
+	}
+
+	private MimeMessage message() throws MessagingException {
+		MimeMessage mimeMessage = mailSender.createMimeMessage();
+		mimeMessage.setFrom(new InternetAddress("remetente@test.com.br"));
+		mimeMessage.setRecipient(Message.RecipientType.TO, new InternetAddress("destinatario@test.com.br"));
+		mimeMessage.setSubject("Assunto Teste");
+		mimeMessage.setText("Conteúdo do email de teste");
+		return mimeMessage;
+	}
+
+
+	@Test
+	void testReusesConnectionAcrossSends() throws MessagingException {
+		// Act (Executar)
+		mailSender.send(message());
+		mailSender.send(message());
+
+		// Assert (Verificar) - uma única conexão SMTP para os dois envios
+		assertEquals(1, openedTransports.size());
+		verify(openedTransports.get(0), times(2)).sendMessage(any(MimeMessage.class), any(Address[].class));
+		assertEquals(1, mailSender.getIdleConnectionCount());
+	}
+
+
+	@Test
+	void testRecyclesConnectionAfterMaxMessages() throws MessagingException {
+		// Act (Executar) - limite de 3 mensagens por conexão
+		mailSender.send(message(), message(), message(), message());
+		mailSender.send(message());
+
+		// Assert (Verificar) - o envio de 4 mensagens troca de conexão na quarta
+		assertEquals(2, openedTransports.size());
+		verify(openedTransports.get(0), times(3)).sendMessage(any(MimeMessage.class), any(Address[].class));
+		verify(openedTransports.get(0)).close();
+		verify(openedTransports.get(1), times(2)).sendMessage(any(MimeMessage.class), any(Address[].class));
+	}
+
+
+	@Test
+	void testDiscardsBrokenConnection() throws MessagingException {
+		// Arrange (Preparar)
+		mailSender.send(message());
+		Transport broken = openedTransports.get(0);
+		doThrow(new MessagingException("Connection reset")).when(broken).sendMessage(any(MimeMessage.class), any(Address[].class));
+
+		// Act (Executar)
+		assertThrows(MailSendException.class, () -> mailSender.send(message()));
+		mailSender.send(message());
+
+		// Assert (Verificar) - a conexão quebrada foi fechada e uma nova foi aberta
+		verify(broken).close();
+		assertEquals(2, openedTransports.size());
+	}
+
+
+	@Test
+	void testVirtualThreadSendsRunTransportOnPlatformThread() throws Exception {
+		// Arrange (Preparar)
+		mailSender.send(message());
+		AtomicReference<Thread> smtpThread = new AtomicReference<>();
+		doAnswer(invocation -> {
+			smtpThread.set(Thread.currentThread());
+			return null;
+		}).when(openedTransports.get(0)).sendMessage(any(MimeMessage.class), any(Address[].class));
+		MimeMessage mimeMessage = message();
+
+		// Act (Executar)
+		Thread sender = Thread.ofVirtual().start(() -> mailSender.send(mimeMessage));
+		sender.join();
+
+		// Assert (Verificar) - o sendMessage synchronized não roda na virtual thread
+		assertNotNull(smtpThread.get());
+		assertFalse(smtpThread.get().isVirtual());
+		assertTrue(smtpThread.get().getName().startsWith("smtp-transport-"));
+	}
+}
@@ -0,0 +1,249 @@
+package br.com.sistema.mail;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+
+import br.com.sistema.mail.RoutingJavaMailSender.Node;
+import br.com.sistema.mail.RoutingJavaMailSender.Strategy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+
+class RoutingJavaMailSenderTest {
+
+	private static Node node(String name, JavaMailSender sender, int weight) {
+		return new Node(name, sender, weight, null, null);
+	}
+
+	private static MimeMessage message() {
+		return new MimeMessage((Session) null);
+	}
+
+
+	@Test
+	void testWeightedRoundRobinFollowsWeights() {
+		// Arrange (Preparar) - pesos 3 e 1
+		JavaMailSender first = mock(JavaMailSender.class);
+		JavaMailSender second = mock(JavaMailSender.class);
+		RoutingJavaMailSender router = new RoutingJavaMailSender(
+				List.of(node("a", first, 3), node("b", second, 1)), Strategy.WEIGHTED_ROUND_ROBIN, 3, 30_000, 0, 0);
+
+		// Act (Executar)
+		for (int i = 0; i < 8; i++) {
+			router.send(message());
+		}
+
+		// Assert (Verificar)
+		verify(first, times(6)).send(any(MimeMessage[].class));
+		verify(second, times(2)).send(any(MimeMessage[].class));
+	}
+
+
+	@Test
+	void testFailsOverAndEjectsUnhealthyTransport() {
+		// Arrange (Preparar) - "a" não conecta; limite de 2 falhas seguidas
+		JavaMailSender first = mock(JavaMailSender.class);
+		JavaMailSender second = mock(JavaMailSender.class);
+		doThrow(new MailSendException("Mail server connection failed")).when(first).send(any(MimeMessage[].class));
+		RoutingJavaMailSender router = new RoutingJavaMailSender(
+				List.of(node("a", first, 1), node("b", second, 1)), Strategy.LEAST_IN_FLIGHT, 2, 60_000, 0, 0);
+
+		// Act (Executar)
+		for (int i = 0; i < 5; i++) {
+			router.send(message());
+		}
+
+		// Assert (Verificar) - todos entregues por "b"; "a" deixa de ser tentado após 2 falhas
+		verify(second, times(5)).send(any(MimeMessage[].class));
+		verify(first, times(2)).send(any(MimeMessage[].class));
+		assertTrue(router.getNodes().get(0).isEjected());
+	}
+
+
+	@Test
+	void testFailoverRestoresOriginalFrom() throws Exception {
+		// Arrange (Preparar) - "a" troca o From pelo remetente da conta e não conecta; "b" mantém o original
+		JavaMailSender first = mock(JavaMailSender.class);
+		JavaMailSender second = mock(JavaMailSender.class);
+		doThrow(new MailSendException("Mail server connection failed")).when(first).send(any(MimeMessage[].class));
+		List<String> fromSeen = new ArrayList<>();
+		doAnswer(invocation -> {
+			fromSeen.add(((MimeMessage) invocation.getArgument(0)).getHeader("From", ","));
+			return null;
+		}).when(second).send(any(MimeMessage[].class));
+		RoutingJavaMailSender router = new RoutingJavaMailSender(
+				List.of(new Node("a", first, 1, null, new InternetAddress("relay@conta-a.com")), node("b", second, 1)),
+				Strategy.LEAST_IN_FLIGHT, 3, 30_000, 0, 0);
+		MimeMessage mimeMessage = message();
+		mimeMessage.setFrom(new InternetAddress("remetente@test.com.br"));
+
+		// Act (Executar)
+		router.send(mimeMessage);
+
+		// Assert (Verificar)
+		verify(first).send(any(MimeMessage[].class));
+		assertEquals(List.of("remetente@test.com.br"), fromSeen);
+	}
+
+
+	@Test
+	void testDoesNotFailOverRejectedRecipientsOrMidMessageErrors() {
+		// Arrange (Preparar) - o servidor recusa o destinatário da primeira mensagem e
+		// a resposta ao DATA da segunda não chega (pode já ter sido entregue)
+		JavaMailSender first = mock(JavaMailSender.class);
+		JavaMailSender second = mock(JavaMailSender.class);
+		MimeMessage rejected = message();
+		MimeMessage timedOut = message();
+		SendFailedException invalidRecipient = new SendFailedException("550 mailbox unavailable");
+		MessagingException readTimeout = new MessagingException("Exception reading response");
+		doThrow(new MailSendException(Map.of(rejected, invalidRecipient, timedOut, readTimeout)))
+				.when(first).send(any(MimeMessage[].class));
+		RoutingJavaMailSender router = new RoutingJavaMailSender(
+				List.of(node("a", first, 1), node("b", second, 1)), Strategy.WEIGHTED_ROUND_ROBIN, 3, 30_000, 0, 0);
+
+		// Act (Executar)
+		MailSendException exception = assertThrows(MailSendException.class, () -> router.send(rejected, timedOut));
+
+		// Assert (Verificar) - nenhuma mensagem vai para "b"; as duas falhas voltam para quem enviou
+		verify(second, never()).send(any(MimeMessage[].class));
+		assertSame(invalidRecipient, exception.getFailedMessages().get(rejected));
+		assertSame(readTimeout, exception.getFailedMessages().get(timedOut));
+	}
+
+
+	@Test
+	void testFailsOverMessagesLeftByLostConnection() {
+		// Arrange (Preparar) - a primeira mensagem sai; a conexão da segunda não abre
+		JavaMailSender first = mock(JavaMailSender.class);
+		JavaMailSender second = mock(JavaMailSender.class);
+		MimeMessage sent = message();
+		MimeMessage notSent = message();
+		MessagingException connectFailure = new MessagingException("Couldn't connect to host");
+		doThrow(new MailSendException("Mail server connection failed", connectFailure, Map.of(notSent, connectFailure)))
+				.when(first).send(any(MimeMessage[].class));
+		RoutingJavaMailSender router = new RoutingJavaMailSender(
+				List.of(node("a", first, 1), node("b", second, 1)), Strategy.WEIGHTED_ROUND_ROBIN, 3, 30_000, 0, 0);
+
+		// Act (Executar)
+		router.send(sent, notSent);
+
+		// Assert (Verificar) - só a mensagem que não chegou ao servidor vai para "b"
+		verify(second).send(new MimeMessage[] { notSent });
+	}
+
+
+	@Test
+	void testSkipsRateLimitedTransport() {
+		// Arrange (Preparar) - "a" aceita 1 envio por minuto; "b" não tem limite
+		JavaMailSender first = mock(JavaMailSender.class);
+		JavaMailSender second = mock(JavaMailSender.class);
+		RoutingJavaMailSender router = new RoutingJavaMailSender(
+				List.of(new Node("a", first, 1, new TokenBucket(1.0 / 60, 1), null), node("b", second, 1)),
+				Strategy.LEAST_IN_FLIGHT, 3, 30_000, 0, 60_000);
+
+		// Act (Executar)
+		router.send(message());
+		router.send(message());
+
+		// Assert (Verificar) - o segundo envio vai para "b" sem esperar o token de "a"
+		verify(first).send(any(MimeMessage[].class));
+		verify(second).send(any(MimeMessage[].class));
+	}
+
+
+	@Test
+	void testThrowsThrottledWhenEveryTransportIsRateLimited() {
+		// Arrange (Preparar) - único transporte com 1 envio por minuto e nenhuma espera permitida
+		JavaMailSender first = mock(JavaMailSender.class);
+		RoutingJavaMailSender router = new RoutingJavaMailSender(
+				List.of(new Node("a", first, 1, new TokenBucket(1.0 / 60, 1), null)),
+				Strategy.WEIGHTED_ROUND_ROBIN, 3, 30_000, 0, 0);
+		router.send(message());
+
+		// Act (Executar)
+		SmtpThrottledException exception = assertThrows(SmtpThrottledException.class, () -> router.send(message()));
+
+		// Assert (Verificar) - o envio não chegou ao transporte e pode ser reagendado
+		verify(first).send(any(MimeMessage[].class));
+		assertTrue(exception.getRetryAfterNanos() > 0);
+		assertFalse(router.getNodes().get(0).isEjected());
+	}
+
+
+	@Test
+	void testRefundsTokensOfTransportThatSentNothing() {
+		// Arrange (Preparar) - "a" aceita 1 envio por minuto e não conecta na primeira vez
+		JavaMailSender first = mock(JavaMailSender.class);
+		JavaMailSender second = mock(JavaMailSender.class);
+		doThrow(new MailSendException("Mail server connection failed")).doNothing()
+				.when(first).send(any(MimeMessage[].class));
+		RoutingJavaMailSender router = new RoutingJavaMailSender(
+				List.of(new Node("a", first, 1, new TokenBucket(1.0 / 60, 1), null), node("b", second, 1)),
+				Strategy.WEIGHTED_ROUND_ROBIN, 3, 30_000, 0, 0);
+
+		// Act (Executar) - o segundo envio começa por "a" de novo (round-robin de pesos iguais)
+		router.send(message());
+		router.send(message());
+		router.send(message());
+
+		// Assert (Verificar) - a falha não gastou o token de "a", que entrega o terceiro envio
+		verify(first, times(2)).send(any(MimeMessage[].class));
+		verify(second, times(2)).send(any(MimeMessage[].class));
+	}
+
+
+	@Test
+	void testReportsThrottledWhenFailoverTargetIsRateLimited() {
+		// Arrange (Preparar) - "a" não conecta e "b" já usou o envio do minuto
+		JavaMailSender first = mock(JavaMailSender.class);
+		JavaMailSender second = mock(JavaMailSender.class);
+		doThrow(new MailSendException("Mail server connection failed")).when(first).send(any(MimeMessage[].class));
+		TokenBucket secondLimit = new TokenBucket(1.0 / 60, 1);
+		secondLimit.tryAcquire(System.nanoTime());
+		RoutingJavaMailSender router = new RoutingJavaMailSender(
+				List.of(node("a", first, 1), new Node("b", second, 1, secondLimit, null)),
+				Strategy.WEIGHTED_ROUND_ROBIN, 3, 30_000, 0, 0);
+
+		// Act & Assert (Executar e Verificar) - nada chegou ao DATA: adiado, sem contar tentativa
+		assertThrows(SmtpThrottledException.class, () -> router.send(message()));
+		verify(second, never()).send(any(MimeMessage[].class));
+	}
+
+
+	@Test
+	void testThrowsLastFailureWhenEveryTransportFails() {
+		// Arrange (Preparar)
+		JavaMailSender first = mock(JavaMailSender.class);
+		JavaMailSender second = mock(JavaMailSender.class);
+		MailSendException down = new MailSendException("Mail server connection failed");
+		doThrow(down).when(first).send(any(MimeMessage[].class));
+		doThrow(down).when(second).send(any(MimeMessage[].class));
+		RoutingJavaMailSender router = new RoutingJavaMailSender(
+				List.of(node("a", first, 1), node("b", second, 1)), Strategy.WEIGHTED_ROUND_ROBIN, 3, 30_000, 0, 0);
+
+		// Act & Assert (Executar e Verificar) - cada transporte é tentado uma única vez
+		assertSame(down, assertThrows(MailSendException.class, () -> router.send(message())));
+		verify(first).send(any(MimeMessage[].class));
+		verify(second).send(any(MimeMessage[].class));
+	}
+}
@@ -0,0 +1,77 @@
+package br.com.sistema.mail;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import br.com.sistema.enums.EmailPriority;
+
+class SmtpPriorityGateTest {
+
+
+	@Test
+	void testLowLaneCannotTakeEveryPermit() {
+		// Arrange (Preparar) - 4 vagas, faixa baixa com metade, sem espera
+		SmtpPriorityGate gate = new SmtpPriorityGate(true, 4, 1.0, 0.75, 0.5, 0);
+
+		// Act & Assert (Executar e Verificar)
+		assertEquals(2, gate.laneLimit(EmailPriority.LOW));
+		assertTrue(gate.acquire(EmailPriority.LOW));
+		assertTrue(gate.acquire(EmailPriority.LOW));
+		assertFalse(gate.acquire(EmailPriority.LOW));
+		assertTrue(gate.acquire(EmailPriority.HIGH));
+		assertTrue(gate.acquire(EmailPriority.HIGH));
+		assertFalse(gate.acquire(EmailPriority.HIGH));
+
+		gate.release(EmailPriority.LOW);
+		assertTrue(gate.acquire(EmailPriority.NORMAL));
+	}
+
+
+	@Test
+	void testWaitingHighLaneEntersBeforeLowLane() throws Exception {
+		// Arrange (Preparar) - uma única vaga ocupada pela faixa normal
+		SmtpPriorityGate gate = new SmtpPriorityGate(true, 1, 1.0, 1.0, 1.0, 5000);
+		assertTrue(gate.acquire(EmailPriority.NORMAL));
+		CompletableFuture<Boolean> low = CompletableFuture.supplyAsync(() -> gate.acquire(EmailPriority.LOW));
+		awaitWaiting(gate, EmailPriority.LOW);
+		CompletableFuture<Boolean> high = CompletableFuture.supplyAsync(() -> gate.acquire(EmailPriority.HIGH));
+		awaitWaiting(gate, EmailPriority.HIGH);
+
+		// Act (Executar)
+		gate.release(EmailPriority.NORMAL);
+
+		// Assert (Verificar) - a faixa alta entra mesmo tendo chegado depois
+		assertTrue(high.get(2, TimeUnit.SECONDS));
+		assertFalse(low.isDone());
+		gate.release(EmailPriority.HIGH);
+		assertTrue(low.get(2, TimeUnit.SECONDS));
+		assertEquals(1, gate.active(EmailPriority.LOW));
+	}
+
+
+	@Test
+	void testGivesUpAfterTimeout() {
+		// Arrange (Preparar)
+		SmtpPriorityGate gate = new SmtpPriorityGate(true, 1, 1.0, 1.0, 1.0, 50);
+		assertTrue(gate.acquire(EmailPriority.LOW));
+
+		// Act & Assert (Executar e Verificar)
+		assertFalse(gate.acquire(EmailPriority.HIGH));
+		assertEquals(0, gate.waiting(EmailPriority.HIGH));
+		assertTrue(SmtpPriorityGate.unlimited().acquire(EmailPriority.LOW));
+	}
+
+	private static void awaitWaiting(SmtpPriorityGate gate, EmailPriority priority) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+		while (gate.waiting(priority) == 0 && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(1, gate.waiting(priority));
+	}
+}
@@ -0,0 +1,84 @@
+package br.com.sistema.mail;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class SmtpRateLimiterTest {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+
+	@Test
+	void testTokenBucketAllowsBurstThenRefillsAtRate() {
+		// Arrange (Preparar) - 2 por segundo, rajada de 3
+		TokenBucket bucket = new TokenBucket(2, 3);
+		long now = 1_000 * SECOND;
+
+		// Act & Assert (Executar e Verificar)
+		assertEquals(0, bucket.tryAcquire(now));
+		assertEquals(0, bucket.tryAcquire(now));
+		assertEquals(0, bucket.tryAcquire(now));
+		assertEquals(SECOND / 2, bucket.tryAcquire(now));
+		assertEquals(0, bucket.tryAcquire(now + SECOND / 2));
+		assertTrue(bucket.tryAcquire(now + SECOND / 2) > 0);
+	}
+
+
+	@Test
+	void testLimitsEachRecipientDomainSeparately() {
+		// Arrange (Preparar) - conta folgada, 1 envio por domínio
+		SmtpRateLimiter limiter = new SmtpRateLimiter(true, 1000, 100, 1, 1);
+		long now = 1_000 * SECOND;
+
+		// Act & Assert (Executar e Verificar)
+		assertEquals(0, limiter.tryAcquire("conta@gmail.com", "ana@empresa.com.br", now));
+		assertTrue(limiter.tryAcquire("conta@gmail.com", "Bruno <bruno@EMPRESA.com.br>", now) > 0);
+		assertEquals(0, limiter.tryAcquire("conta@gmail.com", "carla@outra.com", now));
+	}
+
+
+	@Test
+	void testAccountLimitRefundsDomainToken() {
+		// Arrange (Preparar) - conta com 1 envio, domínio com rajada de 2
+		SmtpRateLimiter limiter = new SmtpRateLimiter(true, 1, 1, 1, 2);
+		long now = 1_000 * SECOND;
+		assertEquals(0, limiter.tryAcquire("conta@gmail.com", "ana@empresa.com.br", now));
+
+		// Act (Executar) - negado pela conta; o token do domínio deve ser devolvido
+		assertTrue(limiter.tryAcquire("conta@gmail.com", "bruno@empresa.com.br", now) > 0);
+
+		// Assert (Verificar) - outra conta ainda usa o segundo token do domínio
+		assertEquals(0, limiter.tryAcquire("outra@gmail.com", "carla@empresa.com.br", now));
+	}
+
+
+	@Test
+	void testWithoutAccountOnlyDomainIsLimited() {
+		// Arrange (Preparar) - conta com 1 envio; sem conta (transportes com limite próprio) ela não conta
+		SmtpRateLimiter limiter = new SmtpRateLimiter(true, 1, 1, 1000, 100);
+		long now = 1_000 * SECOND;
+
+		// Act & Assert (Executar e Verificar)
+		for (int i = 0; i < 5; i++) {
+			assertEquals(0, limiter.tryAcquire(null, "ana@empresa.com.br", now));
+		}
+	}
+
+
+	@Test
+	void testEvictsFullBuckets() {
+		// Arrange (Preparar)
+		SmtpRateLimiter limiter = new SmtpRateLimiter(true, 1000, 100, 1000, 100);
+		limiter.tryAcquire("conta@gmail.com", "ana@empresa.com.br", System.nanoTime() - 10 * SECOND);
+
+		// Act (Executar)
+		limiter.evictIdle();
+
+		// Assert (Verificar)
+		assertEquals(0, limiter.trackedDomains());
+	}
+}
@@ -0,0 +1,74 @@
+package br.com.sistema.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import br.com.sistema.enums.StatusEmail;
+import br.com.sistema.models.EmailModel;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class EmailMetricsTest {
+
+	private SimpleMeterRegistry registry;
+
+	private EmailMetrics emailMetrics;
+
+
+	@BeforeEach
+	void setUp() {
+		registry = new SimpleMeterRegistry();
+		emailMetrics = new EmailMetrics(registry);
+	}
+
+
+	@Test
+	void testSmtpSendTracksInFlightAndOutcome() {
+		// Act (Executar)
+		Timer.Sample sample = emailMetrics.startSmtpSend(3);
+		double inFlight = registry.get("email.smtp.in_flight").gauge().value();
+		emailMetrics.stopSmtpSend(sample, 3, false);
+
+		// Assert (Verificar)
+		assertEquals(3.0, inFlight);
+		assertEquals(0.0, registry.get("email.smtp.in_flight").gauge().value());
+		assertEquals(1, registry.get("email.smtp.send").tag("outcome", "failure").timer().count());
+		assertEquals(0, registry.get("email.smtp.send").tag("outcome", "success").timer().count());
+	}
+
+
+	@Test
+	void testCountsStatusByTemplate() {
+		// Arrange (Preparar)
+		EmailModel templated = new EmailModel();
+		templated.setStatusEmail(StatusEmail.SENT);
+		templated.setTemplateName("template-email-gemini.html");
+		EmailModel plain = new EmailModel();
+		plain.setStatusEmail(StatusEmail.RETRYING);
+
+		// Act (Executar)
+		emailMetrics.countStatus(templated);
+		emailMetrics.countStatus(templated);
+		emailMetrics.countStatus(plain);
+
+		// Assert (Verificar)
+		assertEquals(2.0, registry.get("email.status").tags("status", "SENT", "template", "template-email-gemini.html").counter().count());
+		assertEquals(1.0, registry.get("email.status").tags("status", "RETRYING", "template", "none").counter().count());
+	}
+
+
+	@Test
+	void testTimesRenderAndDbSave() {
+		// Act (Executar)
+		String html = emailMetrics.timeRender("template-email.html", () -> "<p>ok</p>");
+		Integer saved = emailMetrics.timeDbSave("save_all", () -> 2);
+
+		// Assert (Verificar)
+		assertEquals("<p>ok</p>", html);
+		assertEquals(2, saved);
+		assertEquals(1, registry.get("email.template.render").tag("template", "template-email.html").timer().count());
+		assertEquals(1, registry.get("email.db.save").tag("operation", "save_all").timer().count());
+	}
+}
@@ -0,0 +1,30 @@
+package br.com.sistema.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+class UuidV7Test {
+
+
+	@Test
+	void testIdsAreVersion7AndIncreasing() {
+		// Arrange (Preparar)
+		long before = System.currentTimeMillis();
+		UUID previous = UuidV7.next();
+
+		// Act & Assert (Executar e Verificar) - vários ids no mesmo milissegundo continuam em ordem
+		for (int i = 0; i < 10_000; i++) {
+			UUID next = UuidV7.next();
+			assertEquals(7, next.version());
+			assertEquals(2, next.variant());
+			assertTrue(Long.compareUnsigned(previous.getMostSignificantBits(), next.getMostSignificantBits()) < 0);
+			assertTrue(previous.toString().compareTo(next.toString()) < 0);
+			previous = next;
+		}
+		assertTrue((previous.getMostSignificantBits() >>> 16) >= before);
+	}
+}
@@ -0,0 +1,110 @@
+package br.com.sistema.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import br.com.sistema.dtos.CoolifyWebhookDto;
+import br.com.sistema.models.EmailModel;
+
+class CoolifyDigestServiceTest {
+
+	private EmailService emailService;
+
+	private EmailIdempotencyService emailIdempotencyService;
+
+	private CoolifyDigestService coolifyDigestService;
+
+	private final List<EmailModel> sent = new ArrayList<>();
+
+
+	@BeforeEach
+	void setUp() {
+		// Serviço real para montar os templates; o envio é simulado
+		EmailService realService = new EmailService();
+		ReflectionTestUtils.setField(realService, "emailTemplateService", new EmailTemplateService());
+		emailService = spy(realService);
+		doAnswer(invocation -> {
+			EmailModel emailModel = invocation.getArgument(0);
+			emailModel.setId(UUID.randomUUID());
+			sent.add(emailModel);
+			return emailModel;
+		}).when(emailService).sendEmail(any(EmailModel.class));
+		emailIdempotencyService = mock(EmailIdempotencyService.class);
+
+		coolifyDigestService = new CoolifyDigestService();
+		ReflectionTestUtils.setField(coolifyDigestService, "emailService", emailService);
+		ReflectionTestUtils.setField(coolifyDigestService, "emailIdempotencyService", emailIdempotencyService);
+		ReflectionTestUtils.setField(coolifyDigestService, "windowMs", 0L);
+	}
+
+	private static CoolifyWebhookDto webhook(boolean success, String application, String project) {
+		return new CoolifyWebhookDto(success, "Deploy <" + application + "> concluído", "deployment_success", application,
+				application + "-uuid", application + "-dep", "https://coolify/" + application, project, "production",
+				"https://" + application + ".test.com");
+	}
+
+
+	@Test
+	void testGroupsEventsPerProjectIntoOneDigest() {
+		// Arrange (Preparar) - 3 deploys no mesmo projeto e 1 em outro
+		coolifyDigestService.add(webhook(true, "api", "loja"), "coolify:1");
+		coolifyDigestService.add(webhook(true, "web", "loja"), "coolify:2");
+		coolifyDigestService.add(webhook(true, "worker", "loja"), "coolify:3");
+		coolifyDigestService.add(webhook(true, "site", "blog"), "coolify:4");
+
+		// Act (Executar)
+		coolifyDigestService.flushDue();
+
+		// Assert (Verificar) - um resumo para "loja" e o email normal para o evento único de "blog"
+		assertEquals(2, sent.size());
+		EmailModel digest = sent.stream().filter(e -> e.getSubject().contains("loja")).findFirst().get();
+		assertEquals(CoolifyDigestService.DIGEST_TEMPLATE, digest.getTemplateName());
+		assertEquals("Resumo de deploys: loja/production (3)", digest.getSubject());
+		assertTrue(digest.getHtml().contains("Deploy &lt;worker&gt; concluído"));
+		assertFalse(digest.getHtml().contains("${contact."));
+		EmailModel single = sent.stream().filter(e -> !e.getSubject().contains("loja")).findFirst().get();
+		assertEquals("template-email-coolify.html", single.getTemplateName());
+		verify(emailIdempotencyService).link(eq("coolify:3"), eq(digest.getId()));
+
+		// A janela foi esvaziada
+		coolifyDigestService.flushDue();
+		assertEquals(2, sent.size());
+	}
+
+
+	@Test
+	void testFailuresAreNotDigestedAndFullWindowIsSentEarly() {
+		// Arrange (Preparar) - janela longa, no máximo 2 eventos
+		ReflectionTestUtils.setField(coolifyDigestService, "windowMs", 3_600_000L);
+		ReflectionTestUtils.setField(coolifyDigestService, "maxEvents", 2);
+
+		// Act (Executar)
+		coolifyDigestService.add(webhook(true, "api", "loja"), "coolify:1");
+		coolifyDigestService.flushDue();
+		verify(emailService, never()).sendEmail(any());
+		coolifyDigestService.add(webhook(true, "web", "loja"), "coolify:2");
+
+		// Assert (Verificar)
+		assertFalse(coolifyDigestService.accepts(webhook(false, "api", "loja")));
+		verify(emailService, times(1)).sendEmail(any());
+		verify(emailIdempotencyService, never()).release(anyString());
+	}
+}
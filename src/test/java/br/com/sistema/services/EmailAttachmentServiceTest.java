@@ -0,0 +1,248 @@
+package br.com.sistema.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import br.com.sistema.models.EmailAttachmentModel;
+import br.com.sistema.models.EmailModel;
+import br.com.sistema.repositories.EmailAttachmentRepository;
+import jakarta.activation.DataSource;
+
+@ExtendWith(MockitoExtension.class)
+class EmailAttachmentServiceTest {
+
+	@Mock
+	private EmailAttachmentRepository emailAttachmentRepository;
+
+	@TempDir
+	Path tempDir;
+
+	private EmailAttachmentService emailAttachmentService;
+
+
+	@BeforeEach
+	void setUp() throws Exception {
+		Path localRoot = Files.createDirectories(tempDir.resolve("local"));
+		emailAttachmentService = new EmailAttachmentService(tempDir.resolve("spool").toString(), localRoot.toString(), 1024, 2);
+		ReflectionTestUtils.setField(emailAttachmentService, "emailAttachmentRepository", emailAttachmentRepository);
+	}
+
+
+	@Test
+	void testStoreSpoolsFileWithSizeAndHash() throws Exception {
+		// Arrange (Preparar)
+		when(emailAttachmentRepository.save(any(EmailAttachmentModel.class))).thenAnswer(invocation -> invocation.getArgument(0));
+		byte[] content = "conteúdo do anexo".getBytes(StandardCharsets.UTF_8);
+
+		// Act (Executar) - o nome enviado pelo cliente pode trazer diretórios
+		EmailAttachmentModel attachment = emailAttachmentService.store(new ByteArrayInputStream(content),
+				"C:\\Users\\ana\\relatorio.pdf", "application/pdf");
+
+		// Assert (Verificar)
+		assertEquals("relatorio.pdf", attachment.getFileName());
+		assertEquals(content.length, attachment.getSizeBytes());
+		assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content)), attachment.getSha256());
+
+		// O DataSource pode ser lido mais de uma vez (reenvio pelo outbox)
+		DataSource dataSource = emailAttachmentService.open(attachment);
+		for (int i = 0; i < 2; i++) {
+			try (InputStream in = dataSource.getInputStream()) {
+				assertArrayEquals(content, in.readAllBytes());
+			}
+		}
+		assertEquals("application/pdf", dataSource.getContentType());
+	}
+
+
+	@Test
+	void testStoresSameContentOnceAndReleasesUnsavedReference() throws Exception {
+		// Arrange (Preparar) - o segundo upload do mesmo conteúdo falha ao gravar a linha
+		byte[] content = "mesmo relatório".getBytes(StandardCharsets.UTF_8);
+		String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+		when(emailAttachmentRepository.save(any(EmailAttachmentModel.class)))
+				.thenAnswer(invocation -> invocation.getArgument(0))
+				.thenThrow(new DataAccessResourceFailureException("Connection refused"));
+
+		// Act (Executar)
+		EmailAttachmentModel first = emailAttachmentService.store(new ByteArrayInputStream(content), "a.pdf", null);
+		assertThrows(DataAccessResourceFailureException.class,
+				() -> emailAttachmentService.store(new ByteArrayInputStream(content), "b.pdf", null));
+
+		// Assert (Verificar) - um único arquivo, nomeado pelo hash; a referência do upload perdido é devolvida
+		assertEquals(sha256, first.getStoragePath());
+		try (var files = Files.list(tempDir.resolve("spool"))) {
+			assertEquals(List.of(tempDir.resolve("spool").resolve(sha256)), files.toList());
+		}
+		verify(emailAttachmentRepository, times(2)).retainFile(sha256, content.length);
+		verify(emailAttachmentRepository, times(1)).releaseFile(sha256);
+	}
+
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void testPurgeRemovesOrphansAndUnreferencedFiles() throws Exception {
+		// Arrange (Preparar) - um arquivo sem referência e outro que ganhou um upload antes da remoção
+		TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+		when(transactionTemplate.execute(any())).thenAnswer(
+				invocation -> ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+		ReflectionTestUtils.setField(emailAttachmentService, "transactionTemplate", transactionTemplate);
+		Path spool = tempDir.resolve("spool");
+		Files.writeString(spool.resolve("livre"), "sem anexos");
+		Files.writeString(spool.resolve("reusado"), "novo upload");
+		EmailAttachmentModel orphan = new EmailAttachmentModel();
+		orphan.setStoragePath("livre");
+		when(emailAttachmentRepository.findByEmailIdIsNullAndCreatedAtBefore(any())).thenReturn(List.of(orphan));
+		when(emailAttachmentRepository.findUnreferencedFiles()).thenReturn(List.of("livre", "reusado"));
+		when(emailAttachmentRepository.deleteUnreferencedFile("livre")).thenReturn(1);
+		when(emailAttachmentRepository.deleteUnreferencedFile("reusado")).thenReturn(0);
+
+		// Act (Executar)
+		emailAttachmentService.purgeOrphans();
+
+		// Assert (Verificar)
+		verify(emailAttachmentRepository).deleteAll(List.of(orphan));
+		assertFalse(Files.exists(spool.resolve("livre")));
+		assertTrue(Files.exists(spool.resolve("reusado")));
+	}
+
+
+	@Test
+	void testRejectsOversizedFileWithoutLeavingItOnDisk() throws Exception {
+		// Arrange (Preparar) - limite de 1024 bytes
+		byte[] content = new byte[4096];
+
+		// Act & Assert (Executar e Verificar)
+		assertThrows(IllegalArgumentException.class,
+				() -> emailAttachmentService.store(new ByteArrayInputStream(content), "grande.bin", null));
+		try (var files = Files.list(tempDir.resolve("spool"))) {
+			assertEquals(0, files.count());
+		}
+		verify(emailAttachmentRepository, never()).save(any());
+		verify(emailAttachmentRepository, never()).retainFile(anyString(), anyLong());
+	}
+
+
+	@Test
+	void testLocalFilesMustStayInsideRoot() throws Exception {
+		// Arrange (Preparar)
+		Files.writeString(tempDir.resolve("segredo.txt"), "fora do diretório permitido");
+
+		// Act & Assert (Executar e Verificar)
+		assertThrows(IllegalArgumentException.class, () -> emailAttachmentService.storeLocal("../segredo.txt"));
+		assertThrows(IllegalArgumentException.class, () -> emailAttachmentService.storeLocal("inexistente.txt"));
+	}
+
+
+	@Test
+	void testLocalSymlinksMustStayInsideRoot() throws Exception {
+		// Arrange (Preparar) - links dentro da raiz, um para fora dela e outro para um arquivo da raiz
+		Path localRoot = tempDir.resolve("local");
+		Files.writeString(tempDir.resolve("segredo.txt"), "fora do diretório permitido");
+		Files.writeString(localRoot.resolve("relatorio.txt"), "relatório");
+		Files.createSymbolicLink(localRoot.resolve("atalho.txt"), tempDir.resolve("segredo.txt"));
+		Files.createSymbolicLink(localRoot.resolve("pasta"), tempDir);
+		Files.createSymbolicLink(localRoot.resolve("ultimo.txt"), localRoot.resolve("relatorio.txt"));
+		when(emailAttachmentRepository.save(any(EmailAttachmentModel.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+		// Act & Assert (Executar e Verificar)
+		assertThrows(IllegalArgumentException.class, () -> emailAttachmentService.storeLocal("atalho.txt"));
+		assertThrows(IllegalArgumentException.class, () -> emailAttachmentService.storeLocal("pasta/segredo.txt"));
+		assertEquals("relatorio.txt", emailAttachmentService.storeLocal("ultimo.txt").getFileName());
+	}
+
+
+	@Test
+	void testValidateRejectsUnknownOrAlreadyUsedAttachments() {
+		// Arrange (Preparar)
+		UUID free = UUID.randomUUID();
+		UUID used = UUID.randomUUID();
+		EmailAttachmentModel freeAttachment = new EmailAttachmentModel();
+		freeAttachment.setId(free);
+		EmailAttachmentModel usedAttachment = new EmailAttachmentModel();
+		usedAttachment.setId(used);
+		usedAttachment.setEmailId(UUID.randomUUID());
+		when(emailAttachmentRepository.findAllById(List.of(free))).thenReturn(List.of(freeAttachment));
+		when(emailAttachmentRepository.findAllById(List.of(free, used))).thenReturn(List.of(freeAttachment, usedAttachment));
+
+		EmailModel valid = new EmailModel();
+		valid.setAttachmentIds(List.of(free));
+		EmailModel invalid = new EmailModel();
+		invalid.setAttachmentIds(List.of(free, used));
+
+		// Act (Executar)
+		emailAttachmentService.validate(valid);
+
+		// Assert (Verificar)
+		assertEquals(1, valid.getAttachmentCount());
+		assertThrows(IllegalArgumentException.class, () -> emailAttachmentService.validate(invalid));
+	}
+
+
+	@Test
+	void testLinkRejectsEmailWhenAttachmentWasClaimedConcurrently() {
+		// Arrange (Preparar) - outro email vinculou um dos anexos depois do validate
+		UUID emailId = UUID.randomUUID();
+		List<UUID> ids = List.of(UUID.randomUUID(), UUID.randomUUID());
+		EmailModel emailModel = new EmailModel();
+		emailModel.setId(emailId);
+		emailModel.setAttachmentIds(ids);
+		when(emailAttachmentRepository.claim(emailId, ids)).thenReturn(1);
+
+		// Act & Assert (Executar e Verificar) - o vínculo parcial é desfeito e o email recusado
+		assertThrows(IllegalArgumentException.class, () -> emailAttachmentService.link(emailModel));
+		verify(emailAttachmentRepository).unclaim(emailId);
+		assertEquals(ids, emailModel.getAttachmentIds());
+	}
+
+
+	@Test
+	void testLinkClaimsFreeAttachments() {
+		// Arrange (Preparar)
+		UUID emailId = UUID.randomUUID();
+		List<UUID> ids = List.of(UUID.randomUUID(), UUID.randomUUID());
+		EmailModel emailModel = new EmailModel();
+		emailModel.setId(emailId);
+		emailModel.setAttachmentIds(ids);
+		when(emailAttachmentRepository.claim(emailId, ids)).thenReturn(2);
+
+		// Act (Executar)
+		emailAttachmentService.link(emailModel);
+
+		// Assert (Verificar)
+		assertNull(emailModel.getAttachmentIds());
+		verify(emailAttachmentRepository, never()).unclaim(any(UUID.class));
+	}
+}
@@ -0,0 +1,165 @@
+package br.com.sistema.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import br.com.sistema.models.EmailModel;
+
+@ExtendWith(MockitoExtension.class)
+class EmailBlobServiceTest {
+
+	@Mock
+	private JdbcTemplate jdbcTemplate;
+
+	private EmailBlobService emailBlobService;
+
+	// Parâmetros de cada linha enviada ao upsert de tb_email_blob, por hash
+	private final Map<String, Map<Integer, Object>> upserted = new HashMap<>();
+
+
+	@BeforeEach
+	void setUp() {
+		emailBlobService = new EmailBlobService(1_000_000);
+		ReflectionTestUtils.setField(emailBlobService, "jdbcTemplate", jdbcTemplate);
+	}
+
+	// Executa o setter do batch sobre um PreparedStatement simulado e guarda os parâmetros
+	@SuppressWarnings("unchecked")
+	private void captureUpserts() {
+		when(jdbcTemplate.batchUpdate(startsWith("INSERT"), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+				.thenAnswer(invocation -> {
+					ParameterizedPreparedStatementSetter<String> setter = invocation.getArgument(3);
+					for (String hash : invocation.<List<String>>getArgument(1)) {
+						PreparedStatement ps = mock(PreparedStatement.class);
+						setter.setValues(ps, hash);
+						Map<Integer, Object> parameters = new HashMap<>();
+						mockingDetails(ps).getInvocations().forEach(call -> parameters.put(call.getArgument(0), call.getArgument(1)));
+						upserted.put(hash, parameters);
+					}
+					return new int[0][];
+				});
+	}
+
+	private static EmailModel email(String text, String html) {
+		EmailModel emailModel = new EmailModel();
+		emailModel.setText(text);
+		emailModel.setHtml(html);
+		return emailModel;
+	}
+
+
+	@Test
+	void testRepeatedBodiesAreStoredOnceWithReferenceCount() {
+		// Arrange (Preparar) - dois emails com o mesmo texto e o mesmo HTML grande
+		captureUpserts();
+		String html = "<tr><td>deploy concluído</td></tr>".repeat(500);
+		EmailModel first = email("Olá", html);
+		EmailModel second = email("Olá", html);
+
+		// Act (Executar)
+		emailBlobService.retain(List.of(first, second));
+
+		// Assert (Verificar) - um blob por conteúdo, com duas referências; o HTML vai comprimido
+		assertEquals(EmailBlobService.sha256("Olá"), first.getTextSha256());
+		assertEquals(first.getTextSha256(), second.getTextSha256());
+		assertEquals(first.getHtmlSha256(), second.getHtmlSha256());
+		assertEquals(2, upserted.size());
+		assertEquals(2L, upserted.get(first.getTextSha256()).get(5));
+		assertEquals(false, upserted.get(first.getTextSha256()).get(3));
+		Map<Integer, Object> htmlRow = upserted.get(first.getHtmlSha256());
+		assertEquals(true, htmlRow.get(3));
+		assertEquals(html.getBytes(StandardCharsets.UTF_8).length, htmlRow.get(4));
+		assertTrue(((byte[]) htmlRow.get(2)).length < html.length() / 10);
+	}
+
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void testKnownBodiesOnlyIncrementTheCounter() {
+		// Arrange (Preparar) - o texto já foi gravado por esta instância
+		captureUpserts();
+		emailBlobService.retain(List.of(email("Olá", null)));
+		upserted.clear();
+		when(jdbcTemplate.batchUpdate(startsWith("UPDATE"), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+				.thenReturn(new int[][] { { 1 } });
+
+		// Act (Executar)
+		EmailModel repeated = email("Olá", null);
+		emailBlobService.retain(List.of(repeated));
+
+		// Assert (Verificar) - só o UPDATE do contador, sem reenviar o conteúdo
+		assertEquals(EmailBlobService.sha256("Olá"), repeated.getTextSha256());
+		assertTrue(upserted.isEmpty());
+
+		// Um email já persistido (hash preenchido) não ganha uma nova referência
+		emailBlobService.retain(List.of(repeated));
+		verify(jdbcTemplate, times(1)).batchUpdate(startsWith("UPDATE"), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+	}
+
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void testLoadDecompressesBodiesAndCachesThem() throws Exception {
+		// Arrange (Preparar) - HTML gravado com gzip
+		String html = "<p>Resumo de deploys</p>".repeat(300);
+		String hash = EmailBlobService.sha256(html);
+		ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+			gzip.write(html.getBytes(StandardCharsets.UTF_8));
+		}
+		ResultSet rs = mock(ResultSet.class);
+		when(rs.getString("sha256")).thenReturn(hash);
+		when(rs.getBytes("content")).thenReturn(gzipped.toByteArray());
+		when(rs.getBoolean("compressed")).thenReturn(true);
+		doAnswer(invocation -> {
+			invocation.<RowCallbackHandler>getArgument(1).processRow(rs);
+			return null;
+		}).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+
+		EmailModel loaded = new EmailModel();
+		loaded.setHtmlSha256(hash);
+		EmailModel another = new EmailModel();
+		another.setHtmlSha256(hash);
+
+		// Act (Executar)
+		emailBlobService.load(List.of(loaded));
+		emailBlobService.load(List.of(another));
+
+		// Assert (Verificar) - o segundo email vem do cache
+		assertEquals(html, loaded.getHtml());
+		assertEquals(html, another.getHtml());
+		verify(jdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+		verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+	}
+}
@@ -0,0 +1,280 @@
+package br.com.sistema.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.sistema.dtos.EmailJobDto;
+import br.com.sistema.enums.EmailJobStatus;
+import br.com.sistema.enums.StatusEmail;
+import br.com.sistema.models.EmailJobModel;
+import br.com.sistema.models.EmailModel;
+import br.com.sistema.repositories.EmailJobRepository;
+import br.com.sistema.repositories.EmailRepository;
+import jakarta.validation.Validation;
+
+@ExtendWith(MockitoExtension.class)
+class EmailBulkServiceTest {
+
+	@Mock
+	private EmailRepository emailRepository;
+
+	@Mock
+	private EmailJobRepository emailJobRepository;
+
+	@Mock
+	private TransactionTemplate transactionTemplate;
+
+	@Mock
+	private RabbitTemplate rabbitTemplate;
+
+	@Mock
+	private JdbcTemplate jdbcTemplate;
+
+	@Mock
+	private EmailBlobService emailBlobService;
+
+	@Spy	// Templates reais do classpath
+	private EmailTemplateService emailTemplateService = new EmailTemplateService();
+
+	@InjectMocks
+	private EmailBulkService emailBulkService;
+
+
+	@BeforeEach
+	void setUp() {
+		// Serviço real apenas para aplicar o template; sem envio nem persistência
+		EmailService emailService = new EmailService();
+		ReflectionTestUtils.setField(emailService, "emailTemplateService", emailTemplateService);
+		ReflectionTestUtils.setField(emailBulkService, "emailService", emailService);
+		ReflectionTestUtils.setField(emailBulkService, "objectMapper", new ObjectMapper());
+		ReflectionTestUtils.setField(emailBulkService, "validator", Validation.buildDefaultValidatorFactory().getValidator());
+		ReflectionTestUtils.setField(emailBulkService, "dispatchQueue", "email.queue.dispatch");
+		ReflectionTestUtils.setField(emailBulkService, "emailFrom", "remetente@test.com.br");
+		ReflectionTestUtils.setField(emailBulkService, "batchSize", 2);
+
+		lenient().when(emailJobRepository.save(any(EmailJobModel.class))).thenAnswer(invocation -> {
+			EmailJobModel job = invocation.getArgument(0);
+			if (job.getId() == null) {
+				job.setId(UUID.randomUUID());
+			}
+			return job;
+		});
+	}
+
+	private static ByteArrayInputStream json(String content) {
+		return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+	}
+
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void testSubmitPersistsInBatchesAndPublishesIds() throws Exception {
+		// Arrange (Preparar) - 3 destinatários válidos e 1 inválido, lotes de 2
+		when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+				((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+		List<EmailModel> persisted = new ArrayList<>();
+		when(emailRepository.saveAll(anyList())).thenAnswer(invocation -> {
+			List<EmailModel> saved = new ArrayList<>(invocation.<List<EmailModel>>getArgument(0));
+			saved.forEach(emailModel -> emailModel.setId(UUID.randomUUID()));
+			persisted.addAll(saved);
+			return saved;
+		});
+		when(emailRepository.countByJobIdGroupByStatus(any())).thenReturn(List.<Object[]>of(new Object[] { StatusEmail.PENDING, 3L }));
+
+		String body = """
+				{"ownerRef": "newsletter", "subject": "Olá ${contact.name}", "templateName": "template-email.html",
+				 "recipients": [
+				   {"emailTo": "ana@test.com.br", "variables": {"name": "Ana"}},
+				   {"emailTo": "invalido", "variables": {"name": "X"}},
+				   {"emailTo": "bruno@test.com.br", "variables": {"name": "Bruno"}},
+				   {"emailTo": "carla@test.com.br"}
+				 ]}
+				""";
+
+		// Act (Executar)
+		EmailJobDto job = emailBulkService.submit(json(body));
+
+		// Assert (Verificar)
+		verify(emailRepository, times(2)).saveAll(anyList());
+		verify(rabbitTemplate, times(3)).convertAndSend(eq("email.queue.dispatch"), any(UUID.class));
+
+		assertEquals(3, persisted.size());
+		EmailModel first = persisted.get(0);
+		assertEquals("Olá Ana", first.getSubject());
+		assertEquals("template-email.html", first.getTemplateName());
+		assertEquals(StatusEmail.PENDING, first.getStatusEmail());
+		assertEquals(job.id(), first.getJobId());
+
+		assertEquals(EmailJobStatus.QUEUED, job.status());
+		assertEquals(3, job.totalRecipients());
+		assertEquals(1, job.rejectedRecipients());
+		assertFalse(job.finished());
+	}
+
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void testSubmitAcceptsExactlyMaxRecipients() throws Exception {
+		// Arrange (Preparar) - limite de 3 destinatários por job
+		ReflectionTestUtils.setField(emailBulkService, "maxRecipients", 3);
+		when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+				((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+		when(emailRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+		String recipients = """
+				{"ownerRef": "newsletter", "subject": "Olá", "templateName": "template-email.html",
+				 "recipients": [{"emailTo": "ana@test.com.br"}, {"emailTo": "bruno@test.com.br"},
+				   {"emailTo": "carla@test.com.br"}""";
+
+		// Act (Executar)
+		EmailJobDto atLimit = emailBulkService.submit(json(recipients + "]}"));
+
+		// Assert (Verificar) - exatamente o limite passa; um destinatário a mais falha o job
+		assertEquals(EmailJobStatus.QUEUED, atLimit.status());
+		assertEquals(3, atLimit.totalRecipients());
+		assertThrows(IllegalArgumentException.class,
+				() -> emailBulkService.submit(json(recipients + ", {\"emailTo\": \"davi@test.com.br\"}]}")));
+	}
+
+
+	@Test
+	void testSubmitRejectsRecipientsBeforeHeader() {
+		// Arrange (Preparar) - templateName depois de recipients não pode ser lido em streaming
+		String body = """
+				{"recipients": [{"emailTo": "ana@test.com.br"}], "ownerRef": "newsletter", "subject": "Olá",
+				 "templateName": "template-email.html"}
+				""";
+
+		// Act & Assert (Executar e Verificar)
+		assertThrows(IllegalArgumentException.class, () -> emailBulkService.submit(json(body)));
+		verify(emailJobRepository, never()).save(any());
+	}
+
+
+	@Test
+	void testSubmitRejectsTemplatePathTraversal() {
+		// Arrange (Preparar)
+		String body = """
+				{"ownerRef": "newsletter", "subject": "Olá", "templateName": "../application.properties",
+				 "recipients": []}
+				""";
+
+		// Act & Assert (Executar e Verificar)
+		assertThrows(IllegalArgumentException.class, () -> emailBulkService.submit(json(body)));
+		verify(emailJobRepository, never()).save(any());
+	}
+
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void testImportCsvValidatesRowsAndWritesJdbcBatches() throws Exception {
+		// Arrange (Preparar) - colunas fora de ordem, uma linha inválida, lotes de 2
+		when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+				((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+		List<Object[]> inserted = new ArrayList<>();
+		when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+			inserted.addAll(invocation.<List<Object[]>>getArgument(1));
+			return new int[0];
+		});
+		when(emailBlobService.retainContents(anyList())).thenAnswer(invocation ->
+				invocation.<List<String>>getArgument(0).stream().map(EmailBlobService::sha256).toList());
+
+		String csv = """
+				emailTo,subject,text,ownerRef,emailFrom
+				ana@test.com.br,Assunto,"Olá, Ana",importacao,remetente@test.com.br
+				invalido,Assunto,Texto,importacao,remetente@test.com.br
+				bruno@test.com.br,Assunto,Texto,importacao,remetente@test.com.br
+				carla@test.com.br,Assunto,Texto,importacao,remetente@test.com.br
+				""";
+
+		// Act (Executar)
+		EmailJobDto job = emailBulkService.importEmails(json(csv), MediaType.parseMediaType("text/csv"));
+
+		// Assert (Verificar)
+		verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyList());
+		verify(rabbitTemplate, times(3)).convertAndSend(eq("email.queue.dispatch"), any(UUID.class));
+		assertEquals(3, inserted.size());
+		assertEquals("ana@test.com.br", inserted.get(0)[4]);
+		assertEquals(EmailBlobService.sha256("Olá, Ana"), inserted.get(0)[6]);
+		assertEquals("PENDING", inserted.get(0)[8]);
+		assertEquals("LOW", inserted.get(0)[10]);
+		assertEquals(EmailJobStatus.QUEUED, job.status());
+		assertEquals(3, job.totalRecipients());
+		assertEquals(1, job.rejectedRecipients());
+	}
+
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void testImportAcceptsExactlyMaxRows() throws Exception {
+		// Arrange (Preparar) - limite de 3 linhas por importação
+		ReflectionTestUtils.setField(emailBulkService, "maxImportRows", 3);
+		when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+				((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+		when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[0]);
+		when(emailBlobService.retainContents(anyList())).thenAnswer(invocation ->
+				invocation.<List<String>>getArgument(0).stream().map(EmailBlobService::sha256).toList());
+		String csv = """
+				emailTo,subject,text,ownerRef,emailFrom
+				ana@test.com.br,Assunto,Texto,importacao,remetente@test.com.br
+				bruno@test.com.br,Assunto,Texto,importacao,remetente@test.com.br
+				carla@test.com.br,Assunto,Texto,importacao,remetente@test.com.br
+				""";
+		MediaType textCsv = MediaType.parseMediaType("text/csv");
+
+		// Act (Executar)
+		EmailJobDto atLimit = emailBulkService.importEmails(json(csv), textCsv);
+
+		// Assert (Verificar) - exatamente o limite passa; uma linha a mais falha a importação
+		assertEquals(EmailJobStatus.QUEUED, atLimit.status());
+		assertEquals(3, atLimit.totalRecipients());
+		assertThrows(IllegalArgumentException.class, () -> emailBulkService.importEmails(
+				json(csv + "davi@test.com.br,Assunto,Texto,importacao,remetente@test.com.br\n"), textCsv));
+	}
+
+
+	@Test
+	void testImportNdjsonFailsJobOnMalformedLine() {
+		// Arrange (Preparar) - a segunda linha não é JSON válido
+		String ndjson = """
+				{"ownerRef":"importacao","emailFrom":"remetente@test.com.br","emailTo":"ana@test.com.br","subject":"Assunto","text":"Texto"}
+				{"ownerRef":
+				""";
+
+		// Act & Assert (Executar e Verificar)
+		assertThrows(IllegalArgumentException.class,
+				() -> emailBulkService.importEmails(json(ndjson), MediaType.parseMediaType("application/x-ndjson")));
+		verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+	}
+}
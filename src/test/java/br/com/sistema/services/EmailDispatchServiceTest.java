@@ -0,0 +1,243 @@
+package br.com.sistema.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import br.com.sistema.enums.StatusEmail;
+import br.com.sistema.metrics.EmailMetrics;
+import br.com.sistema.models.EmailModel;
+import br.com.sistema.repositories.EmailRepository;
+
+@ExtendWith(MockitoExtension.class)
+class EmailDispatchServiceTest {
+
+	@Mock	// Simula o comportamento do repositório de emails
+	private EmailRepository emailRepository;
+
+	@Mock	// Simula o envio SMTP e a persistência do resultado
+	private EmailService emailService;
+
+	@Mock	// Pool de despacho; as tarefas são capturadas em vez de executadas
+	private TaskExecutor emailDispatchExecutor;
+
+	@Spy	// Política de retentativa real (outbox habilitado por padrão)
+	private EmailRetryPolicy retryPolicy = new EmailRetryPolicy();
+
+	@Spy
+	private EmailMetrics emailMetrics = EmailMetrics.noop();
+
+	@Mock	// Executa o callback direto, sem banco
+	private TransactionTemplate transactionTemplate;
+
+	@InjectMocks
+	private EmailDispatchService emailDispatchService;
+
+	private EmailModel emailModel;
+
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		lenient().when(transactionTemplate.execute(any())).thenAnswer(
+				invocation -> ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+		ReflectionTestUtils.setField(emailDispatchService, "dispatchMode", "async");
+		ReflectionTestUtils.setField(emailDispatchService, "acceptGraceMs", 30000L);
+
+		emailModel = new EmailModel();
+		emailModel.setEmailFrom("remetente@test.com.br");
+		emailModel.setEmailTo("destinatario@test.com.br");
+		emailModel.setSubject("Assunto Teste");
+		emailModel.setText("Conteúdo do email de teste");
+	}
+
+
+	@Test
+	void testAcceptPersistsPendingAndSchedulesDispatch() {
+		// Arrange (Preparar)
+		UUID id = UUID.randomUUID();
+		when(emailService.prepareForPersistence(emailModel)).thenReturn(emailModel);
+		when(emailRepository.save(emailModel)).thenAnswer(invocation -> {
+			emailModel.setId(id);
+			return emailModel;
+		});
+
+		// Act (Executar)
+		EmailModel result = emailDispatchService.accept(emailModel);
+
+		// Assert (Verificar) - o email fica PENDING e o envio vai para o pool, não para a requisição
+		assertTrue(emailDispatchService.isAsync());
+		assertSame(emailModel, result);
+		assertEquals(StatusEmail.PENDING, result.getStatusEmail());
+		assertNotNull(result.getSendDateEmail());
+		assertTrue(result.getNextAttemptAt().isAfter(result.getSendDateEmail()));
+		verify(emailService, times(1)).linkAttachments(emailModel);
+		verify(emailDispatchExecutor, times(1)).execute(any(Runnable.class));
+		verify(emailService, never()).sendEmail(any(EmailModel.class));
+	}
+
+
+	@Test
+	void testAcceptLeavesRejectedEmailForOutbox() {
+		// Arrange (Preparar) - pool saturado
+		when(emailService.prepareForPersistence(emailModel)).thenReturn(emailModel);
+		when(emailRepository.save(emailModel)).thenAnswer(invocation -> {
+			emailModel.setId(UUID.randomUUID());
+			return emailModel;
+		});
+		doThrow(new TaskRejectedException("Pool cheio")).when(emailDispatchExecutor).execute(any(Runnable.class));
+
+		// Act (Executar)
+		EmailModel result = emailDispatchService.accept(emailModel);
+
+		// Assert (Verificar) - continua PENDING e nada é enviado na thread da requisição
+		assertEquals(StatusEmail.PENDING, result.getStatusEmail());
+		verify(emailRepository, never()).claim(any(UUID.class), any(StatusEmail.class), any(StatusEmail.class),
+				any(LocalDateTime.class));
+		verify(emailService, never()).sendEmail(any(EmailModel.class));
+	}
+
+
+	@Test
+	void testScheduledDispatchSendsClaimedEmail() {
+		// Arrange (Preparar)
+		UUID id = UUID.randomUUID();
+		when(emailService.prepareForPersistence(emailModel)).thenReturn(emailModel);
+		when(emailRepository.save(emailModel)).thenAnswer(invocation -> {
+			emailModel.setId(id);
+			return emailModel;
+		});
+		when(emailRepository.claim(eq(id), eq(StatusEmail.PENDING), eq(StatusEmail.SENDING), any(LocalDateTime.class)))
+				.thenReturn(1);
+		when(emailRepository.findById(id)).thenReturn(Optional.of(emailModel));
+		emailDispatchService.accept(emailModel);
+		ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+		verify(emailDispatchExecutor).execute(task.capture());
+
+		// Act (Executar)
+		task.getValue().run();
+
+		// Assert (Verificar)
+		verify(emailService, times(1)).sendEmail(emailModel);
+	}
+
+
+	@Test
+	void testDispatchSkipsEmailAlreadyClaimedByOutbox() {
+		// Arrange (Preparar) - o outbox reservou o email primeiro
+		UUID id = UUID.randomUUID();
+		when(emailRepository.claim(eq(id), eq(StatusEmail.PENDING), eq(StatusEmail.SENDING), any(LocalDateTime.class)))
+				.thenReturn(0);
+
+		// Act (Executar)
+		emailDispatchService.dispatch(id);
+
+		// Assert (Verificar)
+		verify(emailRepository, never()).findById(any(UUID.class));
+		verify(emailService, never()).sendEmail(any(EmailModel.class));
+	}
+
+
+	@Test
+	void testSendSpoolsEmailWhenDatabaseIsDown() {
+		// Arrange (Preparar)
+		EmailSpoolService emailSpoolService = mock(EmailSpoolService.class);
+		ReflectionTestUtils.setField(emailDispatchService, "emailSpoolService", emailSpoolService);
+		when(emailService.sendEmail(emailModel)).thenThrow(new CannotCreateTransactionException("Connection refused"));
+		when(emailSpoolService.append(emailModel)).thenReturn(emailModel);
+
+		// Act (Executar)
+		EmailModel result = emailDispatchService.send(emailModel);
+
+		// Assert (Verificar)
+		assertSame(emailModel, result);
+		verify(emailSpoolService, times(1)).append(emailModel);
+	}
+
+
+	@Test
+	void testSendAllSpoolsBatchWhenSaveFailsAfterSmtp() {
+		// Arrange (Preparar) - o SMTP enviou o lote e o saveAll perdeu a conexão
+		EmailSpoolService emailSpoolService = mock(EmailSpoolService.class);
+		ReflectionTestUtils.setField(emailDispatchService, "emailSpoolService", emailSpoolService);
+		EmailModel other = new EmailModel();
+		emailModel.setStatusEmail(StatusEmail.SENT);
+		other.setStatusEmail(StatusEmail.SENT);
+		when(emailService.sendEmails(List.of(emailModel, other)))
+				.thenThrow(new DataAccessResourceFailureException("Connection refused"));
+		when(emailSpoolService.append(any(EmailModel.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+		// Act (Executar)
+		List<EmailModel> result = emailDispatchService.sendAll(List.of(emailModel, other));
+
+		// Assert (Verificar) - os dois vão para o spool como SENT: a reentrega não os envia de novo
+		assertEquals(List.of(emailModel, other), result);
+		assertEquals(StatusEmail.SENT, result.get(0).getStatusEmail());
+		verify(emailSpoolService, times(2)).append(any(EmailModel.class));
+	}
+
+
+	@Test
+	void testSendPropagatesDataIntegrityViolation() {
+		// Arrange (Preparar) - chave de idempotência já registrada por outra requisição
+		EmailSpoolService emailSpoolService = mock(EmailSpoolService.class);
+		ReflectionTestUtils.setField(emailDispatchService, "emailSpoolService", emailSpoolService);
+		when(emailService.sendEmail(emailModel))
+				.thenThrow(new DataIntegrityViolationException("duplicate key value violates unique constraint"));
+
+		// Act & Assert (Executar e Verificar) - sobe para o controller resolver o conflito, sem ir para o spool
+		assertThrows(DataIntegrityViolationException.class, () -> emailDispatchService.send(emailModel));
+		verify(emailSpoolService, never()).append(any(EmailModel.class));
+	}
+
+
+	@Test
+	void testSpoolWritesPendingEmailWithoutDatabase() {
+		// Arrange (Preparar) - chave de idempotência que não pôde ser reservada com o banco fora do ar
+		EmailSpoolService emailSpoolService = mock(EmailSpoolService.class);
+		ReflectionTestUtils.setField(emailDispatchService, "emailSpoolService", emailSpoolService);
+		when(emailSpoolService.append(emailModel)).thenReturn(emailModel);
+
+		// Act (Executar)
+		EmailModel result = emailDispatchService.spool(emailModel);
+
+		// Assert (Verificar) - fica PENDING no spool, sem banco e sem SMTP
+		assertSame(emailModel, result);
+		assertEquals(StatusEmail.PENDING, result.getStatusEmail());
+		verify(emailRepository, never()).save(any(EmailModel.class));
+		verify(emailService, never()).sendEmail(any(EmailModel.class));
+	}
+}
@@ -0,0 +1,169 @@
+package br.com.sistema.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import br.com.sistema.dtos.CoolifyWebhookDto;
+import br.com.sistema.repositories.EmailRepository;
+
+@ExtendWith(MockitoExtension.class)
+class EmailIdempotencyServiceTest {
+
+	@Mock
+	private EmailRepository emailRepository;
+
+	private EmailIdempotencyService emailIdempotencyService;
+
+
+	@BeforeEach
+	void setUp() {
+		emailIdempotencyService = new EmailIdempotencyService(1000, 60_000);
+		ReflectionTestUtils.setField(emailIdempotencyService, "emailRepository", emailRepository);
+	}
+
+
+	@Test
+	void testRepeatedKeyIsServedFromCache() {
+		// Arrange (Preparar) - chave nova no banco
+		when(emailRepository.reserveIdempotencyKeys(eq(List.of("http:abc")), anyLong())).thenReturn(Map.of());
+		UUID emailId = UUID.randomUUID();
+
+		// Act (Executar)
+		Optional<UUID> first = emailIdempotencyService.reserve("http:abc");
+		Optional<UUID> whileSending = emailIdempotencyService.reserve("http:abc");
+		emailIdempotencyService.complete("http:abc", emailId);
+		Optional<UUID> afterSent = emailIdempotencyService.reserve("http:abc");
+
+		// Assert (Verificar) - só a primeira reserva vai ao banco
+		assertTrue(first.isEmpty());
+		assertEquals(EmailIdempotencyService.IN_PROGRESS, whileSending.get());
+		assertEquals(emailId, afterSent.get());
+		verify(emailRepository, times(1)).reserveIdempotencyKeys(anyCollection(), anyLong());
+	}
+
+
+	@Test
+	void testFindsKeyPersistedBeforeRestartAndReleasesFailedSends() {
+		// Arrange (Preparar)
+		UUID emailId = UUID.randomUUID();
+		when(emailRepository.reserveIdempotencyKeys(eq(List.of("amqp:msg-1")), anyLong()))
+				.thenReturn(Map.of("amqp:msg-1", emailId));
+		when(emailRepository.reserveIdempotencyKeys(eq(List.of("amqp:msg-2")), anyLong())).thenReturn(Map.of());
+
+		// Act (Executar)
+		Optional<UUID> persisted = emailIdempotencyService.reserve("amqp:msg-1");
+		emailIdempotencyService.reserve("amqp:msg-2");
+		emailIdempotencyService.release("amqp:msg-2");
+
+		// Assert (Verificar) - a chave liberada pode ser reservada de novo
+		assertEquals(emailId, persisted.get());
+		verify(emailRepository, times(1)).releaseIdempotencyKey("amqp:msg-2");
+		assertTrue(emailIdempotencyService.reserve("amqp:msg-2").isEmpty());
+	}
+
+
+	@Test
+	void testKeyReservedByAnotherInstanceIsInProgress() {
+		// Arrange (Preparar) - outra instância gravou a reserva e ainda não registrou o email
+		Map<String, UUID> inProgress = new HashMap<>();
+		inProgress.put("http:abc", null);
+		when(emailRepository.reserveIdempotencyKeys(eq(List.of("http:abc")), anyLong()))
+				.thenReturn(inProgress).thenReturn(inProgress).thenReturn(Map.of());
+
+		// Act (Executar)
+		Optional<UUID> first = emailIdempotencyService.reserve("http:abc");
+		Optional<UUID> second = emailIdempotencyService.reserve("http:abc");
+		Optional<UUID> afterAbandoned = emailIdempotencyService.reserve("http:abc");
+		emailIdempotencyService.release("http:other");
+
+		// Assert (Verificar) - a reserva alheia não fica no cache nem é liberada por esta instância
+		assertEquals(EmailIdempotencyService.IN_PROGRESS, first.get());
+		assertEquals(EmailIdempotencyService.IN_PROGRESS, second.get());
+		assertTrue(afterAbandoned.isEmpty());
+		verify(emailRepository, never()).releaseIdempotencyKey(anyString());
+	}
+
+
+	@Test
+	void testBatchIsReservedWithOneDatabaseCall() {
+		// Arrange (Preparar) - msg-1 já está no cache, msg-2 foi registrada por outra instância
+		UUID cachedId = UUID.randomUUID();
+		UUID persistedId = UUID.randomUUID();
+		emailIdempotencyService.complete("amqp:msg-1", cachedId);
+		Map<String, UUID> persisted = new HashMap<>();
+		persisted.put("amqp:msg-2", persistedId);
+		persisted.put("amqp:msg-3", null);
+		when(emailRepository.reserveIdempotencyKeys(eq(List.of("amqp:msg-2", "amqp:msg-3", "amqp:msg-4")), anyLong()))
+				.thenReturn(persisted);
+
+		// Act (Executar)
+		Map<String, UUID> taken = emailIdempotencyService.reserveAll(
+				Arrays.asList("amqp:msg-1", "amqp:msg-2", "amqp:msg-3", null, "amqp:msg-4", "amqp:msg-4"));
+
+		// Assert (Verificar) - só msg-4 pode seguir; a reserva alheia de msg-3 não fica no cache
+		assertEquals(Map.of("amqp:msg-1", cachedId, "amqp:msg-2", persistedId,
+				"amqp:msg-3", EmailIdempotencyService.IN_PROGRESS), taken);
+		verify(emailRepository, times(1)).reserveIdempotencyKeys(anyCollection(), anyLong());
+		assertEquals(persistedId, emailIdempotencyService.reserveLocally("amqp:msg-2").get());
+		assertTrue(emailIdempotencyService.reserveLocally("amqp:msg-3").isEmpty());
+		assertEquals(EmailIdempotencyService.IN_PROGRESS, emailIdempotencyService.reserveLocally("amqp:msg-4").get());
+	}
+
+
+	@Test
+	void testLocalReservationDoesNotTouchDatabase() {
+		// Arrange (Preparar) - modo spool ou banco fora do ar: a reserva no banco fica para o replay
+		Optional<UUID> first = emailIdempotencyService.reserveLocally("http:abc");
+
+		// Act (Executar)
+		Optional<UUID> whileSpooling = emailIdempotencyService.reserveLocally("http:abc");
+		emailIdempotencyService.releaseLocally("http:abc");
+		Optional<UUID> afterReleased = emailIdempotencyService.reserveLocally("http:abc");
+
+		// Assert (Verificar)
+		assertTrue(first.isEmpty());
+		assertEquals(EmailIdempotencyService.IN_PROGRESS, whileSpooling.get());
+		assertTrue(afterReleased.isEmpty());
+		verifyNoInteractions(emailRepository);
+	}
+
+
+	@Test
+	void testBuildsKeys() {
+		// Arrange (Preparar)
+		CoolifyWebhookDto webhook = new CoolifyWebhookDto(true, "ok", "deployment_success", "app", "app-uuid",
+				"dep-123", "https://coolify/dep-123", "projeto", "production", "app.test.com");
+
+		// Act & Assert (Executar e Verificar)
+		assertNull(EmailIdempotencyService.key("http", " "));
+		assertEquals("coolify:dep-123:deployment_success:true", EmailIdempotencyService.key(webhook));
+		String longKey = EmailIdempotencyService.key("http", "x".repeat(400));
+		assertTrue(longKey.startsWith("http:sha256:") && longKey.length() < 255);
+		assertTrue(emailIdempotencyService.reserve(null).isEmpty());
+		verifyNoInteractions(emailRepository);
+	}
+}
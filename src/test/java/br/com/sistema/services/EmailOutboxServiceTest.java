@@ -0,0 +1,183 @@
+package br.com.sistema.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import br.com.sistema.enums.StatusEmail;
+import br.com.sistema.models.EmailModel;
+import br.com.sistema.repositories.EmailRepository;
+
+@ExtendWith(MockitoExtension.class)
+class EmailOutboxServiceTest {
+
+	@Mock	// Simula o SELECT ... FOR UPDATE SKIP LOCKED das linhas vencidas
+	private EmailRepository emailRepository;
+
+	@Mock
+	private EmailService emailService;
+
+	@Mock
+	private TransactionTemplate transactionTemplate;
+
+	@Mock	// Pool de despacho: executa na hora ou recusa a tarefa
+	private TaskExecutor emailDispatchExecutor;
+
+	@Spy	// Lease padrão de 5 minutos
+	private EmailRetryPolicy retryPolicy = new EmailRetryPolicy();
+
+	@InjectMocks
+	private EmailOutboxService emailOutboxService;
+
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		ReflectionTestUtils.setField(emailOutboxService, "batchSize", 2);
+		when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+				((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+	}
+
+	private static EmailModel due(String emailTo) {
+		EmailModel emailModel = new EmailModel();
+		emailModel.setEmailTo(emailTo);
+		emailModel.setStatusEmail(StatusEmail.RETRYING);
+		emailModel.setNextAttemptAt(LocalDateTime.now().minusMinutes(1));
+		return emailModel;
+	}
+
+
+	private void leaseStillHeld() {
+		when(emailRepository.renewLease(any(), eq(StatusEmail.SENDING), any(LocalDateTime.class), any(LocalDateTime.class),
+				any(LocalDateTime.class))).thenReturn(1);
+	}
+
+
+	@Test
+	void testClaimMarksEmailsSendingWithLease() {
+		// Arrange (Preparar)
+		EmailModel first = due("ana@test.com.br");
+		EmailModel second = due("bruno@test.com.br");
+		when(emailRepository.findDueForUpdate(any(LocalDateTime.class), eq(2))).thenReturn(List.of(first, second));
+
+		// Act (Executar)
+		List<EmailModel> claimed = emailOutboxService.claimDue(2);
+
+		// Assert (Verificar) - outra instância só reivindica as linhas depois do lease
+		assertEquals(List.of(first, second), claimed);
+		for (EmailModel emailModel : claimed) {
+			assertEquals(StatusEmail.SENDING, emailModel.getStatusEmail());
+			assertTrue(emailModel.getNextAttemptAt().isAfter(LocalDateTime.now().plusMinutes(4)));
+		}
+	}
+
+
+	@Test
+	void testDrainKeepsClaimingWhileBatchesAreFull() {
+		// Arrange (Preparar) - dois lotes cheios e um parcial, com lotes de 2
+		when(emailRepository.findDueForUpdate(any(LocalDateTime.class), eq(2))).thenReturn(
+				List.of(due("a@test.com.br"), due("b@test.com.br")),
+				List.of(due("c@test.com.br"), due("d@test.com.br")),
+				List.of(due("e@test.com.br")));
+		doAnswer(invocation -> {
+			invocation.<Runnable>getArgument(0).run();
+			return null;
+		}).when(emailDispatchExecutor).execute(any(Runnable.class));
+		leaseStillHeld();
+
+		// Act (Executar)
+		emailOutboxService.drain();
+
+		// Assert (Verificar) - o lote parcial encerra a drenagem
+		verify(emailRepository, times(3)).findDueForUpdate(any(LocalDateTime.class), eq(2));
+		verify(emailService, times(5)).sendEmail(any(EmailModel.class));
+	}
+
+
+	@Test
+	void testDrainSendsInlineWhenPoolRejects() {
+		// Arrange (Preparar) - pool de despacho saturado
+		EmailModel emailModel = due("ana@test.com.br");
+		when(emailRepository.findDueForUpdate(any(LocalDateTime.class), eq(2))).thenReturn(List.of(emailModel));
+		doThrow(new TaskRejectedException("Pool saturado")).when(emailDispatchExecutor).execute(any(Runnable.class));
+		leaseStillHeld();
+		AtomicReference<Thread> sender = new AtomicReference<>();
+		when(emailService.sendEmail(emailModel)).thenAnswer(invocation -> {
+			sender.set(Thread.currentThread());
+			return emailModel;
+		});
+
+		// Act (Executar)
+		emailOutboxService.drain();
+
+		// Assert (Verificar) - o email não se perde: é enviado na thread do agendador
+		verify(emailService, times(1)).sendEmail(emailModel);
+		assertSame(Thread.currentThread(), sender.get());
+	}
+
+
+	@Test
+	void testDrainClaimsOnlyFreeExecutorCapacity() {
+		// Arrange (Preparar) - lotes de 50, mas o pool tem 3 threads e nenhuma ocupada
+		ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
+		pool.setCorePoolSize(3);
+		pool.setMaxPoolSize(3);
+		pool.initialize();
+		ReflectionTestUtils.setField(emailOutboxService, "emailDispatchExecutor", pool);
+		ReflectionTestUtils.setField(emailOutboxService, "batchSize", 50);
+		when(emailRepository.findDueForUpdate(any(LocalDateTime.class), eq(3))).thenReturn(List.of());
+
+		// Act (Executar)
+		emailOutboxService.drain();
+
+		// Assert (Verificar) - só reivindica o que começa a ser enviado agora
+		verify(emailRepository, times(1)).findDueForUpdate(any(LocalDateTime.class), eq(3));
+		pool.shutdown();
+	}
+
+
+	@Test
+	void testDrainSkipsEmailWhoseLeaseWasLost() {
+		// Arrange (Preparar) - o lease venceu e outra drenagem reivindicou a linha
+		EmailModel emailModel = due("ana@test.com.br");
+		when(emailRepository.findDueForUpdate(any(LocalDateTime.class), eq(2))).thenReturn(List.of(emailModel));
+		doAnswer(invocation -> {
+			invocation.<Runnable>getArgument(0).run();
+			return null;
+		}).when(emailDispatchExecutor).execute(any(Runnable.class));
+		when(emailRepository.renewLease(any(), eq(StatusEmail.SENDING), any(LocalDateTime.class), any(LocalDateTime.class),
+				any(LocalDateTime.class))).thenReturn(0);
+
+		// Act (Executar)
+		emailOutboxService.drain();
+
+		// Assert (Verificar) - o email não é enviado em dobro
+		verify(emailService, never()).sendEmail(any(EmailModel.class));
+	}
+}
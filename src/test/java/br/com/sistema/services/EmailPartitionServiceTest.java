@@ -0,0 +1,133 @@
+package br.com.sistema.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.sql.ResultSet;
+import java.time.YearMonth;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class EmailPartitionServiceTest {
+
+	@Mock
+	private JdbcTemplate jdbcTemplate;
+
+	@Mock
+	private TransactionTemplate transactionTemplate;
+
+	@InjectMocks
+	private EmailPartitionService emailPartitionService;
+
+	private final YearMonth current = YearMonth.now();
+
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(emailPartitionService, "premakeMonths", 2);
+	}
+
+
+	@Test
+	void testCreatesOnlyMonthsNotCoveredYet() throws Exception {
+		// Arrange (Preparar) - a partição legada cobre até o fim do mês corrente
+		partitions(row("tb_email_legacy", "FOR VALUES FROM (MINVALUE) TO ('" + current.plusMonths(1).atDay(1) + " 00:00:00')"));
+
+		// Act (Executar)
+		emailPartitionService.maintain();
+
+		// Assert (Verificar)
+		verify(jdbcTemplate, never()).execute(startsWith("CREATE TABLE IF NOT EXISTS " + name(current) + " "));
+		verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS " + name(current.plusMonths(1))
+				+ " PARTITION OF tb_email FOR VALUES FROM ('" + current.plusMonths(1).atDay(1) + "') TO ('"
+				+ current.plusMonths(2).atDay(1) + "')");
+		verify(jdbcTemplate).execute(startsWith("CREATE TABLE IF NOT EXISTS " + name(current.plusMonths(2)) + " "));
+		verify(jdbcTemplate, never()).execute(startsWith("DROP TABLE"));
+		assertEquals(2, ReflectionTestUtils.getField(emailPartitionService, "horizonMonths"));
+	}
+
+
+	@Test
+	void testRefusesStartupWhenHorizonIsShortAndMaintenanceIsDisabled() throws Exception {
+		// Arrange (Preparar) - só o mês corrente tem partição e a criação está desligada
+		ReflectionTestUtils.setField(emailPartitionService, "enabled", false);
+		partitions(row(name(current), bounds(current)));
+
+		// Act & Assert (Executar e Verificar)
+		assertThrows(IllegalStateException.class, () -> emailPartitionService.verifyHorizon());
+		verify(jdbcTemplate, never()).execute(startsWith("CREATE TABLE"));
+		assertEquals(0, ReflectionTestUtils.getField(emailPartitionService, "horizonMonths"));
+	}
+
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void testDropsPartitionsOlderThanRetention() throws Exception {
+		// Arrange (Preparar) - retenção de 2 meses: a partição de 3 meses atrás sai
+		ReflectionTestUtils.setField(emailPartitionService, "retentionMonths", 2);
+		YearMonth old = current.minusMonths(3);
+		String[][] rows = { row(name(old), bounds(old)), row(name(current.minusMonths(2)), bounds(current.minusMonths(2))),
+				row(name(current), bounds(current)), row(name(current.plusMonths(1)), bounds(current.plusMonths(1))),
+				row(name(current.plusMonths(2)), bounds(current.plusMonths(2))) };
+		partitions(rows);
+		doAnswer(invocation -> {
+			((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+			return null;
+		}).when(transactionTemplate).executeWithoutResult(any());
+
+		// Act (Executar)
+		emailPartitionService.maintain();
+
+		// Assert (Verificar)
+		verify(jdbcTemplate, never()).execute(startsWith("CREATE TABLE"));
+		verify(jdbcTemplate).update(startsWith("UPDATE tb_email_blob"));
+		verify(jdbcTemplate).update("DELETE FROM tb_email_idempotency k USING " + name(old)
+				+ " e WHERE k.idempotency_key = e.idempotency_key AND k.email_id = e.id");
+		verify(jdbcTemplate).execute("DROP TABLE " + name(old));
+		verify(jdbcTemplate, never()).execute("DROP TABLE " + name(current.minusMonths(2)));
+	}
+
+	private void partitions(String[]... rows) throws Exception {
+		doAnswer(invocation -> {
+			RowCallbackHandler handler = invocation.getArgument(1);
+			for (String[] row : rows) {
+				ResultSet rs = Mockito.mock(ResultSet.class);
+				Mockito.when(rs.getString(1)).thenReturn(row[0]);
+				Mockito.when(rs.getString(2)).thenReturn(row[1]);
+				handler.processRow(rs);
+			}
+			return null;
+		}).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+	}
+
+	private static String[] row(String name, String bounds) {
+		return new String[] { name, bounds };
+	}
+
+	private static String name(YearMonth month) {
+		return String.format("tb_email_%d_%02d", month.getYear(), month.getMonthValue());
+	}
+
+	private static String bounds(YearMonth month) {
+		return "FOR VALUES FROM ('" + month.atDay(1) + " 00:00:00') TO ('" + month.plusMonths(1).atDay(1) + " 00:00:00')";
+	}
+}
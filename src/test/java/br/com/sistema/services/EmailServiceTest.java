@@ -3,23 +3,41 @@ package br.com.sistema.services;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
@@ -27,12 +45,30 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.mail.MailException;
-import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import br.com.sistema.attachments.FileChannelDataSource;
+import br.com.sistema.dtos.EmailCursor;
+import br.com.sistema.dtos.EmailCursorPageDto;
+import br.com.sistema.dtos.EmailFilterDto;
+import br.com.sistema.dtos.EmailSearchDto;
+import br.com.sistema.dtos.EmailSummaryDto;
+import br.com.sistema.enums.EmailPriority;
 import br.com.sistema.enums.StatusEmail;
+import br.com.sistema.mail.SmtpPriorityGate;
+import br.com.sistema.mail.SmtpRateLimiter;
+import br.com.sistema.models.EmailAttachmentModel;
 import br.com.sistema.models.EmailModel;
 import br.com.sistema.repositories.EmailRepository;
+import jakarta.mail.Address;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
 
 @ExtendWith(MockitoExtension.class)
 class EmailServiceTest {
@@ -43,16 +79,36 @@ class EmailServiceTest {
     @Mock	// Simula o comportamento do JavaMailSender
     private JavaMailSender emailSender;
     
+    @Spy	// Política de retentativa real (outbox habilitado por padrão)
+    private EmailRetryPolicy retryPolicy = new EmailRetryPolicy();
+    
+    @Mock	// Executa o callback na hora; inTransaction marca o trecho dentro da transação
+    private TransactionTemplate transactionTemplate;
+    
+    @Spy	// Templates reais do classpath
+    private EmailTemplateService emailTemplateService = new EmailTemplateService();
+    
     @InjectMocks	// Injeta os mocks na classe EmailService
     private EmailService emailService;
     
     // Objeto de modelo de email para uso nos testes
     private EmailModel emailModel;
+    
+    private boolean inTransaction;
 	
     
     // Configura um modelo de email antes de cada teste
     @BeforeEach
+    @SuppressWarnings("unchecked")
     void setUp() {
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
+            inTransaction = true;
+            try {
+                return ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null);
+            } finally {
+                inTransaction = false;
+            }
+        });
         emailModel = new EmailModel();
         emailModel.setEmailFrom("remetente@test.com.br");
         emailModel.setEmailTo("destinatario@test.com.br");
@@ -64,6 +120,7 @@ class EmailServiceTest {
 	@Test
 	void testSendEmailSuccess() {
 		// Arrange (Preparar)
+	    when(emailSender.createMimeMessage()).thenReturn(new MimeMessage((Session) null));
 	    when(emailRepository.save(any(EmailModel.class))).thenReturn(emailModel);
 	    
 	    // Act (Executar)
@@ -75,35 +132,192 @@ class EmailServiceTest {
 	    assertNotNull(result.getSendDateEmail());
 	    
 	    // Verifica se o emailSender.send foi chamado 1 vez
-	    verify(emailSender, times(1)).send(any(SimpleMailMessage.class));
+	    verify(emailSender, times(1)).send(any(MimeMessage.class));
 	    
 	    // Verifica se o repository.save foi chamado 1 vez
 	    verify(emailRepository, times(1)).save(emailModel);
 	}
 	
 	
+	@Test
+	void testSendEmailSendsOutsideTransactionAndSavesAfterwards() {
+		// Arrange (Preparar) - registra se havia transação aberta durante o SMTP e o save
+		when(emailSender.createMimeMessage()).thenReturn(new MimeMessage((Session) null));
+		List<Boolean> smtpInTransaction = new ArrayList<>();
+		List<Boolean> saveInTransaction = new ArrayList<>();
+		doAnswer(invocation -> smtpInTransaction.add(inTransaction))
+				.when(emailSender).send(any(MimeMessage.class));
+		when(emailRepository.save(any(EmailModel.class))).thenAnswer(invocation -> {
+			saveInTransaction.add(inTransaction);
+			return invocation.getArgument(0);
+		});
+
+		// Act (Executar)
+		emailService.sendEmail(emailModel);
+
+		// Assert (Verificar) - a conexão do banco só é tomada depois do envio
+		assertEquals(List.of(false), smtpInTransaction);
+		assertEquals(List.of(true), saveInTransaction);
+		InOrder inOrder = inOrder(emailSender, transactionTemplate);
+		inOrder.verify(emailSender).send(any(MimeMessage.class));
+		inOrder.verify(transactionTemplate).execute(any());
+	}
+	
+	
 	@Test
 	void testSendEmailError() {
 	    // Arrange (Preparar) - Simula erro no envio
-	    doThrow(new MailException("Erro ao enviar email") {}).when(emailSender).send(any(SimpleMailMessage.class));
+	    when(emailSender.createMimeMessage()).thenReturn(new MimeMessage((Session) null));
+	    doThrow(new MailException("Erro ao enviar email") {}).when(emailSender).send(any(MimeMessage.class));
 	    when(emailRepository.save(any(EmailModel.class))).thenReturn(emailModel);
 	    
 	    // Act (Executar)
 	    EmailModel result = emailService.sendEmail(emailModel);
 	    
-	    // Assert (Verificar)
+	    // Assert (Verificar) - falha transitória fica agendada para nova tentativa pelo outbox
 	    assertNotNull(result);
-	    assertEquals(StatusEmail.ERROR, result.getStatusEmail());
+	    assertEquals(StatusEmail.RETRYING, result.getStatusEmail());
+	    assertEquals(1, result.getAttemptCount());
+	    assertNotNull(result.getNextAttemptAt());
 	    assertNotNull(result.getSendDateEmail());
 	    
 	    // Verifica se tentou enviar o email
-	    verify(emailSender, times(1)).send(any(SimpleMailMessage.class));
+	    verify(emailSender, times(1)).send(any(MimeMessage.class));
 	    
 	    // Verifica se salvou mesmo com erro
 	    verify(emailRepository, times(1)).save(emailModel);
 	}
 
 	
+	@Test
+	void testSendEmailRejectedRecipientIsDead() throws Exception {
+	    // Arrange (Preparar) - servidor recusa o único destinatário (falha permanente)
+	    MimeMessage mimeMessage = new MimeMessage((Session) null);
+	    when(emailSender.createMimeMessage()).thenReturn(mimeMessage);
+	    Address[] invalid = { new InternetAddress("destinatario@test.com.br") };
+	    SendFailedException rejected = new SendFailedException("550 User unknown", null, new Address[0], new Address[0], invalid);
+	    doThrow(new MailSendException(Map.of(mimeMessage, rejected))).when(emailSender).send(any(MimeMessage.class));
+	    when(emailRepository.save(any(EmailModel.class))).thenReturn(emailModel);
+	    
+	    // Act (Executar)
+	    EmailModel result = emailService.sendEmail(emailModel);
+	    
+	    // Assert (Verificar)
+	    assertEquals(StatusEmail.DEAD, result.getStatusEmail());
+	    assertEquals(1, result.getAttemptCount());
+	    assertNull(result.getNextAttemptAt());
+	}
+
+	
+	@Test
+	void testSendEmailThrottledIsDeferredWithoutAttempt() {
+	    // Arrange (Preparar) - domínio com 1 envio a cada ~17 min e nenhuma espera permitida
+	    ReflectionTestUtils.setField(emailService, "rateLimiter", new SmtpRateLimiter(true, 1000, 10, 0.001, 1));
+	    ReflectionTestUtils.setField(emailService, "rateLimitMaxWaitMs", 0L);
+	    when(emailSender.createMimeMessage()).thenReturn(new MimeMessage((Session) null));
+	    when(emailRepository.save(any(EmailModel.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+	    EmailModel second = new EmailModel();
+	    second.setEmailFrom("remetente@test.com.br");
+	    second.setEmailTo("outro@test.com.br");
+	    second.setSubject("Assunto Teste 2");
+	    second.setText("Conteúdo do email de teste");
+
+	    // Act (Executar)
+	    emailService.sendEmail(emailModel);
+	    EmailModel result = emailService.sendEmail(second);
+
+	    // Assert (Verificar) - o segundo email para o mesmo domínio é adiado, não falha
+	    assertEquals(StatusEmail.SENT, emailModel.getStatusEmail());
+	    assertEquals(StatusEmail.RETRYING, result.getStatusEmail());
+	    assertEquals(0, result.getAttemptCount());
+	    assertTrue(result.getNextAttemptAt().isAfter(LocalDateTime.now().plusMinutes(10)));
+	    verify(emailSender, times(1)).send(any(MimeMessage.class));
+	}
+
+
+	@Test
+	void testSendEmailWithoutLaneCapacityIsRetried() {
+	    // Arrange (Preparar) - a única vaga SMTP já está com a faixa alta e não há espera
+	    SmtpPriorityGate gate = new SmtpPriorityGate(true, 1, 1.0, 1.0, 1.0, 0);
+	    assertTrue(gate.acquire(EmailPriority.HIGH));
+	    ReflectionTestUtils.setField(emailService, "priorityGate", gate);
+	    when(emailSender.createMimeMessage()).thenReturn(new MimeMessage((Session) null));
+	    when(emailRepository.save(any(EmailModel.class))).thenAnswer(invocation -> invocation.getArgument(0));
+	    emailModel.setPriority(EmailPriority.LOW);
+
+	    // Act (Executar)
+	    EmailModel result = emailService.sendEmail(emailModel);
+
+	    // Assert (Verificar) - adiado como no limite de taxa: não conta tentativa, não tenta o SMTP
+	    // e não prende a vaga
+	    assertEquals(StatusEmail.RETRYING, result.getStatusEmail());
+	    assertNotNull(result.getNextAttemptAt());
+	    assertEquals(0, result.getAttemptCount());
+	    assertNull(result.getLastError());
+	    verify(emailSender, times(0)).send(any(MimeMessage.class));
+	    gate.release(EmailPriority.HIGH);
+	    assertTrue(gate.acquire(EmailPriority.LOW));
+	}
+
+
+	@Test
+	void testSendEmailsMarksOnlyFailedMessagesForRetry() {
+		// Arrange (Preparar) - segunda mensagem do lote é recusada pelo servidor
+		EmailModel second = new EmailModel();
+		second.setEmailFrom("remetente@test.com.br");
+		second.setEmailTo("outro@test.com.br");
+		second.setSubject("Assunto Teste 2");
+		second.setText("Outro conteúdo");
+		List<EmailModel> batch = Arrays.asList(emailModel, second);
+
+		MimeMessage firstMessage = new MimeMessage((Session) null);
+		MimeMessage secondMessage = new MimeMessage((Session) null);
+		when(emailSender.createMimeMessage()).thenReturn(firstMessage, secondMessage);
+		doThrow(new MailSendException(Map.of(secondMessage, new Exception("550 rejected"))))
+				.when(emailSender).send(any(MimeMessage[].class));
+		when(emailRepository.saveAll(batch)).thenReturn(batch);
+
+		// Act (Executar)
+		List<EmailModel> result = emailService.sendEmails(batch);
+
+		// Assert (Verificar)
+		assertEquals(StatusEmail.SENT, result.get(0).getStatusEmail());
+		assertEquals(StatusEmail.RETRYING, result.get(1).getStatusEmail());
+
+		// Verifica que o lote foi enviado e persistido em uma única chamada
+		verify(emailSender, times(1)).send(any(MimeMessage[].class));
+		verify(emailRepository, times(1)).saveAll(batch);
+	}
+
+
+	@Test
+	void testSendEmailsDefersThrottledMessageWithoutWaiting() {
+		// Arrange (Preparar) - 1 envio por segundo ao domínio: a espera caberia nos 2 s de rateLimitMaxWaitMs
+		ReflectionTestUtils.setField(emailService, "rateLimiter", new SmtpRateLimiter(true, 1000, 10, 1, 1));
+		EmailModel second = new EmailModel();
+		second.setEmailFrom("remetente@test.com.br");
+		second.setEmailTo("outro@test.com.br");
+		second.setSubject("Assunto Teste 2");
+		second.setText("Outro conteúdo");
+		List<EmailModel> batch = Arrays.asList(emailModel, second);
+		when(emailSender.createMimeMessage()).thenReturn(new MimeMessage((Session) null));
+		when(emailRepository.saveAll(batch)).thenReturn(batch);
+
+		// Act (Executar)
+		long start = System.nanoTime();
+		List<EmailModel> result = emailService.sendEmails(batch);
+		long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+		// Assert (Verificar) - o segundo vai para o outbox sem segurar o lote na espera
+		assertEquals(StatusEmail.SENT, result.get(0).getStatusEmail());
+		assertEquals(StatusEmail.RETRYING, result.get(1).getStatusEmail());
+		assertEquals(0, result.get(1).getAttemptCount());
+		assertTrue(elapsedMs < 500, "batch waited " + elapsedMs + " ms");
+		verify(emailSender, times(1)).createMimeMessage();
+	}
+
+	
 	@Test
 	void testFindAll() {
 		// Arrange (Preparar)
@@ -128,6 +342,70 @@ class EmailServiceTest {
 	}
 
 	
+	@Test
+	void testFindSummariesReturnsCursorForNextPage() {
+		// Arrange (Preparar) - repositório devolve size + 1 linhas, indicando que há próxima página
+	    EmailFilterDto filter = new EmailFilterDto(StatusEmail.SENT, null, null, null);
+	    LocalDateTime now = LocalDateTime.now();
+	    List<EmailSummaryDto> rows = List.of(
+	    		new EmailSummaryDto(UUID.randomUUID(), "ref", "a@test.com.br", "b@test.com.br", "1", now, StatusEmail.SENT, null, 1),
+	    		new EmailSummaryDto(UUID.randomUUID(), "ref", "a@test.com.br", "b@test.com.br", "2", now.minusMinutes(1), StatusEmail.SENT, null, 1),
+	    		new EmailSummaryDto(UUID.randomUUID(), "ref", "a@test.com.br", "b@test.com.br", "3", now.minusMinutes(2), StatusEmail.SENT, null, 1));
+	    
+	    when(emailRepository.findSummaries(filter, null, 3)).thenReturn(rows);
+	    
+	    // Act (Executar)
+	    EmailCursorPageDto result = emailService.findSummaries(filter, null, 2);
+	    
+	    // Assert (Verificar)
+	    assertEquals(2, result.size());
+	    assertNotNull(result.nextCursor());
+	    assertEquals(EmailCursor.of(rows.get(1)), EmailCursor.decode(result.nextCursor()));
+	}
+
+
+	@Test
+	void testSearchSummariesWithoutFromUsesDefaultWindow() {
+		// Arrange (Preparar)
+	    LocalDateTime to = LocalDateTime.of(2026, 10, 1, 0, 0);
+	    EmailSearchDto search = new EmailSearchDto("cliente@", "deploy falhou", StatusEmail.DEAD, null, null, to);
+	    ArgumentCaptor<EmailSearchDto> captor = ArgumentCaptor.forClass(EmailSearchDto.class);
+	    when(emailRepository.searchSummaries(captor.capture(), any(), any(Integer.class))).thenReturn(List.of());
+	    
+	    // Act (Executar)
+	    EmailCursorPageDto result = emailService.searchSummaries(search, null, 20);
+	    
+	    // Assert (Verificar)
+	    assertEquals(0, result.size());
+	    assertNull(result.nextCursor());
+	    assertEquals(to.minusDays(90), captor.getValue().from());
+	    assertEquals("cliente@", captor.getValue().recipient());
+	}
+
+	
+	@Test
+	void testSearchSummariesWithoutTextUsesListing() {
+		// Arrange (Preparar)
+	    EmailSearchDto search = new EmailSearchDto(null, null, StatusEmail.SENT, "ref", null, null);
+	    when(emailRepository.findSummaries(search.toFilter(), null, 21)).thenReturn(List.of());
+	    
+	    // Act (Executar)
+	    emailService.searchSummaries(search, null, 20);
+	    
+	    // Assert (Verificar)
+	    verify(emailRepository, never()).searchSummaries(any(), any(), any(Integer.class));
+	}
+
+	
+	@Test
+	void testSearchSummariesRejectsShortRecipient() {
+		// Act & Assert (Executar e Verificar) - sem trigrama completo o índice não é usado
+	    EmailSearchDto search = new EmailSearchDto("ab", null, null, null, null, null);
+	    assertThrows(IllegalArgumentException.class, () -> emailService.searchSummaries(search, null, 20));
+	    verify(emailRepository, never()).searchSummaries(any(), any(), any(Integer.class));
+	}
+
+	
 	@Test
 	void testFindByIdFound() {
 		// Arrange (Preparar)
@@ -149,6 +427,28 @@ class EmailServiceTest {
 	}
 	
 	
+	@Test
+	void testFindByIdRebuildsHtmlFromTemplate() throws Exception {
+		// Arrange (Preparar) - email persistido apenas com a referência do template
+	    UUID id = UUID.randomUUID();
+	    emailModel.setId(id);
+	    emailService.applyTemplate(emailModel, "template-email.html", Map.of("name", "Maria", "message", "Olá!"));
+	    String expectedHtml = emailModel.getHtml();
+	    emailModel.setHtml(null);
+	    
+	    when(emailRepository.findById(id)).thenReturn(Optional.of(emailModel));
+	    
+	    // Act (Executar)
+	    Optional<EmailModel> result = emailService.findById(id);
+	    
+	    // Assert (Verificar)
+	    assertTrue(result.isPresent());
+	    assertEquals(expectedHtml, result.get().getHtml());
+	    assertEquals("template-email.html", result.get().getTemplateName());
+	    assertNull(emailModel.getHtml());
+	}
+	
+	
 	@Test
 	void testFindByIdNotFound() {
 	    // Arrange (Preparar)
@@ -167,4 +467,57 @@ class EmailServiceTest {
 	    verify(emailRepository, times(1)).findById(id);
 	}
 
+	
+	
+	@Test
+	void testSendEmailStreamsAttachmentsFromSpool(@TempDir Path tempDir) throws Exception {
+	    // Arrange (Preparar) - anexo já gravado no spool
+	    Path file = Files.writeString(tempDir.resolve("relatorio.csv"), "id;valor\n1;10\n");
+	    EmailAttachmentModel attachment = new EmailAttachmentModel();
+	    attachment.setId(UUID.randomUUID());
+	    attachment.setFileName("relatorio.csv");
+	    EmailAttachmentService emailAttachmentService = mock(EmailAttachmentService.class);
+	    when(emailAttachmentService.findFor(emailModel)).thenReturn(List.of(attachment));
+	    when(emailAttachmentService.open(attachment)).thenReturn(new FileChannelDataSource(file, "relatorio.csv", "text/csv"));
+	    ReflectionTestUtils.setField(emailService, "emailAttachmentService", emailAttachmentService);
+
+	    emailModel.setAttachmentIds(List.of(attachment.getId()));
+	    emailModel.setAttachmentCount(1);
+	    when(emailSender.createMimeMessage()).thenReturn(new MimeMessage((Session) null));
+	    when(emailRepository.save(any(EmailModel.class))).thenAnswer(invocation -> {
+	        emailModel.setId(UUID.randomUUID());
+	        return emailModel;
+	    });
+	    ArgumentCaptor<MimeMessage> sent = ArgumentCaptor.forClass(MimeMessage.class);
+
+	    // Act (Executar)
+	    emailService.sendEmail(emailModel);
+
+	    // Assert (Verificar) - os anexos são vinculados ao email salvo antes do envio, e a mensagem escrita os contém
+	    InOrder inOrder = inOrder(emailAttachmentService, emailSender);
+	    inOrder.verify(emailAttachmentService).link(emailModel);
+	    inOrder.verify(emailSender).send(sent.capture());
+	    ByteArrayOutputStream raw = new ByteArrayOutputStream();
+	    sent.getValue().writeTo(raw);
+	    assertTrue(raw.toString(StandardCharsets.UTF_8).contains("filename=relatorio.csv"));
+	}
+
+
+	@Test
+	void testSendEmailRejectsAttachmentClaimedByAnotherEmail() {
+	    // Arrange (Preparar) - o anexo foi vinculado a outro email depois do validate
+	    EmailAttachmentService emailAttachmentService = mock(EmailAttachmentService.class);
+	    ReflectionTestUtils.setField(emailService, "emailAttachmentService", emailAttachmentService);
+	    emailModel.setAttachmentIds(List.of(UUID.randomUUID()));
+	    when(emailRepository.save(any(EmailModel.class))).thenAnswer(invocation -> {
+	        emailModel.setId(UUID.randomUUID());
+	        return emailModel;
+	    });
+	    doThrow(new IllegalArgumentException("Anexo já vinculado a outro email")).when(emailAttachmentService).link(emailModel);
+
+	    // Act & Assert (Executar e Verificar) - a exceção desfaz a transação sem chegar ao SMTP
+	    assertThrows(IllegalArgumentException.class, () -> emailService.sendEmail(emailModel));
+	    verify(emailSender, never()).send(any(MimeMessage.class));
+	}
+
 }
@@ -0,0 +1,224 @@
+package br.com.sistema.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.sistema.enums.StatusEmail;
+import br.com.sistema.models.EmailModel;
+
+class EmailSpoolServiceTest {
+
+	@TempDir
+	Path directory;
+
+	private JdbcTemplate jdbcTemplate;
+	private RabbitTemplate rabbitTemplate;
+	private EmailService emailService;
+	private EmailSpoolService emailSpoolService;
+
+	private final List<Object[]> inserted = new ArrayList<>();
+
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() throws Exception {
+		jdbcTemplate = mock(JdbcTemplate.class);
+		rabbitTemplate = mock(RabbitTemplate.class);
+		emailService = mock(EmailService.class);
+		TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+		lenient().when(transactionTemplate.execute(any())).thenAnswer(
+				invocation -> ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+		lenient().when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+			inserted.addAll(invocation.getArgument(1));
+			return new int[inserted.size()];
+		});
+
+		emailSpoolService = new EmailSpoolService(directory.toString(), 4096, true);
+		ReflectionTestUtils.setField(emailSpoolService, "objectMapper", new ObjectMapper().findAndRegisterModules());
+		ReflectionTestUtils.setField(emailSpoolService, "jdbcTemplate", jdbcTemplate);
+		ReflectionTestUtils.setField(emailSpoolService, "transactionTemplate", transactionTemplate);
+		ReflectionTestUtils.setField(emailSpoolService, "rabbitTemplate", rabbitTemplate);
+		ReflectionTestUtils.setField(emailSpoolService, "emailService", emailService);
+		ReflectionTestUtils.setField(emailSpoolService, "dispatchQueue", "email.queue.dispatch");
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		emailSpoolService.close();
+	}
+
+
+	@Test
+	void testReplayInsertsAndPublishesSpooledEmails() {
+		// Arrange (Preparar)
+		EmailModel emailModel = emailModel("destinatario@test.com.br");
+		emailSpoolService.append(emailModel);
+
+		// Act (Executar)
+		emailSpoolService.replay();
+		emailSpoolService.replay();
+
+		// Assert (Verificar) - o segundo replay não encontra nada pendente
+		assertNotNull(emailModel.getId());
+		assertEquals(1, inserted.size());
+		assertEquals(emailModel.getId(), inserted.get(0)[0]);
+		assertEquals("PENDING", inserted.get(0)[11]);
+		verify(emailService, times(1)).linkAttachments(any(EmailModel.class));
+		verify(rabbitTemplate, times(1)).convertAndSend("email.queue.dispatch", emailModel.getId());
+	}
+
+
+	@Test
+	void testReplayKeepsEmailsWhileDatabaseIsDown() {
+		// Arrange (Preparar)
+		emailSpoolService.append(emailModel("destinatario@test.com.br"));
+		doAnswer(invocation -> {
+			throw new DataAccessResourceFailureException("Connection refused");
+		}).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(), any());
+
+		// Act (Executar)
+		emailSpoolService.replay();
+
+		// Assert (Verificar)
+		assertEquals(0, inserted.size());
+		verify(rabbitTemplate, never()).convertAndSend(anyString(), any(Object.class));
+
+		// Act (Executar) - o banco volta
+		reset(jdbcTemplate);
+		when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+			inserted.addAll(invocation.getArgument(1));
+			return new int[inserted.size()];
+		});
+		emailSpoolService.replay();
+
+		// Assert (Verificar)
+		assertEquals(1, inserted.size());
+	}
+
+
+	@Test
+	void testReplaySkipsEmailsAlreadyInserted() {
+		// Arrange (Preparar) - o lote anterior foi gravado, mas o checkpoint não
+		EmailModel emailModel = emailModel("destinatario@test.com.br");
+		emailModel.setStatusEmail(StatusEmail.SENT);
+		emailSpoolService.append(emailModel);
+		doAnswer(invocation -> {
+			ResultSet rs = mock(ResultSet.class);
+			when(rs.getObject("id", UUID.class)).thenReturn(emailModel.getId());
+			((RowCallbackHandler) invocation.getArgument(1)).processRow(rs);
+			return null;
+		}).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(), any());
+
+		// Act (Executar)
+		emailSpoolService.replay();
+
+		// Assert (Verificar)
+		assertEquals(0, inserted.size());
+		verify(emailService, never()).prepareForPersistence(anyList());
+		verify(rabbitTemplate, never()).convertAndSend(eq("email.queue.dispatch"), any(Object.class));
+	}
+
+	@Test
+	void testReplayReservesDeferredKeyAndWaitsWhileHeldElsewhere() {
+		// Arrange (Preparar) - email aceito sem reserva no banco; outra instância ainda envia a mesma chave
+		EmailModel emailModel = emailModel("destinatario@test.com.br");
+		emailModel.setIdempotencyKey("http:pedido-1");
+		emailModel.setIdempotencyDeferred(true);
+		emailSpoolService.append(emailModel);
+		when(jdbcTemplate.update(anyString(), eq("http:pedido-1"), eq(900000L))).thenReturn(0, 1);
+
+		// Act (Executar)
+		emailSpoolService.replay();
+
+		// Assert (Verificar) - nada é inserido nem publicado; o registro volta para o fim do spool
+		assertEquals(0, inserted.size());
+		verify(rabbitTemplate, never()).convertAndSend(anyString(), any(Object.class));
+
+		// Act (Executar) - a reserva de lá expirou
+		emailSpoolService.replay();
+
+		// Assert (Verificar) - a chave é reservada na transação do lote e o email segue para a fila
+		assertEquals(1, inserted.size());
+		assertEquals("http:pedido-1", inserted.get(0)[16]);
+		verify(jdbcTemplate, times(2)).update(anyString(), eq("http:pedido-1"), eq(900000L));
+		verify(rabbitTemplate, times(1)).convertAndSend("email.queue.dispatch", emailModel.getId());
+	}
+
+	@Test
+	void testReplayQuarantinesRecordRejectedByDatabase() throws Exception {
+		// Arrange (Preparar) - assunto acima do VARCHAR(255): o banco recusa a linha
+		EmailModel valid = emailModel("destinatario@test.com.br");
+		EmailModel rejected = emailModel("outro@test.com.br");
+		rejected.setSubject("A".repeat(300));
+		emailSpoolService.append(valid);
+		emailSpoolService.append(rejected);
+		when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+			List<Object[]> batch = invocation.getArgument(1);
+			if (batch.stream().anyMatch(row -> ((String) row[4]).length() > 255)) {
+				throw new DataIntegrityViolationException("value too long for type character varying(255)");
+			}
+			inserted.addAll(batch);
+			return new int[batch.size()];
+		});
+
+		// Act (Executar)
+		emailSpoolService.replay();
+		emailSpoolService.replay();
+
+		// Assert (Verificar) - o válido entra, o recusado vai para a quarentena e o checkpoint avança
+		assertEquals(1, inserted.size());
+		assertEquals(valid.getId(), inserted.get(0)[0]);
+		verify(rabbitTemplate, times(1)).convertAndSend("email.queue.dispatch", valid.getId());
+		try (Stream<Path> files = Files.list(directory.resolve("quarantine"))) {
+			List<Path> quarantined = files.toList();
+			assertEquals(1, quarantined.size());
+			EmailModel stored = new ObjectMapper().findAndRegisterModules()
+					.readValue(quarantined.get(0).toFile(), EmailModel.class);
+			assertEquals(rejected.getId(), stored.getId());
+		}
+	}
+
+	private static EmailModel emailModel(String emailTo) {
+		EmailModel emailModel = new EmailModel();
+		emailModel.setEmailFrom("remetente@test.com.br");
+		emailModel.setEmailTo(emailTo);
+		emailModel.setSubject("Assunto");
+		emailModel.setText("Corpo");
+		return emailModel;
+	}
+}
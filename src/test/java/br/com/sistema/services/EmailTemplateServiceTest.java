@@ -0,0 +1,99 @@
+package br.com.sistema.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import br.com.sistema.templates.CompiledTemplate;
+
+class EmailTemplateServiceTest {
+
+	private EmailTemplateService emailTemplateService;
+
+	private Map<String, String> variables;
+
+
+	@BeforeEach
+	void setUp() {
+		emailTemplateService = new EmailTemplateService();
+
+		variables = new HashMap<>();
+		variables.put("name", "Maria");
+		variables.put("email", "maria@test.com.br");
+		variables.put("phone", "21 99999-0000");
+		variables.put("subject", "Orçamento");
+		variables.put("message", "Olá!");
+	}
+
+
+	@Test
+	void testProcessTemplateReplacesAllOccurrences() {
+		// Arrange (Preparar)
+		String template = "<p>${contact.name}</p><a href=\"mailto:${contact.email}\">${contact.email}</a>";
+
+		// Act (Executar)
+		String result = emailTemplateService.processTemplate(template, variables);
+
+		// Assert (Verificar)
+		assertEquals("<p>Maria</p><a href=\"mailto:maria@test.com.br\">maria@test.com.br</a>", result);
+	}
+
+
+	@Test
+	void testProcessTemplateKeepsUnknownPlaceholdersAndNullValues() {
+		// Arrange (Preparar)
+		variables.put("phone", null);
+		String template = "${contact.phone}|${contact.unknown}|${contact.name";
+
+		// Act (Executar)
+		String result = emailTemplateService.processTemplate(template, variables);
+
+		// Assert (Verificar) - mesmo comportamento do String.replace encadeado anterior
+		assertEquals("|${contact.unknown}|${contact.name", result);
+	}
+
+
+	@Test
+	void testLoadAndProcessTemplateMatchesChainedReplace() throws IOException {
+		// Arrange (Preparar)
+		String source = emailTemplateService.loadTemplate("template-email-gemini.html");
+		String expected = source;
+		for (Map.Entry<String, String> entry : variables.entrySet()) {
+			expected = expected.replace("${contact." + entry.getKey() + "}", entry.getValue());
+		}
+
+		// Act (Executar)
+		String result = emailTemplateService.loadAndProcessTemplate("template-email-gemini.html", variables);
+
+		// Assert (Verificar)
+		assertEquals(expected, result);
+		assertFalse(result.contains("${contact."));
+	}
+
+
+	@Test
+	void testCompiledTemplateIsCached() throws IOException {
+		// Act (Executar)
+		CompiledTemplate first = emailTemplateService.getCompiledTemplate("template-email.html");
+		CompiledTemplate second = emailTemplateService.getCompiledTemplate("template-email.html");
+
+		// Assert (Verificar)
+		assertSame(first, second);
+		assertTrue(first.getSlotCount() > 0);
+	}
+
+
+	@Test
+	void testMissingTemplateThrowsIOException() {
+		assertThrows(IOException.class, () -> emailTemplateService.getCompiledTemplate("nao-existe.html"));
+	}
+}
@@ -0,0 +1,117 @@
+package br.com.sistema.spool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WriteAheadSpoolTest {
+
+	@TempDir
+	Path directory;
+
+
+	@Test
+	void testAppendedRecordsAreReadUntilCommitted() throws Exception {
+		// Arrange (Preparar)
+		try (WriteAheadSpool spool = new WriteAheadSpool(directory, 4096, true)) {
+			spool.append(bytes("primeiro"));
+			spool.awaitDurable(spool.append(bytes("segundo")));
+
+			// Act (Executar)
+			List<WriteAheadSpool.Entry> entries = spool.read(10);
+			spool.commit(entries.get(0).next());
+
+			// Assert (Verificar)
+			assertEquals(2, entries.size());
+			assertArrayEquals(bytes("primeiro"), entries.get(0).payload());
+			assertEquals(1, spool.read(10).size());
+			assertArrayEquals(bytes("segundo"), spool.read(10).get(0).payload());
+		}
+	}
+
+
+	@Test
+	void testConcurrentAppendsRollSegmentsAndCommitDeletesThem() throws Exception {
+		// Arrange (Preparar) - segmentos pequenos para forçar a troca
+		try (WriteAheadSpool spool = new WriteAheadSpool(directory, 64, true)) {
+			CompletableFuture<?>[] writers = IntStream.range(0, 20)
+					.mapToObj(i -> CompletableFuture.runAsync(() -> {
+						try {
+							spool.awaitDurable(spool.append(bytes("email-" + i)));
+						} catch (InterruptedException e) {
+							throw new IllegalStateException(e);
+						}
+					}))
+					.toArray(CompletableFuture[]::new);
+			CompletableFuture.allOf(writers).join();
+			assertTrue(segmentCount() > 1);
+
+			// Act (Executar)
+			List<WriteAheadSpool.Entry> entries = spool.read(100);
+			spool.commit(entries.get(entries.size() - 1).next());
+
+			// Assert (Verificar)
+			assertEquals(20, entries.size());
+			assertEquals(0, spool.pendingBytes());
+			assertEquals(1, segmentCount());
+		}
+	}
+
+
+	@Test
+	void testReopenKeepsPendingRecordsAndDiscardsTornTail() throws Exception {
+		// Arrange (Preparar) - um registro consumido, um pendente e uma escrita interrompida
+		long end;
+		try (WriteAheadSpool spool = new WriteAheadSpool(directory, 4096, true)) {
+			long first = spool.append(bytes("enviado"));
+			end = spool.append(bytes("pendente"));
+			spool.awaitDurable(end);
+			spool.commit(first);
+		}
+		try (FileChannel channel = FileChannel.open(onlySegment(), StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.allocate(4).putInt(0, 100), end);
+		}
+
+		// Act (Executar)
+		try (WriteAheadSpool spool = new WriteAheadSpool(directory, 4096, true)) {
+			List<WriteAheadSpool.Entry> entries = spool.read(10);
+			spool.awaitDurable(spool.append(bytes("novo")));
+
+			// Assert (Verificar)
+			assertEquals(1, entries.size());
+			assertArrayEquals(bytes("pendente"), entries.get(0).payload());
+			assertEquals(end, entries.get(0).next());
+			assertArrayEquals(bytes("novo"), spool.read(10).get(1).payload());
+		}
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private long segmentCount() throws Exception {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(path -> path.toString().endsWith(".seg")).count();
+		}
+	}
+
+	private Path onlySegment() throws Exception {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(path -> path.toString().endsWith(".seg")).findFirst().orElseThrow();
+		}
+	}
+}
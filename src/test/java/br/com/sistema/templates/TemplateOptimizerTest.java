@@ -0,0 +1,100 @@
+package br.com.sistema.templates;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+class TemplateOptimizerTest {
+
+	private static final String HTML = """
+			<!DOCTYPE html>
+			<html>
+			<head>
+			    <style>
+			        /* estilos */
+			        p { color: #333; margin: 0; }
+			        .box p { color: #111; }
+			        .box { padding: 10px; }
+			        .box:hover { opacity: 0.9; }
+			        .badge { font-size: 12px; }
+			        .badge.production { color: blue; }
+			        @media (max-width: 600px) { .box { padding: 4px; } }
+			    </style>
+			</head>
+			<body>
+			    <!-- CONTEÚDO -->
+			    <div class="box">
+			        <p style="margin: 4px">Olá <strong>${contact.name}</strong> <em>!</em></p>
+			        <span class="badge ${contact.environment}">${contact.environment}</span>
+			        <div style="white-space: pre-wrap">
+			            ${contact.message}
+			        </div>
+			    </div>
+			    <!--[if mso]><table><tr><td><![endif]-->
+			</body>
+			</html>
+			""";
+
+
+	@Test
+	void testInlinesRulesBySpecificityKeepingInlineStyle() {
+		// Act (Executar)
+		String optimized = TemplateOptimizer.optimize(HTML);
+
+		// Assert (Verificar) - .box p vence p; o style do próprio elemento vence as regras
+		assertTrue(optimized.contains("<p style=\"color:#111;margin:4px\">Olá <strong>${contact.name}</strong> <em>!</em></p>"));
+		assertTrue(optimized.contains("<div class=\"box\" style=\"padding:10px\">"));
+	}
+
+
+	@Test
+	void testKeepsRulesThatCannotBeInlined() {
+		// Act (Executar)
+		String optimized = TemplateOptimizer.optimize(HTML);
+
+		// Assert (Verificar) - :hover, @media e a classe vinda de variável ficam no <style>
+		assertTrue(optimized.contains(".box:hover{opacity:0.9}"));
+		assertTrue(optimized.contains("@media (max-width:600px){.box{padding:4px}}"));
+		assertTrue(optimized.contains(".badge{font-size:12px}.badge.production{color:blue}"));
+		assertTrue(optimized.contains("<span class=\"badge ${contact.environment}\">"));
+	}
+
+
+	@Test
+	void testStripsCommentsAndWhitespaceOutsidePreformattedText() {
+		// Act (Executar)
+		String optimized = TemplateOptimizer.optimize(HTML);
+
+		// Assert (Verificar)
+		assertFalse(optimized.contains("CONTEÚDO"));
+		assertFalse(optimized.contains("estilos"));
+		assertTrue(optimized.contains("<!--[if mso]>"));
+		assertTrue(optimized.contains("\n            ${contact.message}\n        </div>"));
+		assertFalse(optimized.contains(">\n    <"));
+	}
+
+
+	@Test
+	void testClasspathTemplatesKeepEveryPlaceholder() throws Exception {
+		// Arrange (Preparar)
+		Resource[] resources = new PathMatchingResourcePatternResolver().getResources("classpath:templates/*.html");
+
+		for (Resource resource : resources) {
+			String source = resource.getContentAsString(StandardCharsets.UTF_8);
+
+			// Act (Executar)
+			String optimized = TemplateOptimizer.optimize(source);
+
+			// Assert (Verificar)
+			assertEquals(CompiledTemplate.compile(null, source).getSlotCount(),
+					CompiledTemplate.compile(null, optimized).getSlotCount(), resource.getFilename());
+			assertTrue(optimized.length() < source.length(), resource.getFilename());
+		}
+	}
+}